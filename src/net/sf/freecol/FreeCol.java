@@ -29,7 +29,9 @@ import java.net.InetAddress;
 import java.net.URL;
 import java.net.JarURLConnection;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Locale;
+import java.util.Map;
 import java.util.jar.JarFile;
 import java.util.jar.Manifest;
 import java.util.logging.Handler;
@@ -52,6 +54,7 @@ import net.sf.freecol.common.logging.DefaultHandler;
 import net.sf.freecol.common.model.NationOptions.Advantages;
 import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.common.model.StringTemplate;
+import net.sf.freecol.common.networking.DeflateCodec;
 import net.sf.freecol.common.option.OptionGroup;
 import static net.sf.freecol.common.util.CollectionUtils.*;
 import net.sf.freecol.server.FreeColServer;
@@ -129,18 +132,25 @@ public final class FreeCol {
     public static final float GUI_SCALE_STEP = GUI_SCALE_STEP_PCT / 100.0f;
     public static final float GUI_SCALE_DEFAULT = 1.0f;
 
+    /** Specifications shared between games, by TC and advantages. */
+    private static final Map<String, Specification> sharedSpecifications
+        = new HashMap<>();
+
 
     // Cli values.  Often set to null so the default can be applied in
     // the accessor function.
-    private static boolean checkIntegrity = false,
+    private static boolean binarySaves = false,
+                           checkIntegrity = false,
                            consoleLogging = false,
                            debugStart = false,
                            fastStart = false,
+                           sectionedSaves = false,
                            headless = false,
                            introVideo = true,
                            javaCheck = true,
                            memoryCheck = true,
                            publicServer = true,
+                           serverChannels = false,
                            sound = true,
                            standAloneServer = false;
 
@@ -165,6 +175,8 @@ public final class FreeCol {
     /** How to name and configure the server. */
     private static int serverPort = -1;
     private static String serverName = null;
+    private static DeflateCodec.Policy serverCompression
+        = DeflateCodec.Policy.ALLOW;
 
     /** A stream to get the splash image from. */
     private static InputStream splashStream;
@@ -457,6 +469,9 @@ public final class FreeCol {
                           .withArgName(Messages.message("cli.arg.advantages"))
                           .hasArg()
                           .create());
+        options.addOption(OptionBuilder.withLongOpt("binary-saves")
+                          .withDescription(Messages.message("cli.binary-saves"))
+                          .create());
         options.addOption(OptionBuilder.withLongOpt("check-savegame")
                           .withDescription(Messages.message("cli.check-savegame"))
                           .withArgName(Messages.message("cli.arg.file"))
@@ -554,6 +569,9 @@ public final class FreeCol {
         options.addOption(OptionBuilder.withLongOpt("private")
                           .withDescription(Messages.message("cli.private"))
                           .create());
+        options.addOption(OptionBuilder.withLongOpt("sectioned-saves")
+                          .withDescription(Messages.message("cli.sectioned-saves"))
+                          .create());
         options.addOption(OptionBuilder.withLongOpt("seed")
                           .withDescription(Messages.message("cli.seed"))
                           .withArgName(Messages.message("cli.arg.seed"))
@@ -562,6 +580,14 @@ public final class FreeCol {
         options.addOption(OptionBuilder.withLongOpt("server")
                           .withDescription(Messages.message("cli.server"))
                           .create());
+        options.addOption(OptionBuilder.withLongOpt("server-channels")
+                          .withDescription(Messages.message("cli.server-channels"))
+                          .create());
+        options.addOption(OptionBuilder.withLongOpt("server-compression")
+                          .withDescription(Messages.message("cli.server-compression"))
+                          .withArgName(Messages.message("cli.arg.compression"))
+                          .hasArg()
+                          .create());
         options.addOption(OptionBuilder.withLongOpt("server-name")
                           .withDescription(Messages.message("cli.server-name"))
                           .withArgName(Messages.message("cli.arg.name"))
@@ -639,6 +665,10 @@ public final class FreeCol {
                 }
             }
 
+            if (line.hasOption("binary-saves")) {
+                binarySaves = true;
+            }
+
             if (line.hasOption("check-savegame")) {
                 String arg = line.getOptionValue("check-savegame");
                 if (!FreeColDirectories.setSavegameFile(arg)) {
@@ -770,6 +800,16 @@ public final class FreeCol {
             if (line.hasOption("server")) {
                 standAloneServer = true;
             }
+            if (line.hasOption("server-channels")) {
+                serverChannels = true;
+            }
+            if (line.hasOption("server-compression")) {
+                String arg = line.getOptionValue("server-compression");
+                if (!setServerCompression(arg)) {
+                    fatal(StringTemplate.template("cli.error.serverCompression")
+                        .addName("%string%", arg));
+                }
+            }
             if (line.hasOption("server-name")) {
                 serverName = line.getOptionValue("server-name");
             }
@@ -781,6 +821,10 @@ public final class FreeCol {
                 }
             }
 
+            if (line.hasOption("sectioned-saves")) {
+                sectionedSaves = true;
+            }
+
             if (line.hasOption("seed")) {
                 FreeColSeed.setFreeColSeed(line.getOptionValue("seed"));
             }
@@ -888,14 +932,61 @@ public final class FreeCol {
         return spec;
     }
 
+    /**
+     * Get a specification for a new game, sharing its types with all
+     * other games that use the same TC and advantages.
+     *
+     * Each game gets its own overlay of the shared specification, so
+     * it still has its own game, map generator and difficulty options.
+     * The types can not be changed, so mods can not be loaded into the
+     * result.
+     *
+     * @param tcf The <code>FreeColTcFile</code> to load.
+     * @param advantages An optional <code>Advantages</code> setting.
+     * @param difficulty An optional difficulty level.
+     * @return A <code>Specification</code>.
+     */
+    public static Specification loadSharedSpecification(FreeColTcFile tcf,
+                                                        Advantages advantages,
+                                                        String difficulty) {
+        if (tcf == null) return null;
+        final String key = tcf.getId() + "/" + advantages;
+        Specification shared;
+        synchronized (sharedSpecifications) {
+            shared = sharedSpecifications.get(key);
+            if (shared == null) {
+                shared = loadSpecification(tcf, advantages, null);
+                if (shared == null) return null;
+                sharedSpecifications.put(key, shared);
+            }
+        }
+        Specification spec = shared.createOverlay();
+        spec.prepare(null, difficulty);
+        return spec;
+    }
+
     /**
      * Get the specification from the specified TC.
      *
      * @return A <code>Specification</code>, quits on error.
      */
     private static Specification getTCSpecification() {
-        Specification spec = loadSpecification(getTCFile(), getAdvantages(),
-                                               getDifficulty());
+        return getTCSpecification(false);
+    }
+
+    /**
+     * Get the specification from the specified TC.
+     *
+     * @param shared If true, share the types with other games, which
+     *     prevents mods being loaded.
+     * @return A <code>Specification</code>, quits on error.
+     */
+    private static Specification getTCSpecification(boolean shared) {
+        Specification spec = (shared)
+            ? loadSharedSpecification(getTCFile(), getAdvantages(),
+                                      getDifficulty())
+            : loadSpecification(getTCFile(), getAdvantages(),
+                                getDifficulty());
         if (spec == null) {
             fatal(StringTemplate.template("cli.error.badTC")
                 .addName("%tc%", getTC()));
@@ -1162,6 +1253,59 @@ public final class FreeCol {
         return true;
     }
 
+    /**
+     * Should the server write saved games in the binary format?
+     *
+     * @return True if games are saved in the binary format, rather
+     *     than as XML.
+     */
+    public static boolean getBinarySaves() {
+        return binarySaves;
+    }
+
+    /**
+     * Should the server write saved games in the sectioned layout?
+     *
+     * @return True if saved games are split into sections that can
+     *     be parsed concurrently.
+     */
+    public static boolean getSectionedSaves() {
+        return sectionedSaves;
+    }
+
+    /**
+     * Should the server serve connections with non-blocking channels?
+     *
+     * @return True if a few I/O threads should serve all connections,
+     *     rather than a receiving thread per connection.
+     */
+    public static boolean getServerChannels() {
+        return serverChannels;
+    }
+
+    /**
+     * When should the server compress its connections?
+     *
+     * @return The compression <code>Policy</code>.
+     */
+    public static DeflateCodec.Policy getServerCompression() {
+        return serverCompression;
+    }
+
+    /**
+     * Sets the server compression policy.
+     *
+     * @param arg The policy name, "force", "allow" or "disable".
+     * @return True if the policy was set.
+     */
+    private static boolean setServerCompression(String arg) {
+        DeflateCodec.Policy policy = find(DeflateCodec.Policy.values(),
+            p -> p.toString().equalsIgnoreCase(arg), null);
+        if (policy == null) return false;
+        serverCompression = policy;
+        return true;
+    }
+
     /**
      * Gets the current Total-Conversion.
      *
@@ -1377,7 +1521,8 @@ public final class FreeCol {
                 return;
             }
         } else {
-            Specification spec = FreeCol.getTCSpecification();
+            // The stand-alone server does not load mods
+            Specification spec = FreeCol.getTCSpecification(true);
             try {
                 freeColServer = new FreeColServer(publicServer, false, spec,
                                                   serverPort, serverName);
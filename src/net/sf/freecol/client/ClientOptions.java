@@ -333,6 +333,13 @@ public class ClientOptions extends OptionGroup {
     public static final String AUTOSAVE_DELETE
         = "model.option.autosaveDelete";
 
+    /**
+     * Option for saving the last turn autosave as a base save and a
+     * chain of deltas, rather than in full every turn.
+     */
+    public static final String AUTOSAVE_DELTAS
+        = "model.option.autosaveDeltas";
+
     /**
      * Whether to display confirmation for the overwrite of existing
      * save files.
@@ -803,6 +810,11 @@ public class ClientOptions extends OptionGroup {
                 + " option", e);
         }
         // end @compat 0.11.3
+
+        // @compat 0.11.6
+        addBooleanOption(AUTOSAVE_DELTAS,
+            "clientOptions.savegames", false);
+        // end @compat 0.11.6
     }
 
     private void addBooleanOption(String id, String gr, boolean val) {
@@ -800,6 +800,8 @@ public final class FreeColClient {
      * Quits the application without any questions.
      */
     public void quit() {
+        // Let any saves still being written finish
+        if (freeColServer != null) freeColServer.waitForSaves();
         getConnectController().quitGame(isSinglePlayer());
         try { // delete outdated autosave files
             long validPeriod = 1000L * 24L * 60L * 60L // days to ms
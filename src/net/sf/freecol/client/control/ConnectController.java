@@ -247,6 +247,24 @@ public final class ConnectController {
     }
 
     public boolean login(String user, String host, int port) {
+        return login(user, host, port, null, -1);
+    }
+
+    /**
+     * Log in to a server, possibly resynchronizing a game the client
+     * already holds.
+     *
+     * @param user The user name.
+     * @param host The host name of the server.
+     * @param port The port of the server.
+     * @param oldGame The <code>Game</code> held from before a
+     *     reconnect, or null if none.
+     * @param lastUpdate The sequence number of the last update
+     *     applied to the old game.
+     * @return True if the login succeeds.
+     */
+    private boolean login(String user, String host, int port,
+                          Game oldGame, int lastUpdate) {
         freeColClient.setMapEditor(false);
 
         if (!disconnectFromServer()) {
@@ -261,13 +279,18 @@ public final class ConnectController {
 
         logger.info("Connected to " + host + ":" + port);
 
-        Game game = loginToServer(user);
-        if (game == null) {
+        LoginMessage msg = loginToServer(user,
+            (oldGame == null) ? -1 : lastUpdate);
+        if (msg == null) {
             return false;
         }
+        Game game = (msg.isResync()) ? oldGame : msg.getGame();
 
         handleClientView(game, user);
-        handleReconnect(game, user);
+        if (msg.isResync()) resync(msg.getUpdates());
+        freeColClient.getInGameInputHandler()
+            .setLastUpdate(msg.getLastUpdate());
+        handleReconnect(msg, game, user);
 
         // All done.
         freeColClient.setLoggedIn(true);
@@ -291,13 +314,16 @@ public final class ConnectController {
         return null;
     }
 
-    private Game loginToServer(String user) {
-        LoginMessage msg = freeColClient.askServer().login(user, FreeCol.getVersion());
-        if (msg == null || msg.getGame() == null) {
+    private LoginMessage loginToServer(String user, int lastUpdate) {
+        LoginMessage msg = freeColClient.askServer().login(user,
+            FreeCol.getVersion(), lastUpdate);
+        if (msg == null
+            || (msg.isResync() && lastUpdate < 0)
+            || (!msg.isResync() && msg.getGame() == null)) {
             gui.showErrorMessage("server.couldNotLogin");
             return null;
         }
-        return msg.getGame();
+        return msg;
     }
 
     private void handleClientView(Game game, String user) {
@@ -314,9 +340,26 @@ public final class ConnectController {
         logger.info("FreeColClient logged in as " + user + "/" + player.getId());
     }
 
-    private void handleReconnect(Game game, String user) {
-    	LoginMessage msg = freeColClient.askServer().login(user,
-                FreeCol.getVersion());
+    /**
+     * Apply the updates a reconnecting client missed, in order.
+     *
+     * @param updates The update <code>Element</code>s.
+     */
+    private void resync(List<Element> updates) {
+        final InGameInputHandler igih = freeColClient.getInGameInputHandler();
+        final Connection c = freeColClient.askServer().getConnection();
+        logger.info("Resynchronizing with " + updates.size() + " updates");
+        for (Element e : updates) {
+            try {
+                igih.handle(c, e);
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, "Resync failed at "
+                    + e.getTagName(), ex);
+            }
+        }
+    }
+
+    private void handleReconnect(LoginMessage msg, Game game, String user) {
         Player player = game.getPlayerByName(user);
         if (msg != null && msg.getStartGame()) {
             Tile entryTile = (player.getEntryLocation() == null) ? null
@@ -327,7 +370,7 @@ public final class ConnectController {
                 gui.setActiveUnit(null);
                 if (msg.isCurrentPlayer()) {
                     freeColClient.getInGameController().setCurrentPlayer(player);
-                    handleActiveUnit(msg.getActiveUnit(), entryTile);
+                    handleActiveUnit(msg.getActiveUnit(game), entryTile);
                 } else {
                     gui.setSelectedTile(entryTile);
                 }
@@ -690,15 +733,24 @@ public final class ConnectController {
     /**
      * Reconnects to the server.
      *
+     * The game is kept, and if the server still has all the updates
+     * sent since the last one applied, only those are sent rather
+     * than the whole game.
+     *
      * @return True if the reconnection succeeds.
      */
     public boolean reconnect() {
         final String host = freeColClient.askServer().getHost();
         final int port = freeColClient.askServer().getPort();
+        final Game oldGame = freeColClient.getGame();
+        final int lastUpdate = freeColClient.getInGameInputHandler()
+            .getLastUpdate();
 
         gui.removeInGameComponents();
         logout(true);
-        if (!login(FreeCol.getName(), host, port)) return false;
+        if (!login(FreeCol.getName(), host, port, oldGame, lastUpdate)) {
+            return false;
+        }
         freeColClient.getInGameController().nextModelMessage();
         return true;
     }
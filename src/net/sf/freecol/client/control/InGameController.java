@@ -32,6 +32,8 @@ import java.util.stream.Collectors;
 import java.util.Map;
 import java.util.function.BiConsumer;
 
+import javax.swing.SwingUtilities;
+
 
 import net.sf.freecol.FreeCol;
 import net.sf.freecol.client.ClientOptions;
@@ -106,6 +108,7 @@ import net.sf.freecol.common.networking.NetworkConstants;
 import net.sf.freecol.common.networking.ServerAPI;
 import net.sf.freecol.common.option.BooleanOption;
 import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.SaveImage;
 
 import static net.sf.freecol.common.util.CollectionUtils.*;
 
@@ -572,6 +575,39 @@ public final class InGameController implements NetworkConstants {
         return false;
     }
 
+    /**
+     * Unload several lots of goods from a carrier, sending the
+     * requests without waiting for each reply in turn.  The lots are
+     * independent of each other, so nothing needs checking between
+     * them.
+     *
+     * @param goodsList The <code>Goods</code> to unload.
+     * @param carrier The <code>Unit</code> carrying the goods.
+     * @return True if all the goods were unloaded.
+     */
+    private boolean askUnloadGoods(List<Goods> goodsList, Unit carrier) {
+        final Player player = freeColClient.getMyPlayer();
+        final Market market = player.getMarket();
+        MarketWas marketWas = (market != null) ? new MarketWas(player) : null;
+
+        Map<GoodsType, Integer> oldAmounts = new HashMap<>();
+        ServerAPI.Pipeline pipeline = askServer().pipeline();
+        for (Goods g : goodsList) {
+            oldAmounts.put(g.getType(),
+                carrier.getGoodsContainer().getGoodsCount(g.getType()));
+            pipeline.unloadGoods(g.getType(), g.getAmount(), carrier);
+        }
+        boolean ret = pipeline.finish() == goodsList.size();
+        if (marketWas != null) {
+            for (Map.Entry<GoodsType, Integer> e : oldAmounts.entrySet()) {
+                int amount = carrier.getGoodsContainer()
+                    .getGoodsCount(e.getKey()) - e.getValue();
+                if (amount != 0) marketWas.fireChanges(e.getKey(), amount);
+            }
+        }
+        return ret;
+    }
+
 
     // Utilities connected with saving the game
 
@@ -613,40 +649,94 @@ public final class InGameController implements NetworkConstants {
         File autoSaveDir = FreeColDirectories.getAutosaveDirectory();
         File lastTurnFile = new File(autoSaveDir, lastTurnName);
         File beforeLastTurnFile = new File(autoSaveDir, beforeLastTurnName);
-        // if "last-turn" file exists, shift it to "before-last-turn" file
-        if (lastTurnFile.exists()) {
-            beforeLastTurnFile.delete();
-            lastTurnFile.renameTo(beforeLastTurnFile);
+        if (options.getBoolean(ClientOptions.AUTOSAVE_DELTAS)) {
+            // append this turn to the "last-turn" delta chain
+            saveGame(lastTurnFile, null, true);
+        } else {
+            // if "last-turn" file exists, shift it to "before-last-turn" file
+            saveGame(lastTurnFile, beforeLastTurnFile);
         }
-        saveGame(lastTurnFile);
 
         // conditional save after user-set period
         int saveGamePeriod = options.getInteger(ClientOptions.AUTOSAVE_PERIOD);
         int turnNumber = game.getTurn().getNumber();
         if (saveGamePeriod >= 1 && turnNumber % saveGamePeriod == 0) {
             String fileName = prefix + "-" + getSaveGameString(game);
-            saveGame(new File(autoSaveDir, fileName));
+            saveGame(new File(autoSaveDir, fileName), null);
         }
     }
 
     /**
      * Saves the game to the given file.
      *
+     * The game is only held up while it is captured, and the file is
+     * written in the background.  The status panel follows the write,
+     * and failures to write are reported when they happen.
+     *
      * @param file The <code>File</code>.
-     * @return True if the game was saved.
+     * @param backup If not null, a <code>File</code> to move any
+     *     existing save to first.
+     * @return True if the game was captured for saving.
      */
-    private boolean saveGame(final File file) {
+    private boolean saveGame(final File file, final File backup) {
+        return saveGame(file, backup, false);
+    }
+
+    /**
+     * Saves the game to the given file, optionally as a delta.
+     *
+     * @param file The <code>File</code>.
+     * @param backup If not null, a <code>File</code> to move any
+     *     existing save to first.  Not used for delta saves.
+     * @param delta If true, save only the changes since the last save
+     *     to the file.
+     * @return True if the game was captured for saving.
+     */
+    private boolean saveGame(final File file, final File backup,
+                             boolean delta) {
         final FreeColServer server = freeColClient.getFreeColServer();
         boolean result = false;
         gui.showStatusPanel(Messages.message("status.savingGame"));
         try {
             server.setActiveUnit(gui.getActiveUnit());
-            server.saveGame(file, freeColClient.getClientOptions());
+            // Called on the saving thread, so pass the work to the EDT
+            SaveImage.Listener listener = new SaveImage.Listener() {
+                    private int shown = -1;
+
+                    @Override
+                    public void saveProgress(File f, final int percent) {
+                        if (percent == shown) return;
+                        shown = percent;
+                        SwingUtilities.invokeLater(() ->
+                            gui.showStatusPanel(Messages.message(StringTemplate
+                                    .template("status.savingGameProgress")
+                                    .addAmount("%percent%", percent))));
+                    }
+
+                    @Override
+                    public void saveFinished(SaveImage image, final File f,
+                                             final IOException failure) {
+                        SwingUtilities.invokeLater(() -> {
+                                gui.closeStatusPanel();
+                                if (failure != null) {
+                                    gui.showErrorMessage(FreeCol.badSave(f));
+                                }
+                            });
+                    }
+                };
+            if (delta) {
+                server.saveGameDelta(file, freeColClient.getClientOptions(),
+                                     listener);
+            } else {
+                server.saveGameInBackground(file, backup,
+                    freeColClient.getClientOptions(), listener);
+            }
             result = true;
         } catch (IOException e) {
             gui.showErrorMessage(FreeCol.badSave(file));
         } finally {
-            gui.closeStatusPanel();
+            // Otherwise closed by the listener when the write finishes
+            if (!result) gui.closeStatusPanel();
         }
         return result;
     }
@@ -1219,7 +1309,13 @@ public final class InGameController implements NetworkConstants {
                 }
                 return false;
             } else if (path.getLocation() instanceof Tile) {
-                if (!handleMoveToTile(unit, path)) {
+                PathNode last = getOrdinaryRun(unit, path);
+                if (last != path) {
+                    // Several ordinary steps, make them in one request
+                    if ((path = moveRun(unit, path, last)) == null) {
+                        return false;
+                    }
+                } else if (!handleMoveToTile(unit, path)) {
                     return false;
                 }
             } else if (path.getLocation() instanceof Unit) {
@@ -1232,6 +1328,73 @@ public final class InGameController implements NetworkConstants {
         return true;
     }
     
+    /**
+     * Find the run of ordinary moves at the start of a path that can
+     * be made this turn, stopping short of anything that needs more
+     * than an ordinary move.
+     *
+     * @param unit The <code>Unit</code> to move.
+     * @param path The path to follow.
+     * @return The last node of the run, which is the first node if
+     *     there is no run of more than one move.
+     */
+    private PathNode getOrdinaryRun(Unit unit, PathNode path) {
+        if (!unit.hasTile()) return path;
+        // Check each step as the server will, with the moves the unit
+        // will have left by then
+        Tile from = unit.getTile();
+        int movesLeft = unit.getMovesLeft();
+        PathNode last = path;
+        for (PathNode p = path; p != null; p = p.next) {
+            if (!(p.getLocation() instanceof Tile)
+                || p.getDirection() == null || p.getTurns() > 0) break;
+            Tile tile = (Tile)p.getLocation();
+            if (tile.hasSettlement() || tile.hasLostCityRumour()
+                || unit.getMoveType(from, tile, movesLeft)
+                    != Unit.MoveType.MOVE) break;
+            last = p;
+            from = tile;
+            movesLeft = p.getMovesLeft();
+        }
+        return last;
+    }
+
+    /**
+     * Move a unit along a run of ordinary moves with a single request
+     * to the server, which stops early if anything interesting happens.
+     *
+     * @param unit The <code>Unit</code> to move.
+     * @param path The first node of the run.
+     * @param last The last node of the run.
+     * @return The node of the run the unit reached, or null if the
+     *     unit can not move further.
+     */
+    private PathNode moveRun(Unit unit, PathNode path, PathNode last) {
+        final ClientOptions options = freeColClient.getClientOptions();
+        autoloadSentries(unit, options);
+
+        List<Direction> directions = new ArrayList<>();
+        for (PathNode p = path; p != last.next; p = p.next) {
+            directions.add(p.getDirection());
+        }
+        if (!askServer().movePath(unit, directions)) {
+            // As in moveMove, skip the unit rather than retrying.
+            unit.setState(UnitState.SKIPPED);
+            return null;
+        }
+        unit.getOwner().invalidateCanSeeTiles();
+        lastMoveDelay(unit, options);
+        if (unit.isDisposed() || checkCashInTreasureTrain(unit)) return null;
+        handleCarrierArrival(unit, unit.getTile());
+        if (unit.getMovesLeft() <= 0
+            || unit.getTile().getDiscoverableRegion() != null) return null;
+
+        for (PathNode p = path; p != last.next; p = p.next) {
+            if (unit.isAtLocation(p.getLocation())) return p;
+        }
+        return null;
+    }
+
     private boolean handleMoveToTile(Unit unit, PathNode path) {
         if (path.getDirection() == null) {
             if (unit.isInEurope()) {
@@ -1612,16 +1775,7 @@ public final class InGameController implements NetworkConstants {
         unit.getOwner().invalidateCanSeeTiles();
         
         final Tile tile = unit.getTile();
-
-        // Perform a short pause on an active unit's last move if
-        // the option is enabled.
-        if (unit.getMovesLeft() <= 0
-            && options.getBoolean(ClientOptions.UNIT_LAST_MOVE_DELAY)) {
-            gui.paintImmediatelyCanvasInItsBounds();
-            try {
-                Thread.sleep(UNIT_LAST_MOVE_DELAY);
-            } catch (InterruptedException e) {} // Ignore
-        }
+        lastMoveDelay(unit, options);
 
         // Update the active unit and GUI.
         boolean ret = !unit.isDisposed() && !checkCashInTreasureTrain(unit);
@@ -1632,6 +1786,23 @@ public final class InGameController implements NetworkConstants {
         return ret;
     }
     
+    /**
+     * Perform a short pause on an active unit's last move if the
+     * option is enabled.
+     *
+     * @param unit The <code>Unit</code> that moved.
+     * @param options The <code>ClientOptions</code> to check.
+     */
+    private void lastMoveDelay(Unit unit, ClientOptions options) {
+        if (unit.getMovesLeft() <= 0
+            && options.getBoolean(ClientOptions.UNIT_LAST_MOVE_DELAY)) {
+            gui.paintImmediatelyCanvasInItsBounds();
+            try {
+                Thread.sleep(UNIT_LAST_MOVE_DELAY);
+            } catch (InterruptedException e) {} // Ignore
+        }
+    }
+
     private void autoloadSentries(Unit unit, ClientOptions options) {
         if (unit.canCarryUnits() && unit.hasSpaceLeft()
             && options.getBoolean(ClientOptions.AUTOLOAD_SENTRIES)) {
@@ -4533,7 +4704,7 @@ public final class InGameController implements NetworkConstants {
             || gui.confirm("saveConfirmationDialog.areYouSure.text",
                            "ok", "cancel")) {
             FreeColDirectories.setSavegameFile(file.getPath());
-            return saveGame(file);
+            return saveGame(file, null);
         }
         return false;
     }
@@ -4905,18 +5076,39 @@ public final class InGameController implements NetworkConstants {
     	for (Unit u : unit.getUnitList()) {
             ret = leaveShip(u) && ret;
         }
-        for (Goods goods : unit.getGoodsList()) {
-            ret = unloadCargo(goods, false) && ret;
+        List<Goods> goodsList = unit.getGoodsList();
+        if (!goodsList.isEmpty()) {
+            ColonyWas colonyWas = new ColonyWas(unit.getColony());
+            UnitWas unitWas = new UnitWas(unit);
+            if (askUnloadGoods(goodsList, unit)) {
+                sound("sound.event.unloadCargo");
+            } else {
+                ret = false;
+            }
+            colonyWas.fireChanges();
+            unitWas.fireChanges();
+            updateGUI(null);
         }
         return ret;
     }
     
     private boolean unloadInEurope(Unit unit, boolean ret ) {
         Player player = freeColClient.getMyPlayer();
+        List<Goods> goodsList = new ArrayList<>();
     	for (Goods goods : unit.getCompactGoodsList()) {
-            if (player.canTrade(goods.getType())) {
-                ret = sellGoods(goods) && ret;
+            if (player.canTrade(goods.getType())) goodsList.add(goods);
+        }
+        if (!goodsList.isEmpty()) {
+            EuropeWas europeWas = new EuropeWas(player.getEurope());
+            UnitWas unitWas = new UnitWas(unit);
+            if (askUnloadGoods(goodsList, unit)) {
+                sound("sound.event.sellCargo");
+            } else {
+                ret = false;
             }
+            europeWas.fireChanges();
+            unitWas.fireChanges();
+            updateGUI(null);
         }
     	return ret;
     }
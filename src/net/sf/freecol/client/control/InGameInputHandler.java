@@ -21,6 +21,7 @@ package net.sf.freecol.client.control;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -98,6 +99,9 @@ public final class InGameInputHandler extends InputHandler {
         igc().reconnect();
     };
 
+    /** The sequence number of the last update from the server handled. */
+    private final AtomicInteger lastUpdate = new AtomicInteger();
+
 
     /**
      * The constructor to use.
@@ -109,6 +113,27 @@ public final class InGameInputHandler extends InputHandler {
     }
 
 
+    /**
+     * Get the sequence number of the last update handled.  A client
+     * that reconnects still holding its game reports this, so the
+     * server can send just the updates it missed.
+     *
+     * @return The last update sequence number.
+     */
+    public int getLastUpdate() {
+        return lastUpdate.get();
+    }
+
+    /**
+     * Set the sequence number of the last update handled, as when a
+     * new game arrives.
+     *
+     * @param seq The new sequence number.
+     */
+    public void setLastUpdate(int seq) {
+        lastUpdate.set(seq);
+    }
+
     /**
      * Shorthand to get the controller.
      *
@@ -278,6 +303,12 @@ public final class InGameInputHandler extends InputHandler {
             + " replying with: "
             + ((reply == null) ? "null" : reply.getTagName()));
 
+        final String seq = element.getAttribute(Connection.UPDATE_SEQUENCE_TAG);
+        if (!seq.isEmpty()) {
+            final int n = Integer.parseInt(seq);
+            lastUpdate.accumulateAndGet(n, Math::max);
+        }
+
         // If there is a "flush" attribute present, encourage the client
         // to display any new messages.
         final FreeColClient fcc = getFreeColClient();
@@ -812,7 +812,7 @@ public class BuildQueuePanel extends FreeColPanel implements ItemListener {
                 continue;
             }
 
-            if (buildingType.hasAbility(Ability.COASTAL_ONLY)
+            if (spec.isCoastalOnly(buildingType)
                 && !this.colony.getTile().isCoastland()) {
                 tmpl = StringTemplate.template("buildQueuePanel.coastalOnly");
                 lockReason.add(Messages.message(tmpl));
@@ -48,6 +48,7 @@ import net.sf.freecol.client.gui.action.EndTurnAction;
 import net.sf.freecol.client.gui.panel.MapEditorTransformPanel.MapTransform;
 import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.model.AbstractGoods;
+import net.sf.freecol.common.model.GameOptions;
 import net.sf.freecol.common.model.Goods;
 import net.sf.freecol.common.model.GoodsContainer;
 import net.sf.freecol.common.model.GoodsType;
@@ -180,7 +181,8 @@ public final class InfoPanel extends FreeColPanel {
                     add(moveLabel, "span " + PRODUCTION);
 
                     List<AbstractGoods> produce = tile.getType()
-                        .getPossibleProduction(true);
+                        .getPossibleProduction(true, tile.getSpecification()
+                            .getString(GameOptions.TILE_PRODUCTION));
                     if (produce.isEmpty()) {
                         add(new JLabel(), "span " + PRODUCTION);
                     } else {
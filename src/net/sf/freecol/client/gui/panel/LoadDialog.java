@@ -19,17 +19,34 @@
 
 package net.sf.freecol.client.gui.panel;
 
+import java.awt.BorderLayout;
+import java.awt.Dimension;
 import java.awt.event.ActionEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.swing.ImageIcon;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileFilter;
 
+import net.sf.freecol.FreeCol;
 import net.sf.freecol.client.FreeColClient;
 import net.sf.freecol.client.gui.ChoiceItem;
 import net.sf.freecol.common.i18n.Messages;
+import net.sf.freecol.common.io.SavegameIndex;
+import net.sf.freecol.common.model.Turn;
 
 
 /**
@@ -40,6 +57,147 @@ public final class LoadDialog extends FreeColDialog<File> {
     /** Fake file for the cancel selection. */
     private static final File cancelFile = new File("");
 
+    /**
+     * Shows what the savegame index holds about the selected file.
+     * The index is brought up to date in the background when the
+     * chooser opens or changes directory, so neither waits for the
+     * saved games to be opened.
+     */
+    private static final class Preview extends JPanel
+        implements PropertyChangeListener {
+
+        /** Reads the index, one request at a time, for all previews. */
+        private static final ExecutorService reader
+            = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, FreeCol.CLIENT_THREAD
+                            + "Savegame preview");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+
+        /**
+         * Counts the requests, so that ones overtaken by a later
+         * request before they start can be skipped.
+         */
+        private final AtomicInteger requests = new AtomicInteger();
+
+        /** The thumbnail of the selected game. */
+        private final JLabel thumbnail = new JLabel();
+
+        /** The description of the selected game. */
+        private final JTextArea description = Utility.createTextArea("");
+
+        /** The file being previewed, only used on the event thread. */
+        private File file = null;
+
+
+        /**
+         * Create a new <code>Preview</code>.
+         *
+         * @param fileChooser The <code>JFileChooser</code> to follow.
+         */
+        public Preview(JFileChooser fileChooser) {
+            super(new BorderLayout());
+
+            setOpaque(false);
+            setPreferredSize(new Dimension(SavegameIndex.THUMBNAIL_WIDTH + 10,
+                                           SavegameIndex.THUMBNAIL_WIDTH));
+            description.setEditable(false);
+            add(thumbnail, BorderLayout.NORTH);
+            add(description, BorderLayout.CENTER);
+            fileChooser.addPropertyChangeListener(this);
+            index(fileChooser.getCurrentDirectory());
+        }
+
+
+        /**
+         * Bring the index of a directory up to date in the background.
+         *
+         * @param directory The directory to index.
+         */
+        private void index(final File directory) {
+            if (directory == null) return;
+            final int request = requests.incrementAndGet();
+            reader.submit(() -> {
+                    if (request != requests.get()) return;
+                    SavegameIndex.getIndex(directory).getEntries();
+                });
+        }
+
+        /**
+         * Preview a file.  The index entry is found in the background.
+         *
+         * @param file The <code>File</code> to preview, or null for none.
+         */
+        private void preview(final File file) {
+            this.file = file;
+            thumbnail.setIcon(null);
+            description.setText("");
+            final int request = requests.incrementAndGet();
+            if (file == null || !file.isFile()) return;
+            reader.submit(() -> {
+                    if (request != requests.get()) return;
+                    final SavegameIndex.Entry entry = SavegameIndex
+                        .getIndex(file.getAbsoluteFile().getParentFile())
+                        .getEntry(file);
+                    SwingUtilities.invokeLater(() -> {
+                            if (file == Preview.this.file && entry != null) {
+                                display(entry);
+                            }
+                        });
+                });
+        }
+
+        /**
+         * Display an index entry.
+         *
+         * @param entry The <code>SavegameIndex.Entry</code> to display.
+         */
+        private void display(SavegameIndex.Entry entry) {
+            if (entry.getThumbnail() != null) {
+                thumbnail.setIcon(new ImageIcon(entry.getThumbnail()));
+            }
+            List<String> lines = new ArrayList<>();
+            if (entry.getNationId() != null) {
+                lines.add(Messages.getName(entry.getNationId()));
+            }
+            if (entry.getTurn() >= 0) {
+                lines.add(Messages.message(Turn.getLabel(entry.getTurn())));
+            }
+            if (entry.getMapWidth() > 0 && entry.getMapHeight() > 0) {
+                lines.add(entry.getMapWidth() + "\u00D7"
+                    + entry.getMapHeight());
+            }
+            description.setText(String.join("\n", lines));
+            revalidate();
+            repaint();
+        }
+
+
+        // Interface PropertyChangeListener
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void propertyChange(PropertyChangeEvent e) {
+            switch (e.getPropertyName()) {
+            case JFileChooser.SELECTED_FILE_CHANGED_PROPERTY:
+                preview((File)e.getNewValue());
+                break;
+            case JFileChooser.DIRECTORY_CHANGED_PROPERTY:
+                preview(null);
+                index((File)e.getNewValue());
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
 
     /**
      * Creates a dialog to choose a file to load.
@@ -67,6 +225,7 @@ public final class LoadDialog extends FreeColDialog<File> {
         fileChooser.setDialogType(JFileChooser.OPEN_DIALOG);
         fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
         fileChooser.setFileHidingEnabled(false);
+        fileChooser.setAccessory(new Preview(fileChooser));
         fileChooser.addActionListener((ActionEvent ae) -> {
                 final String cmd = ae.getActionCommand();
                 File value = (JFileChooser.APPROVE_SELECTION.equals(cmd))
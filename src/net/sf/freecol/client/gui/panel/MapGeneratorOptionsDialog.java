@@ -181,9 +181,11 @@ public final class MapGeneratorOptionsDialog extends OptionsDialog {
                 Properties properties = new Properties();
                 properties.load(savegame
                     .getInputStream(FreeColSavegameFile.SAVEGAME_PROPERTIES));
-                mapButton.setToolTipText(properties.getProperty("map.width")
+                mapButton.setToolTipText(properties
+                    .getProperty(FreeColSavegameFile.MAP_WIDTH_PROPERTY)
                     + "\u00D7"
-                    + properties.getProperty("map.height"));
+                    + properties
+                    .getProperty(FreeColSavegameFile.MAP_HEIGHT_PROPERTY));
             } catch (Exception e) {
                 logger.log(Level.WARNING, "Unable to load savegame.", e);
                 return null;
@@ -129,7 +129,8 @@ public class NationTypeDetailPanel
         label.setFont(boldFont);
         panel.add(label, "wrap");
 
-        List<AbstractUnit> startingUnits = nationType.getStartingUnits();
+        List<AbstractUnit> startingUnits
+            = nationType.getStartingUnits(getSpecification());
         if (!startingUnits.isEmpty()) {
             AbstractUnit startingUnit = startingUnits.get(0);
             if (startingUnits.size() > 1) {
@@ -41,6 +41,7 @@ import net.sf.freecol.client.gui.SwingGUI;
 import net.sf.freecol.client.gui.action.ColopediaAction.PanelType;
 import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.model.AbstractGoods;
+import net.sf.freecol.common.model.GameOptions;
 import net.sf.freecol.common.model.Modifier;
 import net.sf.freecol.common.model.ResourceType;
 import net.sf.freecol.common.model.TileType;
@@ -134,11 +135,13 @@ public class TerrainDetailPanel
         panel.add(Utility.localizedLabel("colopedia.terrain.defenseBonus"));
         panel.add(new JLabel(defenseBonus));
 
+        final String level = getSpecification()
+            .getString(GameOptions.TILE_PRODUCTION);
         panel.add(Utility.localizedLabel("colopedia.terrain.unattendedProduction"));
-        addProduction(panel, tileType.getPossibleProduction(true));
+        addProduction(panel, tileType.getPossibleProduction(true, level));
 
         panel.add(Utility.localizedLabel("colopedia.terrain.colonistProduction"));
-        addProduction(panel, tileType.getPossibleProduction(false));
+        addProduction(panel, tileType.getPossibleProduction(false, level));
 
         panel.add(Utility.localizedLabel("colopedia.terrain.description"));
         panel.add(Utility.localizedTextArea(Messages.descriptionKey(tileType)),
@@ -42,6 +42,7 @@ import net.sf.freecol.common.debug.DebugUtils;
 import net.sf.freecol.common.debug.FreeColDebugger;
 import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.model.AbstractGoods;
+import net.sf.freecol.common.model.GameOptions;
 import net.sf.freecol.common.model.GoodsType;
 import net.sf.freecol.common.model.Player;
 import net.sf.freecol.common.model.ProductionType;
@@ -131,7 +132,9 @@ public final class TilePanel extends FreeColPanel {
             JLabel label = null;
             boolean first = true;
             for (ProductionType productionType
-                     : tileType.getAvailableProductionTypes(false)) {
+                     : tileType.getAvailableProductionTypes(false,
+                         getSpecification()
+                             .getString(GameOptions.TILE_PRODUCTION))) {
                 for (AbstractGoods output : productionType.getOutputs()) {
                     GoodsType goodsType = output.getType();
                     int potential = output.getAmount();
@@ -165,6 +165,15 @@ public class ServerInfo {
         return slotsAvailable;
     }
 
+
+    /**
+     * Has the game on the server started?
+     * @return True if the game has started.
+     */
+    public boolean isGameStarted() {
+        return isGameStarted;
+    }
+
     
     /**
      * Returns the FreeCol version of the server.
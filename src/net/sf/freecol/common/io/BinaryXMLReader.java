@@ -0,0 +1,714 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import static net.sf.freecol.common.io.BinaryXMLWriter.*;
+
+
+/**
+ * An <code>XMLStreamReader</code> that reads the binary encoding
+ * written by a {@link BinaryXMLWriter}.
+ *
+ * The whole stream is read into memory when the reader is created,
+ * and events are then decoded directly from it, so reading does no
+ * text parsing or character escaping.  Strings from the string table
+ * are shared, not copied, between the events that use them.
+ */
+public class BinaryXMLReader implements XMLStreamReader {
+
+    /** The encoded stream. */
+    private final byte[] data;
+
+    /** The current position in the data. */
+    private int pos;
+
+    /** The interned strings, by index. */
+    private final List<String> strings = new ArrayList<>();
+
+    /** The current event type. */
+    private int eventType = XMLStreamConstants.START_DOCUMENT;
+
+    /** The current element name, when at an element. */
+    private String localName = null;
+
+    /** The current text, when at characters or a comment. */
+    private String text = null;
+
+    /** The attribute names and values of the current start element. */
+    private String[] attributeNames = new String[16];
+    private String[] attributeValues = new String[16];
+    private int attributeCount = 0;
+
+    /** The names of the open elements. */
+    private final List<String> open = new ArrayList<>();
+
+
+    /**
+     * Create a new <code>BinaryXMLReader</code>.
+     *
+     * @param inputStream The <code>InputStream</code> to read, which
+     *     is read to its end but not closed.
+     * @exception IOException if the stream can not be read or is
+     *     not a binary stream.
+     */
+    public BinaryXMLReader(InputStream inputStream) throws IOException {
+        this(readFully(inputStream));
+    }
+
+    /**
+     * Create a new <code>BinaryXMLReader</code>.
+     *
+     * @param data The encoded stream, which is not copied.
+     * @exception IOException if the data is not a binary stream.
+     */
+    public BinaryXMLReader(byte[] data) throws IOException {
+        if (!isBinary(data)) {
+            throw new IOException("Not a binary XML stream");
+        }
+        this.data = data;
+        this.pos = MAGIC.length;
+    }
+
+
+    /**
+     * Read a stream to its end.
+     *
+     * @param inputStream The <code>InputStream</code> to read.
+     * @return The bytes read.
+     * @exception IOException if the stream can not be read.
+     */
+    public static byte[] readFully(InputStream inputStream)
+        throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 16);
+        byte[] buf = new byte[1 << 16];
+        int n;
+        while ((n = inputStream.read(buf)) > 0) bos.write(buf, 0, n);
+        return bos.toByteArray();
+    }
+
+
+    /**
+     * Does some data start with the binary stream header?
+     *
+     * @param head The first bytes of the data.
+     * @return True if the data is a binary stream.
+     */
+    public static boolean isBinary(byte[] head) {
+        return head.length >= MAGIC.length
+            && Arrays.equals(MAGIC, Arrays.copyOf(head, MAGIC.length));
+    }
+
+    /**
+     * Read the next event from the data.
+     *
+     * @return The event type.
+     * @exception XMLStreamException if the data is malformed.
+     */
+    private int readEvent() throws XMLStreamException {
+        try {
+            int kind = data[pos++];
+            switch (kind) {
+            case EVENT_START_ELEMENT:
+                localName = readString();
+                attributeCount = (int)readVarint();
+                if (attributeCount > attributeNames.length) {
+                    attributeNames = new String[attributeCount];
+                    attributeValues = new String[attributeCount];
+                }
+                for (int i = 0; i < attributeCount; i++) {
+                    attributeNames[i] = readString();
+                    attributeValues[i] = readValue();
+                }
+                open.add(localName);
+                text = null;
+                return XMLStreamConstants.START_ELEMENT;
+            case EVENT_END_ELEMENT:
+                if (open.isEmpty()) {
+                    throw new XMLStreamException("Unbalanced end at " + pos);
+                }
+                localName = open.remove(open.size() - 1);
+                attributeCount = 0;
+                text = null;
+                return XMLStreamConstants.END_ELEMENT;
+            case EVENT_CHARACTERS:
+                text = readString();
+                return XMLStreamConstants.CHARACTERS;
+            case EVENT_COMMENT:
+                text = readString();
+                return XMLStreamConstants.COMMENT;
+            case EVENT_END_DOCUMENT:
+                localName = null;
+                text = null;
+                return XMLStreamConstants.END_DOCUMENT;
+            default:
+                throw new XMLStreamException("Bad event kind " + kind
+                    + " at " + (pos - 1));
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new XMLStreamException("Truncated binary stream at " + pos);
+        }
+    }
+
+    /**
+     * Read an attribute value.
+     *
+     * @return The value read.
+     * @exception XMLStreamException if the data is malformed.
+     */
+    private String readValue() throws XMLStreamException {
+        int kind = data[pos++];
+        switch (kind) {
+        case STRING_VALUE:
+            return readString();
+        case INTEGER_VALUE:
+            long z = readVarint();
+            return Long.toString((z >>> 1) ^ -(z & 1));
+        case ID_VALUE:
+            String prefix = readString();
+            return prefix + Long.toString(readVarint());
+        default:
+            throw new XMLStreamException("Bad value kind " + kind
+                + " at " + (pos - 1));
+        }
+    }
+
+    /**
+     * Read a string or string table reference.
+     *
+     * @return The string read.
+     * @exception XMLStreamException if the data is malformed.
+     */
+    private String readString() throws XMLStreamException {
+        int ref = (int)readVarint();
+        if (ref >= FIRST_INDEX) {
+            if (ref - FIRST_INDEX >= strings.size()) {
+                throw new XMLStreamException("Bad string reference " + ref
+                    + " at " + pos);
+            }
+            return strings.get(ref - FIRST_INDEX);
+        }
+        int len = (int)readVarint();
+        if (len < 0 || pos + len > data.length) {
+            throw new XMLStreamException("Bad string length " + len
+                + " at " + pos);
+        }
+        String s = new String(data, pos, len, StandardCharsets.UTF_8);
+        pos += len;
+        if (ref == INTERNED_LITERAL && strings.size() < MAXIMUM_STRINGS) {
+            strings.add(s);
+        }
+        return s;
+    }
+
+    /**
+     * Read an unsigned number written by writeVarint.
+     *
+     * @return The number read.
+     */
+    private long readVarint() {
+        long n = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[pos++];
+            n |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return n;
+    }
+
+    /**
+     * Check the reader is at a start element.
+     *
+     * @exception IllegalStateException if it is not.
+     */
+    private void checkStartElement() {
+        if (eventType != XMLStreamConstants.START_ELEMENT) {
+            throw new IllegalStateException("Not at a start element");
+        }
+    }
+
+    /**
+     * Check an attribute index.
+     *
+     * @param index The index to check.
+     * @exception IndexOutOfBoundsException if there is no such attribute.
+     */
+    private void checkAttribute(int index) {
+        checkStartElement();
+        if (index < 0 || index >= attributeCount) {
+            throw new IndexOutOfBoundsException("No attribute " + index);
+        }
+    }
+
+
+    // Implement XMLStreamReader
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() throws XMLStreamException {
+        if (eventType == XMLStreamConstants.END_DOCUMENT) {
+            throw new IllegalStateException("No more events");
+        }
+        return eventType = readEvent();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void require(int type, String namespaceURI, String localName)
+        throws XMLStreamException {
+        if (type != eventType
+            || (localName != null && !localName.equals(getLocalName()))) {
+            throw new XMLStreamException("Expected " + type + " " + localName
+                + " not " + eventType + " " + this.localName);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getElementText() throws XMLStreamException {
+        checkStartElement();
+        StringBuilder sb = new StringBuilder();
+        for (;;) {
+            switch (next()) {
+            case XMLStreamConstants.CHARACTERS:
+                sb.append(text);
+                break;
+            case XMLStreamConstants.COMMENT:
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                return sb.toString();
+            default:
+                throw new XMLStreamException("Element text expected in "
+                    + localName);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int nextTag() throws XMLStreamException {
+        for (;;) {
+            switch (next()) {
+            case XMLStreamConstants.CHARACTERS:
+                if (!isWhiteSpace()) {
+                    throw new XMLStreamException("Tag expected, not text: "
+                        + text);
+                }
+                break;
+            case XMLStreamConstants.COMMENT:
+                break;
+            case XMLStreamConstants.START_ELEMENT:
+            case XMLStreamConstants.END_ELEMENT:
+                return eventType;
+            default:
+                throw new XMLStreamException("Tag expected");
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        return eventType != XMLStreamConstants.END_DOCUMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI(String prefix) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStartElement() {
+        return eventType == XMLStreamConstants.START_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEndElement() {
+        return eventType == XMLStreamConstants.END_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCharacters() {
+        return eventType == XMLStreamConstants.CHARACTERS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWhiteSpace() {
+        if (eventType != XMLStreamConstants.CHARACTERS) return false;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        checkStartElement();
+        for (int i = 0; i < attributeCount; i++) {
+            if (attributeNames[i].equals(localName)) {
+                return attributeValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAttributeCount() {
+        checkStartElement();
+        return attributeCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QName getAttributeName(int index) {
+        return new QName(getAttributeLocalName(index));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeNamespace(int index) {
+        checkAttribute(index);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeLocalName(int index) {
+        checkAttribute(index);
+        return attributeNames[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributePrefix(int index) {
+        checkAttribute(index);
+        return "";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeType(int index) {
+        checkAttribute(index);
+        return "CDATA";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeValue(int index) {
+        checkAttribute(index);
+        return attributeValues[index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAttributeSpecified(int index) {
+        checkAttribute(index);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNamespaceCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespacePrefix(int index) {
+        throw new IndexOutOfBoundsException("No namespaces");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI(int index) {
+        throw new IndexOutOfBoundsException("No namespaces");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getEventType() {
+        return eventType;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getText() {
+        if (text == null) throw new IllegalStateException("No text");
+        return text;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public char[] getTextCharacters() {
+        return getText().toCharArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextCharacters(int sourceStart, char[] target,
+                                 int targetStart, int length) {
+        String s = getText();
+        int n = Math.max(0, Math.min(length, s.length() - sourceStart));
+        s.getChars(sourceStart, sourceStart + n, target, targetStart);
+        return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextStart() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextLength() {
+        return getText().length();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getEncoding() {
+        return "UTF-8";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasText() {
+        return text != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Location getLocation() {
+        final int offset = pos;
+        return new Location() {
+            @Override
+            public int getLineNumber() { return -1; }
+            @Override
+            public int getColumnNumber() { return -1; }
+            @Override
+            public int getCharacterOffset() { return offset; }
+            @Override
+            public String getPublicId() { return null; }
+            @Override
+            public String getSystemId() { return null; }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QName getName() {
+        return new QName(getLocalName());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLocalName() {
+        if (!hasName()) throw new IllegalStateException("No name");
+        return localName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasName() {
+        return eventType == XMLStreamConstants.START_ELEMENT
+            || eventType == XMLStreamConstants.END_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getVersion() {
+        return "1.0";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStandalone() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean standaloneSet() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCharacterEncodingScheme() {
+        return "UTF-8";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPITarget() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPIData() {
+        return null;
+    }
+}
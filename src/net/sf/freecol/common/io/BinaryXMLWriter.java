@@ -0,0 +1,622 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+
+/**
+ * An <code>XMLStreamWriter</code> that writes a compact binary
+ * encoding of the stream instead of XML text, to be read back with a
+ * {@link BinaryXMLReader}.
+ *
+ * The stream is a sequence of events.  Tag and attribute names, and
+ * short values and text, are interned in a string table that is
+ * built up as the stream is written, so each is only written in full
+ * once.  Integer values and object identifiers (a prefix followed by
+ * a number, such as "unit:123") are written as variable length
+ * integers.  Namespaces, processing instructions and DTDs are not
+ * used by FreeCol and are not supported.
+ *
+ * The encoding is buffered, so the writer must be flushed or closed
+ * before the stream written to is used.
+ */
+public class BinaryXMLWriter implements XMLStreamWriter {
+
+    /** The bytes that start a binary stream, which can not start XML. */
+    static final byte[] MAGIC = { 0, 'F', 'C', 'B', 'X', 1 };
+
+    /** Event kinds. */
+    static final int EVENT_END_DOCUMENT = 0, EVENT_START_ELEMENT = 1,
+        EVENT_END_ELEMENT = 2, EVENT_CHARACTERS = 3, EVENT_COMMENT = 4;
+
+    /** Value kinds. */
+    static final int STRING_VALUE = 0, INTEGER_VALUE = 1, ID_VALUE = 2;
+
+    /** String references below this are literals, otherwise an index. */
+    static final int LITERAL = 0, INTERNED_LITERAL = 1, FIRST_INDEX = 2;
+
+    /** The maximum number of string table entries. */
+    static final int MAXIMUM_STRINGS = 1 << 16;
+
+    /** The longest value or text to intern. */
+    private static final int MAXIMUM_INTERNED = 64;
+
+    /** The size of the buffer the encoding is collected in. */
+    private static final int BUFFER_SIZE = 1 << 13;
+
+    /** The stream to write to. */
+    private final OutputStream out;
+
+    /**
+     * The encoding not yet written to the stream.  Collecting it here
+     * rather than writing each byte saves a synchronized stream call
+     * per byte.
+     */
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    /** The number of bytes in the buffer. */
+    private int count = 0;
+
+    /** The indexes of interned strings. */
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+    /** The names of the open elements. */
+    private final List<String> open = new ArrayList<>();
+
+    /** The element waiting for its attributes, or null if none. */
+    private String pendingName = null;
+
+    /** Is the pending element empty? */
+    private boolean pendingEmpty = false;
+
+    /** The attribute names and values of the pending element. */
+    private final List<String> pendingAttributes = new ArrayList<>();
+
+    /** Text waiting to be written, merged with any following text. */
+    private final StringBuilder pendingText = new StringBuilder();
+
+    /** Has the document been ended? */
+    private boolean ended = false;
+
+
+    /**
+     * Create a new <code>BinaryXMLWriter</code>.
+     *
+     * @param outputStream The <code>OutputStream</code> to write to.
+     * @exception IOException if the header can not be written.
+     */
+    public BinaryXMLWriter(OutputStream outputStream) throws IOException {
+        this.out = outputStream;
+        write(MAGIC, 0, MAGIC.length);
+    }
+
+
+    /**
+     * Add a byte to the buffer.
+     *
+     * @param b The byte to add.
+     * @exception IOException if the buffer is full and can not be written.
+     */
+    private void write(int b) throws IOException {
+        if (count == buffer.length) drain();
+        buffer[count++] = (byte)b;
+    }
+
+    /**
+     * Add bytes to the buffer.
+     *
+     * @param bytes The bytes to add.
+     * @param off The offset of the first byte.
+     * @param len The number of bytes.
+     * @exception IOException if the buffer can not be written.
+     */
+    private void write(byte[] bytes, int off, int len) throws IOException {
+        if (len > buffer.length - count) {
+            drain();
+            if (len > buffer.length) {
+                out.write(bytes, off, len);
+                return;
+            }
+        }
+        System.arraycopy(bytes, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * Write the buffer to the stream.
+     *
+     * @exception IOException if the stream can not be written.
+     */
+    private void drain() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+
+    /**
+     * Write out the pending element and text, if any.
+     *
+     * @exception XMLStreamException if the stream can not be written.
+     */
+    private void flushPending() throws XMLStreamException {
+        try {
+            if (pendingName != null) {
+                write(EVENT_START_ELEMENT);
+                writeString(pendingName, true);
+                writeVarint(pendingAttributes.size() / 2);
+                for (int i = 0; i < pendingAttributes.size(); i += 2) {
+                    writeString(pendingAttributes.get(i), true);
+                    writeValue(pendingAttributes.get(i+1));
+                }
+                if (pendingEmpty) {
+                    write(EVENT_END_ELEMENT);
+                } else {
+                    open.add(pendingName);
+                }
+                pendingName = null;
+                pendingAttributes.clear();
+            } else if (pendingText.length() > 0) {
+                write(EVENT_CHARACTERS);
+                String text = pendingText.toString();
+                writeString(text, text.length() <= MAXIMUM_INTERNED);
+                pendingText.setLength(0);
+            }
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * Start a new element.
+     *
+     * @param localName The element name.
+     * @param empty If true, the element has no content.
+     * @exception XMLStreamException if the stream can not be written.
+     */
+    private void startElement(String localName, boolean empty)
+        throws XMLStreamException {
+        if (ended) throw new XMLStreamException("Document ended");
+        flushPending();
+        pendingName = localName;
+        pendingEmpty = empty;
+    }
+
+    /**
+     * Write an attribute value, using the most compact form that fits.
+     *
+     * @param value The value to write.
+     * @exception IOException if the stream can not be written.
+     */
+    private void writeValue(String value) throws IOException {
+        int colon = value.lastIndexOf(':');
+        if (isNumber(value, 0)) {
+            write(INTEGER_VALUE);
+            writeVarint(zigzag(Long.parseLong(value)));
+        } else if (colon > 0 && isNumber(value, colon + 1)
+            && value.charAt(colon + 1) != '-') {
+            write(ID_VALUE);
+            writeString(value.substring(0, colon + 1), true);
+            writeVarint(Long.parseLong(value.substring(colon + 1)));
+        } else {
+            write(STRING_VALUE);
+            writeString(value, value.length() <= MAXIMUM_INTERNED);
+        }
+    }
+
+    /**
+     * Is the tail of a string a number that survives a round trip
+     * through a long?
+     *
+     * @param s The string to check.
+     * @param start The start of the tail.
+     * @return True if the tail is a canonical decimal number.
+     */
+    private static boolean isNumber(String s, int start) {
+        int len = s.length() - start;
+        if (len <= 0 || len > 18) return false;
+        int i = start;
+        if (s.charAt(i) == '-') {
+            if (len == 1) return false;
+            i++;
+        }
+        if (s.charAt(i) == '0' && (i != s.length() - 1 || i != start)) {
+            return false; // No leading zeros, or "-0"
+        }
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write a string, as a string table reference if possible.
+     *
+     * @param s The string to write.
+     * @param intern If true, add the string to the string table.
+     * @exception IOException if the stream can not be written.
+     */
+    private void writeString(String s, boolean intern) throws IOException {
+        Integer index = indexes.get(s);
+        if (index != null) {
+            writeVarint(index + FIRST_INDEX);
+            return;
+        }
+        if (intern && indexes.size() < MAXIMUM_STRINGS) {
+            writeVarint(INTERNED_LITERAL);
+            indexes.put(s, indexes.size());
+        } else {
+            writeVarint(LITERAL);
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Map signed numbers to unsigned ones, keeping small ones small.
+     *
+     * @param n The number to map.
+     * @return The mapped number.
+     */
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    /**
+     * Write an unsigned number in seven bit groups, least significant first.
+     *
+     * @param n The number to write.
+     * @exception IOException if the stream can not be written.
+     */
+    private void writeVarint(long n) throws IOException {
+        if (buffer.length - count < 10) drain(); // Room for any long
+        while ((n & ~0x7FL) != 0) {
+            buffer[count++] = (byte)((n & 0x7F) | 0x80);
+            n >>>= 7;
+        }
+        buffer[count++] = (byte)n;
+    }
+
+
+    // Implement XMLStreamWriter
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String localName)
+        throws XMLStreamException {
+        startElement(localName, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+        startElement(localName, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String prefix, String localName,
+                                  String namespaceURI)
+        throws XMLStreamException {
+        startElement(localName, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String localName)
+        throws XMLStreamException {
+        startElement(localName, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+        startElement(localName, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String prefix, String localName,
+                                  String namespaceURI)
+        throws XMLStreamException {
+        startElement(localName, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        flushPending();
+        if (open.isEmpty()) throw new XMLStreamException("No open element");
+        open.remove(open.size() - 1);
+        try {
+            write(EVENT_END_ELEMENT);
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        flushPending();
+        while (!open.isEmpty()) writeEndElement();
+        try {
+            write(EVENT_END_DOCUMENT);
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+        ended = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws XMLStreamException {
+        flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() throws XMLStreamException {
+        try {
+            drain();
+            out.flush();
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String localName, String value)
+        throws XMLStreamException {
+        if (pendingName == null) {
+            throw new XMLStreamException("Attribute outside start element: "
+                + localName);
+        }
+        pendingAttributes.add(localName);
+        pendingAttributes.add(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI,
+                               String localName, String value)
+        throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String namespaceURI, String localName,
+                               String value) throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI)
+        throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDefaultNamespace(String namespaceURI)
+        throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        flushPending();
+        try {
+            write(EVENT_COMMENT);
+            writeString(data, false);
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target)
+        throws XMLStreamException {
+        throw new XMLStreamException("Processing instructions not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target, String data)
+        throws XMLStreamException {
+        throw new XMLStreamException("Processing instructions not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        writeCharacters(data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        throw new XMLStreamException("DTDs not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity references not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        // The version and encoding are fixed
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        // The version and encoding are fixed
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String encoding, String version)
+        throws XMLStreamException {
+        // The version and encoding are fixed
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        if (pendingName != null) flushPending();
+        pendingText.append(text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(char[] text, int start, int len)
+        throws XMLStreamException {
+        if (pendingName != null) flushPending();
+        pendingText.append(text, start, len);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPrefix(String prefix, String uri)
+        throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNamespaceContext(NamespaceContext context)
+        throws XMLStreamException {
+        throw new XMLStreamException("Namespaces not supported");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("No property " + name);
+    }
+}
@@ -87,6 +87,15 @@ public class FreeColDataFile {
             : findJarDirectory(file);
     }
 
+    /**
+     * Get the file this object represents.
+     *
+     * @return The underlying <code>File</code>.
+     */
+    public File getFile() {
+        return file;
+    }
+
     /**
      * Finds the directory within the zip-file in case the data file
      * has been renamed.
@@ -21,6 +21,7 @@ package net.sf.freecol.common.io;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.BufferedInputStream;
 
@@ -38,6 +39,13 @@ public class FreeColSavegameFile extends FreeColDataFile {
     /** The name of the file that contains the actual savegame. */
     public static final String SAVEGAME_FILE = "savegame.xml";
 
+    /**
+     * The name of the file that contains the savegame in the binary
+     * format written by {@link BinaryXMLWriter}, used instead of
+     * {@link #SAVEGAME_FILE} when present.
+     */
+    public static final String SAVEGAME_BINARY_FILE = "savegame.bin";
+
     /**
      * The name of a properties file that contains information about
      * the saved game, such as the size of the map, the date and time
@@ -47,6 +55,13 @@ public class FreeColSavegameFile extends FreeColDataFile {
      */
     public static final String SAVEGAME_PROPERTIES = "savegame.properties";
 
+    /** Keys of the savegame properties. */
+    public static final String MAP_WIDTH_PROPERTY = "map.width",
+        MAP_HEIGHT_PROPERTY = "map.height",
+        TURN_PROPERTY = "game.turn",
+        NATION_PROPERTY = "game.nation",
+        VERSION_PROPERTY = "savegame.version";
+
     /**
      * The name of the file that contains the
      * {@link net.sf.freecol.client.ClientOptions} saved with the game.
@@ -97,7 +112,9 @@ public class FreeColSavegameFile extends FreeColDataFile {
      * Gets the input stream to the savegame data.
      *
      * @return An <code>InputStream</code> to the file
-     *      "savegame.xml" within this data file.
+     *      "savegame.xml" within this data file.  Binary saved games
+     *      do not have one, and in sectioned saved games it holds
+     *      only the skeleton, see {@link #getFreeColXMLReader}.
      * @throws IOException if thrown while opening the
      *      input stream.
      */
@@ -105,15 +122,54 @@ public class FreeColSavegameFile extends FreeColDataFile {
         return getInputStream(SAVEGAME_FILE);
     }
 
+    /**
+     * Is this saved game in the binary format?
+     *
+     * @return True if the game is held in {@link #SAVEGAME_BINARY_FILE}.
+     */
+    public boolean isBinary() {
+        try (
+            BufferedInputStream bis = getInputStream(SAVEGAME_BINARY_FILE);
+        ) {
+            return true;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Is this saved game in the sectioned layout?
+     *
+     * @return True if the game is split into sections.
+     * @see SavegameSections
+     */
+    public boolean isSectioned() {
+        return SavegameSections.isSectioned(this);
+    }
+
     /**
      * Creates a <code>FreeColXMLReader</code> for reading this saved game.
+     * The binary format is read if present, otherwise the XML, with
+     * any sections spliced in.
      *
      * @return The <code>FreeColXMLReaderr</code>.
      * @exception IOException if thrown while loading the game or if a
      *     <code>XMLStreamException</code> have been thrown by the parser.
      */
     public FreeColXMLReader getFreeColXMLReader() throws IOException {
-        return new FreeColXMLReader(getSavegameInputStream());
+        BufferedInputStream bis;
+        try {
+            bis = getInputStream(SAVEGAME_BINARY_FILE);
+        } catch (FileNotFoundException fnfe) {
+            return (isSectioned())
+                ? new FreeColXMLReader(SavegameSections.createReader(this))
+                : new FreeColXMLReader(getSavegameInputStream());
+        }
+        try {
+            return new FreeColXMLReader(new BinaryXMLReader(bis));
+        } finally {
+            bis.close();
+        }
     }
 
     /**
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
 
+import net.sf.freecol.common.model.Specification;
 import net.sf.freecol.common.resources.ResourceMapping;
 
 
@@ -57,6 +58,20 @@ public class FreeColTcFile extends FreeColModFile {
     }
 
 
+    /**
+     * Gets the Specification, from a snapshot if one is current.
+     *
+     * @return The <code>Specification</code>, or null if none present.
+     * @exception IOException if an error occurs reading the specification.
+     * @see SpecificationSnapshot
+     */
+    @Override
+    public Specification getSpecification() throws IOException {
+        File dir = SpecificationSnapshot.getDirectory();
+        return (dir == null) ? super.getSpecification()
+            : SpecificationSnapshot.load(this, dir);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -156,6 +156,20 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
         this(writer, scope, false);
     }
 
+    /**
+     * Creates a new <code>FreeColXMLWriter</code>.
+     *
+     * @param xmlStreamWriter An <code>XMLStreamWriter</code> to write
+     *     to, such as a <code>BinaryXMLWriter</code>.
+     * @param scope The <code>WriteScope</code> to use for FreeCol
+     *     object writes.
+     */
+    public FreeColXMLWriter(XMLStreamWriter xmlStreamWriter,
+                            WriteScope scope) {
+        this.xmlStreamWriter = xmlStreamWriter;
+        this.writeScope = scope;
+    }
+
     /**
      * Creates a new <code>FreeColXMLWriter</code>.
      *
@@ -0,0 +1,545 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.io;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * An index of the saved games in a directory, holding what is needed
+ * to describe each game without opening it.
+ *
+ * The index is kept in {@link #INDEX_FILE} in the directory itself.
+ * Each entry records the modification time and size of its saved
+ * game, and is read again from the saved game if either no longer
+ * matches, so the index only needs to be updated when a game is
+ * saved, and an index that is missing, out of date or can not be
+ * written only costs some speed.
+ */
+public final class SavegameIndex {
+
+    private static final Logger logger = Logger.getLogger(SavegameIndex.class.getName());
+
+    /** The name of the index file in each directory. */
+    public static final String INDEX_FILE = ".savegame-index";
+
+    /** The width of the thumbnails kept in the index. */
+    public static final int THUMBNAIL_WIDTH = 160;
+
+    /** The bytes that start an index file. */
+    private static final byte[] MAGIC = { 'F', 'C', 'S', 'I', 1 };
+
+    /** The indexes loaded so far, by directory. */
+    private static final Map<File, SavegameIndex> indexes = new HashMap<>();
+
+    /** The information about one saved game. */
+    public static final class Entry {
+
+        /** The name of the saved game file. */
+        private final String name;
+
+        /** The modification time of the file when it was indexed. */
+        private final long lastModified;
+
+        /** The size of the file when it was indexed. */
+        private final long length;
+
+        /** The saved game version, or negative if not known. */
+        private final int version;
+
+        /** The turn number, or negative if not known. */
+        private final int turn;
+
+        /** The nation identifier of the player, or null if not known. */
+        private final String nationId;
+
+        /** The map size, or negative if not known. */
+        private final int mapWidth, mapHeight;
+
+        /** The scaled thumbnail in PNG format, or null if none. */
+        private final byte[] thumbnail;
+
+
+        /**
+         * Create a new <code>Entry</code>.
+         *
+         * @param name The name of the saved game file.
+         * @param lastModified The modification time of the file.
+         * @param length The size of the file.
+         * @param version The saved game version.
+         * @param turn The turn number.
+         * @param nationId The player nation identifier.
+         * @param mapWidth The map width.
+         * @param mapHeight The map height.
+         * @param thumbnail The scaled thumbnail.
+         */
+        private Entry(String name, long lastModified, long length,
+                      int version, int turn, String nationId,
+                      int mapWidth, int mapHeight, byte[] thumbnail) {
+            this.name = name;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.version = version;
+            this.turn = turn;
+            this.nationId = nationId;
+            this.mapWidth = mapWidth;
+            this.mapHeight = mapHeight;
+            this.thumbnail = thumbnail;
+        }
+
+
+        /**
+         * Get the name of the saved game file.
+         *
+         * @return The file name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the saved game version.
+         *
+         * @return The version, or negative if not known.
+         */
+        public int getVersion() {
+            return version;
+        }
+
+        /**
+         * Get the turn the game was saved in.
+         *
+         * @return The turn number, or negative if not known.
+         */
+        public int getTurn() {
+            return turn;
+        }
+
+        /**
+         * Get the nation of the player the game was saved for.
+         *
+         * @return The nation identifier, or null if not known.
+         */
+        public String getNationId() {
+            return nationId;
+        }
+
+        /**
+         * Get the map width.
+         *
+         * @return The map width, or negative if not known.
+         */
+        public int getMapWidth() {
+            return mapWidth;
+        }
+
+        /**
+         * Get the map height.
+         *
+         * @return The map height, or negative if not known.
+         */
+        public int getMapHeight() {
+            return mapHeight;
+        }
+
+        /**
+         * Get the thumbnail of the game.
+         *
+         * @return The thumbnail, at most {@link #THUMBNAIL_WIDTH}
+         *     wide, in PNG format, or null if none.
+         */
+        public byte[] getThumbnail() {
+            return thumbnail;
+        }
+
+        /**
+         * Does this entry describe the current version of a file?
+         *
+         * @param file The saved game <code>File</code>.
+         * @return True if the file is unchanged since it was indexed.
+         */
+        public boolean matches(File file) {
+            return file.lastModified() == lastModified
+                && file.length() == length;
+        }
+    }
+
+    /** The directory indexed. */
+    private final File directory;
+
+    /** The entries, by file name. */
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /** Has the index changed since it was read or written? */
+    private boolean changed = false;
+
+
+    /**
+     * Create a new <code>SavegameIndex</code>, reading any existing
+     * index file.
+     *
+     * @param directory The directory to index.
+     */
+    private SavegameIndex(File directory) {
+        this.directory = directory;
+        read();
+    }
+
+
+    /**
+     * Get the index for a directory.
+     *
+     * @param directory The directory to index.
+     * @return The <code>SavegameIndex</code> for the directory.
+     */
+    public static SavegameIndex getIndex(File directory) {
+        directory = directory.getAbsoluteFile();
+        synchronized (indexes) {
+            SavegameIndex index = indexes.get(directory);
+            if (index == null) {
+                index = new SavegameIndex(directory);
+                indexes.put(directory, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Get the entry for a saved game, reading it from the saved game
+     * if it is not already indexed or has changed since.
+     *
+     * @param file The saved game <code>File</code>.
+     * @return The <code>Entry</code> for the game, or null if it can
+     *     not be read.
+     */
+    public synchronized Entry getEntry(File file) {
+        Entry entry = lookup(file);
+        write();
+        return entry;
+    }
+
+    /**
+     * Get the entries for all the saved games in the directory,
+     * bringing the index up to date.
+     *
+     * @return A list of <code>Entry</code>s, in file name order.
+     */
+    public synchronized List<Entry> getEntries() {
+        File[] files = directory.listFiles(FreeColSavegameFile.getFileFilter());
+        Set<String> names = new HashSet<>();
+        List<Entry> result = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                if (!file.isFile()) continue;
+                names.add(file.getName());
+                Entry entry = lookup(file);
+                if (entry != null) result.add(entry);
+            }
+        }
+        if (entries.keySet().retainAll(names)) changed = true;
+        write();
+        return result;
+    }
+
+    /**
+     * Update the entry for a game that has just been saved, from the
+     * data it was saved with.
+     *
+     * @param file The saved game <code>File</code>.
+     * @param properties The savegame properties, in
+     *     <code>Properties</code> file format.
+     * @param thumbnail The full size thumbnail in PNG format, or
+     *     null if none.
+     */
+    public synchronized void update(File file, byte[] properties,
+                                    byte[] thumbnail) {
+        Properties p = new Properties();
+        try {
+            p.load(new ByteArrayInputStream(properties));
+        } catch (IOException ioe) {
+            ; // Can not happen reading a byte array
+        }
+        entries.put(file.getName(), makeEntry(file, p, -1, thumbnail));
+        changed = true;
+        write();
+    }
+
+    /**
+     * Find a current entry for a file, reading the file if needed.
+     *
+     * @param file The saved game <code>File</code>.
+     * @return The <code>Entry</code> found, or null if the file can
+     *     not be read.
+     */
+    private Entry lookup(File file) {
+        Entry entry = entries.get(file.getName());
+        if (entry != null && entry.matches(file)) return entry;
+        entry = readEntry(file);
+        if (entry == null) {
+            if (entries.remove(file.getName()) != null) changed = true;
+        } else {
+            entries.put(file.getName(), entry);
+            changed = true;
+        }
+        return entry;
+    }
+
+    /**
+     * Read the entry for a saved game from the game itself.
+     *
+     * @param file The saved game <code>File</code>.
+     * @return A new <code>Entry</code>, or null if the file can not
+     *     be read.
+     */
+    private static Entry readEntry(File file) {
+        try {
+            FreeColSavegameFile fsg = new FreeColSavegameFile(file);
+            Properties properties = new Properties();
+            try (
+                InputStream is = fsg.getInputStream(FreeColSavegameFile.SAVEGAME_PROPERTIES);
+            ) {
+                properties.load(is);
+            } catch (FileNotFoundException fnfe) {
+                ; // Old saved game, just lacks the information
+            }
+            byte[] thumbnail = null;
+            try (
+                InputStream is = fsg.getInputStream(FreeColSavegameFile.THUMBNAIL_FILE);
+            ) {
+                thumbnail = readAll(is);
+            } catch (FileNotFoundException fnfe) {
+                ; // No thumbnail
+            }
+            // Older saved games only have the version in the game itself
+            int version = (properties.getProperty(FreeColSavegameFile.VERSION_PROPERTY) == null)
+                ? fsg.getSavegameVersion() : -1;
+            return makeEntry(file, properties, version, thumbnail);
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, "Unable to index " + file.getName(), ioe);
+            return null;
+        }
+    }
+
+    /**
+     * Make an entry from savegame properties.
+     *
+     * @param file The saved game <code>File</code>.
+     * @param properties The savegame <code>Properties</code>.
+     * @param version The saved game version to use if the properties
+     *     do not have it.
+     * @param thumbnail The full size thumbnail, or null if none.
+     * @return A new <code>Entry</code>.
+     */
+    private static Entry makeEntry(File file, Properties properties,
+                                   int version, byte[] thumbnail) {
+        return new Entry(file.getName(), file.lastModified(), file.length(),
+            getInt(properties, FreeColSavegameFile.VERSION_PROPERTY, version),
+            getInt(properties, FreeColSavegameFile.TURN_PROPERTY, -1),
+            properties.getProperty(FreeColSavegameFile.NATION_PROPERTY),
+            getInt(properties, FreeColSavegameFile.MAP_WIDTH_PROPERTY, -1),
+            getInt(properties, FreeColSavegameFile.MAP_HEIGHT_PROPERTY, -1),
+            scaleThumbnail(thumbnail));
+    }
+
+    /**
+     * Get an integer property.
+     *
+     * @param properties The <code>Properties</code> to look in.
+     * @param key The property key.
+     * @param defaultValue The value to use if the property is missing
+     *     or malformed.
+     * @return The property value.
+     */
+    private static int getInt(Properties properties, String key,
+                              int defaultValue) {
+        try {
+            String value = properties.getProperty(key);
+            return (value == null) ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Scale a thumbnail down to the index width.
+     *
+     * @param thumbnail The thumbnail in PNG format, or null if none.
+     * @return The scaled thumbnail in PNG format, or null if none or
+     *     if it could not be read.
+     */
+    private static byte[] scaleThumbnail(byte[] thumbnail) {
+        if (thumbnail == null) return null;
+        try {
+            BufferedImage image
+                = ImageIO.read(new ByteArrayInputStream(thumbnail));
+            if (image == null) return null;
+            if (image.getWidth() <= THUMBNAIL_WIDTH) return thumbnail;
+            int height = Math.max(1, image.getHeight() * THUMBNAIL_WIDTH
+                / image.getWidth());
+            BufferedImage scaled = new BufferedImage(THUMBNAIL_WIDTH, height,
+                BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                               RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(image, 0, 0, THUMBNAIL_WIDTH, height, null);
+            g.dispose();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ImageIO.write(scaled, "png", bos);
+            return bos.toByteArray();
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, "Unable to scale thumbnail", ioe);
+            return null;
+        }
+    }
+
+    /**
+     * Read all of a stream.
+     *
+     * @param is The <code>InputStream</code> to read.
+     * @return The bytes read.
+     * @exception IOException if the stream can not be read.
+     */
+    private static byte[] readAll(InputStream is) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int n;
+        while ((n = is.read(buf)) > 0) bos.write(buf, 0, n);
+        return bos.toByteArray();
+    }
+
+    /**
+     * Read the index file, if there is a usable one.
+     */
+    private void read() {
+        File file = new File(directory, INDEX_FILE);
+        if (!file.exists()) return;
+        try (
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)));
+        ) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) return;
+            for (int n = in.readInt(); n > 0; n--) {
+                String name = in.readUTF();
+                long lastModified = in.readLong();
+                long length = in.readLong();
+                int version = in.readInt();
+                int turn = in.readInt();
+                String nationId = in.readUTF();
+                int mapWidth = in.readInt();
+                int mapHeight = in.readInt();
+                byte[] thumbnail = null;
+                int size = in.readInt();
+                if (size >= 0) {
+                    thumbnail = new byte[size];
+                    in.readFully(thumbnail);
+                }
+                entries.put(name, new Entry(name, lastModified, length,
+                        version, turn, (nationId.isEmpty()) ? null : nationId,
+                        mapWidth, mapHeight, thumbnail));
+            }
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, "Ignoring bad savegame index in "
+                + directory.getPath(), ioe);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Write the index file, if it has changed.  Failure is not an
+     * error, the index will just be rebuilt next time.
+     */
+    private void write() {
+        if (!changed) return;
+        changed = false;
+        File file = new File(directory, INDEX_FILE);
+        File temporary = new File(directory, INDEX_FILE + ".part");
+        try {
+            try (
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temporary)));
+            ) {
+                out.write(MAGIC);
+                out.writeInt(entries.size());
+                for (Entry e : entries.values()) {
+                    out.writeUTF(e.name);
+                    out.writeLong(e.lastModified);
+                    out.writeLong(e.length);
+                    out.writeInt(e.version);
+                    out.writeInt(e.turn);
+                    out.writeUTF((e.nationId == null) ? "" : e.nationId);
+                    out.writeInt(e.mapWidth);
+                    out.writeInt(e.mapHeight);
+                    if (e.thumbnail == null) {
+                        out.writeInt(-1);
+                    } else {
+                        out.writeInt(e.thumbnail.length);
+                        out.write(e.thumbnail);
+                    }
+                }
+            }
+            try {
+                Files.move(temporary.toPath(), file.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(temporary.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, "Unable to write savegame index in "
+                + directory.getPath(), ioe);
+            temporary.delete();
+        }
+    }
+}
@@ -0,0 +1,562 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Map;
+import net.sf.freecol.server.ai.AIMain;
+
+
+/**
+ * Reads and writes saved games in the sectioned layout.
+ *
+ * In a sectioned saved game the children of the game, the map and
+ * the AI are grouped into sections of about {@link #SECTION_SIZE}
+ * bytes, and each section is stored as a separate entry of the saved
+ * game.  The tiles are written in row order, so a map section holds a
+ * band of tile rows, along with the cached tiles the players have of
+ * them.  What is left of the game, the skeleton, is stored in
+ * {@link FreeColSavegameFile#SAVEGAME_FILE} with a section element
+ * naming the entry in place of each section.
+ *
+ * When a sectioned game is read the sections are parsed concurrently
+ * on a fork-join pool, each into the binary format of a
+ * {@link BinaryXMLWriter}.  The reader returned splices the parsed
+ * sections into the skeleton as it reaches them, so the game is
+ * built from a single stream of events in the original order, and
+ * references between objects are resolved just as for a game saved
+ * in one piece.
+ */
+public final class SavegameSections {
+
+    private static final Logger logger = Logger.getLogger(SavegameSections.class.getName());
+
+    /** The tag of the elements that stand in for sections. */
+    public static final String SECTION_TAG = "section";
+
+    /** The attribute naming the entry a section is stored in. */
+    public static final String ENTRY_TAG = "entry";
+
+    /** The directory within the saved game that holds the sections. */
+    public static final String SECTION_DIRECTORY = "sections/";
+
+    /** The size a section is allowed to grow to before it is closed. */
+    public static final int SECTION_SIZE = 1 << 16;
+
+    /** The elements whose children are written in sections. */
+    private static final Set<String> CONTAINERS = new HashSet<>(Arrays.asList(
+        Game.getXMLElementTagName(), Map.getXMLElementTagName(),
+        AIMain.getXMLElementTagName()));
+
+
+    /**
+     * Get the name of the entry a section is stored in.
+     *
+     * @param index The index of the section.
+     * @return The entry name.
+     */
+    public static String getSectionEntry(int index) {
+        return SECTION_DIRECTORY + index + ".xml";
+    }
+
+    /**
+     * Is a saved game in the sectioned layout?
+     *
+     * @param file The <code>FreeColDataFile</code> to check.
+     * @return True if the saved game has sections.
+     */
+    public static boolean isSectioned(FreeColDataFile file) {
+        try (
+            InputStream is = file.getInputStream(getSectionEntry(0));
+        ) {
+            return true;
+        } catch (IOException ioe) {
+            return false;
+        }
+    }
+
+    /**
+     * Write a game in the sectioned layout.  The section entries are
+     * written as they fill, followed by the skeleton in
+     * {@link FreeColSavegameFile#SAVEGAME_FILE}.
+     *
+     * @param xr The <code>XMLStreamReader</code> to read the game from,
+     *     which should be at the start of the document.
+     * @param jos The <code>JarOutputStream</code> to write to.
+     * @exception IOException if the game can not be written.
+     * @exception XMLStreamException if there is a problem reading
+     *     the game.
+     */
+    public static void write(XMLStreamReader xr, JarOutputStream jos)
+        throws IOException, XMLStreamException {
+        final XMLOutputFactory xof = XMLOutputFactory.newInstance();
+        final ByteArrayOutputStream skeletonBytes
+            = new ByteArrayOutputStream(1 << 16);
+        final XMLStreamWriter skeleton
+            = xof.createXMLStreamWriter(skeletonBytes, "UTF-8");
+        // Whether each open skeleton element is a container.
+        final List<Boolean> open = new ArrayList<>();
+        final ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream();
+        XMLStreamWriter section = null;
+        int level = 0, count = 0; // Elements open in the section
+
+        for (int event = xr.getEventType();; event = xr.next()) {
+            switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                String tag = xr.getLocalName();
+                boolean container = CONTAINERS.contains(tag);
+                if (section != null && level == 0 && container) {
+                    closeSection(section, sectionBytes, jos, count++);
+                    section = null;
+                }
+                if (section == null && !open.isEmpty()
+                    && open.get(open.size() - 1) && !container) {
+                    skeleton.writeStartElement(SECTION_TAG);
+                    skeleton.writeAttribute(ENTRY_TAG, getSectionEntry(count));
+                    skeleton.writeEndElement();
+                    sectionBytes.reset();
+                    section = xof.createXMLStreamWriter(sectionBytes, "UTF-8");
+                    section.writeStartDocument("UTF-8", "1.0");
+                    section.writeStartElement(SECTION_TAG);
+                }
+                if (section == null) {
+                    copyEvent(xr, skeleton);
+                    open.add(container);
+                } else {
+                    copyEvent(xr, section);
+                    level++;
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (section != null && level == 0) { // The container ends
+                    closeSection(section, sectionBytes, jos, count++);
+                    section = null;
+                }
+                if (section == null) {
+                    skeleton.writeEndElement();
+                    open.remove(open.size() - 1);
+                } else {
+                    section.writeEndElement();
+                    if (--level == 0) {
+                        section.flush();
+                        if (sectionBytes.size() >= SECTION_SIZE) {
+                            closeSection(section, sectionBytes, jos, count++);
+                            section = null;
+                        }
+                    }
+                }
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                skeleton.writeEndDocument();
+                skeleton.flush();
+                jos.putNextEntry(new JarEntry(FreeColSavegameFile.SAVEGAME_FILE));
+                skeletonBytes.writeTo(jos);
+                jos.closeEntry();
+                return;
+            default:
+                copyEvent(xr, (section == null) ? skeleton : section);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Finish a section and write it to its entry.
+     *
+     * @param section The <code>XMLStreamWriter</code> writing the section.
+     * @param bytes The stream the section is written to.
+     * @param jos The <code>JarOutputStream</code> to write to.
+     * @param index The index of the section.
+     * @exception IOException if the entry can not be written.
+     * @exception XMLStreamException if the section can not be finished.
+     */
+    private static void closeSection(XMLStreamWriter section,
+                                     ByteArrayOutputStream bytes,
+                                     JarOutputStream jos, int index)
+        throws IOException, XMLStreamException {
+        section.writeEndElement();
+        section.writeEndDocument();
+        section.close();
+        jos.putNextEntry(new JarEntry(getSectionEntry(index)));
+        bytes.writeTo(jos);
+        jos.closeEntry();
+    }
+
+    /**
+     * Copy the current event of a reader to a writer.
+     *
+     * @param xr The <code>XMLStreamReader</code> to copy from.
+     * @param xw The <code>XMLStreamWriter</code> to copy to.
+     * @exception XMLStreamException if there is a problem with
+     *     either stream.
+     */
+    private static void copyEvent(XMLStreamReader xr, XMLStreamWriter xw)
+        throws XMLStreamException {
+        switch (xr.getEventType()) {
+        case XMLStreamConstants.START_DOCUMENT:
+            xw.writeStartDocument("UTF-8", "1.0");
+            break;
+        case XMLStreamConstants.START_ELEMENT:
+            xw.writeStartElement(xr.getLocalName());
+            for (int i = 0; i < xr.getAttributeCount(); i++) {
+                xw.writeAttribute(xr.getAttributeLocalName(i),
+                                  xr.getAttributeValue(i));
+            }
+            break;
+        case XMLStreamConstants.END_ELEMENT:
+            xw.writeEndElement();
+            break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+        case XMLStreamConstants.SPACE:
+            xw.writeCharacters(xr.getText());
+            break;
+        case XMLStreamConstants.COMMENT:
+            xw.writeComment(xr.getText());
+            break;
+        case XMLStreamConstants.END_DOCUMENT:
+            xw.writeEndDocument();
+            break;
+        default:
+            break; // Nothing else is used in saved games
+        }
+    }
+
+    /**
+     * Create a reader for a sectioned saved game.  Parsing of all the
+     * sections is started before this returns.
+     *
+     * @param file The <code>FreeColDataFile</code> to read.
+     * @return An <code>XMLStreamReader</code> for the whole game.
+     * @exception IOException if the saved game can not be read.
+     */
+    public static XMLStreamReader createReader(FreeColDataFile file)
+        throws IOException {
+        final ForkJoinPool pool = ForkJoinPool.commonPool();
+        final java.util.Map<String, Section> sections = new HashMap<>();
+        for (int i = 0;; i++) {
+            final String name = getSectionEntry(i);
+            final InputStream is;
+            try {
+                is = file.getInputStream(name);
+            } catch (FileNotFoundException fnfe) {
+                break;
+            }
+            Section section = new Section(is);
+            sections.put(name, section);
+            pool.execute(section);
+        }
+        InputStream is = file.getInputStream(FreeColSavegameFile.SAVEGAME_FILE);
+        try {
+            XMLStreamReader skeleton = XMLInputFactory.newInstance()
+                .createXMLStreamReader(is, "UTF-8");
+            return new SectionedReader(skeleton, is, sections);
+        } catch (XMLStreamException xse) {
+            is.close();
+            for (Section s : sections.values()) s.discard();
+            throw new IOException(xse);
+        }
+    }
+
+
+    /**
+     * A section being parsed into the binary format.
+     */
+    private static final class Section extends ForkJoinTask<byte[]> {
+
+        /** The stream of the section entry. */
+        private final InputStream inputStream;
+
+        /** The parsed section. */
+        private byte[] result = null;
+
+
+        /**
+         * Create a new <code>Section</code>.
+         *
+         * @param inputStream The <code>InputStream</code> to parse.
+         */
+        public Section(InputStream inputStream) {
+            this.inputStream = inputStream;
+        }
+
+
+        /**
+         * Give up on this section, if it has not been parsed yet.
+         */
+        public void discard() {
+            if (cancel(false)) {
+                try {
+                    inputStream.close();
+                } catch (IOException ioe) {
+                    ; // Ignore
+                }
+            }
+        }
+
+        /**
+         * Get a reader for the parsed section, waiting for it if needed.
+         *
+         * @return A <code>BinaryXMLReader</code> at the start of the
+         *     section root element.
+         * @exception XMLStreamException if the section could not be parsed.
+         */
+        public XMLStreamReader getReader() throws XMLStreamException {
+            XMLStreamReader xr;
+            try {
+                xr = new BinaryXMLReader(get());
+            } catch (InterruptedException | ExecutionException
+                | IOException e) {
+                throw new XMLStreamException("Failed to parse section", e);
+            }
+            xr.nextTag();
+            return xr;
+        }
+
+        // Implement ForkJoinTask
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public byte[] getRawResult() {
+            return result;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void setRawResult(byte[] value) {
+            result = value;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected boolean exec() {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(SECTION_SIZE);
+            try (
+                InputStream is = inputStream;
+            ) {
+                XMLStreamReader xr = XMLInputFactory.newInstance()
+                    .createXMLStreamReader(is, "UTF-8");
+                XMLStreamWriter xw = new BinaryXMLWriter(bos);
+                for (;;) {
+                    copyEvent(xr, xw);
+                    if (xr.getEventType() == XMLStreamConstants.END_DOCUMENT) {
+                        break;
+                    }
+                    xr.next();
+                }
+                xw.flush();
+                xr.close();
+            } catch (IOException | XMLStreamException e) {
+                throw new RuntimeException(e);
+            }
+            result = bos.toByteArray();
+            return true;
+        }
+    }
+
+    /**
+     * A reader that splices parsed sections into the skeleton of a
+     * saved game.
+     */
+    private static final class SectionedReader extends StreamReaderDelegate {
+
+        /** The reader of the skeleton. */
+        private final XMLStreamReader skeleton;
+
+        /** The stream of the skeleton entry. */
+        private final InputStream inputStream;
+
+        /** The sections, by entry name. */
+        private final java.util.Map<String, Section> sections;
+
+        /** The reader of the current section, or null if in the skeleton. */
+        private XMLStreamReader section = null;
+
+        /** The number of elements open in the current section. */
+        private int level = 0;
+
+
+        /**
+         * Create a new <code>SectionedReader</code>.
+         *
+         * @param skeleton The <code>XMLStreamReader</code> for the skeleton.
+         * @param inputStream The <code>InputStream</code> of the skeleton.
+         * @param sections The <code>Section</code>s, by entry name.
+         */
+        public SectionedReader(XMLStreamReader skeleton,
+                               InputStream inputStream,
+                               java.util.Map<String, Section> sections) {
+            super(skeleton);
+
+            this.skeleton = skeleton;
+            this.inputStream = inputStream;
+            this.sections = sections;
+        }
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int next() throws XMLStreamException {
+            if (section != null) {
+                int event = section.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    level++;
+                } else if (event == XMLStreamConstants.END_ELEMENT
+                    && level-- == 0) { // The end of the section root
+                    section = null;
+                    setParent(skeleton);
+                    skeleton.next(); // The end of the section element
+                    return next();
+                }
+                return event;
+            }
+            int event = skeleton.next();
+            if (event == XMLStreamConstants.START_ELEMENT
+                && SECTION_TAG.equals(skeleton.getLocalName())) {
+                String entry = skeleton.getAttributeValue(null, ENTRY_TAG);
+                Section s = sections.remove(entry);
+                if (s == null) {
+                    throw new XMLStreamException("Missing section: " + entry);
+                }
+                section = s.getReader();
+                level = 0;
+                setParent(section);
+                return next();
+            }
+            return event;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int nextTag() throws XMLStreamException {
+            for (;;) {
+                int event = next();
+                switch (event) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (!isWhiteSpace()) {
+                        throw new XMLStreamException("Tag expected, not text: "
+                            + getText());
+                    }
+                    break;
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                case XMLStreamConstants.END_ELEMENT:
+                    return event;
+                default:
+                    throw new XMLStreamException("Tag expected");
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getElementText() throws XMLStreamException {
+            if (getEventType() != XMLStreamConstants.START_ELEMENT) {
+                throw new XMLStreamException("Not at a start element");
+            }
+            StringBuilder sb = new StringBuilder();
+            for (;;) {
+                switch (next()) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    sb.append(getText());
+                    break;
+                case XMLStreamConstants.COMMENT:
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return sb.toString();
+                default:
+                    throw new XMLStreamException("Element text expected");
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext() throws XMLStreamException {
+            return section != null || skeleton.hasNext();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void close() throws XMLStreamException {
+            for (Section s : sections.values()) s.discard();
+            sections.clear();
+            try {
+                skeleton.close();
+            } finally {
+                try {
+                    inputStream.close();
+                } catch (IOException ioe) {
+                    logger.log(Level.WARNING, "Error closing skeleton", ioe);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.model.FreeColGameObjectType;
+import net.sf.freecol.common.model.Specification;
+
+
+/**
+ * Prepared specifications, kept in the binary stream format so that
+ * they can be loaded without parsing the rules again.
+ *
+ * A snapshot is the specification of a TC after it has been read,
+ * with its parents, prepared and cleaned.  It is named for a hash of
+ * the specification files it was built from, the FreeCol version
+ * and the code it runs from, so a snapshot is only used while those are unchanged, and
+ * stale snapshots are simply never found.  Difficulty levels, advantages
+ * and mods are still applied to the loaded specification as before.
+ */
+public final class SpecificationSnapshot {
+
+    private static final Logger logger = Logger.getLogger(SpecificationSnapshot.class.getName());
+
+    /** The directory under the user cache directory to keep snapshots in. */
+    public static final String SNAPSHOT_DIRECTORY = "specifications";
+
+    /** The extension of snapshot files. */
+    public static final String SNAPSHOT_EXTENSION = ".fsb";
+
+    /**
+     * The snapshot format version, part of the hash.  Increase this
+     * when the way specifications are written or read changes.
+     */
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /** An explicitly set snapshot directory, if any. */
+    private static File directory = null;
+
+    /** The fingerprint of the code FreeCol is running from, once found. */
+    private static String codeFingerprint = null;
+
+
+    /**
+     * Utility class, not to be instantiated.
+     */
+    private SpecificationSnapshot() {}
+
+
+    /**
+     * Gets a fingerprint of the code FreeCol is running from, which
+     * changes whenever the classes that write and read snapshots may
+     * have changed.  For a jar this is its size and modification
+     * time, for a class directory the number of class files in it and
+     * the latest of their modification times.
+     *
+     * @return The code fingerprint, or null if the code can not be found.
+     */
+    private static synchronized String getCodeFingerprint() {
+        if (codeFingerprint != null) return codeFingerprint;
+        File file;
+        try {
+            file = new File(Specification.class.getProtectionDomain()
+                .getCodeSource().getLocation().toURI());
+        } catch (NullPointerException | SecurityException
+                 | URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+        if (file.isFile()) {
+            codeFingerprint = file.length() + ":" + file.lastModified();
+        } else if (file.isDirectory()) {
+            long[] stats = new long[2];
+            scanClasses(file, stats);
+            codeFingerprint = stats[0] + ":" + stats[1];
+        }
+        return codeFingerprint;
+    }
+
+    /**
+     * Count the class files under a directory, and find the latest
+     * modification time among them.
+     *
+     * @param dir The directory to scan.
+     * @param stats The count and latest time so far, updated in place.
+     */
+    private static void scanClasses(File dir, long[] stats) {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (f.isDirectory()) {
+                scanClasses(f, stats);
+            } else if (f.getName().endsWith(".class")) {
+                stats[0]++;
+                stats[1] = Math.max(stats[1], f.lastModified());
+            }
+        }
+    }
+
+    /**
+     * Gets the directory to keep snapshots in.
+     *
+     * By default snapshots are kept in the user cache directory, as
+     * long as the code FreeCol runs from can be found, so that the
+     * snapshots notice when it changes.
+     *
+     * @return The snapshot directory, or null if snapshots are not kept.
+     */
+    public static synchronized File getDirectory() {
+        if (directory != null) return directory;
+        File cache = FreeColDirectories.getUserCacheDirectory();
+        return (cache == null || getCodeFingerprint() == null) ? null
+            : new File(cache, SNAPSHOT_DIRECTORY);
+    }
+
+    /**
+     * Sets the directory to keep snapshots in.
+     *
+     * @param dir The new snapshot directory, or null to use the
+     *     user cache directory.
+     */
+    public static synchronized void setDirectory(File dir) {
+        directory = dir;
+    }
+
+    /**
+     * Load the specification of a TC, from a snapshot if there is a
+     * current one, otherwise by reading the rules and then saving a
+     * snapshot for next time.
+     *
+     * @param tc The <code>FreeColTcFile</code> to load.
+     * @param dir The directory to keep snapshots in.
+     * @return The <code>Specification</code>, or null if the TC has none.
+     * @exception IOException if the specification can not be read.
+     */
+    public static Specification load(FreeColTcFile tc, File dir)
+        throws IOException {
+        byte[] rules = readSpecification(tc);
+        if (rules == null) return null;
+        File file = new File(dir, tc.getId() + "-" + hash(tc, rules)
+            + SNAPSHOT_EXTENSION);
+
+        if (file.exists()) {
+            try {
+                return read(Files.readAllBytes(file.toPath()));
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "Discarding bad specification"
+                    + " snapshot " + file.getPath(), e);
+                file.delete();
+            }
+        }
+
+        Specification spec;
+        try (InputStream in = new ByteArrayInputStream(rules)) {
+            spec = new Specification(in);
+        }
+        byte[] snapshot = write(spec);
+        save(tc.getId(), file, snapshot);
+        // Return what the snapshot holds, so that the specification
+        // does not depend on whether the snapshot was found.
+        return read(snapshot);
+    }
+
+    /**
+     * Read the whole specification file of a TC.
+     *
+     * @param tc The <code>FreeColModFile</code> to read from.
+     * @return The specification contents, or null if there is none.
+     * @exception IOException if the specification can not be read.
+     */
+    private static byte[] readSpecification(FreeColModFile tc)
+        throws IOException {
+        try (InputStream in = tc.getSpecificationInputStream()) {
+            if (in == null) return null;
+            ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * Hash the specifications a TC is built from: its own and those
+     * of the TCs it extends, the FreeCol version and the code
+     * fingerprint.
+     *
+     * @param tc The <code>FreeColTcFile</code> to hash.
+     * @param rules The contents of its specification file.
+     * @return The hash, in hexadecimal.
+     * @exception IOException if a specification can not be read.
+     */
+    private static String hash(FreeColTcFile tc, byte[] rules)
+        throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new IOException(nsae);
+        }
+        md.update((SNAPSHOT_VERSION + ":" + FreeCol.getVersion()
+                + ":" + getCodeFingerprint())
+            .getBytes(StandardCharsets.UTF_8));
+        Set<String> seen = new HashSet<>();
+        seen.add(tc.getId());
+        String parent = getExtends(rules);
+        md.update(rules);
+        while (parent != null && seen.add(parent)) {
+            byte[] parentRules = readSpecification(new FreeColTcFile(parent));
+            if (parentRules == null) break;
+            md.update(parentRules);
+            parent = getExtends(parentRules);
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : md.digest()) sb.append(String.format("%02x", b));
+        return sb.toString();
+    }
+
+    /**
+     * Get the identifier of the TC a specification extends.
+     *
+     * @param rules The contents of the specification file.
+     * @return The parent identifier, or null if none.
+     * @exception IOException if the specification can not be read.
+     */
+    private static String getExtends(byte[] rules) throws IOException {
+        try (
+            FreeColXMLReader xr
+                = new FreeColXMLReader(new ByteArrayInputStream(rules));
+        ) {
+            xr.nextTag();
+            return xr.getAttribute(FreeColGameObjectType.EXTENDS_TAG,
+                                   (String)null);
+        } catch (XMLStreamException xse) {
+            throw new IOException(xse);
+        }
+    }
+
+    /**
+     * Write a specification in the binary stream format.
+     *
+     * @param spec The <code>Specification</code> to write.
+     * @return The encoded specification.
+     * @exception IOException if the specification can not be written.
+     */
+    private static byte[] write(Specification spec) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 16);
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(
+                new BinaryXMLWriter(out), FreeColXMLWriter.WriteScope.toSave());
+        ) {
+            spec.toXML(xw);
+        } catch (XMLStreamException xse) {
+            throw new IOException(xse);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Read a specification from the binary stream format.
+     *
+     * @param snapshot The encoded specification.
+     * @return The <code>Specification</code> read.
+     * @exception IOException if the snapshot is malformed.
+     */
+    private static Specification read(byte[] snapshot) throws IOException {
+        try (
+            FreeColXMLReader xr
+                = new FreeColXMLReader(new BinaryXMLReader(snapshot));
+        ) {
+            xr.nextTag();
+            return new Specification(xr);
+        } catch (XMLStreamException xse) {
+            throw new IOException(xse);
+        }
+    }
+
+    /**
+     * Save a snapshot, replacing any older ones of the same TC.
+     * Failure is not an error, the rules will just be read again
+     * next time.
+     *
+     * @param id The TC identifier.
+     * @param file The snapshot <code>File</code> to write.
+     * @param snapshot The encoded specification.
+     */
+    private static void save(String id, File file, byte[] snapshot) {
+        File dir = file.getParentFile();
+        File temporary = new File(dir, file.getName() + ".part");
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) {
+                throw new IOException("Can not create " + dir.getPath());
+            }
+            File[] old = dir.listFiles((d, name) ->
+                name.startsWith(id + "-") && name.endsWith(SNAPSHOT_EXTENSION));
+            if (old != null) for (File f : old) f.delete();
+            try (FileOutputStream out = new FileOutputStream(temporary)) {
+                out.write(snapshot);
+            }
+            try {
+                Files.move(temporary.toPath(), file.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException amnse) {
+                Files.move(temporary.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ioe) {
+            logger.log(Level.FINE, "Unable to save specification snapshot "
+                + file.getPath(), ioe);
+            temporary.delete();
+        }
+    }
+}
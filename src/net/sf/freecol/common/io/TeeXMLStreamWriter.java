@@ -0,0 +1,263 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+
+/**
+ * A stream writer that writes everything to two other writers, for
+ * example to keep a copy of a message as it is sent.
+ *
+ * The second writer is only written to, so queries such as
+ * {@link #getPrefix} are answered by the first.  Closing this writer
+ * closes neither.
+ */
+public class TeeXMLStreamWriter implements XMLStreamWriter {
+
+    /** The main writer. */
+    private final XMLStreamWriter first;
+
+    /** The writer to copy to. */
+    private final XMLStreamWriter second;
+
+
+    /**
+     * Create a new <code>TeeXMLStreamWriter</code>.
+     *
+     * @param first The main <code>XMLStreamWriter</code>.
+     * @param second The <code>XMLStreamWriter</code> to copy to.
+     */
+    public TeeXMLStreamWriter(XMLStreamWriter first, XMLStreamWriter second) {
+        this.first = first;
+        this.second = second;
+    }
+
+
+    // Implement XMLStreamWriter
+
+    @Override
+    public void writeStartElement(String localName)
+        throws XMLStreamException {
+        first.writeStartElement(localName);
+        second.writeStartElement(localName);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+        first.writeStartElement(namespaceURI, localName);
+        second.writeStartElement(namespaceURI, localName);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName,
+                                  String namespaceURI)
+        throws XMLStreamException {
+        first.writeStartElement(prefix, localName, namespaceURI);
+        second.writeStartElement(prefix, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEmptyElement(String localName)
+        throws XMLStreamException {
+        first.writeEmptyElement(localName);
+        second.writeEmptyElement(localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+        first.writeEmptyElement(namespaceURI, localName);
+        second.writeEmptyElement(namespaceURI, localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName,
+                                  String namespaceURI)
+        throws XMLStreamException {
+        first.writeEmptyElement(prefix, localName, namespaceURI);
+        second.writeEmptyElement(prefix, localName, namespaceURI);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        first.writeEndElement();
+        second.writeEndElement();
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        first.writeEndDocument();
+        second.writeEndDocument();
+    }
+
+    @Override
+    public void close() {} // Noop, the writers are closed by their owners
+
+    @Override
+    public void flush() throws XMLStreamException {
+        first.flush();
+        second.flush();
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value)
+        throws XMLStreamException {
+        first.writeAttribute(localName, value);
+        second.writeAttribute(localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI,
+                               String localName, String value)
+        throws XMLStreamException {
+        first.writeAttribute(prefix, namespaceURI, localName, value);
+        second.writeAttribute(prefix, namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName,
+                               String value) throws XMLStreamException {
+        first.writeAttribute(namespaceURI, localName, value);
+        second.writeAttribute(namespaceURI, localName, value);
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI)
+        throws XMLStreamException {
+        first.writeNamespace(prefix, namespaceURI);
+        second.writeNamespace(prefix, namespaceURI);
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI)
+        throws XMLStreamException {
+        first.writeDefaultNamespace(namespaceURI);
+        second.writeDefaultNamespace(namespaceURI);
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        first.writeComment(data);
+        second.writeComment(data);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target)
+        throws XMLStreamException {
+        first.writeProcessingInstruction(target);
+        second.writeProcessingInstruction(target);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data)
+        throws XMLStreamException {
+        first.writeProcessingInstruction(target, data);
+        second.writeProcessingInstruction(target, data);
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        first.writeCData(data);
+        second.writeCData(data);
+    }
+
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        first.writeDTD(dtd);
+        second.writeDTD(dtd);
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        first.writeEntityRef(name);
+        second.writeEntityRef(name);
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        first.writeStartDocument();
+        second.writeStartDocument();
+    }
+
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        first.writeStartDocument(version);
+        second.writeStartDocument(version);
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version)
+        throws XMLStreamException {
+        first.writeStartDocument(encoding, version);
+        second.writeStartDocument(encoding, version);
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        first.writeCharacters(text);
+        second.writeCharacters(text);
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len)
+        throws XMLStreamException {
+        first.writeCharacters(text, start, len);
+        second.writeCharacters(text, start, len);
+    }
+
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        return first.getPrefix(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri)
+        throws XMLStreamException {
+        first.setPrefix(prefix, uri);
+        second.setPrefix(prefix, uri);
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        first.setDefaultNamespace(uri);
+        second.setDefaultNamespace(uri);
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context)
+        throws XMLStreamException {
+        first.setNamespaceContext(context);
+        second.setNamespaceContext(context);
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return first.getNamespaceContext();
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return first.getProperty(name);
+    }
+}
@@ -289,7 +289,7 @@ public class Building extends WorkLocation
             // Factories have the EXPERTS_USE_CONNECTIONS ability.
             if (available < required
                 && hasAbility(Ability.EXPERTS_USE_CONNECTIONS)
-                && spec.getBoolean(GameOptions.EXPERTS_HAVE_CONNECTIONS)) {
+                && spec.getBoolean(GameOptions.EXPERTS_HAVE_CONNECTIONS_KEY)) {
                 long minimumGoodsInput = 4 // FIXME: magic number
                     * (int)getUnitList().stream()
                         .filter(u -> u.getType() == getExpertUnitType())
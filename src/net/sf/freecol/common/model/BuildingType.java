@@ -214,7 +214,7 @@ public final class BuildingType extends BuildableType {
      * Gets the production types available at the current difficulty
      * level.
      *
-     * FIXME: TileType.getAvailableProductionTypes(boolean) uses the
+     * FIXME: Tile production levels come from the
      * GameOptions.TILE_PRODUCTION option.  Should we implement a
      * corresponding one for BuildingTypes?
      *
@@ -949,7 +949,7 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
             return NoBuildReason.NOT_BUILDABLE;
         } else if (buildableType.getRequiredPopulation() > getUnitCount()) {
             return NoBuildReason.POPULATION_TOO_SMALL;
-        } else if (buildableType.hasAbility(Ability.COASTAL_ONLY)
+        } else if (getSpecification().isCoastalOnly(buildableType)
             && !getTile().isCoastland()) {
             return NoBuildReason.COASTAL;
         } else {
@@ -1150,7 +1150,7 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
         // If the bell accumulation cap option is set, and the colony
         // has reached 100%, liberty can not rise higher.
         boolean capped = getSpecification()
-            .getBoolean(GameOptions.BELL_ACCUMULATION_CAPPED);
+            .getBoolean(GameOptions.BELL_ACCUMULATION_CAPPED_KEY);
         if (capped && sonsOfLiberty >= 100) {
             liberty = LIBERTY_PER_REBEL * getUnitCount();
         }
@@ -1226,13 +1226,13 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
     protected boolean updateProductionBonus() {
         final Specification spec = getSpecification();
         final int veryBadGovernment
-            = spec.getInteger("model.option.veryBadGovernmentLimit");
+            = spec.getInteger(GameOptions.VERY_BAD_GOVERNMENT_LIMIT_KEY);
         final int badGovernment
-            = spec.getInteger("model.option.badGovernmentLimit");
+            = spec.getInteger(GameOptions.BAD_GOVERNMENT_LIMIT_KEY);
         final int veryGoodGovernment
-            = spec.getInteger("model.option.veryGoodGovernmentLimit");
+            = spec.getInteger(GameOptions.VERY_GOOD_GOVERNMENT_LIMIT_KEY);
         final int goodGovernment
-            = spec.getInteger("model.option.goodGovernmentLimit");
+            = spec.getInteger(GameOptions.GOOD_GOVERNMENT_LIMIT_KEY);
         int newBonus = (sonsOfLiberty >= veryGoodGovernment) ? 2
             : (sonsOfLiberty >= goodGovernment) ? 1
             : (tories > veryBadGovernment) ? -2
@@ -1265,7 +1265,7 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
             return -i;
         } else {
             final Specification spec = getSpecification();
-            limit = spec.getInteger("model.option.badGovernmentLimit");
+            limit = spec.getInteger(GameOptions.BAD_GOVERNMENT_LIMIT_KEY);
             for (i = 1; i < limit; i++) {
                 if (governmentChange(pop + i) == -1) break;
             }
@@ -1359,13 +1359,13 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
     public int governmentChange(int unitCount) {
         final Specification spec = getSpecification();
         final int veryBadGovernment
-            = spec.getInteger(GameOptions.VERY_BAD_GOVERNMENT_LIMIT);
+            = spec.getInteger(GameOptions.VERY_BAD_GOVERNMENT_LIMIT_KEY);
         final int badGovernment
-            = spec.getInteger(GameOptions.BAD_GOVERNMENT_LIMIT);
+            = spec.getInteger(GameOptions.BAD_GOVERNMENT_LIMIT_KEY);
         final int veryGoodGovernment
-            = spec.getInteger(GameOptions.VERY_GOOD_GOVERNMENT_LIMIT);
+            = spec.getInteger(GameOptions.VERY_GOOD_GOVERNMENT_LIMIT_KEY);
         final int goodGovernment
-            = spec.getInteger(GameOptions.GOOD_GOVERNMENT_LIMIT);
+            = spec.getInteger(GameOptions.GOOD_GOVERNMENT_LIMIT_KEY);
 
         int rebelPercent = calculateSoLPercentage(unitCount, getLiberty());
         int rebelCount = calculateRebels(unitCount, rebelPercent);
@@ -1409,13 +1409,13 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
     public ModelMessage checkForGovMgtChangeMessage() {
         final Specification spec = getSpecification();
         final int veryBadGovernment
-            = spec.getInteger(GameOptions.VERY_BAD_GOVERNMENT_LIMIT);
+            = spec.getInteger(GameOptions.VERY_BAD_GOVERNMENT_LIMIT_KEY);
         final int badGovernment
-            = spec.getInteger(GameOptions.BAD_GOVERNMENT_LIMIT);
+            = spec.getInteger(GameOptions.BAD_GOVERNMENT_LIMIT_KEY);
         final int veryGoodGovernment
-            = spec.getInteger(GameOptions.VERY_GOOD_GOVERNMENT_LIMIT);
+            = spec.getInteger(GameOptions.VERY_GOOD_GOVERNMENT_LIMIT_KEY);
         final int goodGovernment
-            = spec.getInteger(GameOptions.GOOD_GOVERNMENT_LIMIT);
+            = spec.getInteger(GameOptions.GOOD_GOVERNMENT_LIMIT_KEY);
 
         String msgId = null;
         int number = 0;
@@ -1464,7 +1464,7 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
             }
         }
 
-        GoodsType bells = getSpecification().getGoodsType("model.goods.bells");
+        GoodsType bells = getSpecification().getType(GoodsType.BELLS);
         return (msgId == null) ? null
             : new ModelMessage(msgType, msgId, this, bells)
             .addName("%colony%", getName())
@@ -1878,8 +1878,8 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
     public int getConsumptionOf(GoodsType goodsType) {
         final Specification spec = getSpecification();
         int result = super.getConsumptionOf(goodsType);
-        if (spec.getGoodsType("model.goods.bells").equals(goodsType)) {
-            result -= spec.getInteger("model.option.unitsThatUseNoBells");
+        if (spec.getType(GoodsType.BELLS).equals(goodsType)) {
+            result -= spec.getInteger(GameOptions.UNITS_THAT_USE_NO_BELLS_KEY);
         }
         return Math.max(0, result);
     }
@@ -157,7 +157,7 @@ public class ColonyTile extends WorkLocation {
         if (isColonyCenterTile()) {
             for (AbstractGoods output : getOutputs()) {
                 boolean onlyNaturalImprovements = getSpecification()
-                    .getBoolean(GameOptions.ONLY_NATURAL_IMPROVEMENTS)
+                    .getBoolean(GameOptions.ONLY_NATURAL_IMPROVEMENTS_KEY)
                     && !output.getType().isFoodType();
                 int potential = output.getAmount();
                 if (workTile.getTileItemContainer() != null) {
@@ -216,7 +216,8 @@ public class ColonyTile extends WorkLocation {
 
             // Tile type change.
             final List<AbstractGoods> newProd
-                = newType.getPossibleProduction(true);
+                = newType.getPossibleProduction(true, getSpecification()
+                    .getString(GameOptions.TILE_PRODUCTION));
             int food = newProd.stream()
                 .filter(ag -> ag.getType().isFoodType())
                 .mapToInt(AbstractGoods::getAmount).sum();
@@ -244,17 +245,19 @@ public class ColonyTile extends WorkLocation {
         // Units are present, see what the change would do to their work.
         final GoodsType work = getCurrentWorkType();
         final UnitType unitType = getFirstUnit().getType();
+        final String level = getSpecification()
+            .getString(GameOptions.TILE_PRODUCTION);
         return (work == null) // No work, improvement does nothing
             ? 0
             : (newType == null) // No tile change, but return the new bonus
             ? ti.getBonus(work)
             : (resource == null) // The tile change impact on the work
-            ? newType.getPotentialProduction(work, unitType)
-                - oldType.getPotentialProduction(work, unitType)
+            ? newType.getPotentialProduction(work, unitType, level)
+                - oldType.getPotentialProduction(work, unitType, level)
             // The production impact with the new resource in place
-            : newType.getPotentialProduction(work, unitType)
+            : newType.getPotentialProduction(work, unitType, level)
                 - resource.applyBonus(work, unitType,
-                    oldType.getPotentialProduction(work, unitType));
+                    oldType.getPotentialProduction(work, unitType, level));
     }
         
     /**
@@ -478,7 +481,8 @@ public class ColonyTile extends WorkLocation {
         return (workTile == null || workTile.getType() == null
             || unattended != isColonyCenterTile())
             ? Collections.<ProductionType>emptyList()
-            : workTile.getType().getAvailableProductionTypes(unattended);
+            : workTile.getType().getAvailableProductionTypes(unattended,
+                getSpecification().getString(GameOptions.TILE_PRODUCTION));
     }
 
     /**
@@ -21,6 +21,7 @@ package net.sf.freecol.common.model;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -88,12 +89,24 @@ public class EuropeanNationType extends NationType {
     }
 
     /**
-     * Gets the starting units for this nation type.
+     * Gets the starting units for this nation type, using the
+     * options of the specification it was loaded into.
      *
      * @return A list of <code>AbstractUnit</code>s to start with.
      */
     public List<AbstractUnit> getStartingUnits() {
-        boolean ex = getSpecification().getBoolean(GameOptions.EXPERT_STARTING_UNITS);
+        return getStartingUnits(getSpecification());
+    }
+
+    /**
+     * Gets the starting units for this nation type in a game.
+     *
+     * @param spec The <code>Specification</code> of the game, which
+     *     decides whether expert starting units are used.
+     * @return A list of <code>AbstractUnit</code>s to start with.
+     */
+    public List<AbstractUnit> getStartingUnits(Specification spec) {
+        boolean ex = spec.getBoolean(GameOptions.EXPERT_STARTING_UNITS);
         return getStartingUnits(String.valueOf(ex));
     }
 
@@ -128,7 +141,7 @@ public class EuropeanNationType extends NationType {
         String exTag = (expert) ? Boolean.TRUE.toString() : null;
         Map<String, AbstractUnit> units = startingUnitMap.get(exTag);
         if (units == null) {
-            units = new HashMap<>();
+            units = new LinkedHashMap<>();
             startingUnitMap.put(exTag, units);
         }
         units.put(id, unit);
@@ -227,7 +240,8 @@ public class EuropeanNationType extends NationType {
         if (parent != this) {
             for (Map.Entry<String, Map<String, AbstractUnit>> entry
                      : parent.startingUnitMap.entrySet()) {
-                startingUnitMap.put(entry.getKey(), new HashMap<>(entry.getValue()));
+                startingUnitMap.put(entry.getKey(),
+                                    new LinkedHashMap<>(entry.getValue()));
             }
         }
 
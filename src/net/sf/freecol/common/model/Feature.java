@@ -323,11 +323,10 @@ public abstract class Feature extends FreeColObject implements Named {
             } else if (lastTurn.getNumber() != feature.lastTurn.getNumber()) {
                 return false;
             }
-            if (scopes == null) {
-                if (feature.scopes != null) {
-                    return false;
-                }
-            } else if (feature.scopes == null) {
+            // No scopes and an empty scope list are the same
+            if (!hasScope()) {
+                if (feature.hasScope()) return false;
+            } else if (!feature.hasScope()) {
                 return false;
             } else {
                 // Not very efficient, but we do not expect many scopes
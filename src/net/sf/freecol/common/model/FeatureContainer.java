@@ -171,6 +171,24 @@ public final class FeatureContainer {
         return result;
     }
 
+    /**
+     * Gets all the abilities in this container, including those that
+     * only apply to particular object types.
+     *
+     * @return A set of abilities.
+     */
+    public Set<Ability> getAllAbilities() {
+        Set<Ability> result = new HashSet<>();
+        if (abilitiesPresent()) {
+            synchronized (abilitiesLock) {
+                for (Set<Ability> aset : abilities.values()) {
+                    result.addAll(aset);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Add the given ability to a container.
      *
@@ -255,6 +273,24 @@ public final class FeatureContainer {
         return result;
     }
 
+    /**
+     * Gets all the modifiers in this container, including those that
+     * only apply to particular object types.
+     *
+     * @return A set of modifiers.
+     */
+    public Set<Modifier> getAllModifiers() {
+        Set<Modifier> result = new HashSet<>();
+        if (modifiersPresent()) {
+            synchronized (modifiersLock) {
+                for (Set<Modifier> mset : modifiers.values()) {
+                    result.addAll(mset);
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Applies this objects modifiers with the given identifier to the
      * given number.
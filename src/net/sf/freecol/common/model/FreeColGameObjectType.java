@@ -190,11 +190,14 @@ public abstract class FreeColGameObjectType extends FreeColObject
     protected void writeChildren(FreeColXMLWriter xw) throws XMLStreamException {
         super.writeChildren(xw);
 
-        for (Ability ability : getSortedCopy(getAbilities())) {
+        // Write all the features, not just those that apply to a
+        // null object type, or scoped features are lost.
+        final FeatureContainer fc = getFeatureContainer();
+        for (Ability ability : getSortedCopy(fc.getAllAbilities())) {
             ability.toXML(xw);
         }
 
-        for (Modifier modifier : getSortedModifiers()) {
+        for (Modifier modifier : getSortedCopy(fc.getAllModifiers())) {
             modifier.toXML(xw);
         }
     }
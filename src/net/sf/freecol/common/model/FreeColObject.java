@@ -22,6 +22,7 @@ package net.sf.freecol.common.model;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyChangeSupport;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -51,6 +52,8 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import net.sf.freecol.common.ObjectWithId;
+import net.sf.freecol.common.io.BinaryXMLReader;
+import net.sf.freecol.common.io.BinaryXMLWriter;
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
@@ -1096,14 +1099,32 @@ public abstract class FreeColObject
      * to the copied colony and the copied colony refer to the copied
      * tile, but both will refer to the original uncopied owning player. 
      *
+     * The object is written with the same server scope as
+     * {@link #serialize()}, but in the binary format of a
+     * {@link BinaryXMLWriter}, so copying does not need an XML parser
+     * or any text escaping and parsing, and gives exactly the same
+     * result as reading back the serialized XML.
+     *
      * @param game The <code>Game</code> to add the object to.
      * @param returnClass The required object class.
      * @return The copied object, or null on error.
      */
     public <T extends FreeColObject> T copy(Game game, Class<T> returnClass) {
         T ret = null;
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(1024);
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(new BinaryXMLWriter(bos),
+                                                       WriteScope.toServer());
+        ) {
+            this.toXML(xw);
+            xw.flush();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Failed to copy: " + getId(), e);
+            return null;
+        }
         try (
-            FreeColXMLReader xr = new FreeColXMLReader(new StringReader(this.serialize()));
+            FreeColXMLReader xr
+                = new FreeColXMLReader(new BinaryXMLReader(bos.toByteArray()));
         ) {
             ret = xr.copy(game, returnClass);
         } catch (Exception e) {
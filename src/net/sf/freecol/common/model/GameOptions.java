@@ -24,6 +24,9 @@ package net.sf.freecol.common.model;
  * Keeps track of the available game options. New options must be
  * added to the {@link Specification} and each option should be given
  * an unique identifier (defined as a constant in this class).
+ *
+ * Options that are read in hot paths also have a key, which resolves
+ * the option once rather than looking it up by identifier each time.
  */
 public class GameOptions {
 
@@ -34,6 +37,8 @@ public class GameOptions {
     /** The number of turns to sail between Europe and the New World. */
     public static final String TURNS_TO_SAIL
         = "model.option.turnsToSail";
+    public static final IntegerOptionKey TURNS_TO_SAIL_KEY
+        = new IntegerOptionKey(TURNS_TO_SAIL);
 
     /** Changes the settlement limits. */
     public static final String SETTLEMENT_LIMIT_MODIFIER
@@ -42,6 +47,8 @@ public class GameOptions {
     /** Enables/disables fog of war. */
     public static final String FOG_OF_WAR
         = "model.option.fogOfWar";
+    public static final BooleanOptionKey FOG_OF_WAR_KEY
+        = new BooleanOptionKey(FOG_OF_WAR);
 
     /** Whether to award exploration points or not. */
     public static final String EXPLORATION_POINTS
@@ -50,10 +57,14 @@ public class GameOptions {
     /** Allow amphibious moves. */
     public static final String AMPHIBIOUS_MOVES
         = "model.option.amphibiousMoves";
+    public static final BooleanOptionKey AMPHIBIOUS_MOVES_KEY
+        = new BooleanOptionKey(AMPHIBIOUS_MOVES);
 
     /** Allow empty units to trade. */
     public static final String EMPTY_TRADERS
         = "model.option.emptyTraders";
+    public static final BooleanOptionKey EMPTY_TRADERS_KEY
+        = new BooleanOptionKey(EMPTY_TRADERS);
 
     /** Do settlement actions consume the chief contact bonus. */
     public static final String SETTLEMENT_ACTIONS_CONTACT_CHIEF
@@ -62,6 +73,8 @@ public class GameOptions {
     /** Do missionaries provide extra benefits. */
     public static final String ENHANCED_MISSIONARIES
         = "model.option.enhancedMissionaries";
+    public static final BooleanOptionKey ENHANCED_MISSIONARIES_KEY
+        = new BooleanOptionKey(ENHANCED_MISSIONARIES);
 
     /** The strength of the influence of a Mission to the
         alarm level of the natives in a settlement. */
@@ -119,6 +132,8 @@ public class GameOptions {
     /** Is bell accumulation capped when 100% rebels achieved? */
     public static final String BELL_ACCUMULATION_CAPPED
         = "model.option.bellAccumulationCapped";
+    public static final BooleanOptionKey BELL_ACCUMULATION_CAPPED_KEY
+        = new BooleanOptionKey(BELL_ACCUMULATION_CAPPED);
 
     /** Capture units under repair with colony. */
     public static final String CAPTURE_UNITS_UNDER_REPAIR
@@ -142,6 +157,8 @@ public class GameOptions {
      */
     public static final String EXPERTS_HAVE_CONNECTIONS
         = "model.option.expertsHaveConnections";
+    public static final BooleanOptionKey EXPERTS_HAVE_CONNECTIONS_KEY
+        = new BooleanOptionKey(EXPERTS_HAVE_CONNECTIONS);
 
     /** Can colonies be founded during the war of independence? */
     public static final String FOUND_COLONY_DURING_REBELLION
@@ -184,6 +201,8 @@ public class GameOptions {
      */
     public static final String ONLY_NATURAL_IMPROVEMENTS
         = "model.option.onlyNaturalImprovements";
+    public static final BooleanOptionKey ONLY_NATURAL_IMPROVEMENTS_KEY
+        = new BooleanOptionKey(ONLY_NATURAL_IMPROVEMENTS);
 
     /** Enable natural disasters striking colonies. */
     public static final String NATURAL_DISASTERS
@@ -437,18 +456,26 @@ public class GameOptions {
     /** The percent SoL to achieve "bad" government. */
     public static final String BAD_GOVERNMENT_LIMIT
         = "model.option.badGovernmentLimit";
+    public static final IntegerOptionKey BAD_GOVERNMENT_LIMIT_KEY
+        = new IntegerOptionKey(BAD_GOVERNMENT_LIMIT);
 
     /** The percent SoL to achieve "very bad" government. */
     public static final String VERY_BAD_GOVERNMENT_LIMIT
         = "model.option.veryBadGovernmentLimit";
+    public static final IntegerOptionKey VERY_BAD_GOVERNMENT_LIMIT_KEY
+        = new IntegerOptionKey(VERY_BAD_GOVERNMENT_LIMIT);
 
     /** The percent SoL to achieve "good" government. */
     public static final String GOOD_GOVERNMENT_LIMIT
         = "model.option.goodGovernmentLimit";
+    public static final IntegerOptionKey GOOD_GOVERNMENT_LIMIT_KEY
+        = new IntegerOptionKey(GOOD_GOVERNMENT_LIMIT);
 
     /** The percent SoL to achieve "very good" government. */
     public static final String VERY_GOOD_GOVERNMENT_LIMIT
         = "model.option.veryGoodGovernmentLimit";
+    public static final IntegerOptionKey VERY_GOOD_GOVERNMENT_LIMIT_KEY
+        = new IntegerOptionKey(VERY_GOOD_GOVERNMENT_LIMIT);
 
 
     /** Other (difficulty) group. */
@@ -470,6 +497,8 @@ public class GameOptions {
     /** The number of units that do not consume bells. */
     public static final String UNITS_THAT_USE_NO_BELLS
         = "model.option.unitsThatUseNoBells";
+    public static final IntegerOptionKey UNITS_THAT_USE_NO_BELLS_KEY
+        = new IntegerOptionKey(UNITS_THAT_USE_NO_BELLS);
 
     /** Tile production. */
     public static final String TILE_PRODUCTION
@@ -40,6 +40,18 @@ public final class GoodsType extends FreeColGameObjectType {
     private static final float DEFAULT_LOW_PRODUCTION_THRESHOLD = 0.0f;
     private static final float DEFAULT_ZERO_PRODUCTION_FACTOR = 1.0f;
 
+    /** Keys for the goods types the rules refer to directly. */
+    public static final TypeKey<GoodsType> BELLS
+        = new TypeKey<>("model.goods.bells", GoodsType.class);
+    public static final TypeKey<GoodsType> CROSSES
+        = new TypeKey<>("model.goods.crosses", GoodsType.class);
+    public static final TypeKey<GoodsType> FOOD
+        = new TypeKey<>("model.goods.food", GoodsType.class);
+    public static final TypeKey<GoodsType> HORSES
+        = new TypeKey<>("model.goods.horses", GoodsType.class);
+    public static final TypeKey<GoodsType> MUSKETS
+        = new TypeKey<>("model.goods.muskets", GoodsType.class);
+
     /** A comparator to impose a useful order on goods types. */
     public static final Comparator<GoodsType> goodsTypeComparator
         = new Comparator<GoodsType>() {
@@ -340,7 +340,7 @@ public class IndianSettlement extends Settlement implements TradeLocation {
      */
     public int getMissionaryLineOfSight() {
         final boolean enhanced = getSpecification() 
-            .getBoolean(GameOptions.ENHANCED_MISSIONARIES);
+            .getBoolean(GameOptions.ENHANCED_MISSIONARIES_KEY);
         return (enhanced) ? getLineOfSight() : 1;
     }
 
@@ -916,8 +916,8 @@ public class IndianSettlement extends Settlement implements TradeLocation {
      * @param settlement The other <code>IndianSettlement</code> to trade with.
      */
     public void tradeGoodsWithSettlement(IndianSettlement settlement) {
-        GoodsType armsType = getSpecification().getGoodsType("model.goods.muskets");
-        GoodsType horsesType = getSpecification().getGoodsType("model.goods.horses");
+        GoodsType armsType = getSpecification().getType(GoodsType.MUSKETS);
+        GoodsType horsesType = getSpecification().getType(GoodsType.HORSES);
         List<GoodsType> goodsToTrade = new ArrayList<>();
         goodsToTrade.add(armsType);
         goodsToTrade.add(horsesType);
@@ -0,0 +1,64 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.model;
+
+import net.sf.freecol.common.option.AbstractOption;
+import net.sf.freecol.common.option.IntegerOption;
+
+
+/**
+ * A key for an <code>IntegerOption</code> in a specification.
+ */
+public final class IntegerOptionKey extends SpecificationKey<IntegerOption> {
+
+    /**
+     * Create a new integer option key.
+     *
+     * @param id The option identifier.
+     */
+    public IntegerOptionKey(String id) {
+        super(id);
+    }
+
+
+    /**
+     * Gets the value of the option in a specification.
+     *
+     * @param spec The <code>Specification</code> to look in.
+     * @return The option value.
+     */
+    public int getValue(Specification spec) {
+        return get(spec).getValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected IntegerOption lookup(Specification spec) {
+        AbstractOption option = spec.getOption(getId());
+        if (!(option instanceof IntegerOption)) {
+            throw new IllegalArgumentException("Not an integer option: "
+                + getId());
+        }
+        return (IntegerOption)option;
+    }
+}
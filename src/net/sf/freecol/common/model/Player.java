@@ -2758,7 +2758,7 @@ public class Player extends FreeColGameObject implements Nameable {
         final Specification spec = getSpecification();
         // Simple case when there is no fog of war: a tile is
         // visible once it is explored.
-        if (!spec.getBoolean(GameOptions.FOG_OF_WAR)) {
+        if (!spec.getBoolean(GameOptions.FOG_OF_WAR_KEY)) {
             boolean[][] cST = (canSeeTiles != null) ? canSeeTiles
                 : new boolean[map.getWidth()][map.getHeight()];
             for (Tile t : getGame().getMap().getAllTiles()) {
@@ -2797,7 +2797,7 @@ public class Player extends FreeColGameObject implements Nameable {
         }
         // All missions if using enhanced missionaries.
         if (isEuropean()
-                && spec.getBoolean(GameOptions.ENHANCED_MISSIONARIES)) {
+                && spec.getBoolean(GameOptions.ENHANCED_MISSIONARIES_KEY)) {
             for (Player other : getGame().getLiveNativePlayers(this)) {
                 for (IndianSettlement is : other.getIndianSettlements()) {
                     if (!is.hasMissionary(this)) {
@@ -3399,7 +3399,8 @@ public class Player extends FreeColGameObject implements Nameable {
             // add good that could be produced by a colony on this tile
             int bestValue = 0;
             for (ProductionType productionType : t.getType()
-                     .getAvailableProductionTypes(true)) {
+                     .getAvailableProductionTypes(true, getSpecification()
+                         .getString(GameOptions.TILE_PRODUCTION))) {
                 if (productionType.getOutputs() != null) {
                     int newValue = 0;
                     for (AbstractGoods output: productionType.getOutputs()) {
@@ -3535,7 +3536,8 @@ public class Player extends FreeColGameObject implements Nameable {
         int initialFood = 0;
         final GoodsType foodType = spec.getPrimaryFoodType();
         for (ProductionType productionType : tile.getType()
-                 .getAvailableProductionTypes(true)) {
+                 .getAvailableProductionTypes(true,
+                     spec.getString(GameOptions.TILE_PRODUCTION))) {
             for (AbstractGoods output : productionType.getOutputs()) {
                 if (!output.getType().isFoodType()) continue;
                 int amount = tile.getPotentialProduction(output.getType(), null);
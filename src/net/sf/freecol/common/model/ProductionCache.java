@@ -93,7 +93,7 @@ public class ProductionCache {
     private synchronized void update() {
         if (upToDate) return; // nothing to do
         final Specification spec = colony.getSpecification();
-        final GoodsType bells = spec.getGoodsType("model.goods.bells");
+        final GoodsType bells = spec.getType(GoodsType.BELLS);
 
         productionAndConsumption.clear();
         netProduction.clear();
@@ -114,7 +114,7 @@ public class ProductionCache {
         // Add bell production to compensate for the units-that-use-no-bells
         // as this is not handled by the unit conumption.
         int unitsThatUseNoBells
-            = spec.getInteger(GameOptions.UNITS_THAT_USE_NO_BELLS);
+            = spec.getInteger(GameOptions.UNITS_THAT_USE_NO_BELLS_KEY);
         int amount = Math.min(unitsThatUseNoBells, colony.getUnitCount());
         ProductionInfo bellsInfo = new ProductionInfo();
         bellsInfo.addProduction(new AbstractGoods(bells, amount));
@@ -19,6 +19,7 @@
 
 package net.sf.freecol.common.model;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -42,6 +43,8 @@ import java.util.stream.Stream;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 
+import net.sf.freecol.common.io.BinaryXMLReader;
+import net.sf.freecol.common.io.BinaryXMLWriter;
 import net.sf.freecol.common.io.FreeColDirectories;
 import net.sf.freecol.common.io.FreeColModFile;
 import net.sf.freecol.common.io.FreeColTcFile;
@@ -82,6 +85,10 @@ public final class Specification {
     /** The default role. */
     public static final String DEFAULT_ROLE_ID = "model.role.default";
 
+    /** The key for the default role. */
+    private static final TypeKey<Role> DEFAULT_ROLE_KEY
+        = new TypeKey<>(DEFAULT_ROLE_ID, Role.class);
+
     /** How many game ages. */
     public static final int NUMBER_OF_AGES = 3;
 
@@ -252,6 +259,18 @@ public final class Specification {
 
     private boolean initialized = false;
 
+    /**
+     * Are the types of this specification shared with other
+     * specifications?  If so they must not be changed.
+     */
+    private boolean shared = false;
+
+    /**
+     * The objects resolved for <code>SpecificationKey</code>s, by key
+     * ordinal.  Replaced when the types or options change.
+     */
+    private volatile Object[] resolvedKeys = new Object[0];
+
     /** The specification identifier. */
     private String id;
 
@@ -390,8 +409,9 @@ public final class Specification {
      * @param difficulty An optional difficulty level <code>OptionGroup</code>.
      */
     public void prepare(Advantages advantages, OptionGroup difficulty) {
-        applyFixes();
+        if (!shared) applyFixes(); // Already applied to the shared types
         if (advantages == Advantages.NONE) {
+            checkNotShared("clear national advantages");
             clearEuropeanNationalAdvantages();
         }
         if (difficulty != null) {
@@ -407,6 +427,7 @@ public final class Specification {
      * @return True if any mod was loaded.
      */
     public boolean loadMods(List<FreeColModFile> mods) {
+        checkNotShared("load mods");
         initialized = false;
         boolean loadedMod = false;
         for (FreeColModFile mod : mods) {
@@ -521,7 +542,79 @@ public final class Specification {
      */
     public void clean(String why) {
         logger.finest("Cleaning up specification following " + why + ".");
+        invalidateKeys();
+        if (!shared) cleanTypes(); // Shared types are already clean
+
+        // Initialize UI containers.
+        for (AbstractOption option : allOptions.values()) {
+            option.generateChoices();
+        }
+
+        // Initialize the Turn class using GameOptions and messages.
+        Turn.initialize(getInteger(GameOptions.STARTING_YEAR),
+                        getInteger(GameOptions.SEASON_YEAR),
+                        getInteger(GameOptions.SEASONS));
+        {
+            Option agesOption = getOption(GameOptions.AGES);
+            boolean badAges = !(agesOption instanceof TextOption);
+            String agesValue = (badAges) ? ""
+                : ((TextOption)agesOption).getValue();
+            String a[] = agesValue.split(",");
+            badAges |= a.length != NUMBER_OF_AGES-1;
+            if (!badAges) {
+                try {
+                    ages[0] = 1;
+                    ages[1] = Turn.yearToTurn(Integer.parseInt(a[0]));
+                    ages[2] = Turn.yearToTurn(Integer.parseInt(a[1]));
+                    if (ages[1] < 1 || ages[2] < 1) {
+                        badAges = true;
+                    } else if (ages[1] > ages[2]) {
+                        int tmp = ages[1];
+                        ages[1] = ages[2];
+                        ages[2] = tmp;
+                    }
+                } catch (NumberFormatException nfe) {
+                    badAges = true;
+                }
+            }
+            if (badAges) {
+                logger.warning("Bad ages: " + agesValue);
+                ages[0] = 1;   // First turn
+                ages[1] = Turn.yearToTurn(1600);
+                ages[2] = Turn.yearToTurn(1700);
+            }
+        }
 
+        logger.info("Specification clean following " + why + " complete"
+            + ", starting year=" + Turn.getStartingYear()
+            + ", season year=" + Turn.getSeasonYear()
+            + ", ages=[" + ages[0] + "," + ages[1] + "," + ages[2] + "]"
+            + ", seasons=" + Turn.getSeasonNumber()
+            + ", " + allTypes.size() + " FreeColGameObjectTypes"
+            + ", " + allAbilities.size() + " Abilities"
+            + ", " + buildingTypeList.size() + " BuildingTypes"
+            + ", " + disasters.size() + " Disasters"
+            + ", " + europeanNationTypes.size() + " EuropeanNationTypes"
+            + ", " + events.size() + " Events"
+            + ", " + foundingFathers.size() + " FoundingFathers"
+            + ", " + goodsTypeList.size() + " GoodsTypes"
+            + ", " + indianNationTypes.size() + " IndianNationTypes"
+            + ", " + allModifiers.size() + " Modifiers"
+            + ", " + nations.size() + " Nations"
+            + ", " + allOptions.size() + " Options"
+            + ", " + allOptionGroups.size() + " Option Groups"
+            + ", " + resourceTypeList.size() + " ResourceTypes"
+            + ", " + roles.size() + " Roles"
+            + ", " + tileTypeList.size() + " TileTypes"
+            + ", " + tileImprovementTypeList.size() + " TileImprovementTypes"
+            + ", " + unitTypeList.size() + " UnitTypes"
+            + " read.");
+    }
+
+    /**
+     * Rebuild the containers derived from the types.
+     */
+    private void cleanTypes() {
         Iterator<FreeColGameObjectType> typeIterator
             = allTypes.values().iterator();
         while (typeIterator.hasNext()) {
@@ -632,78 +725,6 @@ public final class Specification {
                 }
             }
         }
-
-        // Initialize UI containers.
-        for (AbstractOption option : allOptions.values()) {
-            option.generateChoices();
-        }
-
-        // Initialize the Turn class using GameOptions and messages.
-        Turn.initialize(getInteger(GameOptions.STARTING_YEAR),
-                        getInteger(GameOptions.SEASON_YEAR),
-                        getInteger(GameOptions.SEASONS));
-        {
-            Option agesOption = getOption(GameOptions.AGES);
-            boolean badAges = !(agesOption instanceof TextOption);
-            String agesValue = (badAges) ? ""
-                : ((TextOption)agesOption).getValue();
-            String a[] = agesValue.split(",");
-            badAges |= a.length != NUMBER_OF_AGES-1;
-            if (!badAges) {
-                try {
-                    ages[0] = 1;
-                    ages[1] = Turn.yearToTurn(Integer.parseInt(a[0]));
-                    ages[2] = Turn.yearToTurn(Integer.parseInt(a[1]));
-                    if (ages[1] < 1 || ages[2] < 1) {
-                        badAges = true;
-                    } else if (ages[1] > ages[2]) {
-                        int tmp = ages[1];
-                        ages[1] = ages[2];
-                        ages[2] = tmp;
-                    }
-                } catch (NumberFormatException nfe) {
-                    badAges = true;
-                }
-            }
-            if (badAges) {
-                logger.warning("Bad ages: " + agesValue);
-                ages[0] = 1;   // First turn
-                ages[1] = Turn.yearToTurn(1600);
-                ages[2] = Turn.yearToTurn(1700);
-            }
-        }
-
-        // Apply the customs on coast restriction
-        boolean customsOnCoast = getBoolean(GameOptions.CUSTOMS_ON_COAST);
-        for (Ability a : getBuildingType("model.building.customHouse")
-                 .getAbilities(Ability.COASTAL_ONLY)) {
-            a.setValue(customsOnCoast);
-        }
-
-        logger.info("Specification clean following " + why + " complete"
-            + ", starting year=" + Turn.getStartingYear()
-            + ", season year=" + Turn.getSeasonYear()
-            + ", ages=[" + ages[0] + "," + ages[1] + "," + ages[2] + "]"
-            + ", seasons=" + Turn.getSeasonNumber()
-            + ", " + allTypes.size() + " FreeColGameObjectTypes"
-            + ", " + allAbilities.size() + " Abilities"
-            + ", " + buildingTypeList.size() + " BuildingTypes"
-            + ", " + disasters.size() + " Disasters"
-            + ", " + europeanNationTypes.size() + " EuropeanNationTypes"
-            + ", " + events.size() + " Events"
-            + ", " + foundingFathers.size() + " FoundingFathers"
-            + ", " + goodsTypeList.size() + " GoodsTypes"
-            + ", " + indianNationTypes.size() + " IndianNationTypes"
-            + ", " + allModifiers.size() + " Modifiers"
-            + ", " + nations.size() + " Nations"
-            + ", " + allOptions.size() + " Options"
-            + ", " + allOptionGroups.size() + " Option Groups"
-            + ", " + resourceTypeList.size() + " ResourceTypes"
-            + ", " + roles.size() + " Roles"
-            + ", " + tileTypeList.size() + " TileTypes"
-            + ", " + tileImprovementTypeList.size() + " TileImprovementTypes"
-            + ", " + unitTypeList.size() + " UnitTypes"
-            + " read.");
     }
 
     /**
@@ -720,6 +741,160 @@ public final class Specification {
         }
     }
 
+    /**
+     * Are the types of this specification shared?
+     *
+     * @return True if the types are shared and must not be changed.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * Fail if the types of this specification are shared.
+     *
+     * @param what A description of the attempted change.
+     * @exception IllegalStateException if the types are shared.
+     */
+    private void checkNotShared(String what) {
+        if (shared) {
+            throw new IllegalStateException("Can not " + what
+                + " in shared specification: " + id);
+        }
+    }
+
+    /**
+     * Create an overlay of this specification for a single game.
+     *
+     * The overlay shares all the types, and their features, with this
+     * specification, and only has its own copies of the option
+     * groups.  So each game can have its own game, map generator and
+     * difficulty options while the bulk of the specification is held
+     * once however many games use it.  This specification is then
+     * shared, and its types can no longer be changed.
+     *
+     * @return A new overlay <code>Specification</code>.
+     * @exception IllegalStateException if this specification is not
+     *     fully loaded.
+     */
+    public synchronized Specification createOverlay() {
+        if (!initialized) {
+            throw new IllegalStateException("Specification not loaded: "
+                + id);
+        }
+        shared = true;
+        Specification overlay = new Specification();
+        overlay.shared = true;
+        overlay.id = this.id;
+        overlay.version = this.version;
+        overlay.difficultyLevel = this.difficultyLevel;
+        overlay.shareTypes(this);
+        overlay.initialized = true;
+        overlay.copyOptions(this);
+        overlay.clean("overlay of " + id);
+        return overlay;
+    }
+
+    /**
+     * Share the types of another specification.
+     *
+     * The containers are copied, the types in them are not.
+     *
+     * @param base The <code>Specification</code> to share with.
+     */
+    private void shareTypes(Specification base) {
+        buildingTypeList.addAll(base.buildingTypeList);
+        disasters.addAll(base.disasters);
+        equipmentTypes.addAll(base.equipmentTypes);
+        europeanNationTypes.addAll(base.europeanNationTypes);
+        events.addAll(base.events);
+        foundingFathers.addAll(base.foundingFathers);
+        goodsTypeList.addAll(base.goodsTypeList);
+        indianNationTypes.addAll(base.indianNationTypes);
+        nations.addAll(base.nations);
+        resourceTypeList.addAll(base.resourceTypeList);
+        roles.addAll(base.roles);
+        tileTypeList.addAll(base.tileTypeList);
+        tileImprovementTypeList.addAll(base.tileImprovementTypeList);
+        unitTypeList.addAll(base.unitTypeList);
+        allModifiers.putAll(base.allModifiers);
+        specialModifiers.addAll(base.specialModifiers);
+
+        storableGoodsTypeList.addAll(base.storableGoodsTypeList);
+        farmedGoodsTypeList.addAll(base.farmedGoodsTypeList);
+        foodGoodsTypeList.addAll(base.foodGoodsTypeList);
+        newWorldGoodsTypeList.addAll(base.newWorldGoodsTypeList);
+        newWorldLuxuryGoodsTypeList.addAll(base.newWorldLuxuryGoodsTypeList);
+        libertyGoodsTypeList.addAll(base.libertyGoodsTypeList);
+        immigrationGoodsTypeList.addAll(base.immigrationGoodsTypeList);
+        rawBuildingGoodsTypeList.addAll(base.rawBuildingGoodsTypeList);
+        europeanNations.addAll(base.europeanNations);
+        REFNations.addAll(base.REFNations);
+        indianNations.addAll(base.indianNations);
+        nationTypes.addAll(base.nationTypes);
+        REFNationTypes.addAll(base.REFNationTypes);
+        buildableUnitTypes.addAll(base.buildableUnitTypes);
+        experts.putAll(base.experts);
+        unitTypesTrainedInEurope.addAll(base.unitTypesTrainedInEurope);
+        unitTypesPurchasedInEurope.addAll(base.unitTypesPurchasedInEurope);
+        fastestLandUnitType = base.fastestLandUnitType;
+        fastestNavalUnitType = base.fastestNavalUnitType;
+        defaultUnitTypes.addAll(base.defaultUnitTypes);
+
+        fatherGoodsFixMap.putAll(base.fatherGoodsFixMap);
+        allTypes.putAll(base.allTypes);
+        allAbilities.putAll(base.allAbilities);
+        invalidateKeys();
+    }
+
+    /**
+     * Copy the option groups of another specification, by writing
+     * them out and reading them back in to this one.
+     *
+     * @param base The <code>Specification</code> to copy from.
+     * @exception RuntimeException if the options can not be copied.
+     */
+    private void copyOptions(Specification base) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(1 << 14);
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(
+                new BinaryXMLWriter(out), FreeColXMLWriter.WriteScope.toSave());
+        ) {
+            xw.writeStartElement(OPTIONS_TAG);
+            for (OptionGroup item : base.allOptionGroups.values()) {
+                if (item.getGroup().isEmpty()) item.toXML(xw);
+            }
+            xw.writeEndElement();
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException("Failed to write options of " + id, e);
+        }
+        try (
+            FreeColXMLReader xr = new FreeColXMLReader(
+                new BinaryXMLReader(out.toByteArray()));
+        ) {
+            xr.nextTag();
+            readerMap.get(OPTIONS_TAG).readChildren(xr);
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException("Failed to read options of " + id, e);
+        }
+    }
+
+    /**
+     * Is a buildable type restricted to coastal colonies?
+     *
+     * The customs house restriction depends on a game option, so it
+     * is checked here rather than by changing the building type, which
+     * may be shared with other games.
+     *
+     * @param type The <code>BuildableType</code> to check.
+     * @return True if the type can only be built in a coastal colony.
+     */
+    public boolean isCoastalOnly(BuildableType type) {
+        return ("model.building.customHouse".equals(type.getId()))
+            ? getBoolean(GameOptions.CUSTOMS_ON_COAST)
+            : type.hasAbility(Ability.COASTAL_ONLY);
+    }
+
     /**
      * Generate the dynamic options.
      *
@@ -810,6 +985,7 @@ public final class Specification {
                 } else if (FreeColGameObjectType.DELETE_TAG.equals(tag)) {
                     FreeColGameObjectType object = allTypes.remove(id);
                     if (object != null) result.remove(object);
+                    invalidateKeys();
 
                 } else {
                     T object = getType(id, type);
@@ -1038,6 +1214,7 @@ public final class Specification {
     private void addAbstractOption(AbstractOption abstractOption) {
         // Add the option
         allOptions.put(abstractOption.getId(), abstractOption);
+        invalidateKeys();
     }
 
     /**
@@ -1098,6 +1275,18 @@ public final class Specification {
         }
     }
 
+    /**
+     * Gets the boolean value of an option.
+     *
+     * @param key The <code>BooleanOptionKey</code> for the option.
+     * @return The value.
+     * @exception IllegalArgumentException if the option is missing
+     *     or not a boolean option.
+     */
+    public boolean getBoolean(BooleanOptionKey key) {
+        return key.getValue(this);
+    }
+
     /**
      * Gets the integer value of an option.
      *
@@ -1116,6 +1305,18 @@ public final class Specification {
         }
     }
 
+    /**
+     * Gets the integer value of an option.
+     *
+     * @param key The <code>IntegerOptionKey</code> for the option.
+     * @return The value.
+     * @exception IllegalArgumentException if the option is missing
+     *     or not an integer option.
+     */
+    public int getInteger(IntegerOptionKey key) {
+        return key.getValue(this);
+    }
+
     /**
      * Gets the string value of an option.
      *
@@ -1197,7 +1398,7 @@ public final class Specification {
      * @return The main food type ("model.goods.food").
      */
     public GoodsType getPrimaryFoodType() {
-        return getGoodsType("model.goods.food");
+        return getType(GoodsType.FOOD);
     }
 
     /**
@@ -1532,7 +1733,7 @@ public final class Specification {
      * @return The default <code>Role</code>.
      */
     public Role getDefaultRole() {
-        return getRole(DEFAULT_ROLE_ID);
+        return getType(DEFAULT_ROLE_KEY);
     }
 
     /**
@@ -1774,7 +1975,7 @@ public final class Specification {
     public <T extends FreeColGameObjectType> T getType(String id, Class<T> type) {
         FreeColGameObjectType o = findType(id);
         if (o != null) {
-            return type.cast(allTypes.get(id));
+            return type.cast(o);
 
         } else if (initialized) {
             throw new IllegalArgumentException("Undefined FCGOT: " + id);
@@ -1785,6 +1986,7 @@ public final class Specification {
                                                        Specification.class);
                 T result = c.newInstance(id, this);
                 allTypes.put(id, result);
+                invalidateKeys();
                 return result;
             } catch (Exception e) {
                 logger.log(Level.WARNING, "Could not construct: " + id, e);
@@ -1800,15 +2002,49 @@ public final class Specification {
      * @return The <code>FreeColGameObjectType</code> found if any.
      */
     public FreeColGameObjectType findType(String id) throws IllegalArgumentException {
-        if (id == null) {
-            throw new IllegalArgumentException("Null id");
+        if (id == null) throw new IllegalArgumentException("Null id");
+        return allTypes.get(id);
+    }
 
-        } else if (allTypes.containsKey(id)) {
-            return allTypes.get(id);
+    /**
+     * Get the <code>FreeColGameObjectType</code> for a key.
+     *
+     * @param key The <code>TypeKey</code> to look up.
+     * @return The <code>FreeColGameObjectType</code> found.
+     */
+    public <T extends FreeColGameObjectType> T getType(TypeKey<T> key) {
+        return resolve(key);
+    }
 
-        } else {
-            return null;
+    /**
+     * Get the object for a key, looking it up by identifier only the
+     * first time it is asked for.
+     *
+     * @param key The <code>SpecificationKey</code> to resolve.
+     * @return The object found.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T resolve(SpecificationKey<T> key) {
+        final int ordinal = key.getOrdinal();
+        Object[] resolved = resolvedKeys;
+        if (ordinal >= resolved.length) {
+            resolved = Arrays.copyOf(resolved, SpecificationKey.getCount());
+            resolvedKeys = resolved;
+        }
+        Object result = resolved[ordinal];
+        if (result == null) {
+            result = key.lookup(this);
+            resolved[ordinal] = result;
         }
+        return (T)result;
+    }
+
+    /**
+     * Forget the objects resolved for keys, as the types or options
+     * they refer to may have changed.
+     */
+    private void invalidateKeys() {
+        resolvedKeys = new Object[SpecificationKey.getCount()];
     }
 
     /**
@@ -2765,7 +3001,7 @@ public final class Specification {
      * @exception XMLStreamException if there are any problems writing
      *      to the stream.
      */
-    protected void toXML(FreeColXMLWriter xw) throws XMLStreamException {
+    public void toXML(FreeColXMLWriter xw) throws XMLStreamException {
         // Start element
         xw.writeStartElement(getXMLElementTagName());
 
@@ -2824,6 +3060,7 @@ public final class Specification {
      *     the stream.
      */
     public void readFromXML(FreeColXMLReader xr) throws XMLStreamException {
+        checkNotShared("read types");
         String newId = xr.readId();
         if (id == null) id = newId; // don't overwrite id with parent id!
 
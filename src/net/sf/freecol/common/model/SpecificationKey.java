@@ -0,0 +1,118 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * A handle for an object in a specification, such as a type or an
+ * option, that saves looking the object up by identifier each time
+ * it is needed.
+ *
+ * Each key has a dense ordinal, which a specification uses as an
+ * index into the objects it has already resolved, so once resolved a
+ * lookup is an array access.  Keys are meant to be constants, as
+ * ordinals are never reused.
+ */
+public abstract class SpecificationKey<T> {
+
+    /** The number of keys created so far. */
+    private static final AtomicInteger count = new AtomicInteger(0);
+
+    /** The identifier of the object to look up. */
+    private final String id;
+
+    /** The ordinal of this key. */
+    private final int ordinal;
+
+
+    /**
+     * Create a new key.
+     *
+     * @param id The identifier of the object to look up.
+     */
+    protected SpecificationKey(String id) {
+        if (id == null) throw new IllegalArgumentException("Null id");
+        this.id = id;
+        this.ordinal = count.getAndIncrement();
+    }
+
+
+    /**
+     * Gets the number of keys created so far, which is one more than
+     * the largest ordinal.
+     *
+     * @return The number of keys.
+     */
+    static int getCount() {
+        return count.get();
+    }
+
+    /**
+     * Gets the identifier of the object to look up.
+     *
+     * @return The object identifier.
+     */
+    public final String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the ordinal of this key.
+     *
+     * @return The key ordinal.
+     */
+    public final int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Gets the object for this key in a specification.
+     *
+     * @param spec The <code>Specification</code> to look in.
+     * @return The object found.
+     */
+    public final T get(Specification spec) {
+        return spec.resolve(this);
+    }
+
+    /**
+     * Look up the object for this key by identifier.  Only called
+     * when the specification has not already resolved the key.
+     *
+     * @param spec The <code>Specification</code> to look in.
+     * @return The object found, which must not be null.
+     * @exception IllegalArgumentException if the object is missing.
+     */
+    protected abstract T lookup(Specification spec);
+
+
+    // Override Object
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + id + ")";
+    }
+}
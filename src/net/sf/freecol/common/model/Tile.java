@@ -1538,7 +1538,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
                 continue;
             }
             for (ProductionType productionType : getType()
-                     .getAvailableProductionTypes(false)) {
+                     .getAvailableProductionTypes(false, spec
+                         .getString(GameOptions.TILE_PRODUCTION))) {
                 int potential = (productionType.getOutput(goodsType) == null)
                     ? 0 : getPotentialProduction(goodsType, null);
                 Integer oldPotential = goodsMap.get(goodsType);
@@ -1623,7 +1624,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @return True if the tile can produce the goods.
      */
     public boolean canProduce(GoodsType goodsType, UnitType unitType) {
-        return (type != null && type.canProduce(goodsType, unitType))
+        return (type != null && type.canProduce(goodsType, unitType,
+                getSpecification().getString(GameOptions.TILE_PRODUCTION)))
             || (tileItemContainer != null
                 && tileItemContainer.canProduce(goodsType, unitType));
     }
@@ -1642,7 +1644,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         if (type == null || goodsType == null
             || !goodsType.isFarmed()) return 0;
         int amount = type.getBaseProduction(productionType, goodsType,
-                                            unitType);
+            unitType, getSpecification().getString(GameOptions.TILE_PRODUCTION));
         return (amount < 0) ? 0 : amount;
     }
 
@@ -1716,7 +1718,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
 
         int maxProduction = 0;
         for (TileType tileType : tileTypes) {
-            float potential = tileType.getPotentialProduction(goodsType, unitType);
+            float potential = tileType.getPotentialProduction(goodsType,
+                unitType, spec.getString(GameOptions.TILE_PRODUCTION));
             if (tileType == type && hasResource()) {
                 for (TileItem item : tileItemContainer.getTileItems()) {
                     if (item instanceof Resource) {
@@ -395,10 +395,12 @@ public final class TileImprovementType extends FreeColGameObjectType {
     public int getImprovementValue(Tile tile, GoodsType goodsType) {
         final UnitType colonistType
             = getSpecification().getDefaultUnitType();
+        final String level = tile.getSpecification()
+            .getString(GameOptions.TILE_PRODUCTION);
         int value = 0;
         if (goodsType.isFarmed()) {
             final int oldProduction = tile.getType()
-                .getPotentialProduction(goodsType, colonistType);
+                .getPotentialProduction(goodsType, colonistType, level);
             TileType tt = getChange(tile.getType());
             if (tt == null) { // simple bonus
                 int production = tile.getPotentialProduction(goodsType, colonistType);
@@ -408,8 +410,8 @@ public final class TileImprovementType extends FreeColGameObjectType {
                     value = (int)(chg - production);
                 }
             } else { // tile type change
-                int chg = tt.getPotentialProduction(goodsType, colonistType)
-                    - oldProduction;
+                int chg = tt.getPotentialProduction(goodsType, colonistType,
+                                                    level) - oldProduction;
                 value = chg;
             }
         }
@@ -279,15 +279,17 @@ public final class TileType extends FreeColGameObjectType {
     }
 
     /**
-     * Gets the production types available at the current difficulty
-     * level.
+     * Gets the production types available at the production level of
+     * the specification this type was loaded into.
+     *
+     * Types shared between games belong to the base specification, so
+     * game code should pass the level of its own game instead.
      *
      * @param unattended Whether the production is unattended.
      * @return A list of <code>ProductionType</code>s.
      */
     public List<ProductionType> getAvailableProductionTypes(boolean unattended) {
-        return getAvailableProductionTypes(unattended,
-            getSpecification().getString(GameOptions.TILE_PRODUCTION));
+        return getAvailableProductionTypes(unattended, getLevel());
     }
 
     /**
@@ -318,7 +320,18 @@ public final class TileType extends FreeColGameObjectType {
     // Utilities
 
     /**
-     * Can a tile of this type produce a given goods type?
+     * Gets the production level of the specification this type was
+     * loaded into.
+     *
+     * @return The <code>GameOptions.TILE_PRODUCTION</code> option value.
+     */
+    private String getLevel() {
+        return getSpecification().getString(GameOptions.TILE_PRODUCTION);
+    }
+
+    /**
+     * Can a tile of this type produce a given goods type, at the
+     * production level of the specification this type was loaded into?
      *
      * @param goodsType The <code>GoodsType</code> to produce.
      * @param unitType An optional <code>UnitType</code> that is to do
@@ -326,14 +339,30 @@ public final class TileType extends FreeColGameObjectType {
      * @return True if this tile type produces the goods.
      */
     public boolean canProduce(GoodsType goodsType, UnitType unitType) {
+        return canProduce(goodsType, unitType, getLevel());
+    }
+
+    /**
+     * Can a tile of this type produce a given goods type?
+     *
+     * @param goodsType The <code>GoodsType</code> to produce.
+     * @param unitType An optional <code>UnitType</code> that is to do
+     *     the work, if null the unattended production is considered.
+     * @param level The production level of the game, from the
+     *     <code>GameOptions.TILE_PRODUCTION</code> option.
+     * @return True if this tile type produces the goods.
+     */
+    public boolean canProduce(GoodsType goodsType, UnitType unitType,
+                              String level) {
         return goodsType != null
             && ProductionType.canProduce(goodsType,
-                getAvailableProductionTypes(unitType == null));
+                getAvailableProductionTypes(unitType == null, level));
     }
 
     /**
      * Get the base production of a given goods type for an optional
-     * unit type.
+     * unit type, at the production level of the specification this
+     * type was loaded into.
      * 
      * @param productionType An optional <code>ProductionType</code> to use,
      *     if null the best available one is used.
@@ -344,10 +373,30 @@ public final class TileType extends FreeColGameObjectType {
      */
     public int getBaseProduction(ProductionType productionType,
                                  GoodsType goodsType, UnitType unitType) {
+        return getBaseProduction(productionType, goodsType, unitType,
+                                 getLevel());
+    }
+
+    /**
+     * Get the base production of a given goods type for an optional
+     * unit type.
+     * 
+     * @param productionType An optional <code>ProductionType</code> to use,
+     *     if null the best available one is used.
+     * @param goodsType The <code>GoodsType</code> to produce.
+     * @param unitType An optional <code>UnitType</code> that is to do
+     *     the work, if null the unattended production is considered.
+     * @param level The production level of the game, from the
+     *     <code>GameOptions.TILE_PRODUCTION</code> option.
+     * @return The amount of goods produced.
+     */
+    public int getBaseProduction(ProductionType productionType,
+                                 GoodsType goodsType, UnitType unitType,
+                                 String level) {
         if (goodsType == null) return 0;
         if (productionType == null) {
             productionType = ProductionType.getBestProductionType(goodsType,
-                getAvailableProductionTypes(unitType == null));
+                getAvailableProductionTypes(unitType == null, level));
         }
         if (productionType == null) return 0;
         AbstractGoods best = productionType.getOutput(goodsType);
@@ -356,7 +405,8 @@ public final class TileType extends FreeColGameObjectType {
 
     /**
      * Get the amount of goods of given goods type the given unit type
-     * could produce on a tile of this tile type.
+     * could produce on a tile of this tile type, at the production
+     * level of the specification this type was loaded into.
      *
      * @param goodsType The <code>GoodsType</code> to produce.
      * @param unitType An optional <code>UnitType</code> that is to do
@@ -365,26 +415,57 @@ public final class TileType extends FreeColGameObjectType {
      */
     public int getPotentialProduction(GoodsType goodsType,
                                       UnitType unitType) {
+        return getPotentialProduction(goodsType, unitType, getLevel());
+    }
+
+    /**
+     * Get the amount of goods of given goods type the given unit type
+     * could produce on a tile of this tile type.
+     *
+     * @param goodsType The <code>GoodsType</code> to produce.
+     * @param unitType An optional <code>UnitType</code> that is to do
+     *     the work, if null the unattended production is considered.
+     * @param level The production level of the game, from the
+     *     <code>GameOptions.TILE_PRODUCTION</code> option.
+     * @return The amount of goods produced.
+     */
+    public int getPotentialProduction(GoodsType goodsType,
+                                      UnitType unitType, String level) {
         if (goodsType == null) return 0;
-        int amount = getBaseProduction(null, goodsType, unitType);
+        int amount = getBaseProduction(null, goodsType, unitType, level);
         amount = (int)applyModifiers(amount, null, goodsType.getId(),
                                      unitType);
         return (amount < 0) ? 0 : amount;
     }
 
+    /**
+     * Get all possible goods produced at a tile of this type, at the
+     * production level of the specification this type was loaded into.
+     *
+     * @param unattended Select unattended production.
+     * @return A list of produced <code>AbstractGoods</code>.
+     */
+    public List<AbstractGoods> getPossibleProduction(boolean unattended) {
+        return getPossibleProduction(unattended, getLevel());
+    }
+
     /**
      * Get all possible goods produced at a tile of this type.
      *
      * Used by static tile type displays that just list unattended
      * production values.  Planning and production routines should use
-     * {@link #getPotentialProduction(GoodsType, UnitType)}
+     * {@link #getPotentialProduction(GoodsType, UnitType, String)}
      *
      * @param unattended Select unattended production.
+     * @param level The production level of the game, from the
+     *     <code>GameOptions.TILE_PRODUCTION</code> option.
      * @return A list of produced <code>AbstractGoods</code>.
      */
-    public List<AbstractGoods> getPossibleProduction(boolean unattended) {
+    public List<AbstractGoods> getPossibleProduction(boolean unattended,
+                                                     String level) {
         List<AbstractGoods> production = new ArrayList<>();
-        for (ProductionType pt : getAvailableProductionTypes(unattended)) {
+        for (ProductionType pt : getAvailableProductionTypes(unattended,
+                                                             level)) {
             List<AbstractGoods> outputs = pt.getOutputs();
             if (!outputs.isEmpty()) production.addAll(outputs);
         }
@@ -0,0 +1,57 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.common.model;
+
+
+/**
+ * A key for a <code>FreeColGameObjectType</code> in a specification.
+ */
+public final class TypeKey<T extends FreeColGameObjectType>
+    extends SpecificationKey<T> {
+
+    /** The expected class of the type. */
+    private final Class<T> type;
+
+
+    /**
+     * Create a new type key.
+     *
+     * @param id The type identifier.
+     * @param type The expected <code>Class</code> of the type.
+     */
+    public TypeKey(String id, Class<T> type) {
+        super(id);
+        this.type = type;
+    }
+
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected T lookup(Specification spec) {
+        T result = spec.getType(getId(), type);
+        if (result == null) {
+            throw new IllegalArgumentException("Undefined FCGOT: " + getId());
+        }
+        return result;
+    }
+}
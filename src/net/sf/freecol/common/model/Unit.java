@@ -2246,7 +2246,7 @@ public class Unit extends GoodsLocation
             return (!allowContact(settlement))
                 ? MoveType.MOVE_NO_ACCESS_CONTACT
                 : (hasGoodsCargo() || getSpecification()
-                    .getBoolean(GameOptions.EMPTY_TRADERS))
+                    .getBoolean(GameOptions.EMPTY_TRADERS_KEY))
                 ? MoveType.ENTER_SETTLEMENT_WITH_CARRIER_AND_GOODS
                 : MoveType.MOVE_NO_ACCESS_GOODS;
         } else {
@@ -2310,7 +2310,7 @@ public class Unit extends GoodsLocation
     private boolean allowMoveFrom(Tile from) {
         return from.isLand()
             || (!getOwner().isREF()
-                && getSpecification().getBoolean(GameOptions.AMPHIBIOUS_MOVES));
+                && getSpecification().getBoolean(GameOptions.AMPHIBIOUS_MOVES_KEY));
     }
 
     /**
@@ -2375,7 +2375,7 @@ public class Unit extends GoodsLocation
      * @return The number of turns to sail to/from Europe.
      */
     public int getSailTurns() {
-        float base = getSpecification().getInteger(GameOptions.TURNS_TO_SAIL);
+        float base = getSpecification().getInteger(GameOptions.TURNS_TO_SAIL_KEY);
         return (int)getOwner().applyModifiers(base, getGame().getTurn(),
                                               Modifier.SAIL_HIGH_SEAS,
                                               unitType);
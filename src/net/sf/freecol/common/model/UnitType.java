@@ -940,17 +940,20 @@ public final class UnitType extends BuildableType implements Consumer {
             if (!containsModifierKey(Modifier.CONVERSION_SKILL)) {
                 m = new Modifier(Modifier.CONVERSION_SKILL, 8.0f, 
                                  Modifier.ModifierType.ADDITIVE);
+                m.setSource(this);
                 addModifier(m);
 
                 if (hasAbility(Ability.EXPERT_MISSIONARY)) {
                     m = new Modifier(Modifier.CONVERSION_SKILL, 5.0f,
                                      Modifier.ModifierType.ADDITIVE);
+                    m.setSource(this);
                     addModifier(m);
                 }
             }
             if (!containsModifierKey(Modifier.CONVERSION_ALARM_RATE)) {
                 m = new Modifier(Modifier.CONVERSION_ALARM_RATE, 2.0f,
                                  Modifier.ModifierType.PERCENTAGE);
+                m.setSource(this);
                 addModifier(m);
             }
         }
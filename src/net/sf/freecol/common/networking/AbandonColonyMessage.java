@@ -31,7 +31,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when the client requests abandoning of a colony.
  */
-public class AbandonColonyMessage extends DOMMessage {
+public class AbandonColonyMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the colony to abandon. */
     private final String colonyId;
@@ -72,6 +72,7 @@ public class AbandonColonyMessage extends DOMMessage {
      *     and updating its surrounding tiles, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
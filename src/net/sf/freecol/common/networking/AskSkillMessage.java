@@ -35,7 +35,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when asking for the skill taught at a settlement.
  */
-public class AskSkillMessage extends DOMMessage {
+public class AskSkillMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit that is asking. */
     private final String unitId;
@@ -83,6 +83,7 @@ public class AskSkillMessage extends DOMMessage {
      * @return An <code>Element</code> to update the originating player
      *         with the result of the query.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -31,7 +31,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when assigning a teacher.
  */
-public class AssignTeacherMessage extends DOMMessage {
+public class AssignTeacherMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the student. */
     private final String studentId;
@@ -78,6 +78,7 @@ public class AssignTeacherMessage extends DOMMessage {
      * @return An update containing the student-teacher assignment or
      *     an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
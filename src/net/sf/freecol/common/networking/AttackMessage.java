@@ -34,7 +34,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when attacking.
  */
-public class AttackMessage extends DOMMessage {
+public class AttackMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the attacker. */
     private final String unitId;
@@ -81,6 +81,7 @@ public class AttackMessage extends DOMMessage {
      * @return An update encapsulating the attack or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -0,0 +1,667 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+
+/**
+ * A compact binary encoding of message elements.
+ *
+ * Tag and attribute names, and short attribute values, are interned
+ * in a dictionary that is built up as messages are encoded, so each
+ * is only sent in full once per connection.  Integer values and
+ * object identifiers (a prefix followed by a number, such as
+ * "unit:123") are sent as variable length integers.
+ *
+ * Messages can be encoded from an element, or written directly with
+ * a {@link #newWriter} without building a document first.
+ *
+ * The dictionary is stateful, so a codec must be used for only one
+ * direction of one connection, and messages must be decoded in the
+ * order they were encoded.
+ */
+public class BinaryCodec {
+
+    /** The byte that starts a binary frame, which can not start XML. */
+    public static final int FRAME_MARKER = 0;
+
+    /** The size of a binary frame header, marker and length. */
+    public static final int FRAME_HEADER = 5;
+
+    /** The maximum number of dictionary entries. */
+    private static final int MAXIMUM_DICTIONARY = 8192;
+
+    /** The longest attribute value to intern. */
+    private static final int MAXIMUM_INTERNED = 64;
+
+    /** Node kinds.  The children of an element end with an END_NODE. */
+    private static final int ELEMENT_NODE = 0, TEXT_NODE = 1, END_NODE = 2;
+
+    /** Value kinds. */
+    private static final int STRING_VALUE = 0, INTEGER_VALUE = 1,
+        ID_VALUE = 2;
+
+    /** String references below this are literals, otherwise an index. */
+    private static final int LITERAL = 0, INTERNED_LITERAL = 1,
+        FIRST_INDEX = 2;
+
+    /** Names common enough to be worth having in the dictionary at start. */
+    private static final String[] INITIAL_DICTIONARY = {
+        Connection.QUESTION_TAG, Connection.REPLY_TAG,
+        Connection.NETWORK_REPLY_ID_TAG, "multiple", "update", "remove",
+        "addObject", "animateMove", "animateAttack", "error",
+        "id", "owner", "tile", "unit", "colony", "goods", "goodsContainer",
+        "type", "unitType", "location", "amount", "movesLeft", "state",
+        "role", "roleCount", "player", "x", "y", "true", "false",
+        "model.goods.food", "model.unit.freeColonist"
+    };
+
+    /** The interned strings, by index. */
+    private final List<String> strings = new ArrayList<>();
+
+    /** The indexes of interned strings. */
+    private final Map<String, Integer> indexes = new HashMap<>();
+
+
+    /**
+     * Create a new <code>BinaryCodec</code>.
+     */
+    public BinaryCodec() {
+        for (String s : INITIAL_DICTIONARY) intern(s);
+    }
+
+
+    /**
+     * Add a string to the dictionary if there is room.
+     *
+     * @param s The string to add.
+     */
+    private void intern(String s) {
+        if (strings.size() < MAXIMUM_DICTIONARY) {
+            indexes.put(s, strings.size());
+            strings.add(s);
+        }
+    }
+
+    /**
+     * Encode a message.
+     *
+     * @param element The message <code>Element</code> to encode.
+     * @return The encoded bytes.
+     */
+    public synchronized byte[] encode(Element element) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        writeElement(out, element);
+        return out.toByteArray();
+    }
+
+    /**
+     * Create a writer that encodes a message as it is written.
+     *
+     * The writer uses the dictionary of this codec, so no other
+     * message may be encoded until the writer has been closed.
+     *
+     * @param out The <code>ByteArrayOutputStream</code> to write to.
+     * @return A new <code>XMLStreamWriter</code>.
+     */
+    public XMLStreamWriter newWriter(ByteArrayOutputStream out) {
+        return new StreamWriter(out);
+    }
+
+    /**
+     * Decode a message.
+     *
+     * @param data The encoded bytes.
+     * @return The message <code>Element</code>, which is the document
+     *     element of a new document.
+     * @exception IOException if the data is malformed.
+     */
+    public synchronized Element decode(byte[] data) throws IOException {
+        Document doc = DOMMessage.createNewDocument();
+        int[] pos = { 0 };
+        try {
+            Element element = readElement(doc, data, pos);
+            doc.appendChild(element);
+            return element;
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Truncated binary message at " + pos[0]);
+        }
+    }
+
+
+    // Encoding
+
+    /**
+     * Write an element, its attributes and its children.
+     *
+     * @param out The stream to write to.
+     * @param element The <code>Element</code> to write.
+     */
+    private void writeElement(ByteArrayOutputStream out, Element element) {
+        writeString(out, element.getTagName(), true);
+        NamedNodeMap attrs = element.getAttributes();
+        writeVarint(out, attrs.getLength());
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr a = (Attr)attrs.item(i);
+            writeString(out, a.getName(), true);
+            writeValue(out, a.getValue());
+        }
+        NodeList nl = element.getChildNodes();
+        for (int i = 0; i < nl.getLength(); i++) {
+            Node node = nl.item(i);
+            if (node instanceof Element) {
+                out.write(ELEMENT_NODE);
+                writeElement(out, (Element)node);
+            } else if (isWritten(node)) {
+                out.write(TEXT_NODE);
+                writeString(out, node.getNodeValue(), false);
+            }
+        }
+        out.write(END_NODE);
+    }
+
+    /**
+     * Is a node one that is encoded?  Comments and the like are dropped.
+     *
+     * @param node The <code>Node</code> to check.
+     * @return True if the node is an element or text.
+     */
+    private static boolean isWritten(Node node) {
+        short type = node.getNodeType();
+        return type == Node.ELEMENT_NODE || type == Node.TEXT_NODE
+            || type == Node.CDATA_SECTION_NODE;
+    }
+
+    /**
+     * Write an attribute value, using the most compact form that fits.
+     *
+     * @param out The stream to write to.
+     * @param value The value to write.
+     */
+    private void writeValue(ByteArrayOutputStream out, String value) {
+        int colon = value.lastIndexOf(':');
+        if (isNumber(value, 0)) {
+            out.write(INTEGER_VALUE);
+            writeVarint(out, zigzag(Long.parseLong(value)));
+        } else if (colon > 0 && isNumber(value, colon + 1)
+            && value.charAt(colon + 1) != '-') {
+            out.write(ID_VALUE);
+            writeString(out, value.substring(0, colon + 1), true);
+            writeVarint(out, Long.parseLong(value.substring(colon + 1)));
+        } else {
+            out.write(STRING_VALUE);
+            writeString(out, value, value.length() <= MAXIMUM_INTERNED);
+        }
+    }
+
+    /**
+     * Is the tail of a string a number that survives a round trip
+     * through a long?
+     *
+     * @param s The string to check.
+     * @param start The start of the tail.
+     * @return True if the tail is a canonical decimal number.
+     */
+    private static boolean isNumber(String s, int start) {
+        int len = s.length() - start;
+        if (len <= 0 || len > 18) return false;
+        int i = start;
+        if (s.charAt(i) == '-') {
+            if (len == 1) return false;
+            i++;
+        }
+        if (s.charAt(i) == '0' && (i != s.length() - 1 || i != start)) {
+            return false; // No leading zeros, or "-0"
+        }
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write a string, as a dictionary reference if possible.
+     *
+     * @param out The stream to write to.
+     * @param s The string to write.
+     * @param intern If true, add the string to the dictionary.
+     */
+    private void writeString(ByteArrayOutputStream out, String s,
+                             boolean intern) {
+        Integer index = indexes.get(s);
+        if (index != null) {
+            writeVarint(out, index + FIRST_INDEX);
+            return;
+        }
+        if (intern && strings.size() < MAXIMUM_DICTIONARY) {
+            writeVarint(out, INTERNED_LITERAL);
+            intern(s);
+        } else {
+            writeVarint(out, LITERAL);
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Map signed numbers to unsigned ones, keeping small ones small.
+     *
+     * @param n The number to map.
+     * @return The mapped number.
+     */
+    private static long zigzag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    /**
+     * Write an unsigned number in seven bit groups, least significant first.
+     *
+     * @param out The stream to write to.
+     * @param n The number to write.
+     */
+    private static void writeVarint(ByteArrayOutputStream out, long n) {
+        while ((n & ~0x7FL) != 0) {
+            out.write((int)((n & 0x7F) | 0x80));
+            n >>>= 7;
+        }
+        out.write((int)n);
+    }
+
+
+    // Decoding
+
+    /**
+     * Read an element, its attributes and its children.
+     *
+     * @param doc The <code>Document</code> to create the element in.
+     * @param data The encoded bytes.
+     * @param pos The current position in the data, updated.
+     * @return The <code>Element</code> read.
+     * @exception IOException if the data is malformed.
+     */
+    private Element readElement(Document doc, byte[] data, int[] pos)
+        throws IOException {
+        Element element = doc.createElement(readString(data, pos));
+        int n = (int)readVarint(data, pos);
+        for (int i = 0; i < n; i++) {
+            String name = readString(data, pos);
+            element.setAttribute(name, readValue(data, pos));
+        }
+        for (;;) {
+            switch (data[pos[0]++]) {
+            case ELEMENT_NODE:
+                element.appendChild(readElement(doc, data, pos));
+                break;
+            case TEXT_NODE:
+                element.appendChild(doc.createTextNode(readString(data, pos)));
+                break;
+            case END_NODE:
+                return element;
+            default:
+                throw new IOException("Bad node kind at " + (pos[0] - 1));
+            }
+        }
+    }
+
+    /**
+     * Read an attribute value.
+     *
+     * @param data The encoded bytes.
+     * @param pos The current position in the data, updated.
+     * @return The value read.
+     * @exception IOException if the data is malformed.
+     */
+    private String readValue(byte[] data, int[] pos) throws IOException {
+        switch (data[pos[0]++]) {
+        case STRING_VALUE:
+            return readString(data, pos);
+        case INTEGER_VALUE:
+            long z = readVarint(data, pos);
+            return Long.toString((z >>> 1) ^ -(z & 1));
+        case ID_VALUE:
+            String prefix = readString(data, pos);
+            return prefix + Long.toString(readVarint(data, pos));
+        default:
+            throw new IOException("Bad value kind at " + (pos[0] - 1));
+        }
+    }
+
+    /**
+     * Read a string or dictionary reference.
+     *
+     * @param data The encoded bytes.
+     * @param pos The current position in the data, updated.
+     * @return The string read.
+     * @exception IOException if the data is malformed.
+     */
+    private String readString(byte[] data, int[] pos) throws IOException {
+        int ref = (int)readVarint(data, pos);
+        if (ref >= FIRST_INDEX) {
+            if (ref - FIRST_INDEX >= strings.size()) {
+                throw new IOException("Bad string reference " + ref);
+            }
+            return strings.get(ref - FIRST_INDEX);
+        }
+        int len = (int)readVarint(data, pos);
+        String s = new String(data, pos[0], len, StandardCharsets.UTF_8);
+        pos[0] += len;
+        if (ref == INTERNED_LITERAL) intern(s);
+        return s;
+    }
+
+    /**
+     * Read an unsigned number written by writeVarint.
+     *
+     * @param data The encoded bytes.
+     * @param pos The current position in the data, updated.
+     * @return The number read.
+     */
+    private static long readVarint(byte[] data, int[] pos) {
+        long n = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[pos[0]++];
+            n |= (long)(b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return n;
+    }
+
+
+    /**
+     * Encodes a message as it is written, in the same form as
+     * {@link #encode} produces from the equivalent element.
+     *
+     * Comments are dropped, and namespaces, processing instructions,
+     * entity references and DTDs are not supported.
+     */
+    private class StreamWriter implements XMLStreamWriter {
+
+        /** The stream to write to. */
+        private final ByteArrayOutputStream out;
+
+        /** The number of elements started and not yet ended. */
+        private int depth = 0;
+
+        /** The element waiting for its attributes, or null if none. */
+        private String pendingName = null;
+
+        /** Is the pending element empty? */
+        private boolean pendingEmpty = false;
+
+        /** The attribute names and values of the pending element. */
+        private final List<String> pendingAttributes = new ArrayList<>();
+
+        /** Text waiting to be written, merged with any following text. */
+        private final StringBuilder pendingText = new StringBuilder();
+
+
+        /**
+         * Create a new <code>StreamWriter</code>.
+         *
+         * @param out The <code>ByteArrayOutputStream</code> to write to.
+         */
+        public StreamWriter(ByteArrayOutputStream out) {
+            this.out = out;
+        }
+
+
+        /**
+         * Write out the pending element or text, if any.
+         */
+        private void flushPending() {
+            if (pendingName != null) {
+                if (depth > 0) out.write(ELEMENT_NODE);
+                writeString(out, pendingName, true);
+                writeVarint(out, pendingAttributes.size() / 2);
+                for (int i = 0; i < pendingAttributes.size(); i += 2) {
+                    writeString(out, pendingAttributes.get(i), true);
+                    writeValue(out, pendingAttributes.get(i+1));
+                }
+                if (pendingEmpty) {
+                    out.write(END_NODE);
+                } else {
+                    depth++;
+                }
+                pendingName = null;
+                pendingAttributes.clear();
+            } else if (pendingText.length() > 0) {
+                if (depth > 0) { // Text outside the message is dropped
+                    out.write(TEXT_NODE);
+                    writeString(out, pendingText.toString(), false);
+                }
+                pendingText.setLength(0);
+            }
+        }
+
+        /**
+         * Start a new element.
+         *
+         * @param localName The element name.
+         * @param empty If true, the element has no content.
+         */
+        private void startElement(String localName, boolean empty) {
+            flushPending();
+            pendingName = localName;
+            pendingEmpty = empty;
+        }
+
+        // Implement XMLStreamWriter
+
+        @Override
+        public void writeStartElement(String localName) {
+            startElement(localName, false);
+        }
+
+        @Override
+        public void writeStartElement(String namespaceURI, String localName) {
+            startElement(localName, false);
+        }
+
+        @Override
+        public void writeStartElement(String prefix, String localName,
+                                      String namespaceURI) {
+            startElement(localName, false);
+        }
+
+        @Override
+        public void writeEmptyElement(String localName) {
+            startElement(localName, true);
+        }
+
+        @Override
+        public void writeEmptyElement(String namespaceURI, String localName) {
+            startElement(localName, true);
+        }
+
+        @Override
+        public void writeEmptyElement(String prefix, String localName,
+                                      String namespaceURI) {
+            startElement(localName, true);
+        }
+
+        @Override
+        public void writeEndElement() throws XMLStreamException {
+            flushPending();
+            if (depth == 0) throw new XMLStreamException("No open element");
+            depth--;
+            out.write(END_NODE);
+        }
+
+        @Override
+        public void writeEndDocument() throws XMLStreamException {
+            flushPending();
+            while (depth > 0) writeEndElement();
+        }
+
+        @Override
+        public void close() {
+            flushPending();
+        }
+
+        @Override
+        public void flush() {
+            flushPending();
+        }
+
+        @Override
+        public void writeAttribute(String localName, String value)
+            throws XMLStreamException {
+            if (pendingName == null) {
+                throw new XMLStreamException("Attribute outside start element: "
+                    + localName);
+            }
+            pendingAttributes.add(localName);
+            pendingAttributes.add(value);
+        }
+
+        @Override
+        public void writeAttribute(String prefix, String namespaceURI,
+                                   String localName, String value)
+            throws XMLStreamException {
+            writeAttribute(localName, value);
+        }
+
+        @Override
+        public void writeAttribute(String namespaceURI, String localName,
+                                   String value) throws XMLStreamException {
+            writeAttribute(localName, value);
+        }
+
+        @Override
+        public void writeNamespace(String prefix, String namespaceURI)
+            throws XMLStreamException {
+            throw new XMLStreamException("Namespaces not supported");
+        }
+
+        @Override
+        public void writeDefaultNamespace(String namespaceURI)
+            throws XMLStreamException {
+            throw new XMLStreamException("Namespaces not supported");
+        }
+
+        @Override
+        public void writeComment(String data) {
+            flushPending(); // Comments are not encoded
+        }
+
+        @Override
+        public void writeProcessingInstruction(String target)
+            throws XMLStreamException {
+            throw new XMLStreamException("Processing instructions not supported");
+        }
+
+        @Override
+        public void writeProcessingInstruction(String target, String data)
+            throws XMLStreamException {
+            throw new XMLStreamException("Processing instructions not supported");
+        }
+
+        @Override
+        public void writeCData(String data) {
+            writeCharacters(data);
+        }
+
+        @Override
+        public void writeDTD(String dtd) throws XMLStreamException {
+            throw new XMLStreamException("DTDs not supported");
+        }
+
+        @Override
+        public void writeEntityRef(String name) throws XMLStreamException {
+            throw new XMLStreamException("Entity references not supported");
+        }
+
+        @Override
+        public void writeStartDocument() {}
+
+        @Override
+        public void writeStartDocument(String version) {}
+
+        @Override
+        public void writeStartDocument(String encoding, String version) {}
+
+        @Override
+        public void writeCharacters(String text) {
+            if (pendingName != null) flushPending();
+            pendingText.append(text);
+        }
+
+        @Override
+        public void writeCharacters(char[] text, int start, int len) {
+            if (pendingName != null) flushPending();
+            pendingText.append(text, start, len);
+        }
+
+        @Override
+        public String getPrefix(String uri) {
+            return null;
+        }
+
+        @Override
+        public void setPrefix(String prefix, String uri)
+            throws XMLStreamException {
+            throw new XMLStreamException("Namespaces not supported");
+        }
+
+        @Override
+        public void setDefaultNamespace(String uri)
+            throws XMLStreamException {
+            throw new XMLStreamException("Namespaces not supported");
+        }
+
+        @Override
+        public void setNamespaceContext(NamespaceContext context)
+            throws XMLStreamException {
+            throw new XMLStreamException("Namespaces not supported");
+        }
+
+        @Override
+        public NamespaceContext getNamespaceContext() {
+            return null;
+        }
+
+        @Override
+        public Object getProperty(String name) {
+            throw new IllegalArgumentException("No property " + name);
+        }
+    }
+}
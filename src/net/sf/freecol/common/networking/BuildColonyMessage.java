@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when the client requests building of a colony.
  */
-public class BuildColonyMessage extends DOMMessage {
+public class BuildColonyMessage extends DOMMessage implements ServerRequest {
 
     /** The name of the new colony. */
     private final String colonyName;
@@ -64,7 +64,7 @@ public class BuildColonyMessage extends DOMMessage {
     public BuildColonyMessage(Game game, Element element) {
         super(getXMLElementTagName());
 
-        this.colonyName = element.getAttribute("name");
+        this.colonyName = getNonEmptyAttribute(element, "name");
         this.builderId = element.getAttribute("unit");
     }
 
@@ -79,6 +79,7 @@ public class BuildColonyMessage extends DOMMessage {
      *     and updating its surrounding tiles, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
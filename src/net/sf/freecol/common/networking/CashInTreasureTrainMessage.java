@@ -31,7 +31,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent when cashing in a treasure train.
  */
-public class CashInTreasureTrainMessage extends DOMMessage {
+public class CashInTreasureTrainMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The identifier of the treasure train unit. */
     private final String unitId;
@@ -72,6 +73,7 @@ public class CashInTreasureTrainMessage extends DOMMessage {
      * @return An update resulting from cashing in the treasure train,
      *     or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when changing a unit state.
  */
-public class ChangeStateMessage extends DOMMessage {
+public class ChangeStateMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit to change. */
     private final String unitId;
@@ -79,6 +79,7 @@ public class ChangeStateMessage extends DOMMessage {
      * @return An update containing the changed unit, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
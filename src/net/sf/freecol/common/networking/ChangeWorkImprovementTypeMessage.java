@@ -35,7 +35,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent when changing a work improvement type.
  */
-public class ChangeWorkImprovementTypeMessage extends DOMMessage {
+public class ChangeWorkImprovementTypeMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The identifier of the unit that is working. */
     private final String unitId;
@@ -83,6 +84,7 @@ public class ChangeWorkImprovementTypeMessage extends DOMMessage {
      * @return An update containing the changed unit, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when changing the work type of a unit.
  */
-public class ChangeWorkTypeMessage extends DOMMessage {
+public class ChangeWorkTypeMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit that is working. */
     private final String unitId;
@@ -79,6 +79,7 @@ public class ChangeWorkTypeMessage extends DOMMessage {
      * @return An update containing the changes, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -0,0 +1,363 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+
+
+/**
+ * A connection over a non-blocking channel, read and written by the
+ * threads of a {@link ChannelIOPool} rather than a receiving thread
+ * of its own.
+ *
+ * The wire format is the same as for other connections: XML messages
+ * ending in a newline, or binary or compressed frames, so either end
+ * may use either kind of connection.  Received bytes are kept until a whole message
+ * has arrived, and the buffer shrinks back once a large message has
+ * been decoded.
+ */
+public final class ChannelConnection extends Connection {
+
+    private static final Logger logger = Logger.getLogger(ChannelConnection.class.getName());
+
+    /** The size of the input buffer, which is kept small when idle. */
+    private static final int INITIAL_BUFFER = 8192;
+
+    /** The longest message accepted. */
+    private static final int MAXIMUM_MESSAGE = FrameDecoder.MAXIMUM_MESSAGE;
+
+    /** The size of a frame header, marker and length. */
+    private static final int FRAME_HEADER = FrameDecoder.FRAME_HEADER;
+
+    /** Maximum number of bad messages in a row before disconnecting. */
+    private static final int MAXIMUM_RETRIES = 5;
+
+    /** The end of an XML message. */
+    private static final byte END_OF_MESSAGE = '\n';
+
+    /**
+     * An input stream reading the contents of a byte buffer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return (buffer.hasRemaining()) ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+    }
+
+    /** The channel to the other end. */
+    private final SocketChannel channel;
+
+    /** The I/O thread serving this connection. */
+    private final ChannelIOPool.IOThread io;
+
+    /** The bytes received but not yet decoded. */
+    private ByteBuffer input = ByteBuffer.allocate(INITIAL_BUFFER);
+
+    /** How far into the current XML message the end has been sought. */
+    private int scanned = 0;
+
+    /** The number of bad messages in a row. */
+    private int failures = 0;
+
+    /** Decodes the messages received. */
+    private final FrameDecoder decoder = new FrameDecoder();
+
+
+    /**
+     * Creates a new <code>ChannelConnection</code>.
+     *
+     * @param channel The connected <code>SocketChannel</code>.
+     * @param messageHandler The <code>MessageHandler</code> to call
+     *     for each message received.
+     * @param name The name of the connection.
+     * @param pool The <code>ChannelIOPool</code> to serve the connection.
+     * @exception IOException if the channel can not be made non-blocking.
+     */
+    public ChannelConnection(SocketChannel channel,
+                             MessageHandler messageHandler, String name,
+                             ChannelIOPool pool) throws IOException {
+        this(nonBlocking(channel), pool.next(), messageHandler, name);
+    }
+
+    /**
+     * Creates a new <code>ChannelConnection</code> served by a given thread.
+     *
+     * @param channel The non-blocking <code>SocketChannel</code>.
+     * @param io The <code>IOThread</code> to serve the connection.
+     * @param messageHandler The <code>MessageHandler</code> to call
+     *     for each message received.
+     * @param name The name of the connection.
+     */
+    private ChannelConnection(SocketChannel channel,
+                              ChannelIOPool.IOThread io,
+                              MessageHandler messageHandler, String name) {
+        super(channel.socket(), new ChannelOutputStream(channel, io),
+              messageHandler, name);
+
+        this.channel = channel;
+        this.io = io;
+        // The I/O thread stops reading from a backed up connection instead
+        getExecutor().setBlocking(false);
+        io.register(this);
+    }
+
+    /**
+     * Put a channel in non-blocking mode.
+     *
+     * @param channel The <code>SocketChannel</code> to change.
+     * @return The channel.
+     * @exception IOException if the mode can not be changed.
+     */
+    private static SocketChannel nonBlocking(SocketChannel channel)
+        throws IOException {
+        channel.configureBlocking(false);
+        return channel;
+    }
+
+
+    /**
+     * Gets the channel.
+     *
+     * @return The <code>SocketChannel</code> to the other end.
+     */
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Are the handlers for this connection too far behind to read more?
+     *
+     * @return True if reading should pause.
+     */
+    boolean isBackedUp() {
+        return getExecutor().isFull();
+    }
+
+    /**
+     * Read what the channel has, and dispatch any whole messages.
+     * Called by the I/O thread.
+     */
+    void readable() {
+        final MessageDispatcher dispatcher = getDispatcher();
+        try {
+            if (!input.hasRemaining()) grow();
+            if (channel.read(input) < 0) {
+                dispatcher.stop(); // The other end has gone
+            } else {
+                decode();
+            }
+        } catch (IOException ioe) {
+            if (!dispatcher.isStopped()) {
+                logger.log(Level.WARNING, "IO fail", ioe);
+                dispatcher.disconnect("Unexpected IO failure");
+            }
+        }
+        if (dispatcher.isStopped()) reallyClose();
+    }
+
+    /**
+     * Write queued output.  Called by the I/O thread.
+     *
+     * @return True if no output remains queued.
+     */
+    boolean writable() {
+        ChannelOutputStream os = (ChannelOutputStream)getOutputStream();
+        try {
+            return os == null || os.writePending();
+        } catch (IOException ioe) {
+            if (!getDispatcher().isStopped()) {
+                logger.log(Level.WARNING, "IO fail", ioe);
+                getDispatcher().disconnect("Unexpected IO failure");
+            }
+            reallyClose();
+            return true;
+        }
+    }
+
+    /**
+     * Make the input buffer bigger, for a message that does not fit.
+     *
+     * @exception IOException if the message is too long.
+     */
+    private void grow() throws IOException {
+        if (input.capacity() >= MAXIMUM_MESSAGE + FRAME_HEADER) {
+            throw new IOException("Message too long");
+        }
+        ByteBuffer bigger = ByteBuffer.allocate(Math.min(2 * input.capacity(),
+                MAXIMUM_MESSAGE + FRAME_HEADER));
+        input.flip();
+        bigger.put(input);
+        input = bigger;
+    }
+
+    /**
+     * Decode and dispatch the whole messages in the input buffer.
+     *
+     * @exception IOException if a binary frame is malformed.
+     */
+    private void decode() throws IOException {
+        final MessageDispatcher dispatcher = getDispatcher();
+        input.flip();
+        try {
+            while (input.hasRemaining() && !dispatcher.isStopped()) {
+                final int start = input.position();
+                final long begin = System.nanoTime();
+                DOMMessage msg;
+                final byte marker = input.get(start);
+                if (FrameDecoder.isFrame(marker)) {
+                    if (input.remaining() < FRAME_HEADER) break;
+                    int length = FrameDecoder.getLength(input.get(start + 1),
+                        input.get(start + 2), input.get(start + 3),
+                        input.get(start + 4));
+                    if (input.remaining() < FRAME_HEADER + length) break;
+                    byte[] data = new byte[length];
+                    input.position(start + FRAME_HEADER);
+                    input.get(data);
+                    msg = decodeFrame(marker, data);
+                    if (msg == null) continue;
+                } else {
+                    int end = -1;
+                    for (int i = start + scanned; i < input.limit(); i++) {
+                        if (input.get(i) == END_OF_MESSAGE) {
+                            end = i;
+                            break;
+                        }
+                    }
+                    if (end < 0) {
+                        scanned = input.limit() - start;
+                        break;
+                    }
+                    scanned = 0;
+                    ByteBuffer frame = input.duplicate();
+                    frame.limit(end);
+                    input.position(end + 1);
+                    msg = parse(frame);
+                    if (msg == null) continue;
+                }
+                final String type = NetworkMetrics.getType(msg);
+                NetworkMetrics.recordParse(type, System.nanoTime() - begin);
+                NetworkMetrics.recordReceived(type, input.position() - start);
+                dispatcher.dispatch(msg);
+            }
+        } finally {
+            input.compact();
+        }
+        if (input.position() == 0 && input.capacity() > INITIAL_BUFFER) {
+            input = ByteBuffer.allocate(INITIAL_BUFFER);
+        }
+    }
+
+    /**
+     * Parse an XML message.
+     *
+     * @param frame A <code>ByteBuffer</code> containing the message.
+     * @return The <code>DOMMessage</code> parsed, or null if the
+     *     message was empty or malformed.
+     */
+    private DOMMessage parse(ByteBuffer frame) {
+        try {
+            DOMMessage msg = decoder.parse(new ByteBufferInputStream(frame));
+            failures = 0;
+            return msg;
+        } catch (XMLStreamException xse) {
+            logger.log(Level.WARNING, "XML fail", xse);
+            if (++failures > MAXIMUM_RETRIES) {
+                getDispatcher().disconnect("Too many failures (XML)");
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Decode a binary or compressed frame.
+     *
+     * @param marker The frame marker.
+     * @param data The frame content.
+     * @return The <code>DOMMessage</code> decoded, or null if the
+     *     message was malformed XML.
+     * @exception IOException if the frame is malformed.
+     */
+    private DOMMessage decodeFrame(int marker, byte[] data)
+        throws IOException {
+        try {
+            DOMMessage msg = decoder.decode(marker, data);
+            failures = 0;
+            return msg;
+        } catch (XMLStreamException xse) {
+            logger.log(Level.WARNING, "XML fail", xse);
+            if (++failures > MAXIMUM_RETRIES) {
+                getDispatcher().disconnect("Too many failures (XML)");
+            }
+            return null;
+        }
+    }
+
+
+    // Override Connection
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reallyClose() {
+        super.reallyClose();
+        decoder.end();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean isReceivingThread() {
+        return Thread.currentThread() == io;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return "[ChannelConnection " + getName() + " ("
+            + channel.socket() + ")]";
+    }
+}
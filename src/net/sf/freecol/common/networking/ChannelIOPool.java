@@ -0,0 +1,247 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * A small fixed set of threads that do the reading and writing for
+ * any number of {@link ChannelConnection}s, using non-blocking
+ * channels and a selector per thread.
+ *
+ * The threads only move bytes and decode messages.  Handlers run on
+ * the message handler pool as for other connections.
+ */
+public final class ChannelIOPool {
+
+    private static final Logger logger = Logger.getLogger(ChannelIOPool.class.getName());
+
+    /** The default number of threads. */
+    public static final int DEFAULT_THREADS
+        = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /** How often to check whether paused connections can resume, in ms. */
+    private static final long PAUSE_CHECK = 50;
+
+    /**
+     * A thread serving the connections registered with its selector.
+     */
+    static final class IOThread extends Thread {
+
+        /** The selector for the channels of this thread. */
+        private final Selector selector;
+
+        /** Work to do on this thread before the next selection. */
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+        /** Keys not being read from while their handlers catch up. */
+        private final List<SelectionKey> paused = new ArrayList<>();
+
+        /** Should this thread keep running? */
+        private volatile boolean running = true;
+
+
+        /**
+         * Create a new <code>IOThread</code>.
+         *
+         * @param name The thread name.
+         * @exception IOException if the selector can not be opened.
+         */
+        IOThread(String name) throws IOException {
+            super(name);
+            setDaemon(true);
+            this.selector = Selector.open();
+        }
+
+
+        /**
+         * Run a task on this thread.  Selection keys may only be
+         * changed by the thread doing the selecting.
+         *
+         * @param task The task to run.
+         */
+        private void submit(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        /**
+         * Start serving a connection.
+         *
+         * @param conn The <code>ChannelConnection</code> to serve.
+         */
+        void register(final ChannelConnection conn) {
+            submit(() -> {
+                    try {
+                        conn.getChannel().register(selector,
+                            SelectionKey.OP_READ, conn);
+                    } catch (ClosedChannelException cce) {
+                        conn.reallyClose();
+                    }
+                });
+        }
+
+        /**
+         * Ask to be told when a channel can take more output.
+         *
+         * @param channel The <code>SocketChannel</code> with output pending.
+         */
+        void requestWrite(final SocketChannel channel) {
+            submit(() -> {
+                    SelectionKey key = channel.keyFor(selector);
+                    if (key != null && key.isValid()) {
+                        key.interestOps(key.interestOps()
+                            | SelectionKey.OP_WRITE);
+                    }
+                });
+        }
+
+        /**
+         * Stop this thread.
+         */
+        void shutdown() {
+            running = false;
+            selector.wakeup();
+        }
+
+        /**
+         * Start reading again from paused connections that have
+         * caught up.
+         */
+        private void resumePaused() {
+            Iterator<SelectionKey> it = paused.iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                if (!key.isValid()) {
+                    it.remove();
+                } else if (!((ChannelConnection)key.attachment()).isBackedUp()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                    it.remove();
+                }
+            }
+        }
+
+        /**
+         * Serve a channel that is ready.
+         *
+         * @param key The <code>SelectionKey</code> of the channel.
+         */
+        private void service(SelectionKey key) {
+            ChannelConnection conn = (ChannelConnection)key.attachment();
+            try {
+                if (key.isWritable() && conn.writable()) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                }
+                if (key.isValid() && key.isReadable()) {
+                    conn.readable();
+                    if (key.isValid() && conn.isBackedUp()) {
+                        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                        paused.add(key);
+                    }
+                }
+            } catch (CancelledKeyException cke) {
+                ; // Closed while being served
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            while (running) {
+                Runnable task;
+                while ((task = tasks.poll()) != null) task.run();
+                resumePaused();
+                try {
+                    selector.select((paused.isEmpty()) ? 0 : PAUSE_CHECK);
+                } catch (IOException ioe) {
+                    logger.log(Level.WARNING, "Select failed", ioe);
+                    break;
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    if (key.isValid()) service(key);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, "Error closing selector", ioe);
+            }
+            logger.info("Finished: " + getName());
+        }
+    }
+
+    /** The threads. */
+    private final IOThread[] threads;
+
+    /** Counter for sharing connections out among the threads. */
+    private final AtomicInteger next = new AtomicInteger();
+
+
+    /**
+     * Create and start a new <code>ChannelIOPool</code>.
+     *
+     * @param name The base name for the threads.
+     * @param size The number of threads.
+     * @exception IOException if a selector can not be opened.
+     */
+    public ChannelIOPool(String name, int size) throws IOException {
+        this.threads = new IOThread[size];
+        for (int i = 0; i < size; i++) {
+            threads[i] = new IOThread(name + "-IO-" + i);
+            threads[i].start();
+        }
+    }
+
+
+    /**
+     * Choose the thread to serve a new connection.
+     *
+     * @return An <code>IOThread</code>.
+     */
+    IOThread next() {
+        return threads[Math.floorMod(next.getAndIncrement(), threads.length)];
+    }
+
+    /**
+     * Stop all the threads.  Connections still open are not closed.
+     */
+    public void shutdown() {
+        for (IOThread t : threads) t.shutdown();
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+
+
+/**
+ * An output stream onto a non-blocking channel.
+ *
+ * Bytes are collected until the stream is flushed, then written
+ * directly if the channel will take them, otherwise queued for the
+ * I/O thread to write when the channel is ready.  A writer that gets
+ * too far ahead of the peer is blocked until the queue drains, and
+ * the channel is closed if the peer stops reading altogether.
+ */
+final class ChannelOutputStream extends OutputStream {
+
+    /** The size of the collecting buffer, which is kept small when idle. */
+    private static final int INITIAL_SIZE = 4096;
+
+    /** The longest to wait for queued output on close, in milliseconds. */
+    private static final long CLOSE_WAIT = 1000;
+
+    /** The default limit on the queued bytes. */
+    private static final int PENDING_LIMIT = 1 << 24;
+
+    /**
+     * The default longest to wait for the queue to drain below the
+     * limit, in milliseconds.
+     */
+    private static final long PENDING_WAIT = 30000;
+
+    /** The channel to write to. */
+    private final SocketChannel channel;
+
+    /** The I/O thread serving the channel. */
+    private final ChannelIOPool.IOThread io;
+
+    /** The bytes written since the last flush. */
+    private byte[] buffer = new byte[INITIAL_SIZE];
+
+    /** The number of bytes in the buffer. */
+    private int count = 0;
+
+    /** Flushed output the channel has not yet taken. */
+    private final Queue<ByteBuffer> pending = new ArrayDeque<>();
+
+    /** The number of bytes remaining in the pending queue. */
+    private long pendingBytes = 0;
+
+    /** The most bytes to queue before blocking the writer. */
+    private final int pendingLimit;
+
+    /** The longest to block the writer, in milliseconds. */
+    private final long pendingWait;
+
+    /** Has this stream been closed? */
+    private boolean closed = false;
+
+
+    /**
+     * Create a new <code>ChannelOutputStream</code>.
+     *
+     * @param channel The <code>SocketChannel</code> to write to.
+     * @param io The <code>IOThread</code> serving the channel.
+     */
+    ChannelOutputStream(SocketChannel channel, ChannelIOPool.IOThread io) {
+        this(channel, io, PENDING_LIMIT, PENDING_WAIT);
+    }
+
+    /**
+     * Create a new <code>ChannelOutputStream</code> with a given limit
+     * on the queued output.
+     *
+     * @param channel The <code>SocketChannel</code> to write to.
+     * @param io The <code>IOThread</code> serving the channel.
+     * @param pendingLimit The most bytes to queue before blocking
+     *     the writer.
+     * @param pendingWait The longest to block the writer before
+     *     closing the channel, in milliseconds.
+     */
+    ChannelOutputStream(SocketChannel channel, ChannelIOPool.IOThread io,
+                        int pendingLimit, long pendingWait) {
+        this.channel = channel;
+        this.io = io;
+        this.pendingLimit = pendingLimit;
+        this.pendingWait = pendingWait;
+    }
+
+
+    /**
+     * Make room in the buffer.
+     *
+     * @param n The number of bytes to make room for.
+     * @exception IOException if the stream is closed.
+     */
+    private void ensure(int n) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        if (count + n > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(2 * buffer.length,
+                                                    count + n));
+        }
+    }
+
+    /**
+     * Write the queued output that the channel will take.
+     *
+     * @return True if nothing remains queued.
+     * @exception IOException if the channel fails.
+     */
+    boolean writePending() throws IOException {
+        synchronized (pending) {
+            try {
+                while (!pending.isEmpty()) {
+                    ByteBuffer bb = pending.peek();
+                    pendingBytes -= channel.write(bb);
+                    if (bb.hasRemaining()) return false;
+                    pending.remove();
+                }
+                return true;
+            } finally {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wait for the queued output to drain enough to take some more.
+     * Called holding the pending lock.  A single message larger than
+     * the limit is still accepted into an empty queue.
+     *
+     * @param n The number of bytes to be queued.
+     * @exception IOException if the queue does not drain in time,
+     *     in which case the channel is closed.
+     */
+    private void waitForRoom(int n) throws IOException {
+        if (pending.isEmpty() || pendingBytes + n <= pendingLimit) return;
+        // The I/O thread drains the queue, so must not wait on itself
+        if (Thread.currentThread() != io) {
+            long end = System.currentTimeMillis() + pendingWait;
+            long now;
+            while (!pending.isEmpty() && pendingBytes + n > pendingLimit
+                && (now = System.currentTimeMillis()) < end) {
+                try {
+                    pending.wait(end - now);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (pending.isEmpty() || pendingBytes + n <= pendingLimit) return;
+        }
+        IOException ioe = new IOException("Peer is not reading, "
+            + pendingBytes + " bytes queued");
+        closed = true;
+        pending.clear();
+        pendingBytes = 0;
+        channel.close();
+        throw ioe;
+    }
+
+
+    // Implement OutputStream
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void write(int b) throws IOException {
+        ensure(1);
+        buffer[count++] = (byte)b;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void write(byte[] b, int off, int len)
+        throws IOException {
+        ensure(len);
+        System.arraycopy(b, off, buffer, count, len);
+        count += len;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (count == 0) return;
+        ByteBuffer bb = ByteBuffer.wrap(Arrays.copyOf(buffer, count));
+        count = 0;
+        if (buffer.length > INITIAL_SIZE) buffer = new byte[INITIAL_SIZE];
+        synchronized (pending) {
+            if (pending.isEmpty()) channel.write(bb);
+            if (bb.hasRemaining()) {
+                waitForRoom(bb.remaining());
+                if (pending.isEmpty()) io.requestWrite(channel);
+                pending.add(bb);
+                pendingBytes += bb.remaining();
+            }
+        }
+    }
+
+    /**
+     * Flush, give the queued output a little time to go, then close
+     * the channel.
+     *
+     * @exception IOException if the channel fails.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        try {
+            flush();
+            closed = true;
+            if (Thread.currentThread() != io) {
+                long end = System.currentTimeMillis() + CLOSE_WAIT;
+                while (!writePending() && System.currentTimeMillis() < end) {
+                    try {
+                        Thread.sleep(1);
+                    } catch (InterruptedException ie) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            closed = true;
+            channel.close();
+        }
+    }
+}
@@ -35,7 +35,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when the client requests claiming land.
  */
-public class ClaimLandMessage extends DOMMessage {
+public class ClaimLandMessage extends DOMMessage implements ServerRequest {
 
     /** The tile to claim. */
     private final String tileId;
@@ -87,6 +87,7 @@ public class ClaimLandMessage extends DOMMessage {
      *
      * @return An update, or error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
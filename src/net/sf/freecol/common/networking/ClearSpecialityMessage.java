@@ -31,7 +31,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent when clearing a unit speciality.
  */
-public class ClearSpecialityMessage extends DOMMessage {
+public class ClearSpecialityMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The identifier of the unit to be cleared. */
     private final String unitId;
@@ -72,6 +73,7 @@ public class ClearSpecialityMessage extends DOMMessage {
      * @return An update containing the cleared unit, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -21,6 +21,7 @@
 package net.sf.freecol.common.networking;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -199,6 +200,21 @@ public final class Client {
         return c.ask(element);
     }
     
+    /**
+     * Sends the specified message to the server without waiting for
+     * the reply.
+     *
+     * @param message The <code>DOMMessage</code> to send.
+     * @return A future that completes with the answer from the server,
+     *     or with <code>null</code> if the connection was lost.
+     * @see Connection#askAsync
+     * @exception IOException
+     */
+    public CompletableFuture<Element> askAsync(DOMMessage message)
+        throws IOException {
+        return c.askAsync(message.toXMLElement());
+    }
+
     /**
      * Handle a reply element using the client input handler.
      *
@@ -32,7 +32,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent to initiate a transaction.
  */
-public class CloseTransactionMessage extends DOMMessage {
+public class CloseTransactionMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The object identifier of the unit performing the transaction. */
     private final String unitId;
@@ -82,6 +83,7 @@ public class CloseTransactionMessage extends DOMMessage {
      * @param connection The <code>Connection</code> message was received on.
      * @return Null, or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
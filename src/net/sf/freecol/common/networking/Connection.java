@@ -19,9 +19,12 @@
 
 package net.sf.freecol.common.networking;
 
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -30,10 +33,15 @@ import java.io.Writer;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerException;
@@ -43,10 +51,10 @@ import javax.xml.transform.stream.StreamResult;
 
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.debug.FreeColDebugger;
-import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
 
 import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
 
 
 /**
@@ -61,15 +69,118 @@ public class Connection implements Closeable {
 
     private static final Logger logger = Logger.getLogger(Connection.class.getName());
 
+    public static final String BINARY_TAG = "binary";
+    public static final String COMPRESS_TAG = "compress";
+    public static final String DELTA_TAG = "delta";
     public static final String DISCONNECT_TAG = "disconnect";
     public static final String NETWORK_REPLY_ID_TAG = "networkReplyId";
+    public static final String ORDERED_TAG = "ordered";
     public static final String QUESTION_TAG = "question";
     public static final String REPLY_TAG = "reply";
+    public static final String RETRY_TAG = "retry";
     public static final String SEND_SUFFIX = "-send\n";
+    public static final String UPDATE_SEQUENCE_TAG = "updateSequence";
     public static final String REPLY_SUFFIX = "-reply\n";
 
     private static final int TIMEOUT = 5000; // 5s
 
+    /** The message identifier of the reply to a rejected question. */
+    private static final String BUSY_ID = "server.busy";
+
+    /** The number of times to retry a question the other end is too busy for. */
+    private static final int BUSY_RETRIES = 5;
+
+    /** How long to wait before first retrying a rejected question, in ms. */
+    private static final long BUSY_WAIT = 100;
+
+    /**
+     * Writer that escapes newlines, which would otherwise prematurely
+     * terminate a message.  Only usable for unindented XML, where
+     * newlines can only occur in attribute values and text, where
+     * the character reference is equivalent.
+     */
+    private static class NewlineEscapingWriter extends FilterWriter {
+
+        private static final String NEWLINE_REFERENCE = "&#10;";
+
+        public NewlineEscapingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            if (c == '\n') {
+                out.write(NEWLINE_REFERENCE);
+            } else {
+                out.write(c);
+            }
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            int start = off;
+            for (int i = off; i < off + len; i++) {
+                if (cbuf[i] == '\n') {
+                    out.write(cbuf, start, i - start);
+                    out.write(NEWLINE_REFERENCE);
+                    start = i + 1;
+                }
+            }
+            out.write(cbuf, start, off + len - start);
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            write(str.toCharArray(), off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush(); // Do not close the underlying stream
+        }
+    }
+
+    /**
+     * Stream that ignores flushes, so that the writers of a message
+     * can not split it into several network writes, which interact
+     * badly with delayed acknowledgement.  The message is flushed
+     * once complete.  Also counts the bytes of the message.
+     */
+    private static class UnflushedOutputStream extends FilterOutputStream {
+
+        private long count = 0;
+
+        public UnflushedOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+            // Wait for the whole message
+        }
+
+        @Override
+        public void close() {
+            // Do not close the underlying stream
+        }
+    }
+
     private InputStream in;
 
     private Socket socket;
@@ -84,6 +195,28 @@ public class Connection implements Closeable {
 
     private String name;
 
+    /** Serializes writes, so that deltas are encoded in sending order. */
+    private final Object writeLock = new Object();
+
+    /** The states of objects sent in updates, if deltas are enabled. */
+    private DeltaCache sentDeltas = null;
+
+    /** The encoder for outgoing messages, if binary mode is enabled. */
+    private BinaryCodec binaryEncoder = null;
+
+    /** The compressor for outgoing frames, if compression is enabled. */
+    private DeflateCodec compressor = null;
+
+    /** Runs the handlers for received messages. */
+    private final MessageExecutor executor;
+
+    /** Routes the received messages. */
+    private final MessageDispatcher dispatcher;
+
+    /** The states of objects received in updates. */
+    private final DeltaCache receivedDeltas
+        = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+
     // Logging variables.
     private final StreamResult logResult;
     private final Writer logWriter;
@@ -111,6 +244,10 @@ public class Connection implements Closeable {
         this.thread = null;
         this.messageHandler = null;
         this.name = name;
+        this.dispatcher = new MessageDispatcher(this);
+        // Never hold up a reader that has a reply to deliver
+        this.executor = new MessageExecutor(name,
+            () -> !dispatcher.isAwaitingReplies());
         if (FreeColDebugger.isInDebugMode(FreeColDebugger.DebugMode.COMMS)) {
             this.logWriter = new BufferedWriter(new OutputStreamWriter(System.err));
             this.logResult = new StreamResult(this.logWriter);
@@ -150,14 +287,34 @@ public class Connection implements Closeable {
 
         this.socket = socket;
         this.in = socket.getInputStream();
-        this.out = socket.getOutputStream();
-        this.thread = new ReceivingThread(this, in, name);
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.thread = new ReceivingThread(this, dispatcher, in, name);
         this.messageHandler = messageHandler;
         this.name = name;
 
         thread.start();
     }
 
+    /**
+     * Creates a new <code>Connection</code> whose messages are read
+     * by some other means than a receiving thread, which must pass
+     * them to {@link #getDispatcher}.
+     *
+     * @param socket The socket to the client.
+     * @param out The stream to write messages to.
+     * @param messageHandler The MessageHandler to call for each message
+     *     received.
+     * @param name The name of the connection.
+     */
+    Connection(Socket socket, OutputStream out,
+               MessageHandler messageHandler, String name) {
+        this(name);
+
+        this.socket = socket;
+        this.out = out;
+        this.messageHandler = messageHandler;
+    }
+
     /**
      * Creates a socket to communication with a given host, port pair.
      *
@@ -220,12 +377,164 @@ public class Connection implements Closeable {
         return name;
     }
 
+    /**
+     * Enable sending object updates as deltas against the state
+     * previously sent over this connection.  Only to be called once
+     * the other end has said it can decode them.
+     */
+    public void enableDeltaUpdates() {
+        synchronized (writeLock) {
+            if (sentDeltas == null) {
+                sentDeltas = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+            }
+        }
+    }
+
+    /**
+     * Switch to sending messages in the compact binary encoding.
+     * Only to be called once the other end has said it can read them.
+     * Incoming messages may always be in either encoding.
+     */
+    public void enableBinary() {
+        synchronized (writeLock) {
+            if (binaryEncoder == null) binaryEncoder = new BinaryCodec();
+        }
+    }
+
+    /**
+     * Are messages sent in the binary encoding?
+     *
+     * @return True if binary mode is enabled.
+     */
+    public boolean isBinary() {
+        synchronized (writeLock) {
+            return binaryEncoder != null;
+        }
+    }
+
+    /**
+     * Switch to sending compressed frames.  Only to be called once
+     * the other end has said it can read them.  Incoming frames may
+     * always be compressed or not.
+     */
+    public void enableCompression() {
+        synchronized (writeLock) {
+            if (compressor == null) compressor = new DeflateCodec();
+        }
+    }
+
+    /**
+     * Are frames sent compressed?
+     *
+     * @return True if compression is enabled.
+     */
+    public boolean isCompressed() {
+        synchronized (writeLock) {
+            return compressor != null;
+        }
+    }
+
+    /**
+     * Write a compressed frame.  Must be called holding the write lock.
+     *
+     * @param os The <code>OutputStream</code> to write to.
+     * @param data The uncompressed frame.
+     * @return The number of bytes written.
+     * @exception IOException if the write fails.
+     */
+    private long writeCompressed(OutputStream os, byte[] data)
+        throws IOException {
+        byte[] frame = DeflateCodec.frame(compressor.compress(data));
+        os.write(frame);
+        return frame.length;
+    }
+
+    /**
+     * Encode an object as if it had been sent in an update, so that
+     * the next update of it is sent as a delta against this state.
+     *
+     * @param element The full object <code>Element</code>.
+     * @return The element that would have been sent, which is a delta
+     *     if deltas are enabled and the object has been sent before.
+     */
+    public Element encodeDelta(Element element) {
+        synchronized (writeLock) {
+            return (sentDeltas == null) ? element : sentDeltas.encode(element);
+        }
+    }
+
+    /**
+     * Replace any deltas in a received message with the full objects.
+     * Must be called in the order the messages were received.
+     *
+     * Any objects that could not be decoded are dropped from the
+     * message, and asked for again.
+     *
+     * @param message The received message <code>Element</code>.
+     */
+    void decodeDeltas(Element message) {
+        List<String> failed = receivedDeltas.decodeMessage(message);
+        if (failed.isEmpty()) return;
+        logger.warning("Asking " + name + " to resend " + failed);
+        try {
+            send(DeltaCache.createResyncMessage(failed));
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Resync request failed", ioe);
+        }
+    }
+
+    /**
+     * Send objects the other end could not decode again, in full.
+     *
+     * @param message The "deltaResync" message <code>Element</code>.
+     */
+    private void resendDeltas(Element message) {
+        synchronized (writeLock) {
+            if (sentDeltas == null) return;
+            Element update = sentDeltas.resync(message);
+            if (update == null) return;
+            try {
+                send(update);
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, "Resync failed", ioe);
+            }
+        }
+    }
+
+    /**
+     * Is the current thread the one receiving messages, which must
+     * not wait for a reply?
+     *
+     * @return True if called from the receiving thread.
+     */
+    boolean isReceivingThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Gets the dispatcher for the messages received.
+     *
+     * @return The <code>MessageDispatcher</code>.
+     */
+    MessageDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Gets the executor for the message handlers.
+     *
+     * @return The <code>MessageExecutor</code>.
+     */
+    MessageExecutor getExecutor() {
+        return executor;
+    }
+
     /**
      * Get the output stream.
      *
      * @return The output stream.
      */
-    private synchronized OutputStream getOutputStream() {
+    synchronized OutputStream getOutputStream() {
         return this.out;
     }
 
@@ -265,9 +574,15 @@ public class Connection implements Closeable {
      * Really closes this connection.
      */
     public void reallyClose() {
-        if (this.thread != null) thread.askToStop();
+        dispatcher.stop();
 
         closeOutputStream();
+        synchronized (writeLock) {
+            if (compressor != null) {
+                compressor.end();
+                compressor = null;
+            }
+        }
         if (this.in != null) {
             try {
                 this.in.close();
@@ -334,45 +649,291 @@ public class Connection implements Closeable {
     private void sendInternal(Element element) throws IOException {
         OutputStream os = getOutputStream();
         if (os != null) {
-            DOMSource source = new DOMSource(element);
-            try {
-                xmlTransformer.transform(source, new StreamResult(os));
-            } catch (TransformerException te) {
-                logger.log(Level.WARNING, "Failed to transform", te);
+            synchronized (writeLock) {
+                long size;
+                if (sentDeltas != null) {
+                    // Encode the updates as they are written, rather
+                    // than copying the message to encode it.
+                    size = writeStreamed(os, -1, new ElementMessage(element));
+                } else {
+                    // Compressed frames are built whole, then compressed
+                    final ByteArrayOutputStream frame = (compressor == null)
+                        ? null : new ByteArrayOutputStream(1024);
+                    final OutputStream target = (frame == null) ? os : frame;
+                    if (binaryEncoder != null) {
+                        size = writeBinaryFrame(target,
+                            binaryEncoder.encode(element));
+                    } else {
+                        UnflushedOutputStream uos
+                            = new UnflushedOutputStream(target);
+                        try {
+                            xmlTransformer.transform(new DOMSource(element),
+                                new StreamResult(uos));
+                        } catch (TransformerException te) {
+                            logger.log(Level.WARNING, "Failed to transform",
+                                       te);
+                        }
+                        target.write('\n');
+                        size = uos.getCount() + 1;
+                    }
+                    if (frame != null) {
+                        size = writeCompressed(os, frame.toByteArray());
+                    }
+                }
+                os.flush();
+                NetworkMetrics.recordSent(NetworkMetrics.getType(element),
+                                          size);
+                log(element, true);
             }
-            os.write('\n');
-            os.flush();
-            log(source, true);
         }
     }
 
+    /**
+     * Write a message as a frame, streaming it rather than building a
+     * document first.  Any updates in it are encoded as deltas as
+     * they are written, if deltas are enabled.  Must be called
+     * holding the write lock.
+     *
+     * @param os The <code>OutputStream</code> to write to.
+     * @param networkReplyId The identifier to wrap the message in a
+     *     question with, or negative to write it as it is.
+     * @param message The <code>StreamedMessage</code> to write.
+     * @return The number of bytes written.
+     * @exception IOException if the message can not be written.
+     */
+    private long writeStreamed(OutputStream os, int networkReplyId,
+                               StreamedMessage message) throws IOException {
+        if (binaryEncoder != null) {
+            // Binary frames are encoded as the message is written
+            ByteArrayOutputStream data = new ByteArrayOutputStream(8192);
+            try (
+                FreeColXMLWriter xw = new FreeColXMLWriter(
+                    withDeltas(binaryEncoder.newWriter(data)),
+                    WriteScope.toServer());
+            ) {
+                writeMessage(xw, networkReplyId, message);
+            }
+            if (compressor == null) {
+                return writeBinaryFrame(os, data.toByteArray());
+            }
+            ByteArrayOutputStream frame
+                = new ByteArrayOutputStream(data.size() + 5);
+            writeBinaryFrame(frame, data.toByteArray());
+            return writeCompressed(os, frame.toByteArray());
+        }
+
+        final ByteArrayOutputStream frame = (compressor == null) ? null
+            : new ByteArrayOutputStream(8192);
+        UnflushedOutputStream uos
+            = new UnflushedOutputStream((frame == null) ? os : frame);
+        Writer w = new NewlineEscapingWriter(new BufferedWriter(
+                new OutputStreamWriter(uos, "UTF-8")));
+        XMLStreamWriter xsw;
+        try {
+            xsw = XMLOutputFactory.newInstance().createXMLStreamWriter(w);
+        } catch (XMLStreamException xse) {
+            throw new IOException(xse);
+        }
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(withDeltas(xsw),
+                WriteScope.toServer());
+        ) {
+            writeMessage(xw, networkReplyId, message);
+        }
+        w.flush();
+        uos.write('\n');
+        return (frame == null) ? uos.getCount()
+            : writeCompressed(os, frame.toByteArray());
+    }
+
+    /**
+     * Add delta encoding to a stream, if deltas are enabled.  Must be
+     * called holding the write lock.
+     *
+     * @param xsw The <code>XMLStreamWriter</code> to write to.
+     * @return The <code>XMLStreamWriter</code> to write the message to.
+     */
+    private XMLStreamWriter withDeltas(XMLStreamWriter xsw) {
+        return (sentDeltas == null) ? xsw : new DeltaWriter(xsw, sentDeltas);
+    }
+
+    /**
+     * An element to be written as a streamed message.
+     */
+    private static class ElementMessage implements StreamedMessage {
+
+        private final Element element;
+
+        public ElementMessage(Element element) {
+            this.element = element;
+        }
+
+        @Override
+        public String getType() {
+            return element.getTagName();
+        }
+
+        @Override
+        public void toXML(FreeColXMLWriter xw) throws XMLStreamException {
+            DOMMessage.writeElement(xw, element);
+        }
+
+        @Override
+        public Element toXMLElement() {
+            return element;
+        }
+    }
+
+    /**
+     * Write a binary frame.  Must be called holding the write lock.
+     *
+     * @param target The <code>OutputStream</code> to write to.
+     * @param data The encoded message.
+     * @return The number of bytes written.
+     * @exception IOException if the write fails.
+     */
+    private static long writeBinaryFrame(OutputStream target, byte[] data)
+        throws IOException {
+        target.write(BinaryCodec.FRAME_MARKER);
+        target.write(data.length >>> 24);
+        target.write(data.length >>> 16);
+        target.write(data.length >>> 8);
+        target.write(data.length);
+        target.write(data);
+        return data.length + 5;
+    }
+
     /**
      * Low level routine to sends a message and return the reply.
      *
+     * The question is marked as one that will be retried if the other
+     * end is too busy to handle it, which is safe as a rejected
+     * question has not been acted on.
+     *
      * @param element The question for the other peer.
      * @return The reply from the other peer.
      * @exception IOException if an error occur while sending the message.
      * @see #sendInternal(Element)
      */
     private Element askInternal(Element element) throws IOException {
-        int networkReplyId = thread.getNextNetworkReplyId();
         String tag = element.getTagName();
 
-        if (Thread.currentThread() == thread) {
+        if (isReceivingThread()) {
             throw new IOException("wait(ReceivingThread) for: " + tag);
         }
 
         Element question = element.getOwnerDocument()
             .createElement(QUESTION_TAG);
-        question.setAttribute(NETWORK_REPLY_ID_TAG,
-                              Integer.toString(networkReplyId));
+        question.setAttribute(RETRY_TAG, Boolean.toString(true));
         question.appendChild(element);
 
-        NetworkReplyObject nro = thread.waitForNetworkReply(networkReplyId);
-        sendInternal(question);
-        DOMMessage response = (DOMMessage)nro.getResponse();
+        long wait = BUSY_WAIT;
+        for (int retries = 0;; retries++) {
+            int networkReplyId = dispatcher.getNextNetworkReplyId();
+            question.setAttribute(NETWORK_REPLY_ID_TAG,
+                                  Integer.toString(networkReplyId));
+            NetworkReplyObject nro
+                = dispatcher.waitForNetworkReply(networkReplyId);
+            sendInternal(question);
+            Element reply = waitForReply(nro);
+            if (!isBusy(reply) || retries >= BUSY_RETRIES) return reply;
+            logger.fine("Retrying busy " + tag + " in " + wait + "ms");
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return reply;
+            }
+            wait *= 2;
+        }
+    }
+
+    /**
+     * Is a reply the rejection of a question by a busy peer?
+     *
+     * @param reply The reply <code>Element</code>.
+     * @return True if the question should be retried.
+     */
+    private static boolean isBusy(Element reply) {
+        return reply != null && "error".equals(reply.getTagName())
+            && BUSY_ID.equals(reply.getAttribute("messageID"));
+    }
+
+    /**
+     * Low level routine to write a streamed message as a question,
+     * and return the reply.
+     *
+     * @param message The <code>StreamedMessage</code> question.
+     * @return The reply from the other peer.
+     * @exception IOException if an error occur while sending the message.
+     */
+    private Element askInternal(StreamedMessage message) throws IOException {
+        int networkReplyId = dispatcher.getNextNetworkReplyId();
+        String tag = message.getType();
+
+        if (isReceivingThread()) {
+            throw new IOException("wait(ReceivingThread) for: " + tag);
+        }
+
+        NetworkReplyObject nro = dispatcher.waitForNetworkReply(networkReplyId);
+        OutputStream os = getOutputStream();
+        if (os != null) {
+            synchronized (writeLock) {
+                long size = writeStreamed(os, networkReplyId, message);
+                os.flush();
+                NetworkMetrics.recordSent(QUESTION_TAG + ":" + tag, size);
+            }
+            if (this.logResult != null) log(message.toXMLElement(), true);
+        }
+        return waitForReply(nro);
+    }
+
+    /**
+     * Write a streamed message, wrapped in a question if it has a
+     * reply identifier.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @param networkReplyId The identifier for the reply, or negative
+     *     if the message is not a question.
+     * @param message The <code>StreamedMessage</code> to write.
+     * @exception IOException if the message can not be written.
+     */
+    private static void writeMessage(FreeColXMLWriter xw, int networkReplyId,
+                                     StreamedMessage message)
+        throws IOException {
+        try {
+            if (networkReplyId >= 0) {
+                xw.writeStartElement(QUESTION_TAG);
+                xw.writeAttribute(NETWORK_REPLY_ID_TAG, networkReplyId);
+            }
+            message.toXML(xw);
+            if (networkReplyId >= 0) xw.writeEndElement();
+            xw.flush();
+        } catch (XMLStreamException xse) {
+            throw new IOException("Failed to stream " + message.getType(),
+                                  xse);
+        }
+    }
+
+    /**
+     * Wait for a reply to a question.
+     *
+     * @param nro The <code>NetworkReplyObject</code> to wait on.
+     * @return The reply from the other peer.
+     */
+    private Element waitForReply(NetworkReplyObject nro) {
+        return unwrapReply(nro.getResponse());
+    }
+
+    /**
+     * Extract the reply from a response to a question.
+     *
+     * @param response The response, a <code>DOMMessage</code> or null.
+     * @return The reply from the other peer.
+     */
+    private Element unwrapReply(Object response) {
         Element reply = (response == null) ? null
-            : response.getDocument().getDocumentElement();
+            : ((DOMMessage)response).getDocument().getDocumentElement();
         log(reply, false);
 
         Element child = (reply==null) ? null : (Element)reply.getFirstChild();
@@ -426,47 +987,127 @@ public class Connection implements Closeable {
     }
 
     /**
-     * Handles a message using the registered <code>MessageHandler</code>.
+     * Sends a message to the other peer without waiting for the reply.
+     *
+     * Any number of these questions may be outstanding at once.  They
+     * are marked as ordered, so the other peer handles them one at a
+     * time in the order they were sent, and their replies arrive in
+     * that order too.  The future completes on the receiving thread,
+     * so anything that may itself ask a question must not be chained
+     * directly onto it.
      *
-     * @param in The stream containing the message.
-     * @exception IOException if the streaming fails.
+     * @param element The question for the peer.
+     * @return A future that completes with the reply from the peer,
+     *     or with null if the connection is lost first.
+     * @exception IOException if an error occur while sending the message.
+     * @see #ask(Element)
      */
-    public void handleAndSendReply(final BufferedInputStream in) 
+    public CompletableFuture<Element> askAsync(Element element)
         throws IOException {
+        int networkReplyId = dispatcher.getNextNetworkReplyId();
 
-        in.mark(200); // Peek at the reply identifier and tag.
+        Element question = element.getOwnerDocument()
+            .createElement(QUESTION_TAG);
+        question.setAttribute(NETWORK_REPLY_ID_TAG,
+                              Integer.toString(networkReplyId));
+        question.setAttribute(ORDERED_TAG, Boolean.toString(true));
+        question.appendChild(element);
 
-        // Extract the reply id and check if this is a question.
-        final String networkReplyId;
-        final boolean question;
-        FreeColXMLReader xr = null;
-        try {
-            xr = new FreeColXMLReader(in);
-            xr.nextTag();
-            question = QUESTION_TAG.equals(xr.getLocalName());
-            networkReplyId = xr.getAttribute(NETWORK_REPLY_ID_TAG,
-                                             (String)null);
+        NetworkReplyObject nro = dispatcher.waitForNetworkReply(networkReplyId);
+        sendInternal(question);
+        logger.fine("AskAsync: " + element.getTagName());
+        return nro.getFuture().thenApply(new Function<Object, Element>() {
+                @Override
+                public Element apply(Object response) {
+                    return unwrapReply(response);
+                }
+            });
+    }
 
-        } catch (XMLStreamException xse) {
-            logger.log(Level.WARNING, "XML stream failure", xse);
-            return;
-        } 
+    /**
+     * Sends a streamed message to the other peer and returns the reply.
+     *
+     * The message is written directly to the output stream, avoiding
+     * building and transforming a document.
+     *
+     * @param message The <code>StreamedMessage</code> question.
+     * @return The reply from the peer.
+     * @exception IOException if an error occur while sending the message.
+     * @see #ask(Element)
+     */
+    public Element ask(StreamedMessage message) throws IOException {
+        Element reply = askInternal(message);
+        logger.fine("Ask: " + message.getType()
+            + ", reply: " + ((reply == null) ? "null" : reply.getTagName()));
+        return reply;
+    }
 
-        // Reset and build a message.
-        final DOMMessage msg;
-        in.reset();
-        try {
-            msg = new DOMMessage(in);
-        } catch (SAXException e) {
-            logger.log(Level.WARNING, "Unable to read message.", e);
+    /**
+     * Sends a request to the server and returns the reply.
+     *
+     * A real connection has to send the element form.
+     *
+     * @param request The <code>ServerRequest</code> question.
+     * @return The reply from the peer.
+     * @exception IOException if an error occur while sending the message.
+     * @see #ask(Element)
+     */
+    public Element ask(ServerRequest request) throws IOException {
+        return ask(request.toXMLElement());
+    }
+
+    /**
+     * Would the other end of this connection act on a message?
+     *
+     * @param tag The message tag.
+     * @return True, as the other end of a real connection is unknown.
+     */
+    public boolean isInterested(String tag) {
+        return true;
+    }
+
+    /**
+     * Handles a message that has been read by the receiving thread.
+     *
+     * @param msg The <code>DOMMessage</code> to handle.
+     */
+    void handleAndSendReply(DOMMessage msg) {
+        Element element = msg.getDocument().getDocumentElement();
+        if (DeltaCache.RESYNC_TAG.equals(element.getTagName())) {
+            resendDeltas(element);
             return;
-        } finally {
-            if (xr != null) xr.close();
         }
+        decodeDeltas(element);
+        boolean question = QUESTION_TAG.equals(element.getTagName());
+        boolean ordered = !question
+            || Boolean.parseBoolean(element.getAttribute(ORDERED_TAG));
+        boolean rejectable = question && !ordered
+            && Boolean.parseBoolean(element.getAttribute(RETRY_TAG));
+        handleAndSendReply(msg, question, ordered, rejectable,
+                           element.getAttribute(NETWORK_REPLY_ID_TAG));
+    }
 
-        // Process the message in its own thread.
+    /**
+     * Handles a message using the registered <code>MessageHandler</code>,
+     * on a handler thread, and sends any reply.  Questions are handled
+     * concurrently unless marked as ordered, other messages in order
+     * of arrival.  If the handlers are too busy, the receiving thread
+     * is held up, except that a question the sender will retry gets
+     * a busy error reply instead.
+     *
+     * @param msg The <code>DOMMessage</code> to handle.
+     * @param question True if the message is a question.
+     * @param ordered True if the message must be handled in order.
+     * @param rejectable True if the message may be rejected as busy.
+     * @param networkReplyId The reply identifier if this is a question.
+     */
+    private void handleAndSendReply(final DOMMessage msg,
+                                    final boolean question,
+                                    final boolean ordered,
+                                    final boolean rejectable,
+                                    final String networkReplyId) {
         final Connection conn = this;
-        Thread t = new Thread(msg.getType()) {
+        Runnable r = new Runnable() {
                 @Override
                 public void run() {
                     Element element = msg.getDocument().getDocumentElement();
@@ -496,8 +1137,20 @@ public class Connection implements Closeable {
                     }
                 }
             };
-        t.setName(name + "-MessageHandler-" + t.getName());
-        t.start();
+        if (executor.execute(NetworkMetrics.getType(msg), r, ordered,
+                             rejectable)) return;
+        // Tell the sender to retry rather than leave it waiting
+        Element error = DOMMessage.createError(BUSY_ID,
+            "Too busy to handle " + NetworkMetrics.getType(msg));
+        Element reply = error.getOwnerDocument().createElement(REPLY_TAG);
+        reply.setAttribute(NETWORK_REPLY_ID_TAG, networkReplyId);
+        reply.appendChild(error);
+        try {
+            send(reply);
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Failed to reject " + networkReplyId,
+                       ioe);
+        }
     }
 
     /**
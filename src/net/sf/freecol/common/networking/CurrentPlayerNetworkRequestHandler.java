@@ -68,13 +68,38 @@ public abstract class CurrentPlayerNetworkRequestHandler
     public final Element handle(Connection conn, Element element) {
         ServerPlayer player = getFreeColServer().getPlayer(conn);
         if (!isCurrentPlayer(player)) {
-            return DOMMessage.clientError("Received message: "
-                + element.getTagName()
-                + " out of turn from player: " + player.getNation());
+            return outOfTurn(element.getTagName(), player);
         }
         return handle(player, conn, element);
     }
 
+    /**
+     * Handle a request that has not been converted to an element.
+     *
+     * @param conn The <code>Connection</code> the request originates from.
+     * @param request The <code>ServerRequest</code> to handle.
+     * @return An answering <code>Element</code>, which may be null.
+     */
+    public final Element handle(Connection conn, ServerRequest request) {
+        ServerPlayer player = getFreeColServer().getPlayer(conn);
+        if (!isCurrentPlayer(player)) {
+            return outOfTurn(request.getType(), player);
+        }
+        return request.handle(getFreeColServer(), player, conn);
+    }
+
+    /**
+     * Make the error reply to a request from the wrong player.
+     *
+     * @param tag The request tag.
+     * @param player The requesting <code>Player</code>.
+     * @return An error <code>Element</code>.
+     */
+    private static Element outOfTurn(String tag, Player player) {
+        return DOMMessage.clientError("Received message: " + tag
+            + " out of turn from player: " + player.getNation());
+    }
+
     /**
      * Handle a request for the current player.
      * 
@@ -41,10 +41,11 @@ import javax.xml.transform.stream.StreamResult;
 import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.debug.FreeColDebugger;
 import net.sf.freecol.common.model.Game;
-import net.sf.freecol.common.util.Introspector;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
@@ -155,22 +156,20 @@ public class DOMMessage {
      * @param game The <code>Game</code> to create the message in.
      * @param element The <code>Element</code> to create the message from.
      * @return The message created, or null on failure.
+     * @see MessageRegistry
      */
     public static DOMMessage createMessage(Game game, Element element) {
         if (element == null) return null;
-        String tag = element.getTagName();
-        tag = "net.sf.freecol.common.networking."
-            + tag.substring(0, 1).toUpperCase() + tag.substring(1)
-            + "Message";
-        Class[] types = { Game.class, Element.class };
-        Object[] params = { game, element };
         DOMMessage message;
         try {
-            message = (DOMMessage)Introspector.instantiate(tag, types, params);
-        } catch (IllegalArgumentException e) {
+            message = MessageRegistry.create(game, element);
+        } catch (RuntimeException e) {
             logger.log(Level.WARNING, "Instantiation fail", e);
             message = null;
         }
+        if (message == null) {
+            logger.warning("No message for: " + element.getTagName());
+        }
         return message;
     }
 
@@ -439,6 +438,84 @@ public class DOMMessage {
         return null;
     }
 
+    /**
+     * Gets an attribute of an element, or null if it is absent or empty.
+     * Messages built directly leave such values null, so this keeps
+     * messages read from an element the same.
+     *
+     * @param element The <code>Element</code> to examine.
+     * @param name The name of the attribute.
+     * @return The attribute value, or null if not present or empty.
+     */
+    public static String getNonEmptyAttribute(Element element, String name) {
+        String value = element.getAttribute(name);
+        return (value == null || value.isEmpty()) ? null : value;
+    }
+
+    /**
+     * Gets the tag and attributes of an element.
+     *
+     * @param element The <code>Element</code> to examine.
+     * @return An array containing the element tag followed by attribute
+     *     key,value pairs.
+     */
+    public static String[] getHeader(Element element) {
+        NamedNodeMap nnm = element.getAttributes();
+        String[] header = new String[2 * nnm.getLength() + 1];
+        header[0] = element.getTagName();
+        for (int i = 0; i < nnm.getLength(); i++) {
+            header[2 * i + 1] = nnm.item(i).getNodeName();
+            header[2 * i + 2] = nnm.item(i).getNodeValue();
+        }
+        return header;
+    }
+
+    /**
+     * Write an element to a stream.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @param element The <code>Element</code> to write.
+     * @exception XMLStreamException if there is a problem writing to
+     *     the stream.
+     */
+    public static void writeElement(FreeColXMLWriter xw, Element element)
+        throws XMLStreamException {
+        String[] header = getHeader(element);
+        xw.writeStartElement(header[0]);
+        for (int i = 1; i < header.length; i += 2) {
+            xw.writeAttribute(header[i], header[i+1]);
+        }
+        writeChildren(xw, element);
+        xw.writeEndElement();
+    }
+
+    /**
+     * Write the child nodes of an element to a stream.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @param element The <code>Element</code> whose children are to
+     *     be written.
+     * @exception XMLStreamException if there is a problem writing to
+     *     the stream.
+     */
+    public static void writeChildren(FreeColXMLWriter xw, Element element)
+        throws XMLStreamException {
+        NodeList nl = element.getChildNodes();
+        for (int i = 0; i < nl.getLength(); i++) {
+            Node n = nl.item(i);
+            switch (n.getNodeType()) {
+            case Node.ELEMENT_NODE:
+                writeElement(xw, (Element)n);
+                break;
+            case Node.TEXT_NODE: case Node.CDATA_SECTION_NODE:
+                xw.writeCharacters(n.getNodeValue());
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
     /**
      * Convert an element to a string.
      *
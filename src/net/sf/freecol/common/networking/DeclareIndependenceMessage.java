@@ -31,7 +31,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent when a player declares independence.
  */
-public class DeclareIndependenceMessage extends DOMMessage {
+public class DeclareIndependenceMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The new name for the rebelling nation. */
     private final String nationName;
@@ -79,6 +80,7 @@ public class DeclareIndependenceMessage extends DOMMessage {
      * @return An update <code>Element</code> describing the REF and the
      *         rebel player, or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -34,7 +34,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when declining to investigate strange mounds.
  */
-public class DeclineMoundsMessage extends DOMMessage {
+public class DeclineMoundsMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit that is exploring. */
     private final String unitId;
@@ -81,6 +81,7 @@ public class DeclineMoundsMessage extends DOMMessage {
      * @return An <code>Element</code> to update the originating
      *     player with the result of the demand.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
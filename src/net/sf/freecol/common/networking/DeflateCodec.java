@@ -0,0 +1,170 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+
+/**
+ * Compresses the frames sent over a connection.
+ *
+ * A compressed frame starts with {@link #FRAME_MARKER} and a four
+ * byte length, followed by the deflated bytes of an ordinary frame,
+ * either an XML message with its terminating newline or a binary
+ * frame.  The deflater is flushed, but not reset, at the end of each
+ * frame, so later messages are compressed against the earlier ones.
+ *
+ * Like the <code>BinaryCodec</code> the state carries over from
+ * frame to frame, so a codec must be used for only one direction of
+ * one connection, and frames must be decompressed in the order they
+ * were compressed.
+ */
+public class DeflateCodec {
+
+    /** The byte that starts a compressed frame, which can not start XML. */
+    public static final int FRAME_MARKER = 1;
+
+    /** The size of a compressed frame header, marker and length. */
+    public static final int FRAME_HEADER = 5;
+
+    /** The longest decompressed frame accepted. */
+    private static final int MAXIMUM_FRAME = 1 << 26;
+
+    /** When to compress the connections a server accepts. */
+    public static enum Policy {
+        /** Compress for every client that can decompress. */
+        FORCE,
+        /** Compress for clients that can decompress, unless local. */
+        ALLOW,
+        /** Never compress. */
+        DISABLE;
+
+        /**
+         * Should a connection be compressed?
+         *
+         * @param offered True if the client can decompress.
+         * @param local True if the client is on this machine.
+         * @return True if the connection should be compressed.
+         */
+        public boolean shouldCompress(boolean offered, boolean local) {
+            switch (this) {
+            case FORCE: return offered;
+            case ALLOW: return offered && !local;
+            default: break;
+            }
+            return false;
+        }
+    }
+
+    /** The compressor, created on first use. */
+    private Deflater deflater = null;
+
+    /** The decompressor, created on first use. */
+    private Inflater inflater = null;
+
+    /** A buffer for the (de)compressed output. */
+    private final byte[] buffer = new byte[8192];
+
+
+    /**
+     * Compress a frame.
+     *
+     * @param data The bytes of the frame.
+     * @return The compressed bytes, without the frame header.
+     */
+    public synchronized byte[] compress(byte[] data) {
+        if (deflater == null) deflater = new Deflater();
+        final long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        deflater.setInput(data);
+        int n;
+        do {
+            n = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            out.write(buffer, 0, n);
+        } while (n == buffer.length);
+        byte[] result = out.toByteArray();
+        NetworkMetrics.recordCompression(data.length, result.length,
+                                         System.nanoTime() - start);
+        return result;
+    }
+
+    /**
+     * Decompress a frame.
+     *
+     * @param data The compressed bytes, without the frame header.
+     * @return The bytes of the frame.
+     * @exception IOException if the data is malformed or too long.
+     */
+    public synchronized byte[] decompress(byte[] data) throws IOException {
+        if (inflater == null) inflater = new Inflater();
+        final long start = System.nanoTime();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        inflater.setInput(data);
+        try {
+            while (!inflater.needsInput()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.finished()
+                        || inflater.needsDictionary())) {
+                    throw new IOException("Compressed stream ended");
+                }
+                out.write(buffer, 0, n);
+                if (out.size() > MAXIMUM_FRAME) {
+                    throw new IOException("Decompressed frame too long");
+                }
+            }
+        } catch (DataFormatException dfe) {
+            throw new IOException("Bad compressed frame", dfe);
+        }
+        NetworkMetrics.recordDecompression(System.nanoTime() - start);
+        return out.toByteArray();
+    }
+
+    /**
+     * Add the frame header to some compressed bytes.
+     *
+     * @param data The compressed bytes.
+     * @return The complete frame.
+     */
+    public static byte[] frame(byte[] data) {
+        byte[] frame = new byte[FRAME_HEADER + data.length];
+        frame[0] = FRAME_MARKER;
+        frame[1] = (byte)(data.length >>> 24);
+        frame[2] = (byte)(data.length >>> 16);
+        frame[3] = (byte)(data.length >>> 8);
+        frame[4] = (byte)data.length;
+        System.arraycopy(data, 0, frame, FRAME_HEADER, data.length);
+        return frame;
+    }
+
+    /**
+     * Release the native resources of the codec.  It must not be
+     * used again.
+     */
+    public synchronized void end() {
+        if (deflater != null) deflater.end();
+        if (inflater != null) inflater.end();
+        deflater = null;
+        inflater = null;
+    }
+}
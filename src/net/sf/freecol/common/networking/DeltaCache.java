@@ -0,0 +1,593 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+
+/**
+ * Cache of the last state of each object sent in an "update" message,
+ * allowing later updates of the same object to be sent as a delta
+ * against that state.
+ *
+ * A delta element has the same tag and identifier as the object,
+ * carries only the changed attributes, lists the removed attributes
+ * in the <code>deltaRemove</code> attribute, and replaces runs of
+ * unchanged children with <code>deltaRef</code> elements referring
+ * to the children of the cached element.
+ *
+ * Both ends of a connection keep a cache of the same capacity, and
+ * perform the same lookups in the same order, so their least recently
+ * used evictions stay in step.  The version numbers check this.  If
+ * the receiver finds a delta that does not match its cached state it
+ * asks for the object again with a <code>deltaResync</code> message,
+ * and the sender replies with the full state it last sent.
+ *
+ * The sender keeps its states as lightweight {@link Record}s, which
+ * can be captured from a stream as an object is written, so an update
+ * need never be built as a document just to be encoded.  Partial
+ * updates of an object are sent as they are, and do not touch the
+ * cached state of the object.
+ */
+public class DeltaCache {
+
+    private static final Logger logger = Logger.getLogger(DeltaCache.class.getName());
+
+    /** The number of objects remembered by default. */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public static final String DELTA_BASE_TAG = "deltaBase";
+    public static final String DELTA_REF_TAG = "deltaRef";
+    public static final String DELTA_REMOVE_TAG = "deltaRemove";
+    public static final String DELTA_VERSION_TAG = "deltaVersion";
+    public static final String RESYNC_TAG = "deltaResync";
+    public static final String IDS_TAG = "ids";
+    private static final String COUNT_TAG = "count";
+    private static final String ID_TAG = "id";
+    private static final String PARTIAL_TAG = "partial";
+    private static final String START_TAG = "start";
+    private static final String UPDATE_TAG = "update";
+
+    /** How far ahead to search the cached children for a match. */
+    private static final int LOOKAHEAD = 8;
+
+    /**
+     * The state of an object as written: its tag, attributes, and
+     * children, which are either nested records or text.
+     */
+    static final class Record {
+
+        public final String tag;
+
+        public final Map<String, String> attributes = new LinkedHashMap<>();
+
+        public final List<Object> children = new ArrayList<>();
+
+        public Record(String tag) {
+            this.tag = tag;
+        }
+
+        /**
+         * Capture the state of an element.
+         *
+         * @param element The <code>Element</code> to capture.
+         * @return A new <code>Record</code> equivalent to the element.
+         */
+        public static Record of(Element element) {
+            Record record = new Record(element.getTagName());
+            NamedNodeMap attrs = element.getAttributes();
+            for (int i = 0; i < attrs.getLength(); i++) {
+                Attr a = (Attr)attrs.item(i);
+                record.attributes.put(a.getName(), a.getValue());
+            }
+            NodeList nl = element.getChildNodes();
+            for (int i = 0; i < nl.getLength(); i++) {
+                Node n = nl.item(i);
+                switch (n.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    record.children.add(of((Element)n));
+                    break;
+                case Node.TEXT_NODE: case Node.CDATA_SECTION_NODE:
+                    record.addText(n.getNodeValue());
+                    break;
+                default:
+                    break;
+                }
+            }
+            return record;
+        }
+
+        /**
+         * Add text, joining it to any text just before it.
+         *
+         * @param text The text to add.
+         */
+        public void addText(String text) {
+            int last = children.size() - 1;
+            if (last >= 0 && children.get(last) instanceof String) {
+                children.set(last, children.get(last) + text);
+            } else {
+                children.add(text);
+            }
+        }
+
+        /**
+         * Convert this record to an element.
+         *
+         * @param doc The <code>Document</code> to own the element.
+         * @return A new <code>Element</code>.
+         */
+        public Element toElement(Document doc) {
+            Element element = doc.createElement(tag);
+            for (Map.Entry<String, String> e : attributes.entrySet()) {
+                element.setAttribute(e.getKey(), e.getValue());
+            }
+            for (Object o : children) {
+                element.appendChild((o instanceof Record)
+                    ? ((Record)o).toElement(doc)
+                    : doc.createTextNode((String)o));
+            }
+            return element;
+        }
+
+        /**
+         * Write this record to a stream.
+         *
+         * @param xw The <code>XMLStreamWriter</code> to write to.
+         * @exception XMLStreamException if there is a problem writing
+         *     to the stream.
+         */
+        public void write(XMLStreamWriter xw) throws XMLStreamException {
+            xw.writeStartElement(tag);
+            for (Map.Entry<String, String> e : attributes.entrySet()) {
+                xw.writeAttribute(e.getKey(), e.getValue());
+            }
+            for (Object o : children) {
+                if (o instanceof Record) {
+                    ((Record)o).write(xw);
+                } else {
+                    xw.writeCharacters((String)o);
+                }
+            }
+            xw.writeEndElement();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Record)) return false;
+            Record other = (Record)o;
+            return tag.equals(other.tag)
+                && attributes.equals(other.attributes)
+                && children.equals(other.children);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * tag.hashCode() + attributes.hashCode())
+                + children.hashCode();
+        }
+    }
+
+    /** A cached object state. */
+    private static class Entry {
+
+        /** The received state, if this cache is decoding. */
+        public final Element element;
+
+        /** The sent state, if this cache is encoding. */
+        public final Record record;
+
+        public final int version;
+
+        public Entry(Element element, int version) {
+            this.element = element;
+            this.record = null;
+            this.version = version;
+        }
+
+        public Entry(Record record, int version) {
+            this.element = null;
+            this.record = record;
+            this.version = version;
+        }
+    }
+
+    /** The document owning the cached elements. */
+    private final Document document = DOMMessage.createNewDocument();
+
+    /** The cached states, by object identifier, least recent first. */
+    private final Map<String, Entry> entries;
+
+    /** The next version number to assign. */
+    private int nextVersion = 1;
+
+    /** Objects asked for again, that have not yet arrived in full. */
+    private final Set<String> resyncs = new HashSet<>();
+
+
+    /**
+     * Create a new <code>DeltaCache</code>.
+     *
+     * @param capacity The maximum number of objects to remember.
+     */
+    public DeltaCache(final int capacity) {
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> e) {
+                    return size() > capacity;
+                }
+            };
+    }
+
+
+    /**
+     * Can an element contain an update, that is, is it one of the
+     * elements that wrap the messages sent?
+     *
+     * @param tag The element tag.
+     * @return True if the tag is that of a wrapper element.
+     */
+    static boolean isWrapper(String tag) {
+        return Connection.QUESTION_TAG.equals(tag)
+            || Connection.REPLY_TAG.equals(tag)
+            || "multiple".equals(tag);
+    }
+
+    /**
+     * Is an element an update, whose children are objects?
+     *
+     * @param tag The element tag.
+     * @return True if the tag is that of an update.
+     */
+    static boolean isUpdate(String tag) {
+        return UPDATE_TAG.equals(tag);
+    }
+
+    /**
+     * Does a message contain an update?
+     *
+     * @param message The message <code>Element</code> to check.
+     * @return True if an "update" element is present.
+     */
+    private static boolean hasUpdate(Element message) {
+        String tag = message.getTagName();
+        if (isUpdate(tag)) return true;
+        if (!isWrapper(tag)) return false;
+        NodeList nl = message.getChildNodes();
+        for (int i = 0; i < nl.getLength(); i++) {
+            if (nl.item(i) instanceof Element
+                && hasUpdate((Element)nl.item(i))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Encode the objects in the updates within a message.
+     *
+     * @param message The message <code>Element</code> to encode.
+     * @return The message to send, which is a copy of the original
+     *     if anything was encoded.
+     */
+    public synchronized Element encodeMessage(Element message) {
+        if (!hasUpdate(message)) return message;
+        Element copy = (Element)DOMMessage.createNewDocument()
+            .importNode(message, true);
+        copy.getOwnerDocument().appendChild(copy);
+        transform(copy, true, null);
+        return copy;
+    }
+
+    /**
+     * Decode the objects in the updates within a message, in place.
+     *
+     * Objects whose deltas can not be applied are removed from the
+     * message, and must be asked for again.
+     *
+     * @param message The message <code>Element</code> to decode.
+     * @return A list of the identifiers of the objects to ask for
+     *     again, which is empty if all went well.
+     */
+    public synchronized List<String> decodeMessage(Element message) {
+        List<String> failed = new ArrayList<>();
+        if (hasUpdate(message)) transform(message, false, failed);
+        return failed;
+    }
+
+    /**
+     * Create a message asking the sender for objects again.
+     *
+     * @param ids The identifiers of the objects.
+     * @return A "deltaResync" message <code>Element</code>.
+     */
+    public static Element createResyncMessage(List<String> ids) {
+        return DOMMessage.createMessage(RESYNC_TAG,
+            IDS_TAG, String.join(" ", ids));
+    }
+
+    /**
+     * Handle a request to send objects again.  The full states last
+     * sent are forgotten, so encoding the result sends them in full.
+     *
+     * Must be called holding the same lock as the encoding of the
+     * messages being sent, so no newer state can be sent in between.
+     *
+     * @param message The "deltaResync" message <code>Element</code>.
+     * @return An "update" message containing the objects that are
+     *     still cached, or null if there are none.
+     */
+    public synchronized Element resync(Element message) {
+        Element update = null;
+        for (String id : message.getAttribute(IDS_TAG).split(" ")) {
+            Entry old = entries.remove(id);
+            if (old == null) continue; // Will be sent in full anyway
+            if (update == null) update = DOMMessage.createMessage(UPDATE_TAG);
+            update.appendChild(old.record.toElement(update.getOwnerDocument()));
+        }
+        return update;
+    }
+
+    /**
+     * Encode or decode the children of the updates in a message.
+     *
+     * @param message The message <code>Element</code> to transform.
+     * @param encode If true encode, otherwise decode.
+     * @param failed A list to add the identifiers of objects that
+     *     could not be decoded to.
+     */
+    private void transform(Element message, boolean encode,
+                           List<String> failed) {
+        boolean update = UPDATE_TAG.equals(message.getTagName());
+        List<Element> children = new ArrayList<>();
+        NodeList nl = message.getChildNodes();
+        for (int i = 0; i < nl.getLength(); i++) {
+            if (nl.item(i) instanceof Element) {
+                children.add((Element)nl.item(i));
+            }
+        }
+        for (Element e : children) {
+            if (!update) {
+                transform(e, encode, failed);
+                continue;
+            }
+            Element result = (encode) ? encode(e) : decode(e);
+            if (result == null) {
+                String id = e.getAttribute(ID_TAG);
+                if (resyncs.add(id)) failed.add(id);
+                message.removeChild(e);
+            } else if (result != e) {
+                message.replaceChild(result, e);
+            }
+        }
+    }
+
+    /**
+     * Encode an object element against its cached state, and remember
+     * the new state.
+     *
+     * @param full The full object <code>Element</code>, which may be
+     *     modified.
+     * @return The element to send in its place.
+     */
+    public synchronized Element encode(Element full) {
+        if (full.getAttribute(ID_TAG).isEmpty()
+            || full.hasAttribute(PARTIAL_TAG)) return full;
+        Record result = encode(Record.of(full));
+        if (!result.attributes.containsKey(DELTA_BASE_TAG)) {
+            full.setAttribute(DELTA_VERSION_TAG,
+                              result.attributes.get(DELTA_VERSION_TAG));
+            return full;
+        }
+        return result.toElement(full.getOwnerDocument());
+    }
+
+    /**
+     * Encode the state of an object against its cached state, and
+     * remember the new state.
+     *
+     * @param full The full object <code>Record</code>, which is kept
+     *     as the cached state, so must not be modified afterwards.
+     * @return The record to send in its place.
+     */
+    public synchronized Record encode(Record full) {
+        String id = full.attributes.get(ID_TAG);
+        if (id == null || id.isEmpty()
+            || full.attributes.containsKey(PARTIAL_TAG)) return full;
+
+        Entry old = entries.get(id);
+        int version = nextVersion++;
+        entries.put(id, new Entry(full, version));
+        if (old == null) {
+            Record first = new Record(full.tag);
+            first.attributes.putAll(full.attributes);
+            first.attributes.put(DELTA_VERSION_TAG, Integer.toString(version));
+            first.children.addAll(full.children);
+            return first;
+        }
+
+        Record delta = new Record(full.tag);
+        delta.attributes.put(ID_TAG, id);
+        delta.attributes.put(DELTA_BASE_TAG, Integer.toString(old.version));
+        delta.attributes.put(DELTA_VERSION_TAG, Integer.toString(version));
+
+        // Changed and removed attributes
+        final Map<String, String> oldAttributes = old.record.attributes;
+        for (Map.Entry<String, String> e : full.attributes.entrySet()) {
+            if (!e.getValue().equals(oldAttributes.get(e.getKey()))) {
+                delta.attributes.put(e.getKey(), e.getValue());
+            }
+        }
+        StringBuilder removed = new StringBuilder();
+        for (String name : oldAttributes.keySet()) {
+            if (!full.attributes.containsKey(name)) {
+                removed.append(name).append(' ');
+            }
+        }
+        if (removed.length() > 0) {
+            delta.attributes.put(DELTA_REMOVE_TAG, removed.toString().trim());
+        }
+
+        // Children, referring to runs of unchanged ones
+        final List<Object> oldNodes = old.record.children;
+        int next = 0, start = -1, count = 0;
+        for (Object n : full.children) {
+            int found = -1;
+            for (int j = next; j < oldNodes.size()
+                     && j < next + LOOKAHEAD; j++) {
+                if (oldNodes.get(j).equals(n)) {
+                    found = j;
+                    break;
+                }
+            }
+            if (found >= 0 && found == start + count) {
+                count++;
+            } else {
+                if (count > 0) appendRef(delta, start, count);
+                count = 0;
+                if (found >= 0) {
+                    start = found;
+                    count = 1;
+                } else {
+                    delta.children.add(n);
+                }
+            }
+            if (found >= 0) next = found + 1;
+        }
+        if (count > 0) appendRef(delta, start, count);
+        return delta;
+    }
+
+    /**
+     * Append a reference to a run of cached children.
+     *
+     * @param delta The delta <code>Record</code> to append to.
+     * @param start The index of the first child.
+     * @param count The number of children.
+     */
+    private static void appendRef(Record delta, int start, int count) {
+        Record ref = new Record(DELTA_REF_TAG);
+        ref.attributes.put(START_TAG, Integer.toString(start));
+        ref.attributes.put(COUNT_TAG, Integer.toString(count));
+        delta.children.add(ref);
+    }
+
+    /**
+     * Decode an object element, and remember its state.
+     *
+     * @param element The received object <code>Element</code>, which
+     *     may be modified.
+     * @return The full object element, or null if the delta could not
+     *     be applied and the object must be asked for again.
+     */
+    public synchronized Element decode(Element element) {
+        String id = element.getAttribute(ID_TAG);
+        if (id.isEmpty() || !element.hasAttribute(DELTA_VERSION_TAG)) {
+            return element;
+        }
+        int version = Integer.parseInt(element.getAttribute(DELTA_VERSION_TAG));
+        element.removeAttribute(DELTA_VERSION_TAG);
+
+        Element full;
+        if (element.hasAttribute(DELTA_BASE_TAG)) {
+            int base = Integer.parseInt(element.getAttribute(DELTA_BASE_TAG));
+            Entry old = entries.get(id);
+            if (old == null || old.version != base) {
+                logger.warning("Delta base " + base + " for " + id
+                    + " does not match cached "
+                    + ((old == null) ? "nothing" : old.version));
+                entries.remove(id);
+                return null;
+            }
+            full = apply(old.element, element);
+        } else {
+            full = element;
+            resyncs.remove(id);
+        }
+        entries.put(id, new Entry((Element)document.importNode(full, true),
+                                  version));
+        return full;
+    }
+
+    /**
+     * Apply a delta to a cached object state.
+     *
+     * @param old The cached object <code>Element</code>.
+     * @param delta The delta <code>Element</code>.
+     * @return The full object element, owned by the document of the delta.
+     */
+    private static Element apply(Element old, Element delta) {
+        Document doc = delta.getOwnerDocument();
+        Element full = doc.createElement(old.getTagName());
+        Set<String> removed = new HashSet<>();
+        if (delta.hasAttribute(DELTA_REMOVE_TAG)) {
+            for (String name : delta.getAttribute(DELTA_REMOVE_TAG)
+                     .split(" ")) removed.add(name);
+        }
+        NamedNodeMap attrs = old.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr a = (Attr)attrs.item(i);
+            if (!removed.contains(a.getName())) {
+                full.setAttribute(a.getName(), a.getValue());
+            }
+        }
+        attrs = delta.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Attr a = (Attr)attrs.item(i);
+            String name = a.getName();
+            if (!DELTA_BASE_TAG.equals(name)
+                && !DELTA_REMOVE_TAG.equals(name)) {
+                full.setAttribute(name, a.getValue());
+            }
+        }
+
+        NodeList oldNodes = old.getChildNodes();
+        NodeList nl = delta.getChildNodes();
+        for (int i = 0; i < nl.getLength(); i++) {
+            Node n = nl.item(i);
+            if (n instanceof Element
+                && DELTA_REF_TAG.equals(((Element)n).getTagName())) {
+                int start = Integer.parseInt(((Element)n).getAttribute(START_TAG));
+                int count = Integer.parseInt(((Element)n).getAttribute(COUNT_TAG));
+                for (int j = start; j < start + count; j++) {
+                    full.appendChild(doc.importNode(oldNodes.item(j), true));
+                }
+            } else {
+                full.appendChild(doc.importNode(n, true));
+            }
+        }
+        return full;
+    }
+}
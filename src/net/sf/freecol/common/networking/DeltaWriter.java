@@ -0,0 +1,312 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import net.sf.freecol.common.networking.DeltaCache.Record;
+
+
+/**
+ * A stream writer that encodes the objects in the updates written
+ * through it as deltas, as they are written.
+ *
+ * Everything is passed straight on to the underlying writer, except
+ * for the objects within an "update" element, which are captured as
+ * {@link DeltaCache.Record}s, encoded against the cache, and only
+ * then written.  Updates are recognized as in
+ * {@link DeltaCache#encodeMessage}, at the top of the message or
+ * within the elements that wrap it.
+ */
+final class DeltaWriter implements XMLStreamWriter {
+
+    /** The writer to write to. */
+    private final XMLStreamWriter out;
+
+    /** The cache to encode the objects against. */
+    private final DeltaCache cache;
+
+    /**
+     * For each open element that is passed through, whether it may
+     * contain an update, or is one.
+     */
+    private final Deque<String> open = new ArrayDeque<>();
+
+    /** The records of the open elements of the object being captured. */
+    private final Deque<Record> captured = new ArrayDeque<>();
+
+
+    /**
+     * Create a new <code>DeltaWriter</code>.
+     *
+     * @param out The <code>XMLStreamWriter</code> to write to.
+     * @param cache The <code>DeltaCache</code> to encode against.
+     */
+    public DeltaWriter(XMLStreamWriter out, DeltaCache cache) {
+        this.out = out;
+        this.cache = cache;
+    }
+
+
+    /** Marks an open element that may contain an update. */
+    private static final String WRAPPER = "wrapper";
+    /** Marks an open update element. */
+    private static final String UPDATE = "update";
+    /** Marks any other open element. */
+    private static final String OTHER = "other";
+
+    /**
+     * Start an element, either capturing it or passing it on.
+     *
+     * @param tag The element tag.
+     * @exception XMLStreamException if there is a problem writing
+     *     to the stream.
+     */
+    private void start(String tag) throws XMLStreamException {
+        if (!captured.isEmpty()) {
+            Record record = new Record(tag);
+            captured.peek().children.add(record);
+            captured.push(record);
+        } else if (UPDATE == open.peek()) {
+            captured.push(new Record(tag));
+        } else {
+            boolean outer = open.isEmpty() || WRAPPER == open.peek();
+            open.push((!outer) ? OTHER
+                : (DeltaCache.isUpdate(tag)) ? UPDATE
+                : (DeltaCache.isWrapper(tag)) ? WRAPPER
+                : OTHER);
+            out.writeStartElement(tag);
+        }
+    }
+
+    /**
+     * End an element, writing the object when its capture is complete.
+     *
+     * @exception XMLStreamException if there is a problem writing
+     *     to the stream.
+     */
+    private void end() throws XMLStreamException {
+        if (captured.isEmpty()) {
+            open.pop();
+            out.writeEndElement();
+            return;
+        }
+        Record record = captured.pop();
+        if (captured.isEmpty()) cache.encode(record).write(out);
+    }
+
+
+    // Implement XMLStreamWriter
+
+    @Override
+    public void writeStartElement(String localName)
+        throws XMLStreamException {
+        start(localName);
+    }
+
+    @Override
+    public void writeStartElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+        start(localName);
+    }
+
+    @Override
+    public void writeStartElement(String prefix, String localName,
+                                  String namespaceURI)
+        throws XMLStreamException {
+        start(localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String localName)
+        throws XMLStreamException {
+        start(localName);
+        end();
+    }
+
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName)
+        throws XMLStreamException {
+        writeEmptyElement(localName);
+    }
+
+    @Override
+    public void writeEmptyElement(String prefix, String localName,
+                                  String namespaceURI)
+        throws XMLStreamException {
+        writeEmptyElement(localName);
+    }
+
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        end();
+    }
+
+    @Override
+    public void writeEndDocument() throws XMLStreamException {
+        while (!captured.isEmpty() || !open.isEmpty()) end();
+        out.writeEndDocument();
+    }
+
+    @Override
+    public void close() throws XMLStreamException {
+        out.close();
+    }
+
+    @Override
+    public void flush() throws XMLStreamException {
+        out.flush();
+    }
+
+    @Override
+    public void writeAttribute(String localName, String value)
+        throws XMLStreamException {
+        if (captured.isEmpty()) {
+            out.writeAttribute(localName, value);
+        } else {
+            captured.peek().attributes.put(localName, value);
+        }
+    }
+
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI,
+                               String localName, String value)
+        throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    @Override
+    public void writeAttribute(String namespaceURI, String localName,
+                               String value) throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI)
+        throws XMLStreamException {
+        if (captured.isEmpty()) out.writeNamespace(prefix, namespaceURI);
+    }
+
+    @Override
+    public void writeDefaultNamespace(String namespaceURI)
+        throws XMLStreamException {
+        if (captured.isEmpty()) out.writeDefaultNamespace(namespaceURI);
+    }
+
+    @Override
+    public void writeComment(String data) throws XMLStreamException {
+        if (captured.isEmpty()) out.writeComment(data);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target)
+        throws XMLStreamException {
+        if (captured.isEmpty()) out.writeProcessingInstruction(target);
+    }
+
+    @Override
+    public void writeProcessingInstruction(String target, String data)
+        throws XMLStreamException {
+        if (captured.isEmpty()) out.writeProcessingInstruction(target, data);
+    }
+
+    @Override
+    public void writeCData(String data) throws XMLStreamException {
+        writeCharacters(data);
+    }
+
+    @Override
+    public void writeDTD(String dtd) throws XMLStreamException {
+        out.writeDTD(dtd);
+    }
+
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        if (captured.isEmpty()) out.writeEntityRef(name);
+    }
+
+    @Override
+    public void writeStartDocument() throws XMLStreamException {
+        out.writeStartDocument();
+    }
+
+    @Override
+    public void writeStartDocument(String version) throws XMLStreamException {
+        out.writeStartDocument(version);
+    }
+
+    @Override
+    public void writeStartDocument(String encoding, String version)
+        throws XMLStreamException {
+        out.writeStartDocument(encoding, version);
+    }
+
+    @Override
+    public void writeCharacters(String text) throws XMLStreamException {
+        if (captured.isEmpty()) {
+            out.writeCharacters(text);
+        } else {
+            captured.peek().addText(text);
+        }
+    }
+
+    @Override
+    public void writeCharacters(char[] text, int start, int len)
+        throws XMLStreamException {
+        writeCharacters(new String(text, start, len));
+    }
+
+    @Override
+    public String getPrefix(String uri) throws XMLStreamException {
+        return out.getPrefix(uri);
+    }
+
+    @Override
+    public void setPrefix(String prefix, String uri)
+        throws XMLStreamException {
+        out.setPrefix(prefix, uri);
+    }
+
+    @Override
+    public void setDefaultNamespace(String uri) throws XMLStreamException {
+        out.setDefaultNamespace(uri);
+    }
+
+    @Override
+    public void setNamespaceContext(NamespaceContext context)
+        throws XMLStreamException {
+        out.setNamespaceContext(context);
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return out.getNamespaceContext();
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return out.getProperty(name);
+    }
+}
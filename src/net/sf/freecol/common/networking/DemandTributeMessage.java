@@ -36,7 +36,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when demanding tribute from a native settlement.
  */
-public class DemandTributeMessage extends DOMMessage {
+public class DemandTributeMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the object demanding tribute. */
     private final String unitId;
@@ -83,6 +83,7 @@ public class DemandTributeMessage extends DOMMessage {
      * @return An <code>Element</code> to update the originating
      *     player with the result of the demand.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
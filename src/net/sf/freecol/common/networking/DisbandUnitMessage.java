@@ -31,7 +31,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when disbanding a unit.
  */
-public class DisbandUnitMessage extends DOMMessage {
+public class DisbandUnitMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit to be disbanded. */
     private final String unitId;
@@ -72,6 +72,7 @@ public class DisbandUnitMessage extends DOMMessage {
      * @return An update containing the cleared unit, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when disembarking.
  */
-public class DisembarkMessage extends DOMMessage {
+public class DisembarkMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the object disembarking. */
     private final String unitId;
@@ -73,6 +73,7 @@ public class DisembarkMessage extends DOMMessage {
      * @return An update containing the disembarked unit, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
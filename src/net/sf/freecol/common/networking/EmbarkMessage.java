@@ -35,7 +35,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when embarking.
  */
-public class EmbarkMessage extends DOMMessage {
+public class EmbarkMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit embarking. */
     private final String unitId;
@@ -90,6 +90,7 @@ public class EmbarkMessage extends DOMMessage {
      * @return An update containing the embarked unit, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -33,7 +33,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when a unit is to emigrate.
  */
-public class EmigrateUnitMessage extends DOMMessage {
+public class EmigrateUnitMessage extends DOMMessage implements ServerRequest {
 
     /** The slot from which to select the unit. */
     private final String slotString;
@@ -72,6 +72,7 @@ public class EmigrateUnitMessage extends DOMMessage {
      * @return An <code>Element</code> encapsulating the change,
      *         or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -31,7 +31,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent to equip a unit for a particular role.
  */
-public class EquipForRoleMessage extends DOMMessage {
+public class EquipForRoleMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit to equip. */
     private final String unitId;
@@ -83,6 +83,7 @@ public class EquipForRoleMessage extends DOMMessage {
      * @return An update encapsulating the equipForRole location change
      *     or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -0,0 +1,138 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import javax.xml.stream.XMLStreamException;
+
+
+/**
+ * Decodes the messages received by a connection, whichever way they
+ * are read.
+ *
+ * A message is either XML ending in a newline, or a frame: a marker
+ * byte, a four byte length and that many bytes of content, which is
+ * either a binary message or a compressed frame holding a binary or
+ * XML message.  The length is checked before anything is allocated
+ * for the content, so a peer can not make a connection allocate more
+ * than {@link #MAXIMUM_MESSAGE} bytes for a frame, even before it
+ * has logged in.
+ */
+final class FrameDecoder {
+
+    /** The longest frame content accepted. */
+    public static final int MAXIMUM_MESSAGE = 1 << 26;
+
+    /** The size of a frame header, marker and length. */
+    public static final int FRAME_HEADER = BinaryCodec.FRAME_HEADER;
+
+    /** The parser for XML messages. */
+    private final MessageParser parser = new MessageParser();
+
+    /** The decoder for binary messages. */
+    private final BinaryCodec binaryCodec = new BinaryCodec();
+
+    /** The decompressor for compressed frames. */
+    private final DeflateCodec decompressor = new DeflateCodec();
+
+
+    /**
+     * Does a byte start a frame rather than an XML message?
+     *
+     * @param marker The first byte of the message.
+     * @return True if the message is a frame.
+     */
+    public static boolean isFrame(int marker) {
+        return marker == BinaryCodec.FRAME_MARKER
+            || marker == DeflateCodec.FRAME_MARKER;
+    }
+
+    /**
+     * Get the length of the content of a frame from its header.
+     *
+     * @param b1 The first byte of the length, most significant first.
+     * @param b2 The second byte of the length.
+     * @param b3 The third byte of the length.
+     * @param b4 The fourth byte of the length.
+     * @return The content length.
+     * @exception IOException if the length is negative or too long.
+     */
+    public static int getLength(byte b1, byte b2, byte b3, byte b4)
+        throws IOException {
+        int length = ((b1 & 0xFF) << 24) | ((b2 & 0xFF) << 16)
+            | ((b3 & 0xFF) << 8) | (b4 & 0xFF);
+        if (length < 0 || length > MAXIMUM_MESSAGE) {
+            throw new IOException("Bad frame length: " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Parse an XML message.
+     *
+     * @param in The <code>InputStream</code> to read the message from.
+     * @return The <code>DOMMessage</code> parsed, or null if there
+     *     was no message.
+     * @exception XMLStreamException if the message is malformed.
+     */
+    public DOMMessage parse(InputStream in) throws XMLStreamException {
+        return parser.parse(in);
+    }
+
+    /**
+     * Decode the content of a frame.
+     *
+     * @param marker The frame marker.
+     * @param data The frame content, following the header.
+     * @return The <code>DOMMessage</code> the frame contains.
+     * @exception IOException if the frame is malformed.
+     * @exception XMLStreamException if a compressed XML message is
+     *     malformed.
+     */
+    public DOMMessage decode(int marker, byte[] data)
+        throws IOException, XMLStreamException {
+        if (marker == BinaryCodec.FRAME_MARKER) {
+            return new DOMMessage(binaryCodec.decode(data).getOwnerDocument());
+        }
+        byte[] frame = decompressor.decompress(data);
+        if (frame.length > FRAME_HEADER
+            && frame[0] == BinaryCodec.FRAME_MARKER) {
+            return decode(BinaryCodec.FRAME_MARKER,
+                Arrays.copyOfRange(frame, FRAME_HEADER, frame.length));
+        }
+        int length = frame.length;
+        if (length > 0 && frame[length - 1] == '\n') length--;
+        DOMMessage msg = parser.parse(new ByteArrayInputStream(frame, 0, length));
+        if (msg == null) throw new IOException("Empty compressed frame");
+        return msg;
+    }
+
+    /**
+     * Release the native resources of the decoder.  It must not be
+     * used again.
+     */
+    public void end() {
+        decompressor.end();
+    }
+}
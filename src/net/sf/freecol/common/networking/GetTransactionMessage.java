@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent to initiate a transaction.
  */
-public class GetTransactionMessage extends DOMMessage {
+public class GetTransactionMessage extends DOMMessage implements ServerRequest {
 
     /** The object identifier of the unit performing the transaction. */
     private final String unitId;
@@ -83,6 +83,7 @@ public class GetTransactionMessage extends DOMMessage {
      * @return A reply encapsulating the possibilities for this
      *     transaction, or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -35,7 +35,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when inciting a native settlement.
  */
-public class InciteMessage extends DOMMessage {
+public class InciteMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit inciting. */
     private final String unitId;
@@ -96,6 +96,7 @@ public class InciteMessage extends DOMMessage {
      * @return An element containing the result of the incite, or an
      *     error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -34,7 +34,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent to resolve natives making demands of a colony.
  */
-public class IndianDemandMessage extends DOMMessage {
+public class IndianDemandMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit that is demanding. */
     private final String unitId;
@@ -84,10 +84,9 @@ public class IndianDemandMessage extends DOMMessage {
 
         this.unitId = element.getAttribute("unit");
         this.colonyId = element.getAttribute("colony");
-        this.typeId = (!element.hasAttribute("type")) ? null
-            : element.getAttribute("type");
+        this.typeId = getNonEmptyAttribute(element, "type");
         this.amount = element.getAttribute("amount");
-        this.result = element.getAttribute("result");
+        this.result = getNonEmptyAttribute(element, "result");
     }
 
 
@@ -157,6 +156,7 @@ public class IndianDemandMessage extends DOMMessage {
      * @return An update containing the indianDemandd unit, or an
      *     error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when a unit joins a colony.
  */
-public class JoinColonyMessage extends DOMMessage {
+public class JoinColonyMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the colony. */
     private final String colonyId;
@@ -79,6 +79,7 @@ public class JoinColonyMessage extends DOMMessage {
      *     and updating its surrounding tiles, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
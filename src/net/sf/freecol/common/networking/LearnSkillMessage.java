@@ -35,7 +35,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when learning for the skill taught at a settlement.
  */
-public class LearnSkillMessage extends DOMMessage {
+public class LearnSkillMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit that is learning. */
     private final String unitId;
@@ -82,6 +82,7 @@ public class LearnSkillMessage extends DOMMessage {
      * @return An <code>Element</code> to update the originating
      *     player with the result of the query.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
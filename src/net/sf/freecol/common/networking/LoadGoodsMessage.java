@@ -34,7 +34,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when loading goods.
  */
-public class LoadGoodsMessage extends DOMMessage {
+public class LoadGoodsMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier for the location of the goods. */
     private final String locationId;
@@ -93,6 +93,7 @@ public class LoadGoodsMessage extends DOMMessage {
      * @return An update containing the carrier, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -19,6 +19,9 @@
 
 package net.sf.freecol.common.networking;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import net.sf.freecol.common.model.Game;
 import net.sf.freecol.common.model.Player;
 import net.sf.freecol.common.model.Unit;
@@ -33,6 +36,12 @@ import org.w3c.dom.NodeList;
  */
 public class LoginMessage extends DOMMessage {
 
+    /** The attribute of a login request with the last update seen. */
+    public static final String LAST_UPDATE_TAG = "lastUpdate";
+
+    /** The attribute marking a reply that carries only missed updates. */
+    public static final String RESYNC_TAG = "resync";
+
     /** The Player that is logging in. */
     private final Player player;
 
@@ -60,6 +69,18 @@ public class LoginMessage extends DOMMessage {
     /** The game. */
     private final Game game;
 
+    /** Whether messages may now be sent in the binary encoding. */
+    private final boolean binary;
+
+    /** Whether frames may now be sent compressed. */
+    private final boolean compress;
+
+    /** The sequence number of the last update included. */
+    private final int lastUpdate;
+
+    /** The updates the client missed, if resynchronizing. */
+    private final List<Element> updates;
+
         
     /**
      * Create a new <code>LoginMessage</code> with the supplied name
@@ -73,11 +94,18 @@ public class LoginMessage extends DOMMessage {
      * @param currentPlayer True if this player is the current player.
      * @param activeUnit The current active <code>Unit</code>, or null.
      * @param game The entire game.
+     * @param binary True if the binary encoding was negotiated.
+     * @param compress True if compression was negotiated.
+     * @param lastUpdate The sequence number of the last update the
+     *     client will have seen once it has applied this message.
+     * @param updates The updates a reconnecting client missed, to be
+     *     sent instead of the game, or null to send the game.
      */
     public LoginMessage(Player player, String userName, String version,
                         boolean startGame, boolean singlePlayer,
                         boolean currentPlayer, Unit activeUnit,
-                        Game game) {
+                        Game game, boolean binary, boolean compress,
+                        int lastUpdate, List<Element> updates) {
         super(getXMLElementTagName());
 
         this.player = player;
@@ -89,6 +117,10 @@ public class LoginMessage extends DOMMessage {
         this.currentPlayer = currentPlayer;
         this.activeUnitId = (activeUnit == null) ? null : activeUnit.getId();
         this.game = game;
+        this.binary = binary;
+        this.compress = compress;
+        this.lastUpdate = lastUpdate;
+        this.updates = updates;
     }
 
     /**
@@ -113,9 +145,26 @@ public class LoginMessage extends DOMMessage {
         str = element.getAttribute("currentPlayer");
         this.currentPlayer = Boolean.parseBoolean(str);
         this.activeUnitId = element.getAttribute("activeUnit");
+        str = element.getAttribute(Connection.BINARY_TAG);
+        this.binary = Boolean.parseBoolean(str);
+        str = element.getAttribute(Connection.COMPRESS_TAG);
+        this.compress = Boolean.parseBoolean(str);
+        str = element.getAttribute(Connection.UPDATE_SEQUENCE_TAG);
+        this.lastUpdate = (str.isEmpty()) ? 0 : Integer.parseInt(str);
         NodeList children = element.getChildNodes();
-        this.game = (children.getLength() != 1) ? null
-            : new Game((Element)children.item(0), this.userName);
+        if (Boolean.parseBoolean(element.getAttribute(RESYNC_TAG))) {
+            this.game = null;
+            this.updates = new ArrayList<>();
+            for (int i = 0; i < children.getLength(); i++) {
+                if (children.item(i) instanceof Element) {
+                    this.updates.add((Element)children.item(i));
+                }
+            }
+        } else {
+            this.game = (children.getLength() != 1) ? null
+                : new Game((Element)children.item(0), this.userName);
+            this.updates = null;
+        }
     }
 
 
@@ -146,7 +195,18 @@ public class LoginMessage extends DOMMessage {
     }
 
     public Unit getActiveUnit() {
-        return (activeUnitId == null) ? null
+        return getActiveUnit(game);
+    }
+
+    /**
+     * Get the active unit from a given game, as a resynchronizing
+     * message carries no game of its own.
+     *
+     * @param game The <code>Game</code> to look in.
+     * @return The active <code>Unit</code>, or null if none.
+     */
+    public Unit getActiveUnit(Game game) {
+        return (activeUnitId == null || game == null) ? null
             : game.getFreeColGameObject(activeUnitId, Unit.class);
     }
 
@@ -154,6 +214,32 @@ public class LoginMessage extends DOMMessage {
         return game;
     }
 
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public boolean isCompressed() {
+        return compress;
+    }
+
+    public int getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /**
+     * Is this a resynchronization of a reconnecting client, carrying
+     * the updates it missed rather than the game?
+     *
+     * @return True if resynchronizing.
+     */
+    public boolean isResync() {
+        return updates != null;
+    }
+
+    public List<Element> getUpdates() {
+        return updates;
+    }
+
 
     /**
      * Handle a "login"-message.
@@ -184,9 +270,20 @@ public class LoginMessage extends DOMMessage {
             "startGame", Boolean.toString(startGame),
             "singlePlayer", Boolean.toString(singlePlayer),
             "currentPlayer", Boolean.toString(currentPlayer),
-            "activeUnit", activeUnitId);
-        result.appendChild(game.toXMLElement(result.getOwnerDocument(), 
-                                             player));
+            "activeUnit", activeUnitId,
+            Connection.BINARY_TAG, Boolean.toString(binary),
+            Connection.COMPRESS_TAG, Boolean.toString(compress),
+            Connection.UPDATE_SEQUENCE_TAG, Integer.toString(lastUpdate));
+        if (updates != null) {
+            result.setAttribute(RESYNC_TAG, Boolean.toString(true));
+            for (Element e : updates) {
+                result.appendChild(result.getOwnerDocument()
+                    .importNode(e, true));
+            }
+        } else {
+            result.appendChild(game.toXMLElement(result.getOwnerDocument(),
+                                                 player));
+        }
         return result;
     }
 
@@ -0,0 +1,187 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.freecol.common.FreeColException;
+
+import org.w3c.dom.Element;
+
+
+/**
+ * Routes the messages received on a connection, whatever reads them.
+ *
+ * Replies are matched to the questions waiting for them, and other
+ * messages are passed to the connection to be handled.
+ */
+final class MessageDispatcher {
+
+    private static final Logger logger = Logger.getLogger(MessageDispatcher.class.getName());
+
+    /** A map of network ids to the corresponding waiting thread. */
+    private final Map<Integer, NetworkReplyObject> waitingThreads
+        = Collections.synchronizedMap(new HashMap<Integer, NetworkReplyObject>());
+
+    /** The connection to dispatch for. */
+    private final Connection connection;
+
+    /** A counter for reply ids. */
+    private int nextNetworkReplyId = 1;
+
+    /** Has receiving stopped? */
+    private boolean stopped = false;
+
+
+    /**
+     * Create a new <code>MessageDispatcher</code>.
+     *
+     * @param connection The <code>Connection</code> to dispatch for.
+     */
+    MessageDispatcher(Connection connection) {
+        this.connection = connection;
+    }
+
+
+    /**
+     * Gets the next network reply identifier that will be used when
+     * identifing a network message.
+     *
+     * @return The next available network reply identifier.
+     */
+    public synchronized int getNextNetworkReplyId() {
+        return nextNetworkReplyId++;
+    }
+
+    /**
+     * Creates and registers a new <code>NetworkReplyObject</code> with the
+     * specified object identifier.
+     *
+     * @param networkReplyId The identifier of the message the calling
+     *     thread should wait for.
+     * @return The <code>NetworkReplyObject</code> containing the network
+     *     message.
+     */
+    public NetworkReplyObject waitForNetworkReply(int networkReplyId) {
+        NetworkReplyObject nro = new NetworkReplyObject(networkReplyId);
+        synchronized (this) {
+            if (this.stopped) { // No reply is coming
+                nro.interrupt();
+            } else {
+                waitingThreads.put(networkReplyId, nro);
+                NetworkMetrics.recordOutstandingReplies(1);
+            }
+        }
+        return nro;
+    }
+
+    /**
+     * Is a reply to a question awaited?
+     *
+     * @return True if a question is waiting for its reply.
+     */
+    public boolean isAwaitingReplies() {
+        return !waitingThreads.isEmpty();
+    }
+
+    /**
+     * Has receiving stopped?
+     *
+     * @return True if no more messages will be dispatched.
+     */
+    public synchronized boolean isStopped() {
+        return this.stopped;
+    }
+
+    /**
+     * Stop receiving, releasing any threads waiting for replies.
+     */
+    public synchronized void stop() {
+        if (!this.stopped) {
+            this.stopped = true;
+            synchronized (this.waitingThreads) {
+                for (NetworkReplyObject o : this.waitingThreads.values()) {
+                    o.interrupt();
+                }
+                NetworkMetrics.recordOutstandingReplies(-waitingThreads.size());
+                this.waitingThreads.clear();
+            }
+        }
+    }
+
+    /**
+     * Stop receiving, and tell the message handler the connection is lost.
+     *
+     * @param reason The reason for disconnecting.
+     */
+    public void disconnect(String reason) {
+        stop();
+        if (connection.getMessageHandler() != null) {
+            try {
+                connection.getMessageHandler().handle(connection,
+                    DOMMessage.createMessage(Connection.DISCONNECT_TAG,
+                        "reason", reason));
+            } catch (FreeColException e) {
+                logger.log(Level.WARNING, "Rx disconnect", e);
+            }
+        }
+    }
+
+    /**
+     * Dispatch a received message.
+     *
+     * @param msg The <code>DOMMessage</code> received.
+     * @return False if the message was a disconnect, after which
+     *     receiving stops.
+     */
+    public boolean dispatch(DOMMessage msg) {
+        final Element element = msg.getDocument().getDocumentElement();
+        final String tag = element.getTagName();
+        if (Connection.DISCONNECT_TAG.equals(tag)) {
+            stop();
+            return false;
+
+        } else if (Connection.REPLY_TAG.equals(tag)) {
+            // Always decode, to keep the delta state in step
+            connection.decodeDeltas(element);
+            int id;
+            try {
+                id = Integer.parseInt(element.getAttribute(Connection.NETWORK_REPLY_ID_TAG));
+            } catch (NumberFormatException nfe) {
+                id = -1;
+            }
+            NetworkReplyObject nro = waitingThreads.remove(id);
+            if (nro == null) {
+                logger.warning("Could not find networkReplyId: " + id);
+            } else {
+                NetworkMetrics.recordOutstandingReplies(-1);
+                nro.setResponse(msg);
+            }
+
+        } else {
+            connection.handleAndSendReply(msg);
+        }
+        return true;
+    }
+}
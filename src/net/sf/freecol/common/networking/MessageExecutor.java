@@ -0,0 +1,354 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Runs the handlers for the messages received on a connection.
+ *
+ * Handlers run on a pool of threads shared by all connections, rather
+ * than on a new thread per message.  Questions are handled
+ * concurrently, as a handler may itself need to ask the other end a
+ * question before it can reply.  Other messages, and questions that
+ * were sent pipelined and so marked as ordered, are handled one at a
+ * time in the order they arrived.
+ *
+ * Each connection may have a limited number of ordered messages
+ * queued and of concurrent handlers running.  A receiving thread
+ * that hits a limit is held up until the handlers catch up, which
+ * stops reading from a flooding peer.  Submitters that serve other
+ * connections too do not wait, but stop reading from the connection
+ * while it {@link #isFull}.  The reader is never held up while a
+ * reply is awaited on the connection, as the busy handlers may be
+ * waiting for it, and only the reader can deliver it.
+ *
+ * No message is dropped to relieve the pressure, as most carry state
+ * that the two ends must agree on.  Only a question whose sender has
+ * said it will retry is rejected when too many handlers are running,
+ * or when the shared pool is exhausted, in which case the caller
+ * should tell the sender the connection is busy.  Otherwise a handler
+ * that finds the pool exhausted gets a thread of its own.
+ */
+final class MessageExecutor {
+
+    private static final Logger logger = Logger.getLogger(MessageExecutor.class.getName());
+
+    /** The maximum number of pooled handler threads. */
+    private static final int MAXIMUM_THREADS = 128;
+
+    /** How long idle pooled threads are kept, in seconds. */
+    private static final long KEEP_ALIVE = 60;
+
+    /** The number of ordered messages a connection may have queued. */
+    private static final int QUEUE_LIMIT = 64;
+
+    /** The number of concurrent handlers a connection may have. */
+    private static final int RUNNING_LIMIT = 64;
+
+    /**
+     * How often a held up receiving thread checks whether it may
+     * still be held, in milliseconds.
+     */
+    private static final long HOLD_CHECK = 100;
+
+    /** Counter for naming the pooled threads. */
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    /** The pool shared by all connections. */
+    private static final ThreadPoolExecutor pool
+        = new ThreadPoolExecutor(0, MAXIMUM_THREADS,
+            KEEP_ALIVE, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "MessageHandler-"
+                        + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    /** The name of the connection, for naming handler threads. */
+    private final String name;
+
+    /** Is it safe to hold up the reader of the connection? */
+    private final BooleanSupplier mayHold;
+
+    /** The ordered messages waiting to be handled. */
+    private final Queue<Runnable> queue = new ArrayDeque<>();
+
+    /** Is a thread currently working through the queue? */
+    private boolean draining = false;
+
+    /** The number of unordered handlers running. */
+    private int running = 0;
+
+    /** Should the submitter wait while a limit is reached? */
+    private boolean blocking = true;
+
+
+    /**
+     * Create a new <code>MessageExecutor</code> that may always hold
+     * up its reader.
+     *
+     * @param name The name of the connection.
+     */
+    public MessageExecutor(String name) {
+        this(name, new BooleanSupplier() {
+                @Override
+                public boolean getAsBoolean() {
+                    return true;
+                }
+            });
+    }
+
+    /**
+     * Create a new <code>MessageExecutor</code>.
+     *
+     * @param name The name of the connection.
+     * @param mayHold Tells whether the reader of the connection may be
+     *     held up, which it must not be while it has a reply to deliver.
+     */
+    public MessageExecutor(String name, BooleanSupplier mayHold) {
+        this.name = name;
+        this.mayHold = mayHold;
+    }
+
+
+    /**
+     * Get the number of ordered messages waiting to be handled.
+     *
+     * @return The queue depth.
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Get the number of unordered handlers running.
+     *
+     * @return The number of handlers.
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * Should reading from the connection pause until the handlers
+     * catch up?
+     *
+     * @return True if a limit is reached, and the reader may be held.
+     */
+    public synchronized boolean isFull() {
+        return (queue.size() >= QUEUE_LIMIT || running >= RUNNING_LIMIT)
+            && mayHold.getAsBoolean();
+    }
+
+    /**
+     * Set whether submitting a message waits while a limit is
+     * reached.  Submitters that serve other connections too should not
+     * wait, and should check {@link #isFull} instead.
+     *
+     * @param blocking The new blocking state.
+     */
+    public synchronized void setBlocking(boolean blocking) {
+        this.blocking = blocking;
+    }
+
+    /**
+     * Hold up the submitter while a limit is reached, if it is blocking
+     * and may be held.  Must be called holding this lock.
+     *
+     * @param ordered If true, wait for room in the queue, otherwise
+     *     wait for a handler to finish.
+     */
+    private void waitForRoom(boolean ordered) {
+        while (blocking
+            && ((ordered) ? queue.size() >= QUEUE_LIMIT
+                : running >= RUNNING_LIMIT)
+            && mayHold.getAsBoolean()) {
+            try {
+                wait(HOLD_CHECK);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Note that a message was rejected.
+     *
+     * @param type The message type.
+     * @param why Why it was rejected.
+     * @return False.
+     */
+    private boolean reject(String type, String why) {
+        NetworkMetrics.recordHandlerOverflow();
+        logger.warning("Rejected " + type + " message for " + name
+            + ": " + why);
+        return false;
+    }
+
+    /**
+     * Run a task on a pooled thread, or on a thread of its own if the
+     * pool is exhausted.
+     *
+     * @param type The message type, for naming the thread.
+     * @param task The task to run.
+     * @param rejectable If true, fail rather than start a new thread.
+     * @return True if the task will be run.
+     */
+    private boolean start(String type, Runnable task, boolean rejectable) {
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException ree) {
+            if (rejectable) return false;
+            Thread t = new Thread(task, name + "-MessageHandler-" + type);
+            t.setDaemon(true);
+            t.start();
+        }
+        return true;
+    }
+
+    /**
+     * Run a message handler.
+     *
+     * @param type The message type, for naming the thread.
+     * @param task The handler to run.
+     * @param ordered If true, run after all the previously submitted
+     *     ordered handlers for this connection have finished.
+     * @param rejectable If true, the message is an unordered question
+     *     that the sender will retry if it is told this end is busy.
+     * @return True if the handler will be run, false if it was
+     *     rejected because this connection or the pool is too busy,
+     *     which only happens to rejectable messages.
+     */
+    public boolean execute(String type, Runnable task, boolean ordered,
+                           boolean rejectable) {
+        final Runnable named = named(type, task);
+        if (!ordered) {
+            synchronized (this) {
+                if (rejectable && running >= RUNNING_LIMIT) {
+                    return reject(type, "too many handlers running");
+                }
+                waitForRoom(false);
+                running++;
+            }
+            if (!start(type, new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            named.run();
+                        } finally {
+                            finished();
+                        }
+                    }
+                }, rejectable)) {
+                finished();
+                return reject(type, "handler pool exhausted");
+            }
+            return true;
+        }
+
+        synchronized (this) {
+            waitForRoom(true);
+            queue.add(named);
+            NetworkMetrics.recordQueueDepth(queue.size());
+            if (draining) return true;
+            draining = true;
+        }
+        start(type, new Runnable() {
+                @Override
+                public void run() {
+                    drain();
+                }
+            }, false);
+        return true;
+    }
+
+    /**
+     * Note that an unordered handler has finished.
+     */
+    private synchronized void finished() {
+        running--;
+        notifyAll(); // Room for the receiving thread
+    }
+
+    /**
+     * Run the queued ordered handlers until there are none left.
+     */
+    private void drain() {
+        for (;;) {
+            Runnable r;
+            synchronized (this) {
+                r = queue.poll();
+                if (r == null) {
+                    draining = false;
+                    return;
+                }
+                notifyAll(); // Room for the receiving thread
+            }
+            try {
+                r.run();
+            } catch (RuntimeException re) {
+                logger.log(Level.WARNING, "Handler failed in " + name, re);
+            }
+        }
+    }
+
+    /**
+     * Wrap a handler so that the thread running it is named after the
+     * message, and its time and failures are accounted for.
+     *
+     * @param type The message type.
+     * @param task The handler to wrap.
+     * @return The wrapped handler.
+     */
+    private Runnable named(final String type, final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                Thread thread = Thread.currentThread();
+                String oldName = thread.getName();
+                thread.setName(name + "-MessageHandler-" + type);
+                NetworkMetrics.recordHandlerStart();
+                try {
+                    task.run();
+                } finally {
+                    NetworkMetrics.recordHandlerEnd();
+                    thread.setName(oldName);
+                }
+            }
+        };
+    }
+}
@@ -40,4 +40,19 @@ public interface MessageHandler {
      */
     public Element handle(Connection connection, Element element)
         throws FreeColException;
+
+    /**
+     * Would this handler do anything with a message of a given type?
+     *
+     * Senders that can see the handler directly, such as the dummy
+     * connections used by AI players, may use this to avoid building
+     * messages that would only be ignored.
+     *
+     * @param tag The message tag.
+     * @return True if the message might be acted on, which is the
+     *     default.
+     */
+    default boolean isInterested(String tag) {
+        return true;
+    }
 }
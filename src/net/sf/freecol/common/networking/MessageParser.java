@@ -0,0 +1,133 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.InputStream;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+
+/**
+ * Reads a message into a document in a single StAX pass.
+ *
+ * The factories are created once and reused for every message, so
+ * a parser must only be used by one thread, normally the
+ * <code>ReceivingThread</code> of a connection.
+ */
+final class MessageParser {
+
+    /** The factory for stream readers. */
+    private final XMLInputFactory factory;
+
+    /** The builder for the documents. */
+    private final DocumentBuilder builder;
+
+
+    /**
+     * Create a new <code>MessageParser</code>.
+     */
+    public MessageParser() {
+        this.factory = XMLInputFactory.newInstance();
+        try {
+            this.builder = DocumentBuilderFactory.newInstance()
+                .newDocumentBuilder();
+        } catch (ParserConfigurationException pce) {
+            throw new RuntimeException("No document builder", pce);
+        }
+    }
+
+
+    /**
+     * Parse a message.  Reads the input to its end.
+     *
+     * @param in The <code>InputStream</code> containing the message.
+     * @return A new <code>DOMMessage</code>, or null if the input
+     *     ended before a message started.
+     * @exception XMLStreamException if the message is malformed.
+     */
+    public DOMMessage parse(InputStream in) throws XMLStreamException {
+        final Document doc = builder.newDocument();
+        Node current = doc;
+        boolean started = false;
+        XMLStreamReader xsr = factory.createXMLStreamReader(in);
+        try {
+            while (xsr.hasNext()) {
+                switch (xsr.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    Element e = doc.createElement(qualify(xsr.getPrefix(),
+                            xsr.getLocalName()));
+                    for (int i = 0; i < xsr.getAttributeCount(); i++) {
+                        e.setAttribute(qualify(xsr.getAttributePrefix(i),
+                                               xsr.getAttributeLocalName(i)),
+                                       xsr.getAttributeValue(i));
+                    }
+                    current.appendChild(e);
+                    current = e;
+                    started = true;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    current = current.getParentNode();
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.SPACE:
+                    if (current != doc) {
+                        current.appendChild(doc.createTextNode(xsr.getText()));
+                    }
+                    break;
+                case XMLStreamConstants.CDATA:
+                    if (current != doc) {
+                        current.appendChild(doc.createCDATASection(xsr.getText()));
+                    }
+                    break;
+                default:
+                    break;
+                }
+            }
+        } catch (XMLStreamException xse) {
+            if (!started) return null; // Stream ended
+            throw xse;
+        } finally {
+            xsr.close();
+        }
+        return (started) ? new DOMMessage(doc) : null;
+    }
+
+    /**
+     * Rebuild a qualified name.
+     *
+     * @param prefix The name prefix, if any.
+     * @param local The local name.
+     * @return The qualified name.
+     */
+    private static String qualify(String prefix, String local) {
+        return (prefix == null || prefix.isEmpty()) ? local
+            : prefix + ":" + local;
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import net.sf.freecol.common.model.Game;
+
+import org.w3c.dom.Element;
+
+
+/**
+ * The factories for the specialized messages, by tag name.
+ *
+ * The factories are bound to the message constructors when this
+ * class is loaded, so creating a message from an element is a map
+ * lookup and a direct constructor call, with no reflection.  New
+ * message classes need to be added here.
+ */
+public final class MessageRegistry {
+
+    /**
+     * Creates a message from its element.
+     */
+    public interface Factory {
+
+        /**
+         * Create a message.
+         *
+         * @param game The <code>Game</code> the message belongs to.
+         * @param element The <code>Element</code> to create the
+         *     message from.
+         * @return The new <code>DOMMessage</code>.
+         */
+        DOMMessage create(Game game, Element element);
+    }
+
+    /** The factories, by message tag. */
+    private static final Map<String, Factory> factories = new HashMap<>();
+    static {
+        register(AbandonColonyMessage.getXMLElementTagName(), AbandonColonyMessage::new);
+        register(AskSkillMessage.getXMLElementTagName(), AskSkillMessage::new);
+        register(AssignTeacherMessage.getXMLElementTagName(), AssignTeacherMessage::new);
+        register(AssignTradeRouteMessage.getXMLElementTagName(), AssignTradeRouteMessage::new);
+        register(AttackMessage.getXMLElementTagName(), AttackMessage::new);
+        register(BuildColonyMessage.getXMLElementTagName(), BuildColonyMessage::new);
+        register(BuyMessage.getXMLElementTagName(), BuyMessage::new);
+        register(BuyPropositionMessage.getXMLElementTagName(), BuyPropositionMessage::new);
+        register(CashInTreasureTrainMessage.getXMLElementTagName(), CashInTreasureTrainMessage::new);
+        register(ChangeStateMessage.getXMLElementTagName(), ChangeStateMessage::new);
+        register(ChangeWorkImprovementTypeMessage.getXMLElementTagName(), ChangeWorkImprovementTypeMessage::new);
+        register(ChangeWorkTypeMessage.getXMLElementTagName(), ChangeWorkTypeMessage::new);
+        register(ChatMessage.getXMLElementTagName(), ChatMessage::new);
+        register(ChooseFoundingFatherMessage.getXMLElementTagName(), ChooseFoundingFatherMessage::new);
+        register(ClaimLandMessage.getXMLElementTagName(), ClaimLandMessage::new);
+        register(ClearSpecialityMessage.getXMLElementTagName(), ClearSpecialityMessage::new);
+        register(CloseTransactionMessage.getXMLElementTagName(), CloseTransactionMessage::new);
+        register(DeclareIndependenceMessage.getXMLElementTagName(), DeclareIndependenceMessage::new);
+        register(DeclineMoundsMessage.getXMLElementTagName(), DeclineMoundsMessage::new);
+        register(DeliverGiftMessage.getXMLElementTagName(), DeliverGiftMessage::new);
+        register(DemandTributeMessage.getXMLElementTagName(), DemandTributeMessage::new);
+        register(DiplomacyMessage.getXMLElementTagName(), DiplomacyMessage::new);
+        register(DisbandUnitMessage.getXMLElementTagName(), DisbandUnitMessage::new);
+        register(DisembarkMessage.getXMLElementTagName(), DisembarkMessage::new);
+        register(EmbarkMessage.getXMLElementTagName(), EmbarkMessage::new);
+        register(EmigrateUnitMessage.getXMLElementTagName(), EmigrateUnitMessage::new);
+        register(EquipForRoleMessage.getXMLElementTagName(), EquipForRoleMessage::new);
+        register(FirstContactMessage.getXMLElementTagName(), FirstContactMessage::new);
+        register(GetNationSummaryMessage.getXMLElementTagName(),
+            (game, element) -> new GetNationSummaryMessage(element));
+        register(GetTransactionMessage.getXMLElementTagName(), GetTransactionMessage::new);
+        register(GoodsForSaleMessage.getXMLElementTagName(), GoodsForSaleMessage::new);
+        register(InciteMessage.getXMLElementTagName(), InciteMessage::new);
+        register(IndianDemandMessage.getXMLElementTagName(), IndianDemandMessage::new);
+        register(JoinColonyMessage.getXMLElementTagName(), JoinColonyMessage::new);
+        register(LearnSkillMessage.getXMLElementTagName(), LearnSkillMessage::new);
+        register(LoadGoodsMessage.getXMLElementTagName(), LoadGoodsMessage::new);
+        register(LoginMessage.getXMLElementTagName(), LoginMessage::new);
+        register(LootCargoMessage.getXMLElementTagName(), LootCargoMessage::new);
+        register(MissionaryMessage.getXMLElementTagName(), MissionaryMessage::new);
+        register(MonarchActionMessage.getXMLElementTagName(), MonarchActionMessage::new);
+        register(MoveMessage.getXMLElementTagName(), MoveMessage::new);
+        register(MovePathMessage.getXMLElementTagName(), MovePathMessage::new);
+        register(MoveToMessage.getXMLElementTagName(), MoveToMessage::new);
+        register(NewLandNameMessage.getXMLElementTagName(), NewLandNameMessage::new);
+        register(NewRegionNameMessage.getXMLElementTagName(), NewRegionNameMessage::new);
+        register(PayArrearsMessage.getXMLElementTagName(), PayArrearsMessage::new);
+        register(PayForBuildingMessage.getXMLElementTagName(), PayForBuildingMessage::new);
+        register(PutOutsideColonyMessage.getXMLElementTagName(), PutOutsideColonyMessage::new);
+        register(RearrangeColonyMessage.getXMLElementTagName(), RearrangeColonyMessage::new);
+        register(RenameMessage.getXMLElementTagName(), RenameMessage::new);
+        register(ScoutIndianSettlementMessage.getXMLElementTagName(), ScoutIndianSettlementMessage::new);
+        register(ScoutSpeakToChiefMessage.getXMLElementTagName(), ScoutSpeakToChiefMessage::new);
+        register(SellMessage.getXMLElementTagName(), SellMessage::new);
+        register(SellPropositionMessage.getXMLElementTagName(), SellPropositionMessage::new);
+        register(SetBuildQueueMessage.getXMLElementTagName(), SetBuildQueueMessage::new);
+        register(SetCurrentStopMessage.getXMLElementTagName(), SetCurrentStopMessage::new);
+        register(SetDestinationMessage.getXMLElementTagName(), SetDestinationMessage::new);
+        register(SetGoodsLevelsMessage.getXMLElementTagName(), SetGoodsLevelsMessage::new);
+        register(SetTradeRoutesMessage.getXMLElementTagName(), SetTradeRoutesMessage::new);
+        register(SpySettlementMessage.getXMLElementTagName(), SpySettlementMessage::new);
+        register(TrainUnitInEuropeMessage.getXMLElementTagName(), TrainUnitInEuropeMessage::new);
+        register(UnloadGoodsMessage.getXMLElementTagName(), UnloadGoodsMessage::new);
+        register(UpdateTradeRouteMessage.getXMLElementTagName(), UpdateTradeRouteMessage::new);
+        register(WorkMessage.getXMLElementTagName(), WorkMessage::new);
+    }
+
+
+    private MessageRegistry() {} // Static only
+
+
+    /**
+     * Add a factory.
+     *
+     * @param tag The message tag.
+     * @param factory The <code>Factory</code> for the message.
+     */
+    private static void register(String tag, Factory factory) {
+        factories.put(tag, factory);
+    }
+
+    /**
+     * Get the factory for a message.
+     *
+     * @param tag The message tag.
+     * @return The <code>Factory</code> for the message, or null if
+     *     the message is not a specialized one.
+     */
+    public static Factory getFactory(String tag) {
+        return factories.get(tag);
+    }
+
+    /**
+     * Get the tags of the specialized messages.
+     *
+     * @return An unmodifiable set of message tags.
+     */
+    public static Set<String> getTags() {
+        return Collections.unmodifiableSet(factories.keySet());
+    }
+
+    /**
+     * Create a message from an element.
+     *
+     * @param game The <code>Game</code> the message belongs to.
+     * @param element The <code>Element</code> to create the message from.
+     * @return The new <code>DOMMessage</code>, or null if the
+     *     message is not a specialized one.
+     */
+    public static DOMMessage create(Game game, Element element) {
+        Factory factory = factories.get(element.getTagName());
+        return (factory == null) ? null : factory.create(game, element);
+    }
+}
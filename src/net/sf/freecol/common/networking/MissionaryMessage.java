@@ -36,7 +36,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when a missionary establishes/denounces a mission.
  */
-public class MissionaryMessage extends DOMMessage {
+public class MissionaryMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the missionary. */
     private final String unitId;
@@ -90,6 +90,7 @@ public class MissionaryMessage extends DOMMessage {
      * @return An element containing the result of the mission
      *     operation, or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -35,7 +35,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when moving a unit.
  */
-public class MoveMessage extends DOMMessage {
+public class MoveMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the object to be moved. */
     private final String unitId;
@@ -82,6 +82,7 @@ public class MoveMessage extends DOMMessage {
      * @return An update containing the moved unit, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
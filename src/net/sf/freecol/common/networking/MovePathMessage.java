@@ -0,0 +1,155 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.freecol.common.model.Direction;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.model.Unit.MoveType;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.model.ServerPlayer;
+import net.sf.freecol.server.model.ServerUnit;
+
+import org.w3c.dom.Element;
+
+
+/**
+ * The message sent when moving a unit several steps along a path.
+ * The server makes the ordinary moves in turn, stopping early at
+ * anything that needs the attention of the owner, and replies with
+ * the combined result.
+ */
+public class MovePathMessage extends DOMMessage implements ServerRequest {
+
+    /** The identifier of the object to be moved. */
+    private final String unitId;
+
+    /** The directions to move, separated by spaces. */
+    private final String directionsString;
+
+
+    /**
+     * Create a new <code>MovePathMessage</code> for the supplied unit
+     * and directions.
+     *
+     * @param unit The <code>Unit</code> to move.
+     * @param directions The <code>Direction</code>s to move in.
+     */
+    public MovePathMessage(Unit unit, List<Direction> directions) {
+        super(getXMLElementTagName());
+
+        this.unitId = unit.getId();
+        StringBuilder sb = new StringBuilder();
+        for (Direction d : directions) sb.append(d).append(' ');
+        this.directionsString = sb.toString().trim();
+    }
+
+    /**
+     * Create a new <code>MovePathMessage</code> from a
+     * supplied element.
+     *
+     * @param game The <code>Game</code> this message belongs to.
+     * @param element The <code>Element</code> to use to create the message.
+     */
+    public MovePathMessage(Game game, Element element) {
+        super(getXMLElementTagName());
+
+        this.unitId = element.getAttribute("unit");
+        this.directionsString = element.getAttribute("directions");
+    }
+
+
+    /**
+     * Handle a "movePath"-message.
+     *
+     * @param server The <code>FreeColServer</code> handling the message.
+     * @param player The <code>Player</code> the message applies to.
+     * @param connection The <code>Connection</code> message was received on.
+     * @return An update containing the moved unit, or an error
+     *     <code>Element</code> on failure.
+     */
+    @Override
+    public Element handle(FreeColServer server, Player player,
+                          Connection connection) {
+        final ServerPlayer serverPlayer = server.getPlayer(connection);
+
+        ServerUnit unit;
+        try {
+            unit = player.getOurFreeColGameObject(unitId, ServerUnit.class);
+        } catch (Exception e) {
+            return DOMMessage.clientError(e.getMessage());
+        }
+
+        List<Direction> directions = new ArrayList<>();
+        try {
+            for (String s : directionsString.split(" ")) {
+                directions.add(Enum.valueOf(Direction.class, s));
+            }
+        } catch (Exception e) {
+            return DOMMessage.clientError("Bad directions: "
+                + directionsString);
+        }
+
+        Tile tile;
+        try {
+            tile = unit.getNeighbourTile(String.valueOf(directions.get(0)));
+        } catch (Exception e) {
+            return DOMMessage.clientError(e.getMessage());
+        }
+
+        MoveType moveType = unit.getMoveType(tile);
+        if (moveType != MoveType.MOVE) {
+            return DOMMessage.clientError("Illegal move for: " + unitId
+                + " type: " + moveType
+                + " from: " + unit.getLocation().getId()
+                + " to: " + tile.getId());
+        }
+
+        // Proceed to move.
+        return server.getInGameController()
+            .movePath(serverPlayer, unit, directions);
+    }
+
+    /**
+     * Convert this MovePathMessage to XML.
+     *
+     * @return The XML representation of this message.
+     */
+    @Override
+    public Element toXMLElement() {
+        return createMessage(getXMLElementTagName(),
+            "unit", this.unitId,
+            "directions", this.directionsString);
+    }
+
+    /**
+     * The tag name of the root element representing this object.
+     *
+     * @return "movePath".
+     */
+    public static String getXMLElementTagName() {
+        return "movePath";
+    }
+}
@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when moving a unit across the high seas.
  */
-public class MoveToMessage extends DOMMessage {
+public class MoveToMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the object to be moved. */
     private final String unitId;
@@ -79,6 +79,7 @@ public class MoveToMessage extends DOMMessage {
      * @return An update containing the moved unit, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
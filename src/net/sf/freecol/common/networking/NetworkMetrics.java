@@ -0,0 +1,775 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+
+/**
+ * Process wide statistics about network traffic.
+ *
+ * The statistics can be watched through JMX once {@link #register}
+ * has been called, and summarized in the log periodically with
+ * {@link #startSummaryLog}.
+ */
+public final class NetworkMetrics {
+
+    private static final Logger logger = Logger.getLogger(NetworkMetrics.class.getName());
+
+    /** The name the statistics are registered under with JMX. */
+    public static final String OBJECT_NAME
+        = "net.sf.freecol:type=NetworkMetrics";
+
+    /** How many message types to name in the summary. */
+    private static final int SUMMARY_TYPES = 3;
+
+    /**
+     * Accumulated timings of one kind of event.
+     */
+    public static class Timing {
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        private final AtomicLong maximumNanos = new AtomicLong();
+
+
+        /**
+         * Add an event.
+         *
+         * @param nanos The duration of the event in nanoseconds.
+         */
+        public void add(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max;
+            do {
+                max = maximumNanos.get();
+            } while (nanos > max && !maximumNanos.compareAndSet(max, nanos));
+        }
+
+        /**
+         * Forget all events.
+         */
+        public void reset() {
+            count.set(0);
+            totalNanos.set(0);
+            maximumNanos.set(0);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        public long getMaximumNanos() {
+            return maximumNanos.get();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            long n = getCount();
+            return n + " avg " + ((n == 0) ? 0 : getTotalNanos() / n / 1000)
+                + "us max " + getMaximumNanos() / 1000 + "us";
+        }
+    }
+
+    /**
+     * The number and total size of messages of one kind.
+     */
+    public static class Traffic {
+
+        private final AtomicLong messages = new AtomicLong();
+
+        private final AtomicLong bytes = new AtomicLong();
+
+
+        /**
+         * Add a message.
+         *
+         * @param size The size of the message in bytes.
+         */
+        public void add(long size) {
+            messages.incrementAndGet();
+            bytes.addAndGet(size);
+        }
+
+        public long getMessages() {
+            return messages.get();
+        }
+
+        public long getBytes() {
+            return bytes.get();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return getMessages() + " msgs " + getBytes() + " bytes";
+        }
+    }
+
+    /**
+     * Histogram of durations, in buckets that double in width.
+     * Bucket <code>i</code> counts durations of less than
+     * <code>2^i</code> microseconds, the last counts the rest.
+     */
+    public static class Histogram {
+
+        /** The number of buckets, the last starting at about 4s. */
+        public static final int BUCKETS = 24;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+        private final Timing timing = new Timing();
+
+
+        /**
+         * Add an event.
+         *
+         * @param nanos The duration of the event in nanoseconds.
+         */
+        public void add(long nanos) {
+            long micros = Math.max(0L, nanos / 1000);
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            counts.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+            timing.add(nanos);
+        }
+
+        public long getCount() {
+            return timing.getCount();
+        }
+
+        public long getMaximumNanos() {
+            return timing.getMaximumNanos();
+        }
+
+        /**
+         * Get the bucket counts.
+         *
+         * @return A copy of the counts.
+         */
+        public long[] getCounts() {
+            long[] result = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) result[i] = counts.get(i);
+            return result;
+        }
+
+        /**
+         * Get an upper bound for a percentile of the durations.
+         *
+         * @param percent The percentile wanted.
+         * @return The upper bound of the bucket containing the
+         *     percentile, in microseconds, or zero if empty.
+         */
+        public long getPercentile(double percent) {
+            long[] c = getCounts();
+            long total = 0;
+            for (long n : c) total += n;
+            if (total == 0) return 0;
+            long wanted = (long)Math.ceil(total * percent / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS - 1; i++) {
+                seen += c[i];
+                if (seen >= wanted) return 1L << i;
+            }
+            return getMaximumNanos() / 1000;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String toString() {
+            return getCount() + " p50 " + getPercentile(50)
+                + "us p90 " + getPercentile(90)
+                + "us p99 " + getPercentile(99)
+                + "us max " + getMaximumNanos() / 1000 + "us";
+        }
+    }
+
+    /**
+     * The statistics as seen through JMX.
+     */
+    private static class MXBean implements NetworkMetricsMXBean {
+
+        @Override
+        public long getMessagesSent() {
+            return total(sent).getMessages();
+        }
+
+        @Override
+        public long getBytesSent() {
+            return total(sent).getBytes();
+        }
+
+        @Override
+        public long getMessagesReceived() {
+            return total(received).getMessages();
+        }
+
+        @Override
+        public long getBytesReceived() {
+            return total(received).getBytes();
+        }
+
+        @Override
+        public Map<String, Long> getBytesSentByType() {
+            return bytesByType(sent);
+        }
+
+        @Override
+        public Map<String, Long> getBytesReceivedByType() {
+            return bytesByType(received);
+        }
+
+        @Override
+        public Map<String, String> getHandlerLatencies() {
+            Map<String, String> result = new TreeMap<>();
+            for (Map.Entry<String, Histogram> e : handlerTimes.entrySet()) {
+                result.put(e.getKey(), e.getValue().toString());
+            }
+            return result;
+        }
+
+        @Override
+        public int getOutstandingReplies() {
+            return NetworkMetrics.getOutstandingReplies();
+        }
+
+        @Override
+        public int getActiveHandlers() {
+            return NetworkMetrics.getActiveHandlers();
+        }
+
+        @Override
+        public int getMaximumActiveHandlers() {
+            return NetworkMetrics.getMaximumActiveHandlers();
+        }
+
+        @Override
+        public int getMaximumQueueDepth() {
+            return NetworkMetrics.getMaximumQueueDepth();
+        }
+
+        @Override
+        public long getHandlerOverflows() {
+            return NetworkMetrics.getHandlerOverflows();
+        }
+
+        @Override
+        public double getCompressionRatio() {
+            return NetworkMetrics.getCompressionRatio();
+        }
+
+        @Override
+        public String getCompressTimes() {
+            return NetworkMetrics.getCompressTimes().toString();
+        }
+
+        @Override
+        public String getDecompressTimes() {
+            return NetworkMetrics.getDecompressTimes().toString();
+        }
+
+        @Override
+        public String getSummary() {
+            return NetworkMetrics.getSummary();
+        }
+
+        @Override
+        public void reset() {
+            NetworkMetrics.reset();
+        }
+    }
+
+    /** Messages sent, by message type. */
+    private static final Map<String, Traffic> sent
+        = new ConcurrentHashMap<>();
+
+    /** Messages received, by message type. */
+    private static final Map<String, Traffic> received
+        = new ConcurrentHashMap<>();
+
+    /** Time taken by the request handlers, by message tag. */
+    private static final Map<String, Histogram> handlerTimes
+        = new ConcurrentHashMap<>();
+
+    /** Time to parse incoming messages, by message type. */
+    private static final Map<String, Timing> parseTimes
+        = new ConcurrentHashMap<>();
+
+
+    /** Bytes given to the compressor. */
+    private static final AtomicLong compressionInput = new AtomicLong();
+
+    /** Bytes produced by the compressor. */
+    private static final AtomicLong compressionOutput = new AtomicLong();
+
+    /** Time spent compressing frames. */
+    private static final Timing compressTimes = new Timing();
+
+    /** Time spent decompressing frames. */
+    private static final Timing decompressTimes = new Timing();
+
+    /** The number of message handlers currently running. */
+    private static final AtomicInteger activeHandlers = new AtomicInteger();
+
+    /** The most message handlers seen running at once. */
+    private static final AtomicInteger maximumActiveHandlers
+        = new AtomicInteger();
+
+    /** The deepest queue of ordered messages seen on a connection. */
+    private static final AtomicInteger maximumQueueDepth = new AtomicInteger();
+
+    /** The number of messages rejected as the handlers were too busy. */
+    private static final AtomicLong handlerOverflows = new AtomicLong();
+
+    /** The number of questions waiting for a reply. */
+    private static final AtomicInteger outstandingReplies
+        = new AtomicInteger();
+
+    /** Has the JMX bean been registered? */
+    private static boolean registered = false;
+
+    /** The timer for the summary log, if started. */
+    private static Timer summaryTimer = null;
+
+
+    private NetworkMetrics() {} // Static only
+
+
+    /**
+     * Raise an integer to at least a given value.
+     *
+     * @param i The <code>AtomicInteger</code> to raise.
+     * @param value The value to raise it to.
+     */
+    private static void raise(AtomicInteger i, int value) {
+        int old;
+        do {
+            old = i.get();
+        } while (value > old && !i.compareAndSet(old, value));
+    }
+
+
+    /**
+     * Get an entry in a map of statistics, adding it if absent.
+     *
+     * @param map The map to look in.
+     * @param key The key to look up.
+     * @param empty A new entry to add if the key is absent.
+     * @return The entry.
+     */
+    private static <T> T get(Map<String, T> map, String key, T empty) {
+        T t = map.get(key);
+        if (t == null) {
+            map.putIfAbsent(key, empty);
+            t = map.get(key);
+        }
+        return t;
+    }
+
+    /**
+     * Total up a map of traffic.
+     *
+     * @param map The map to total.
+     * @return The total <code>Traffic</code>.
+     */
+    private static Traffic total(Map<String, Traffic> map) {
+        Traffic total = new Traffic();
+        for (Traffic t : map.values()) {
+            total.messages.addAndGet(t.getMessages());
+            total.bytes.addAndGet(t.getBytes());
+        }
+        return total;
+    }
+
+    /**
+     * Get the bytes of traffic by message type.
+     *
+     * @param map The map of traffic.
+     * @return A sorted map of message type to bytes.
+     */
+    private static Map<String, Long> bytesByType(Map<String, Traffic> map) {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Traffic> e : map.entrySet()) {
+            result.put(e.getKey(), e.getValue().getBytes());
+        }
+        return result;
+    }
+
+    /**
+     * Get the type of a message for statistics purposes, looking
+     * inside question and reply wrappers.
+     *
+     * @param message The <code>DOMMessage</code> to check.
+     * @return The message type.
+     */
+    public static String getType(DOMMessage message) {
+        return getType(message.getDocument().getDocumentElement());
+    }
+
+    /**
+     * Get the type of a message element for statistics purposes,
+     * looking inside question and reply wrappers.
+     *
+     * @param element The message <code>Element</code> to check.
+     * @return The message type.
+     */
+    public static String getType(Element element) {
+        String type = element.getTagName();
+        if (Connection.QUESTION_TAG.equals(type)
+            || Connection.REPLY_TAG.equals(type)) {
+            Node child = element.getFirstChild();
+            if (child != null) type = type + ":" + child.getNodeName();
+        }
+        return type;
+    }
+
+    /**
+     * Record a message sent.
+     *
+     * @param type The message type.
+     * @param bytes The size of the message in bytes.
+     */
+    public static void recordSent(String type, long bytes) {
+        get(sent, type, new Traffic()).add(bytes);
+    }
+
+    /**
+     * Record a message received.
+     *
+     * @param type The message type.
+     * @param bytes The size of the message in bytes.
+     */
+    public static void recordReceived(String type, long bytes) {
+        get(received, type, new Traffic()).add(bytes);
+    }
+
+    /**
+     * Record the time taken by a request handler.
+     *
+     * @param tag The tag of the request handled.
+     * @param nanos The time taken in nanoseconds.
+     */
+    public static void recordHandled(String tag, long nanos) {
+        get(handlerTimes, tag, new Histogram()).add(nanos);
+    }
+
+    /**
+     * Record a change in the number of questions waiting for a reply.
+     *
+     * @param delta The change in the number.
+     */
+    public static void recordOutstandingReplies(int delta) {
+        outstandingReplies.addAndGet(delta);
+    }
+
+    /**
+     * Record the time taken to parse a message.
+     *
+     * @param type The message type.
+     * @param nanos The time taken in nanoseconds.
+     */
+    public static void recordParse(String type, long nanos) {
+        Timing t = parseTimes.get(type);
+        if (t == null) {
+            parseTimes.putIfAbsent(type, new Timing());
+            t = parseTimes.get(type);
+        }
+        t.add(nanos);
+    }
+
+    /**
+     * Record the compression of a frame.
+     *
+     * @param in The size of the frame.
+     * @param out The compressed size.
+     * @param nanos The time taken in nanoseconds.
+     */
+    public static void recordCompression(long in, long out, long nanos) {
+        compressionInput.addAndGet(in);
+        compressionOutput.addAndGet(out);
+        compressTimes.add(nanos);
+    }
+
+    /**
+     * Record the decompression of a frame.
+     *
+     * @param nanos The time taken in nanoseconds.
+     */
+    public static void recordDecompression(long nanos) {
+        decompressTimes.add(nanos);
+    }
+
+    /**
+     * Get the ratio of compressed to uncompressed size of the frames
+     * compressed so far.
+     *
+     * @return The compression ratio, 1.0 if nothing was compressed.
+     */
+    public static double getCompressionRatio() {
+        long in = compressionInput.get();
+        return (in == 0) ? 1.0 : (double)compressionOutput.get() / in;
+    }
+
+    public static Timing getCompressTimes() {
+        return compressTimes;
+    }
+
+    public static Timing getDecompressTimes() {
+        return decompressTimes;
+    }
+
+    /**
+     * Get the parse times recorded so far.
+     *
+     * @return A sorted map of message type to parse timing.
+     */
+    public static Map<String, Timing> getParseTimes() {
+        return Collections.unmodifiableMap(new TreeMap<>(parseTimes));
+    }
+
+    /**
+     * Get the messages sent so far.
+     *
+     * @return A sorted map of message type to traffic.
+     */
+    public static Map<String, Traffic> getSent() {
+        return Collections.unmodifiableMap(new TreeMap<>(sent));
+    }
+
+    /**
+     * Get the messages received so far.
+     *
+     * @return A sorted map of message type to traffic.
+     */
+    public static Map<String, Traffic> getReceived() {
+        return Collections.unmodifiableMap(new TreeMap<>(received));
+    }
+
+    /**
+     * Get the request handler times recorded so far.
+     *
+     * @return A sorted map of request tag to handler times.
+     */
+    public static Map<String, Histogram> getHandlerTimes() {
+        return Collections.unmodifiableMap(new TreeMap<>(handlerTimes));
+    }
+
+    /**
+     * Record that a message handler has started.
+     */
+    public static void recordHandlerStart() {
+        raise(maximumActiveHandlers, activeHandlers.incrementAndGet());
+    }
+
+    /**
+     * Record that a message handler has finished.
+     */
+    public static void recordHandlerEnd() {
+        activeHandlers.decrementAndGet();
+    }
+
+    /**
+     * Record that a message was rejected as the handlers were too busy.
+     */
+    public static void recordHandlerOverflow() {
+        handlerOverflows.incrementAndGet();
+    }
+
+    /**
+     * Record the depth of a connection's queue of ordered messages.
+     *
+     * @param depth The queue depth.
+     */
+    public static void recordQueueDepth(int depth) {
+        raise(maximumQueueDepth, depth);
+    }
+
+    public static int getActiveHandlers() {
+        return activeHandlers.get();
+    }
+
+    public static int getMaximumActiveHandlers() {
+        return maximumActiveHandlers.get();
+    }
+
+    public static int getMaximumQueueDepth() {
+        return maximumQueueDepth.get();
+    }
+
+    public static long getHandlerOverflows() {
+        return handlerOverflows.get();
+    }
+
+    public static int getOutstandingReplies() {
+        return outstandingReplies.get();
+    }
+
+    /**
+     * Get the message types with the most bytes of traffic.
+     *
+     * @param map The map of traffic.
+     * @param n The number of types wanted.
+     * @return A map of the busiest types to their traffic, busiest first.
+     */
+    private static Map<String, Traffic> busiest(Map<String, Traffic> map,
+                                                int n) {
+        List<Map.Entry<String, Traffic>> entries
+            = new ArrayList<>(map.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Traffic>>() {
+                @Override
+                public int compare(Map.Entry<String, Traffic> e1,
+                                   Map.Entry<String, Traffic> e2) {
+                    return Long.compare(e2.getValue().getBytes(),
+                                        e1.getValue().getBytes());
+                }
+            });
+        Map<String, Traffic> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Traffic> e : entries) {
+            if (result.size() >= n) break;
+            result.put(e.getKey(), e.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Summarize the statistics in one line.
+     *
+     * @return The summary.
+     */
+    public static String getSummary() {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("Network: sent ").append(total(sent))
+            .append(", received ").append(total(received))
+            .append(", outstanding replies ").append(getOutstandingReplies())
+            .append(", handlers ").append(getActiveHandlers())
+            .append(" (max ").append(getMaximumActiveHandlers())
+            .append(", overflows ").append(getHandlerOverflows())
+            .append("), busiest sent");
+        for (Map.Entry<String, Traffic> e
+                 : busiest(sent, SUMMARY_TYPES).entrySet()) {
+            sb.append(' ').append(e.getKey())
+                .append('=').append(e.getValue().getBytes());
+        }
+        if (compressTimes.getCount() > 0 || decompressTimes.getCount() > 0) {
+            sb.append(", compressed to ")
+                .append(Math.round(100 * getCompressionRatio()))
+                .append("% deflate ").append(compressTimes)
+                .append(" inflate ").append(decompressTimes);
+        }
+        Histogram slowest = null;
+        String slowestTag = null;
+        for (Map.Entry<String, Histogram> e : handlerTimes.entrySet()) {
+            if (slowest == null || e.getValue().getMaximumNanos()
+                > slowest.getMaximumNanos()) {
+                slowest = e.getValue();
+                slowestTag = e.getKey();
+            }
+        }
+        if (slowest != null) {
+            sb.append(", slowest handler ").append(slowestTag)
+                .append(' ').append(slowest);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Make the statistics visible through JMX.  Only the first call
+     * has any effect.
+     */
+    public static synchronized void register() {
+        if (registered) return;
+        registered = true;
+        try {
+            MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+            mbs.registerMBean(new MXBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException | SecurityException e) {
+            logger.log(Level.WARNING, "Could not register network metrics", e);
+        }
+    }
+
+    /**
+     * Log a summary of the statistics periodically.  Only the first
+     * call has any effect.
+     *
+     * @param period The time between summaries in milliseconds.
+     */
+    public static synchronized void startSummaryLog(long period) {
+        if (summaryTimer != null) return;
+        summaryTimer = new Timer("NetworkMetrics", true);
+        summaryTimer.scheduleAtFixedRate(new TimerTask() {
+                @Override
+                public void run() {
+                    logger.info(getSummary());
+                }
+            }, period, period);
+    }
+
+    /**
+     * Forget all recorded statistics.
+     */
+    public static void reset() {
+        sent.clear();
+        received.clear();
+        handlerTimes.clear();
+        parseTimes.clear();
+        compressionInput.set(0);
+        compressionOutput.set(0);
+        compressTimes.reset();
+        decompressTimes.reset();
+        maximumActiveHandlers.set(activeHandlers.get());
+        maximumQueueDepth.set(0);
+        handlerOverflows.set(0);
+    }
+}
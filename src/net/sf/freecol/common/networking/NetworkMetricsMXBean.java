@@ -0,0 +1,94 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.Map;
+
+
+/**
+ * The network statistics, as made visible through JMX.
+ *
+ * @see NetworkMetrics#register
+ */
+public interface NetworkMetricsMXBean {
+
+    long getMessagesSent();
+
+    long getBytesSent();
+
+    long getMessagesReceived();
+
+    long getBytesReceived();
+
+    /**
+     * Get the bytes sent by message type.
+     *
+     * @return A map of message type to bytes sent.
+     */
+    Map<String, Long> getBytesSentByType();
+
+    /**
+     * Get the bytes received by message type.
+     *
+     * @return A map of message type to bytes received.
+     */
+    Map<String, Long> getBytesReceivedByType();
+
+    /**
+     * Get the request handler latencies by request tag.
+     *
+     * @return A map of request tag to a summary of the handler times.
+     */
+    Map<String, String> getHandlerLatencies();
+
+    int getOutstandingReplies();
+
+    int getActiveHandlers();
+
+    int getMaximumActiveHandlers();
+
+    int getMaximumQueueDepth();
+
+    long getHandlerOverflows();
+
+    /**
+     * Get the ratio of compressed to uncompressed size of the frames
+     * sent compressed.
+     *
+     * @return The compression ratio.
+     */
+    double getCompressionRatio();
+
+    String getCompressTimes();
+
+    String getDecompressTimes();
+
+    /**
+     * Summarize the statistics in one line.
+     *
+     * @return The summary.
+     */
+    String getSummary();
+
+    /**
+     * Forget all recorded statistics.
+     */
+    void reset();
+}
@@ -19,16 +19,22 @@
 
 package net.sf.freecol.common.networking;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
 
 /**
  * Class for storing a network response.  If the response has not been
  * set when {@link #getResponse} has been called, this method will
- * block until {@link #setResponse} is called.
+ * block until {@link #setResponse} is called.  Alternatively the
+ * response can be collected without blocking from {@link #getFuture}.
  */
 public class NetworkReplyObject {
 
-    private Object response = null;
-    private boolean responseGiven = false;
+    /** The response, completed with null if interrupted. */
+    private final CompletableFuture<Object> response
+        = new CompletableFuture<>();
+
     private final int networkReplyId;
 
 
@@ -48,13 +54,11 @@ public class NetworkReplyObject {
      * @param response The response.
      * @see #getResponse
      */
-    public synchronized void setResponse(Object response) {
+    public void setResponse(Object response) {
         if (response == null) {
             throw new NullPointerException();
         }
-        this.response = response;
-        this.responseGiven = true;
-        notify();
+        this.response.complete(response);
     }
 
     /**
@@ -63,15 +67,21 @@ public class NetworkReplyObject {
      *
      * @return the response.
      */
-    public synchronized Object getResponse() {
-        if (response == null) {
-            try {
-                while (!responseGiven) {
-                    wait();
-                }
-            } catch (InterruptedException ie) {}
+    public Object getResponse() {
+        try {
+            return response.get();
+        } catch (InterruptedException | ExecutionException e) {
+            return null;
         }
+    }
 
+    /**
+     * Gets a future that completes with the response, or with null
+     * if the wait is interrupted.
+     *
+     * @return The response future.
+     */
+    public CompletableFuture<Object> getFuture() {
         return response;
     }
 
@@ -88,8 +98,7 @@ public class NetworkReplyObject {
     /**
      * Interrupts any thread waiting for a response.
      */
-    public synchronized void interrupt() {
-        responseGiven = true;
-        notify();
+    public void interrupt() {
+        response.complete(null);
     }
 }
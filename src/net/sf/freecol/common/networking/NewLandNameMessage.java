@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when naming a new land.
  */
-public class NewLandNameMessage extends DOMMessage {
+public class NewLandNameMessage extends DOMMessage implements ServerRequest {
 
     /** The unit that has come ashore. */
     private final String unitId;
@@ -101,6 +101,7 @@ public class NewLandNameMessage extends DOMMessage {
      * @return An update setting the new land name, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -33,7 +33,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when naming a new region.
  */
-public class NewRegionNameMessage extends DOMMessage {
+public class NewRegionNameMessage extends DOMMessage implements ServerRequest {
 
     /** The object identifier of the region being discovered. */
     private final String regionId;
@@ -134,6 +134,7 @@ public class NewRegionNameMessage extends DOMMessage {
      *
      * @return Null.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -31,7 +31,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when paying tax arrears.
  */
-public class PayArrearsMessage extends DOMMessage {
+public class PayArrearsMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the GoodsType to pay arrears for. */
     private final String goodsTypeId;
@@ -73,6 +73,7 @@ public class PayArrearsMessage extends DOMMessage {
      * @return An update containing the payArrearsd unit,
      *         or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -31,7 +31,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when paying for a building.
  */
-public class PayForBuildingMessage extends DOMMessage {
+public class PayForBuildingMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the colony that is building. */
     private final String colonyId;
@@ -73,6 +73,7 @@ public class PayForBuildingMessage extends DOMMessage {
      * @return An update containing the payForBuildingd unit,
      *         or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -31,7 +31,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent when putting a unit outside a colony.
  */
-public class PutOutsideColonyMessage extends DOMMessage {
+public class PutOutsideColonyMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The identifier of the unit to be put out. */
     private final String unitId;
@@ -72,6 +73,7 @@ public class PutOutsideColonyMessage extends DOMMessage {
      * @return An update encapsulating the change, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
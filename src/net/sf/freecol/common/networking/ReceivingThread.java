@@ -19,22 +19,13 @@
 
 package net.sf.freecol.common.networking;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.stream.XMLStreamException;
 
-import net.sf.freecol.common.FreeColException;
-import net.sf.freecol.common.io.FreeColXMLReader;
-
-import org.xml.sax.SAXException;
-
 
 /**
  * The thread that checks for incoming messages.
@@ -70,6 +61,9 @@ final class ReceivingThread extends Thread {
 
         private boolean wait = false;
 
+        /** The number of bytes consumed so far. */
+        private long count = 0;
+
 
         /**
          * Creates a new <code>FreeColNetworkInputStream</code>.
@@ -90,6 +84,16 @@ final class ReceivingThread extends Thread {
             this.wait = false;
         }
 
+        /**
+         * Gets the number of bytes consumed so far, including the
+         * end of stream tokens.
+         *
+         * @return The byte count.
+         */
+        public long getCount() {
+            return this.count;
+        }
+
         /**
          * Fills the buffer with data.
          * 
@@ -117,6 +121,42 @@ final class ReceivingThread extends Thread {
             return true;
         }
 
+        /**
+         * Peeks at the next byte without consuming it.
+         *
+         * @return The next byte, or -1 on error or "end" of stream.
+         * @exception IOException is thrown by the underlying read.
+         */
+        public int peek() throws IOException {
+            if (this.wait) return -1;
+
+            if (this.empty && !fill()) {
+                this.wait = true;
+                return -1;
+            }
+            return buffer[this.bStart] & 0xFF;
+        }
+
+        /**
+         * Reads exactly the requested number of bytes, ignoring the
+         * end of stream token, as needed for binary frames.
+         *
+         * @param b The buffer to put the data in.
+         * @exception IOException if the underlying stream ends first.
+         */
+        public void readFully(byte[] b) throws IOException {
+            for (int n = 0; n < b.length; n++) {
+                if (this.empty && !fill()) {
+                    throw new IOException("Binary frame truncated");
+                }
+                b[n] = buffer[this.bStart];
+                this.bStart++;
+                if (this.bStart == BUFFER_SIZE) this.bStart = 0;
+                if (this.bStart == this.bEnd) this.empty = true;
+            }
+            this.count += b.length;
+        }
+
         /**
          * Reads a single byte.
          * 
@@ -134,6 +174,7 @@ final class ReceivingThread extends Thread {
             }
 
             int ret = buffer[this.bStart];
+            this.count++;
             this.bStart++;
             if (this.bStart >= BUFFER_SIZE) this.bStart = 0;
             if (this.bStart == this.bEnd) this.empty = true;
@@ -166,6 +207,7 @@ final class ReceivingThread extends Thread {
                 }
 
                 byte value = buffer[this.bStart];
+                this.count++;
                 this.bStart++;
                 if (this.bStart == BUFFER_SIZE) this.bStart = 0;
                 if (this.bStart == this.bEnd) this.empty = true;
@@ -184,21 +226,17 @@ final class ReceivingThread extends Thread {
     /** Maximum number of retries before closing the connection. */
     private static final int MAXIMUM_RETRIES = 5;
 
-    /** A map of network ids to the corresponding waiting thread. */
-    private final Map<Integer, NetworkReplyObject> waitingThreads
-        = Collections.synchronizedMap(new HashMap<Integer, NetworkReplyObject>());
-
     /** The wrapped version of the input stream. */
     private final FreeColNetworkInputStream in;
 
     /** The connection to receive on. */
     private final Connection connection;
 
-    /** Whether the thread should run. */
-    private boolean shouldRun;
+    /** Routes the messages received. */
+    private final MessageDispatcher dispatcher;
 
-    /** A counter for reply ids. */
-    private int nextNetworkReplyId;
+    /** Decodes the messages received. */
+    private final FrameDecoder decoder = new FrameDecoder();
 
 
     /**
@@ -206,125 +244,74 @@ final class ReceivingThread extends Thread {
      * 
      * @param connection The <code>Connection</code> this
      *            <code>ReceivingThread</code> belongs to.
+     * @param dispatcher The <code>MessageDispatcher</code> to pass
+     *     the messages to.
      * @param in The stream to read from.
      */
-    ReceivingThread(Connection connection, InputStream in, String threadName) {
+    ReceivingThread(Connection connection, MessageDispatcher dispatcher,
+                    InputStream in, String threadName) {
         super(threadName + "-ReceivingThread-" + connection);
 
         this.in = new FreeColNetworkInputStream(in);
         this.connection = connection;
-        this.shouldRun = true;
-        this.nextNetworkReplyId = 1;
-    }
-
-    /**
-     * Gets the next network reply identifier that will be used when
-     * identifing a network message.
-     * 
-     * @return The next available network reply identifier.
-     */
-    public synchronized int getNextNetworkReplyId() {
-        return nextNetworkReplyId++;
-    }
-
-    /**
-     * Creates and registers a new <code>NetworkReplyObject</code> with the
-     * specified object identifier.
-     * 
-     * @param networkReplyId The identifier of the message the calling
-     *     thread should wait for.
-     * @return The <code>NetworkReplyObject</code> containing the network
-     *     message.
-     */
-    public NetworkReplyObject waitForNetworkReply(int networkReplyId) {
-        NetworkReplyObject nro = new NetworkReplyObject(networkReplyId);
-        waitingThreads.put(networkReplyId, nro);
-        return nro;
+        this.dispatcher = dispatcher;
     }
 
     /**
      * Checks if this thread should run.
      */
-    private synchronized boolean shouldRun() {
-        return this.shouldRun;
-    }
-
-    /**
-     * Tells this thread that it does not need to do any more work.
-     */
-    public synchronized void askToStop() {
-        if (this.shouldRun) {
-            this.shouldRun = false;
-            for (NetworkReplyObject o : this.waitingThreads.values()) {
-                o.interrupt();
-            }
-        }
-    }
-
-    /**
-     * Disconnects this thread.
-     */
-    private void disconnect(String reason) {
-        askToStop();
-        if (connection.getMessageHandler() != null) {
-            try {
-                connection.getMessageHandler().handle(connection,
-                    DOMMessage.createMessage("disconnect",
-                        "reason", reason));
-            } catch (FreeColException e) {
-                logger.log(Level.WARNING, "Rx disconnect", e);
-            }
-        }
+    private boolean shouldRun() {
+        return !dispatcher.isStopped();
     }
 
     /**
      * Listens to the InputStream and calls the MessageHandler for
      * each message received.
+     *
+     * Each message is read in a single pass, either by decoding a
+     * binary frame or by parsing the XML straight into a document.
+     * Compressed frames are decompressed whole first.
      * 
      * @throws IOException If thrown by the {@link FreeColNetworkInputStream}.
-     * @throws SAXException if a problem occured during parsing.
      * @throws XMLStreamException if a problem occured during parsing.
      */
-    private void listen() throws IOException, SAXException, XMLStreamException {
+    private void listen() throws IOException, XMLStreamException {
         in.enable();
-
-        final int LOOK_AHEAD = 8192;
-        BufferedInputStream bis = new BufferedInputStream(in, LOOK_AHEAD);
-        bis.mark(LOOK_AHEAD);
-
-        FreeColXMLReader xr = new FreeColXMLReader(bis);
-        String tag;
-        try {
-            xr.nextTag();
-            tag = xr.getLocalName();
-        } catch (XMLStreamException xse) {
-            // EOS can occur when the other end disconnects
-            tag = Connection.DISCONNECT_TAG;
-        }
-
-        if (Connection.DISCONNECT_TAG.equals(tag)) {
-            askToStop();
-
-        } else if (Connection.REPLY_TAG.equals(tag)) {
-            int id = xr.getAttribute(Connection.NETWORK_REPLY_ID_TAG, -1);
-            NetworkReplyObject nro = waitingThreads.remove(id);
-            if (nro == null) {
-                logger.warning("Could not find networkReplyId: " + id);
-            } else {
-                bis.reset();
-                nro.setResponse(new DOMMessage(bis));
-            }
-        
+        final int first = in.peek();
+        final long start = System.nanoTime();
+        final long startCount = in.getCount();
+        DOMMessage msg;
+        if (first < 0) {
+            msg = null; // EOS can occur when the other end disconnects
+        } else if (FrameDecoder.isFrame(first)) {
+            msg = decoder.decode(first, readFrame());
         } else {
-            try {
-                bis.reset();
-                connection.handleAndSendReply(bis);
-            } catch (IOException ioe) {
-                logger.log(Level.WARNING, "IO error for " + tag, ioe);
-            }
+            msg = decoder.parse(in);
         }
+        if (msg == null) {
+            dispatcher.stop();
+            return;
+        }
+        final String type = NetworkMetrics.getType(msg);
+        NetworkMetrics.recordParse(type, System.nanoTime() - start);
+        NetworkMetrics.recordReceived(type, in.getCount() - startCount);
+        dispatcher.dispatch(msg);
+    }
 
-        if (xr != null) xr.close();
+    /**
+     * Reads the contents of a binary or compressed frame.
+     *
+     * @return The bytes following the frame header.
+     * @exception IOException if the frame can not be read, or is
+     *     too long.
+     */
+    private byte[] readFrame() throws IOException {
+        byte[] header = new byte[FrameDecoder.FRAME_HEADER];
+        in.readFully(header);
+        byte[] data = new byte[FrameDecoder.getLength(header[1], header[2],
+                                                      header[3], header[4])];
+        in.readFully(data);
+        return data;
     }
 
     /**
@@ -341,22 +328,23 @@ final class ReceivingThread extends Thread {
                 try {
                     listen();
                     timesFailed = 0;
-                } catch (SAXException|XMLStreamException e) {
+                } catch (XMLStreamException e) {
                     if (!shouldRun()) break;
                     logger.log(Level.WARNING, "XML fail", e);
                     if (++timesFailed > MAXIMUM_RETRIES) {
-                        disconnect("Too many failures (XML)");
+                        dispatcher.disconnect("Too many failures (XML)");
                     }
                 } catch (IOException e) {
                     if (!shouldRun()) break;
                     logger.log(Level.WARNING, "IO fail", e);
-                    disconnect("Unexpected IO failure");
+                    dispatcher.disconnect("Unexpected IO failure");
                 }
             }
         } catch (Exception e) {
             logger.log(Level.WARNING, "Unexpected exception.", e);
         } finally {
-            askToStop();
+            dispatcher.stop();
+            decoder.end();
         }
         // Do not send disconnect again
         connection.reallyClose();
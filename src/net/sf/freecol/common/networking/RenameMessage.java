@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when renaming a FreeColGameObject.
  */
-public class RenameMessage extends DOMMessage {
+public class RenameMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the object to be renamed. */
     private final String id;
@@ -80,6 +80,7 @@ public class RenameMessage extends DOMMessage {
      * @return An update containing the renamed unit,
      *         or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -36,7 +36,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent when scouting a native settlement.
  */
-public class ScoutIndianSettlementMessage extends DOMMessage {
+public class ScoutIndianSettlementMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The identifier of the unit that is scouting. */
     private final String unitId;
@@ -83,6 +84,7 @@ public class ScoutIndianSettlementMessage extends DOMMessage {
      * @return An element containing the result of the scouting
      *     action, or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -36,7 +36,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent when speaking to a chief.
  */
-public class ScoutSpeakToChiefMessage extends DOMMessage {
+public class ScoutSpeakToChiefMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The identifier of the unit that is speaking. */
     private final String unitId;
@@ -83,6 +84,7 @@ public class ScoutSpeakToChiefMessage extends DOMMessage {
      * @return An element containing the result of the scouting
      *     action, or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,6 +76,150 @@ public abstract class ServerAPI {
 
     private static final Logger logger = Logger.getLogger(ServerAPI.class.getName());
 
+    /**
+     * Requests sent to the server without waiting for each reply in
+     * turn, so that several can be in flight at once.
+     *
+     * The server handles pipelined requests in the order they were
+     * sent.  Their replies are handled in the same order by the
+     * thread that calls {@link #finish}, exactly as the corresponding
+     * single request would handle its reply.  Once one request fails,
+     * the error replies to the later ones are most likely consequences
+     * of that failure, so they are dropped quietly.
+     */
+    public final class Pipeline {
+
+        /** The requests sent. */
+        private final List<DOMMessage> messages = new ArrayList<>();
+
+        /** The replies to the requests, in the same order. */
+        private final List<CompletableFuture<Element>> replies
+            = new ArrayList<>();
+
+
+        /**
+         * Send a request.
+         *
+         * @param message The <code>DOMMessage</code> to send.
+         * @return This pipeline.
+         */
+        private Pipeline add(DOMMessage message) {
+            messages.add(message);
+            replies.add(askAsync(message));
+            return this;
+        }
+
+        /**
+         * Pipelined version of {@link ServerAPI#move}.
+         *
+         * @param unit The <code>Unit</code> to be moved.
+         * @param direction The direction to move in.
+         * @return This pipeline.
+         */
+        public Pipeline move(Unit unit, Direction direction) {
+            return add(new MoveMessage(unit, direction));
+        }
+
+        /**
+         * Pipelined version of {@link ServerAPI#loadGoods}.
+         *
+         * @param loc The <code>Location</code> where the goods are.
+         * @param type The <code>GoodsType</code> to load.
+         * @param amount The amount of goods to load.
+         * @param carrier The <code>Unit</code> to load onto.
+         * @return This pipeline.
+         */
+        public Pipeline loadGoods(Location loc, GoodsType type, int amount,
+                                  Unit carrier) {
+            return add(new LoadGoodsMessage(loc, type, amount, carrier));
+        }
+
+        /**
+         * Pipelined version of {@link ServerAPI#unloadGoods}.
+         *
+         * @param type The <code>GoodsType</code> to unload.
+         * @param amount The amount of goods to unload.
+         * @param carrier The <code>Unit</code> carrying the goods.
+         * @return This pipeline.
+         */
+        public Pipeline unloadGoods(GoodsType type, int amount,
+                                    Unit carrier) {
+            return add(new UnloadGoodsMessage(type, amount, carrier));
+        }
+
+        /**
+         * Pipelined version of {@link ServerAPI#buyFromSettlement}.
+         *
+         * @param unit The <code>Unit</code> that is trading.
+         * @param settlement The <code>Settlement</code> that is trading.
+         * @param goods The <code>Goods</code> to buy.
+         * @param gold The agreed price.
+         * @return This pipeline.
+         */
+        public Pipeline buyFromSettlement(Unit unit, Settlement settlement,
+                                          Goods goods, int gold) {
+            return add(new BuyMessage(unit, settlement, goods, gold));
+        }
+
+        /**
+         * Pipelined version of {@link ServerAPI#sellToSettlement}.
+         *
+         * @param unit The <code>Unit</code> that is trading.
+         * @param settlement The <code>Settlement</code> that is trading.
+         * @param goods The <code>Goods</code> to sell.
+         * @param gold The agreed price.
+         * @return This pipeline.
+         */
+        public Pipeline sellToSettlement(Unit unit, Settlement settlement,
+                                         Goods goods, int gold) {
+            return add(new SellMessage(unit, settlement, goods, gold));
+        }
+
+        /**
+         * Get the number of requests waiting to be finished.
+         *
+         * @return The number of requests.
+         */
+        public int size() {
+            return messages.size();
+        }
+
+        /**
+         * Wait for and handle the replies to all the requests sent.
+         *
+         * @return The number of requests that succeeded before the
+         *     first failure.
+         */
+        public int finish() {
+            int succeeded = 0;
+            boolean failed = false;
+            for (int i = 0; i < messages.size(); i++) {
+                Element reply;
+                try {
+                    reply = replies.get(i).get();
+                } catch (InterruptedException | ExecutionException e) {
+                    reply = null;
+                }
+                if (failed && reply != null
+                    && "error".equals(reply.getTagName())) {
+                    logger.fine("Dropped pipelined error for: "
+                        + messages.get(i).getType());
+                    continue;
+                }
+                reply = handleExpecting(messages.get(i), reply, null, null);
+                if (reply == null) {
+                    failed = true;
+                    continue;
+                }
+                resolve(client.handleReply(reply));
+                if (!failed) succeeded++;
+            }
+            messages.clear();
+            replies.clear();
+            return succeeded;
+        }
+    }
+
     /** The Client used to communicate with the server. */
     private Client client;
 
@@ -169,6 +315,23 @@ public abstract class ServerAPI {
         return reply;
     }
 
+    /**
+     * Sends a DOMMessage query to the server without waiting for a reply.
+     *
+     * @param message The <code>DOMMessage</code> to send.
+     * @return A future for the reply, which completes with null if
+     *     there was a problem.
+     */
+    private CompletableFuture<Element> askAsync(DOMMessage message) {
+        try {
+            return client.askAsync(message);
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Could not ask: " + message.getType(),
+                       ioe);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
     /**
      * Loop sending requests and handling replies from the server until
      * they reduce to null.
@@ -208,7 +371,23 @@ public abstract class ServerAPI {
      */
     private Element askExpecting(DOMMessage message, String tag,
                                  HashMap<String, String> results) {
-        Element reply = ask(message);
+        return handleExpecting(message, ask(message), tag, results);
+    }
+
+    /**
+     * Handle the reply to a message, as for
+     * {@link #askExpecting(DOMMessage, String, HashMap)}.
+     *
+     * @param message The <code>DOMMessage</code> that was sent.
+     * @param reply The reply <code>Element</code>, or null if none.
+     * @param tag The expected tag
+     * @param results A <code>Map</code> to store special attribute results in.
+     * @return The reply if it has the specified tag, otherwise
+     *     <code>null</code>.
+     */
+    private Element handleExpecting(DOMMessage message, Element reply,
+                                    String tag,
+                                    HashMap<String, String> results) {
         if (reply == null) return null;
 
         if ("error".equals(reply.getTagName())) {
@@ -403,6 +582,17 @@ public abstract class ServerAPI {
     }
 
 
+    /**
+     * Start a pipeline of requests, which are sent without waiting
+     * for each reply in turn.
+     *
+     * @return A new <code>Pipeline</code>.
+     */
+    public Pipeline pipeline() {
+        return new Pipeline();
+    }
+
+
     // Public messaging routines for game actions
 
     /**
@@ -1027,11 +1217,36 @@ public abstract class ServerAPI {
      * @return A <code>LoginMessage</code> on success, or null on error.
      */
     public LoginMessage login(String userName, String version) {
+        return login(userName, version, -1);
+    }
+
+    /**
+     * Server query-response for logging in a player, possibly
+     * reconnecting to a game in progress.
+     *
+     * @param userName The user name.
+     * @param version The client version.
+     * @param lastUpdate The sequence number of the last update applied
+     *     to the game the client still holds, or negative if none.
+     *     If the server can, it replies with just the updates missed.
+     * @return A <code>LoginMessage</code> on success, or null on error.
+     */
+    public LoginMessage login(String userName, String version,
+                              int lastUpdate) {
         Element reply = askExpecting(new TrivialMessage("login",
-                                                        "userName", userName,
-                                                        "version", version),
-                                     "login", null);
-        return (reply == null) ? null : new LoginMessage(null, reply);
+                "userName", userName,
+                "version", version,
+                Connection.BINARY_TAG, Boolean.toString(true),
+                Connection.COMPRESS_TAG, Boolean.toString(true),
+                Connection.DELTA_TAG, Boolean.toString(true),
+                LoginMessage.LAST_UPDATE_TAG, Integer.toString(lastUpdate)),
+            "login", null);
+        if (reply == null) return null;
+        LoginMessage message = new LoginMessage(null, reply);
+        // The server can read binary and compressed messages too
+        if (message.isBinary()) client.getConnection().enableBinary();
+        if (message.isCompressed()) client.getConnection().enableCompression();
+        return message;
     }
 
     /**
@@ -1086,6 +1301,19 @@ public abstract class ServerAPI {
             null, null);
     }
 
+    /**
+     * Server query-response for moving a unit several steps along a
+     * path.  The server stops early if anything interesting happens.
+     *
+     * @param unit The <code>Unit</code> to be moved.
+     * @param directions The <code>Direction</code>s of the steps.
+     * @return True if the server interaction succeeded.
+     */
+    public boolean movePath(Unit unit, List<Direction> directions) {
+        return askHandling(new MovePathMessage(unit, directions),
+            null, null);
+    }
+
     /**
      * Server query-response for moving to across the high seas.
      *
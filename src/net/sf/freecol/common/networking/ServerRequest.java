@@ -0,0 +1,66 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.server.FreeColServer;
+
+import org.w3c.dom.Element;
+
+
+/**
+ * A request from the current player that the server can handle
+ * without the message first being converted to an element and back.
+ *
+ * Players on the same server as the game (the AI) send these
+ * directly to the server input handler.  Only messages that carry
+ * nothing but identifiers and other immutable values should
+ * implement this, so that the server sees the same request it would
+ * have decoded from the element form.
+ */
+public interface ServerRequest {
+
+    /**
+     * Gets the tag of the root element of this request.
+     *
+     * @return The request tag.
+     */
+    public String getType();
+
+    /**
+     * Handle this request.
+     *
+     * @param server The <code>FreeColServer</code> handling the request.
+     * @param player The <code>Player</code> the request applies to.
+     * @param connection The <code>Connection</code> the request was
+     *     received on.
+     * @return The reply <code>Element</code>, which may be null.
+     */
+    public Element handle(FreeColServer server, Player player,
+                          Connection connection);
+
+    /**
+     * Convert this request to an element, for when it can not be
+     * handled directly.
+     *
+     * @return An <code>Element</code> containing the request.
+     */
+    public Element toXMLElement();
+}
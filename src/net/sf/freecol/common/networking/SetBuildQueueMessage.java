@@ -36,7 +36,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when setting the build queue.
  */
-public class SetBuildQueueMessage extends DOMMessage {
+public class SetBuildQueueMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the colony containing the queue. */
     private final String colonyId;
@@ -100,6 +100,7 @@ public class SetBuildQueueMessage extends DOMMessage {
      * @return An update containing the new queue
      *         or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -0,0 +1,60 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.freecol.common.io.FreeColXMLWriter;
+
+import org.w3c.dom.Element;
+
+
+/**
+ * A message that can write itself directly to a stream, without
+ * first building a DOM tree.
+ *
+ * Connections that can not stream (such as the dummy connections
+ * used by the AI) fall back to the element form.
+ */
+public interface StreamedMessage {
+
+    /**
+     * Gets the tag of the root element of this message.
+     *
+     * @return The message tag.
+     */
+    public String getType();
+
+    /**
+     * Write this message to a stream.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @exception XMLStreamException if there is a problem writing
+     *     to the stream.
+     */
+    public void toXML(FreeColXMLWriter xw) throws XMLStreamException;
+
+    /**
+     * Convert this message to an element.
+     *
+     * @return An <code>Element</code> equivalent to the streamed form.
+     */
+    public Element toXMLElement();
+}
@@ -31,7 +31,8 @@ import org.w3c.dom.Element;
 /**
  * The message sent when training a unit in Europe.
  */
-public class TrainUnitInEuropeMessage extends DOMMessage {
+public class TrainUnitInEuropeMessage extends DOMMessage
+    implements ServerRequest {
 
     /** The identifier of the unit type. */
     private final String typeId;
@@ -73,6 +74,7 @@ public class TrainUnitInEuropeMessage extends DOMMessage {
      * @return An update containing the trainUnitInEuroped unit,
      *         or an error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
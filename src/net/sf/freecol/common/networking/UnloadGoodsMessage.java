@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent when unloading goods.
  */
-public class UnloadGoodsMessage extends DOMMessage {
+public class UnloadGoodsMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the type of goods to unload.  */
     private final String goodsTypeId;
@@ -84,6 +84,7 @@ public class UnloadGoodsMessage extends DOMMessage {
      * @return An update containing the carrier, or an error
      *     <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
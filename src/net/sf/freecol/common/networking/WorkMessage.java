@@ -32,7 +32,7 @@ import org.w3c.dom.Element;
 /**
  * The message sent to handle changes in work location.
  */
-public class WorkMessage extends DOMMessage {
+public class WorkMessage extends DOMMessage implements ServerRequest {
 
     /** The identifier of the unit. */
     private final String unitId;
@@ -78,6 +78,7 @@ public class WorkMessage extends DOMMessage {
      * @return An update encapsulating the work location change or an
      *     error <code>Element</code> on failure.
      */
+    @Override
     public Element handle(FreeColServer server, Player player,
                           Connection connection) {
         final ServerPlayer serverPlayer = server.getPlayer(connection);
@@ -17,31 +17,97 @@
  *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package net.sf.freecol.metaserver;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.ServerInfo;
 import net.sf.freecol.common.networking.Connection;
 import net.sf.freecol.common.networking.DOMMessage;
 
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 
 /**
  * The <code>MetaRegister</code> stores information about running servers.
  * Each server has it's own {@link MetaItem} object.
+ *
+ * Changes to the register are serialized, but listing the servers
+ * takes no lock.  The list is made from a snapshot of copies of the
+ * servers, which is only rebuilt after a change.  Servers that stop
+ * sending updates are expired by a task scheduled at each update,
+ * rather than by scanning the whole register.
  */
 public final class MetaRegister {
 
     private static final Logger logger = Logger.getLogger(MetaRegister.class.getName());
 
-    private final ArrayList<MetaItem> items = new ArrayList<>();
-    
-    
+    /** The servers, keyed by address and port. */
+    private final Map<String, MetaItem> items = new ConcurrentHashMap<>();
+
+    /** Copies of the servers to list, or null if they have changed. */
+    private volatile List<ServerInfo> snapshot = null;
+
+    /** How long a server may go without an update, in milliseconds. */
+    private final long expiry;
+
+    /** Runs the expiry checks. */
+    private final ScheduledExecutorService expirer
+        = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, FreeCol.METASERVER_THREAD
+                        + "Expiry");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+
+    /**
+     * Creates a new <code>MetaRegister</code>, expiring servers
+     * after {@link MetaServer#REMOVE_OLDER_THAN}.
+     */
+    public MetaRegister() {
+        this(MetaServer.REMOVE_OLDER_THAN);
+    }
+
+    /**
+     * Creates a new <code>MetaRegister</code>.
+     *
+     * @param expiry How long a server may go without an update
+     *     before it is removed, in milliseconds.
+     */
+    public MetaRegister(long expiry) {
+        this.expiry = expiry;
+    }
+
+
+    /**
+     * Gets the key of a server.
+     *
+     * @param address The IP-address of the server.
+     * @param port The port number of the server.
+     * @return The key.
+     */
+    private static String key(String address, int port) {
+        return address + ":" + port;
+    }
+
     /**
      * Gets the server entry with the diven address and port.
      *
@@ -51,49 +117,41 @@ public final class MetaRegister {
      *         entry could not be found.
      */
     private MetaItem getItem(String address, int port) {
-        int index = indexOf(address, port);
-        if (index >= 0) {
-            return items.get(index);
-        } else {
-            return null;
-        }
+        return items.get(key(address, port));
     }
-    
 
     /**
-     * Gets the index of the server entry with the diven address and port.
+     * Gets the number of servers registered.
      *
-     * @param address The IP-address of the server.
-     * @param port The port number of the server.
-     * @return The index or <code>-1</code> if the given entry could
-     *     not be found.
+     * @return The number of servers.
      */
-    private int indexOf(String address, int port) {
-        for (int i=0; i<items.size(); i++) {
-            if (address.equals(items.get(i).getAddress()) && port == items.get(i).getPort()) {
-                return i;
-            }
-        }
-
-        return -1;
+    public int getServerCount() {
+        return items.size();
     }
 
-
     /**
-     * Removes servers that have not sent an update for some time.
+     * Remove a server if it has not been updated since an expiry was
+     * scheduled.  Scheduled after each update of the server.
+     *
+     * @param key The key of the server.
+     * @param updated The update time of the server when scheduled.
      */
-    public synchronized void removeDeadServers() {
-        logger.info("Removing dead servers.");
-
-        long time = System.currentTimeMillis() - MetaServer.REMOVE_OLDER_THAN;
-        for (int i=0; i<items.size(); i++) {
-            if (items.get(i).getLastUpdated() < time) {
-                logger.info("Removing: " + items.get(i));
-                items.remove(i);
-            }
+    private synchronized void expire(String key, long updated) {
+        MetaItem mi = items.get(key);
+        if (mi != null && mi.getLastUpdated() == updated) {
+            logger.info("Removing: " + mi);
+            items.remove(key);
+            snapshot = null;
         }
     }
 
+    /**
+     * Stop expiring servers.
+     */
+    public void shutdown() {
+        expirer.shutdownNow();
+    }
+
 
     /**
      * Adds a new server with the given attributes.
@@ -106,13 +164,14 @@ public final class MetaRegister {
      * @param isGameStarted <i>true</i> if the game has started.
      * @param version The version of the server.
      * @param gameState The current state of the game.
+     * @exception IOException if the server can not be reached.
      */
-    public synchronized void addServer(String name, String address, int port, int slotsAvailable,
+    public void addServer(String name, String address, int port, int slotsAvailable,
                 int currentlyPlaying, boolean isGameStarted, String version, int gameState)
                 throws IOException {
-        MetaItem mi = getItem(address, port);
-        if (mi == null) {
-            // Check connection before adding the server:
+        if (getItem(address, port) == null) {
+            // Check connection before adding the server, without
+            // holding up the rest of the register:
             try (
                 Connection mc = new Connection(address, port, null,
                                                FreeCol.METASERVER_THREAD);
@@ -122,13 +181,9 @@ public final class MetaRegister {
                 logger.log(Level.WARNING, "Server rejected disconnect.", e);
                 throw e;
             }
-            items.add(new MetaItem(name, address, port, slotsAvailable,
-                    currentlyPlaying, isGameStarted, version, gameState));
-            logger.info("Server added:" + address + ":" + port);
-        } else {
-            updateServer(mi, name, address, port, slotsAvailable,
-                currentlyPlaying, isGameStarted, version, gameState);
         }
+        putServer(name, address, port, slotsAvailable,
+                  currentlyPlaying, isGameStarted, version, gameState);
     }
 
 
@@ -143,15 +198,15 @@ public final class MetaRegister {
      * @param isGameStarted <i>true</i> if the game has started.
      * @param version The version of the server.
      * @param gameState The current state of the game.
+     * @exception IOException if a new server can not be reached.
      */
-    public synchronized void updateServer(String name, String address, int port, int slotsAvailable,
+    public void updateServer(String name, String address, int port, int slotsAvailable,
             int currentlyPlaying, boolean isGameStarted, String version, int gameState)
             throws IOException {
-        MetaItem mi = getItem(address, port);
-        if (mi == null) {
+        if (getItem(address, port) == null) {
             addServer(name, address, port, slotsAvailable, currentlyPlaying, isGameStarted, version, gameState);
         } else {
-            updateServer(mi, name, address, port, slotsAvailable, currentlyPlaying, isGameStarted, version, gameState);
+            putServer(name, address, port, slotsAvailable, currentlyPlaying, isGameStarted, version, gameState);
         }
     }
 
@@ -163,9 +218,8 @@ public final class MetaRegister {
      * @param port The port number of the server to remove.
      */
     public synchronized void removeServer(String address, int port) {
-        int index = indexOf(address, port);
-        if (index >= 0) {
-            items.remove(index);
+        if (items.remove(key(address, port)) != null) {
+            snapshot = null;
             logger.info("Removing server:" + address + ":" + port);
         } else {
             logger.info("Trying to remove non-existing server:" + address + ":" + port);
@@ -178,19 +232,40 @@ public final class MetaRegister {
      *
      * @return The server list as an XML DOM Element.
      */
-    public synchronized Element createServerList() {
+    public Element createServerList() {
+        List<ServerInfo> servers = snapshot;
+        if (servers == null) servers = takeSnapshot();
         Element element = DOMMessage.createMessage("serverList");
-        for (MetaItem item : items) {
-            element.appendChild(item.toXMLElement(element.getOwnerDocument()));
+        Document doc = element.getOwnerDocument();
+        for (ServerInfo si : servers) {
+            element.appendChild(si.toXMLElement(doc));
         }
         return element;
     }
 
+    /**
+     * Rebuild the snapshot of the servers if they have changed.
+     *
+     * @return The current snapshot.
+     */
+    private synchronized List<ServerInfo> takeSnapshot() {
+        if (snapshot == null) {
+            List<ServerInfo> servers = new ArrayList<>(items.size());
+            for (MetaItem mi : items.values()) {
+                servers.add(new ServerInfo(mi.getName(), mi.getAddress(),
+                        mi.getPort(), mi.getSlotsAvailable(),
+                        mi.getCurrentlyPlaying(), mi.isGameStarted(),
+                        mi.getVersion(), mi.getGameState()));
+            }
+            snapshot = Collections.unmodifiableList(servers);
+        }
+        return snapshot;
+    }
+
 
     /**
-     * Updates a given <code>MetaItem</code>.
+     * Adds or updates a server, and schedules its expiry.
      *
-     * @param mi The <code>MetaItem</code> that should be updated.
      * @param name The name of the server.
      * @param address The IP-address of the server.
      * @param port The port number in which clients may connect.
@@ -203,10 +278,26 @@ public final class MetaRegister {
      *     {@link net.sf.freecol.server.FreeColServer.GameState#IN_GAME} or
      *     {@link net.sf.freecol.server.FreeColServer.GameState#ENDING_GAME}.
      */
-    private void updateServer(MetaItem mi, String name, String address, int port, int slotsAvailable,
+    private synchronized void putServer(String name, String address, int port, int slotsAvailable,
             int currentlyPlaying, boolean isGameStarted, String version, int gameState) {
-        mi.update(name, address, port, slotsAvailable, currentlyPlaying, isGameStarted, version, gameState);
-        logger.info("Server updated:" + mi.toString());
+        final String key = key(address, port);
+        MetaItem mi = items.get(key);
+        if (mi == null) {
+            mi = new MetaItem(name, address, port, slotsAvailable,
+                currentlyPlaying, isGameStarted, version, gameState);
+            items.put(key, mi);
+            logger.info("Server added:" + address + ":" + port);
+        } else {
+            mi.update(name, address, port, slotsAvailable, currentlyPlaying, isGameStarted, version, gameState);
+            logger.info("Server updated:" + mi.toString());
+        }
+        snapshot = null;
+        final long updated = mi.getLastUpdated();
+        expirer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    expire(key, updated);
+                }
+            }, expiry, TimeUnit.MILLISECONDS);
     }
 }
-
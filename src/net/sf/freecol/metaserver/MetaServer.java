@@ -22,10 +22,9 @@ package net.sf.freecol.metaserver;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,15 +44,14 @@ public final class MetaServer extends Thread {
 
     private static final Logger logger = Logger.getLogger(MetaServer.class.getName());
 
-    private static final int REMOVE_DEAD_SERVERS_INTERVAL = 120000;
-
     public static final int REMOVE_OLDER_THAN = 90000;
 
     /** The public "well-known" socket to which clients may connect. */
     private final ServerSocket serverSocket;
 
     /** A hash of Connection objects, keyed by the Socket they relate to. */
-    private final HashMap<Socket, Connection> connections = new HashMap<>();
+    private final Map<Socket, Connection> connections
+        = new ConcurrentHashMap<>();
 
     /**
      * Whether to keep running the main loop that is awaiting new client
@@ -66,6 +64,9 @@ public final class MetaServer extends Thread {
 
     private final NetworkHandler networkHandler;
 
+    /** The register of servers. */
+    private final MetaRegister metaRegister;
+
 
     /**
      * Creates and starts a new <code>MetaServer</code>.
@@ -102,21 +103,9 @@ public final class MetaServer extends Thread {
     public MetaServer(int port) throws IOException {
         this.port = port;
 
-        final MetaRegister mr = new MetaRegister();
-        networkHandler = new NetworkHandler(this, mr);
+        metaRegister = new MetaRegister();
+        networkHandler = new NetworkHandler(this, metaRegister);
         serverSocket = new ServerSocket(port);
-
-        Timer t = new Timer(true);
-        t.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    mr.removeDeadServers();
-                } catch (Exception ex) {
-                    logger.log(Level.WARNING, "Could not remove servers.", ex);
-                }
-            }
-        }, REMOVE_DEAD_SERVERS_INTERVAL, REMOVE_DEAD_SERVERS_INTERVAL);
     }
 
     /**
@@ -182,8 +171,9 @@ public final class MetaServer extends Thread {
             logger.log(Level.WARNING, "Could not close the server socket!", e);
         }
 
-        Connection c;
-        while ((c = connections.remove(0)) != null) c.close();
+        for (Connection c : connections.values()) c.close();
+        connections.clear();
+        metaRegister.shutdown();
         logger.info("Server shutdown.");
     }
 
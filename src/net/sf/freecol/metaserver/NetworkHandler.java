@@ -57,13 +57,14 @@ public final class NetworkHandler implements MessageHandler {
 
     
     /**
-    * Handles a network message.
+    * Handles a network message.  Messages from different connections
+    * are handled concurrently, the register is thread safe.
     *
     * @param connection The <code>Connection</code> the message came from.
     * @param element The message to be processed.
     */
     @Override
-    public synchronized Element handle(Connection connection, Element element) {
+    public Element handle(Connection connection, Element element) {
         Element reply = null;
 
         String type = element.getTagName();
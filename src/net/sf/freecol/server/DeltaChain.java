@@ -0,0 +1,692 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import net.sf.freecol.common.io.BinaryXMLReader;
+import net.sf.freecol.common.io.BinaryXMLWriter;
+import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.model.FreeColObject;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Map;
+import net.sf.freecol.server.ai.AIMain;
+
+
+/**
+ * A saved game kept as a full base save plus an append-only chain of
+ * deltas, one for each later save.
+ *
+ * Each save is split into records, the children of a few container
+ * elements (the saved game, the server objects, the game, the map and
+ * the AI objects), keyed by their identifiers.  A delta holds the
+ * container attributes, the records added or changed since the
+ * previous save, and runs of records kept or dropped, so a turn in
+ * which most of the map is unchanged appends only a small block.
+ * When the chain reaches its limit, the next save writes a new base.
+ *
+ * The chain is kept in a file next to the base, and is only applied
+ * to the base it was started from.  Blocks carry a checksum and a
+ * torn block ends the chain, so a save interrupted by a crash loses
+ * only that save.
+ */
+public final class DeltaChain {
+
+    private static final Logger logger = Logger.getLogger(DeltaChain.class.getName());
+
+    /** The suffix added to the base file name to name the chain file. */
+    public static final String CHAIN_SUFFIX = ".delta";
+
+    /** The default number of deltas to write before a new base. */
+    public static final int DEFAULT_LIMIT = 10;
+
+    /** The bytes that start a chain file. */
+    private static final byte[] MAGIC = { 'F', 'C', 'D', 'C', 1 };
+
+    /** The elements whose children are separate records. */
+    private static final Set<String> CONTAINERS = new HashSet<>(Arrays.asList(
+            FreeColServer.SAVED_GAME_TAG, FreeColServer.SERVER_OBJECTS_TAG,
+            Game.getXMLElementTagName(), Map.getXMLElementTagName(),
+            AIMain.getXMLElementTagName()));
+
+    /** Delta operations. */
+    private static final int OP_END = 0, OP_COPY = 1, OP_SKIP = 2,
+        OP_RECORD = 3, OP_CONTAINER = 4;
+
+    /** A record or container, with the key it is matched by. */
+    private static abstract class Node {
+
+        public final String key;
+
+        public Node(String key) {
+            this.key = key;
+        }
+    }
+
+    /** A record, held in binary XML form. */
+    private static final class Record extends Node {
+
+        public final byte[] data;
+
+        public Record(String key, byte[] data) {
+            super(key);
+            this.data = data;
+        }
+    }
+
+    /** A container, with its attributes and children. */
+    private static final class Container extends Node {
+
+        public final String tag;
+        public final List<String> attributes;
+        public final List<Node> children;
+
+        public Container(String key, String tag, List<String> attributes,
+                         List<Node> children) {
+            super(key);
+            this.tag = tag;
+            this.attributes = attributes;
+            this.children = children;
+        }
+    }
+
+    /** The base file. */
+    private final File file;
+
+    /** The number of deltas to write before a new base. */
+    private final int limit;
+
+    /** The game as last saved, or null to start a new base. */
+    private Container previous = null;
+
+    /** The number of deltas in the chain. */
+    private int length = 0;
+
+
+    /**
+     * Create a new <code>DeltaChain</code>.  The first save writes
+     * a new base.
+     *
+     * @param file The base <code>File</code>.
+     * @param limit The number of deltas to write before a new base.
+     */
+    public DeltaChain(File file, int limit) {
+        this.file = file;
+        this.limit = limit;
+    }
+
+
+    /**
+     * Get the base file.
+     *
+     * @return The base <code>File</code>.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Get the number of deltas written since the base.
+     *
+     * @return The chain length.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Get the chain file that goes with a base file.
+     *
+     * @param file The base <code>File</code>.
+     * @return The chain <code>File</code>.
+     */
+    public static File getChainFile(File file) {
+        return new File(file.getPath() + CHAIN_SUFFIX);
+    }
+
+    /**
+     * Save a game, appending a delta to the chain or writing a new base.
+     *
+     * @param image The <code>SaveImage</code> to save.
+     * @param listener An optional <code>SaveImage.Listener</code> to
+     *     report to.
+     * @exception IOException if the save can not be written.
+     */
+    public void save(SaveImage image, SaveImage.Listener listener)
+        throws IOException {
+        final byte[] game = image.getGameData();
+        final File chain = getChainFile(file);
+        Container current;
+        try {
+            current = parse(game);
+        } catch (XMLStreamException xse) {
+            throw new IOException("Failed to split game", xse);
+        }
+
+        if (previous == null || length >= limit || !chain.exists()) {
+            previous = null;
+            image.write(file, null, listener);
+            try (
+                DataOutputStream out
+                    = new DataOutputStream(new FileOutputStream(chain));
+            ) {
+                out.write(MAGIC);
+                out.writeInt(game.length);
+                out.writeLong(checksum(game));
+            }
+            length = 0;
+            previous = current;
+            return;
+        }
+
+        final long start = System.nanoTime();
+        IOException failure = null;
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(1 << 16);
+            try (
+                DataOutputStream out
+                    = new DataOutputStream(new DeflaterOutputStream(bos));
+            ) {
+                out.writeInt(length + 1);
+                writeContainer(out, current, previous);
+            }
+            byte[] block = bos.toByteArray();
+            try (
+                DataOutputStream out = new DataOutputStream(
+                    new FileOutputStream(chain, true));
+            ) {
+                out.writeInt(block.length);
+                out.writeLong(checksum(block));
+                out.write(block);
+            }
+            length++;
+            previous = current;
+            image.updateIndex(file);
+            logger.info("Saved delta " + length + " to " + chain.getName()
+                + " (" + block.length + " bytes), wrote "
+                + (System.nanoTime() - start) / 1000000 + "ms");
+        } catch (IOException ioe) {
+            previous = null; // Start again from a new base
+            failure = ioe;
+            throw ioe;
+        } finally {
+            if (listener != null) {
+                if (failure == null) listener.saveProgress(file, 100);
+                listener.saveFinished(image, file, failure);
+            }
+        }
+    }
+
+    /**
+     * Creates a <code>FreeColXMLReader</code> for reading a saved game,
+     * with any chain of deltas applied.
+     *
+     * @param fsg The <code>FreeColSavegameFile</code> to read.
+     * @return The <code>FreeColXMLReader</code>.
+     * @exception IOException if the saved game can not be read.
+     */
+    public static FreeColXMLReader getFreeColXMLReader(FreeColSavegameFile fsg)
+        throws IOException {
+        final File chain = getChainFile(fsg.getFile());
+        if (!chain.exists()) return fsg.getFreeColXMLReader();
+
+        byte[] base;
+        try (
+            InputStream is = fsg.getInputStream((fsg.isBinary())
+                ? FreeColSavegameFile.SAVEGAME_BINARY_FILE
+                : FreeColSavegameFile.SAVEGAME_FILE);
+        ) {
+            base = BinaryXMLReader.readFully(is);
+        }
+        Container game;
+        int applied = 0;
+        try (
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(chain)));
+        ) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(MAGIC, magic)
+                || in.readInt() != base.length
+                || in.readLong() != checksum(base)) {
+                logger.warning("Ignoring " + chain.getName()
+                    + ", it does not belong to " + fsg.getFile().getName());
+                return fsg.getFreeColXMLReader();
+            }
+            game = parse(base);
+            for (;;) {
+                byte[] block;
+                try {
+                    block = new byte[in.readInt()];
+                    long sum = in.readLong();
+                    in.readFully(block);
+                    if (checksum(block) != sum) throw new EOFException();
+                } catch (EOFException eofe) {
+                    break; // End of chain, or a torn block
+                }
+                try (
+                    DataInputStream bin = new DataInputStream(
+                        new InflaterInputStream(new ByteArrayInputStream(block)));
+                ) {
+                    bin.readInt(); // Sequence number
+                    game = readContainer(bin, game.key, game);
+                }
+                applied++;
+            }
+        } catch (EOFException eofe) {
+            logger.warning("Ignoring truncated " + chain.getName());
+            return fsg.getFreeColXMLReader();
+        } catch (XMLStreamException | IndexOutOfBoundsException e) {
+            throw new IOException("Bad delta chain " + chain.getName(), e);
+        }
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(base.length);
+        try {
+            BinaryXMLWriter xw = new BinaryXMLWriter(bos);
+            xw.writeStartDocument();
+            writeTree(xw, game);
+            xw.writeEndDocument();
+            xw.flush();
+        } catch (XMLStreamException xse) {
+            throw new IOException("Failed to rebuild game", xse);
+        }
+        logger.info("Applied " + applied + " deltas from " + chain.getName());
+        return new FreeColXMLReader(new BinaryXMLReader(bos.toByteArray()));
+    }
+
+    /**
+     * Get the checksum of some data.
+     *
+     * @param data The data to check.
+     * @return The checksum.
+     */
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return crc.getValue();
+    }
+
+
+    // Splitting and rebuilding games
+
+    /**
+     * Split a game into containers and records.
+     *
+     * @param game The game, in XML or binary form.
+     * @return The root <code>Container</code>.
+     * @exception IOException if the game can not be read.
+     * @exception XMLStreamException if the game is malformed.
+     */
+    private static Container parse(byte[] game)
+        throws IOException, XMLStreamException {
+        XMLStreamReader xr = (BinaryXMLReader.isBinary(game))
+            ? new BinaryXMLReader(game)
+            : XMLInputFactory.newInstance()
+                .createXMLStreamReader(new ByteArrayInputStream(game), "UTF-8");
+        try {
+            while (xr.next() != XMLStreamConstants.START_ELEMENT) {
+                if (xr.getEventType() == XMLStreamConstants.END_DOCUMENT) {
+                    throw new XMLStreamException("No game found");
+                }
+            }
+            return readContainer(xr, xr.getLocalName());
+        } finally {
+            xr.close();
+        }
+    }
+
+    /**
+     * Read a container from a stream positioned at its start.
+     *
+     * @param xr The <code>XMLStreamReader</code> to read from.
+     * @param key The key of the container.
+     * @return The <code>Container</code> read.
+     * @exception XMLStreamException if the stream is malformed.
+     */
+    private static Container readContainer(XMLStreamReader xr, String key)
+        throws XMLStreamException {
+        final String tag = xr.getLocalName();
+        List<String> attributes = new ArrayList<>();
+        for (int i = 0; i < xr.getAttributeCount(); i++) {
+            attributes.add(xr.getAttributeLocalName(i));
+            attributes.add(xr.getAttributeValue(i));
+        }
+        List<Node> children = new ArrayList<>();
+        java.util.Map<String, Integer> ordinals = new HashMap<>();
+        for (;;) {
+            switch (xr.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                String name = xr.getLocalName();
+                String k = xr.getAttributeValue(null,
+                    FreeColObject.ID_ATTRIBUTE_TAG);
+                if (k == null) {
+                    Integer n = ordinals.get(name);
+                    n = (n == null) ? 0 : n + 1;
+                    ordinals.put(name, n);
+                    k = name + "#" + n;
+                }
+                children.add((CONTAINERS.contains(name))
+                    ? readContainer(xr, k)
+                    : new Record(k, readRecord(xr)));
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                return new Container(key, tag, attributes, children);
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                if (!xr.isWhiteSpace()) {
+                    throw new XMLStreamException("Unexpected text in " + tag);
+                }
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                throw new XMLStreamException("Unterminated " + tag);
+            default:
+                break; // Drop comments
+            }
+        }
+    }
+
+    /**
+     * Read a record from a stream positioned at its start.
+     *
+     * @param xr The <code>XMLStreamReader</code> to read from.
+     * @return The record in binary XML form.
+     * @exception XMLStreamException if the stream is malformed.
+     */
+    private static byte[] readRecord(XMLStreamReader xr)
+        throws XMLStreamException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        XMLStreamWriter xw;
+        try {
+            xw = new BinaryXMLWriter(bos);
+        } catch (IOException ioe) {
+            throw new XMLStreamException(ioe);
+        }
+        copySubtree(xr, xw);
+        xw.writeEndDocument();
+        xw.flush();
+        return bos.toByteArray();
+    }
+
+    /**
+     * Copy an element and its contents.
+     *
+     * @param xr The <code>XMLStreamReader</code> to read from, which
+     *     is positioned at the element start, and is left at its end.
+     * @param xw The <code>XMLStreamWriter</code> to write to.
+     * @exception XMLStreamException if either stream fails.
+     */
+    private static void copySubtree(XMLStreamReader xr, XMLStreamWriter xw)
+        throws XMLStreamException {
+        int depth = 0;
+        for (int event = xr.getEventType();; event = xr.next()) {
+            switch (event) {
+            case XMLStreamConstants.START_ELEMENT:
+                xw.writeStartElement(xr.getLocalName());
+                for (int i = 0; i < xr.getAttributeCount(); i++) {
+                    xw.writeAttribute(xr.getAttributeLocalName(i),
+                                      xr.getAttributeValue(i));
+                }
+                depth++;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                xw.writeEndElement();
+                if (--depth == 0) return;
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                xw.writeCharacters(xr.getText());
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                throw new XMLStreamException("Unterminated record");
+            default:
+                break; // Drop comments
+            }
+        }
+    }
+
+    /**
+     * Write out a container and its contents.
+     *
+     * @param xw The <code>XMLStreamWriter</code> to write to.
+     * @param container The <code>Container</code> to write.
+     * @exception XMLStreamException if the stream fails.
+     */
+    private static void writeTree(XMLStreamWriter xw, Container container)
+        throws XMLStreamException {
+        xw.writeStartElement(container.tag);
+        for (int i = 0; i < container.attributes.size(); i += 2) {
+            xw.writeAttribute(container.attributes.get(i),
+                              container.attributes.get(i+1));
+        }
+        for (Node node : container.children) {
+            if (node instanceof Container) {
+                writeTree(xw, (Container)node);
+            } else {
+                XMLStreamReader xr;
+                try {
+                    xr = new BinaryXMLReader(((Record)node).data);
+                } catch (IOException ioe) {
+                    throw new XMLStreamException(ioe);
+                }
+                xr.nextTag();
+                copySubtree(xr, xw);
+            }
+        }
+        xw.writeEndElement();
+    }
+
+
+    // Delta encoding
+
+    /**
+     * Write the delta between two versions of a container.
+     *
+     * Children are matched by key.  Runs of unchanged records are
+     * copied from the previous version, records that have gone are
+     * skipped over, and new or changed records are written in full.
+     *
+     * @param out The <code>DataOutputStream</code> to write to.
+     * @param current The current <code>Container</code>.
+     * @param previous The previous version, or null if none.
+     * @exception IOException if the stream fails.
+     */
+    private static void writeContainer(DataOutputStream out,
+                                       Container current,
+                                       Container previous)
+        throws IOException {
+        writeString(out, current.tag);
+        out.writeInt(current.attributes.size());
+        for (String s : current.attributes) writeString(out, s);
+
+        final List<Node> old = (previous == null)
+            ? Collections.<Node>emptyList() : previous.children;
+        java.util.Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < old.size(); i++) index.put(old.get(i).key, i);
+        int j = 0, copy = 0;
+        for (Node node : current.children) {
+            Integer k = index.get(node.key);
+            Node match = null;
+            if (k != null && k >= j) {
+                if (k > j) {
+                    copy = writeRun(out, OP_COPY, copy);
+                    writeRun(out, OP_SKIP, k - j);
+                    j = k;
+                }
+                match = old.get(j);
+                if (node instanceof Record && match instanceof Record
+                    && Arrays.equals(((Record)node).data,
+                                     ((Record)match).data)) {
+                    copy++;
+                    j++;
+                    continue;
+                }
+                j++;
+            }
+            copy = writeRun(out, OP_COPY, copy);
+            if (node instanceof Container) {
+                out.write(OP_CONTAINER);
+                writeString(out, node.key);
+                out.writeBoolean(match != null);
+                writeContainer(out, (Container)node,
+                    (match instanceof Container) ? (Container)match : null);
+            } else {
+                out.write(OP_RECORD);
+                writeString(out, node.key);
+                out.writeBoolean(match != null);
+                byte[] data = ((Record)node).data;
+                out.writeInt(data.length);
+                out.write(data);
+            }
+        }
+        writeRun(out, OP_COPY, copy);
+        out.write(OP_END);
+    }
+
+    /**
+     * Write a copy or skip operation, if it covers any records.
+     *
+     * @param out The <code>DataOutputStream</code> to write to.
+     * @param op The operation.
+     * @param count The number of records.
+     * @return Zero, the new run length.
+     * @exception IOException if the stream fails.
+     */
+    private static int writeRun(DataOutputStream out, int op, int count)
+        throws IOException {
+        if (count > 0) {
+            out.write(op);
+            out.writeInt(count);
+        }
+        return 0;
+    }
+
+    /**
+     * Apply a delta to a container.
+     *
+     * @param in The <code>DataInputStream</code> to read the delta from.
+     * @param key The key of the container.
+     * @param previous The previous version, or null if none.
+     * @return The new <code>Container</code>.
+     * @exception IOException if the delta is malformed.
+     */
+    private static Container readContainer(DataInputStream in, String key,
+                                           Container previous)
+        throws IOException {
+        final String tag = readString(in);
+        int n = in.readInt();
+        List<String> attributes = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) attributes.add(readString(in));
+
+        final List<Node> old = (previous == null)
+            ? Collections.<Node>emptyList() : previous.children;
+        List<Node> children = new ArrayList<>(old.size());
+        int j = 0;
+        for (;;) {
+            int op = in.read();
+            switch (op) {
+            case OP_COPY:
+                n = in.readInt();
+                children.addAll(old.subList(j, j + n));
+                j += n;
+                break;
+            case OP_SKIP:
+                j += in.readInt();
+                break;
+            case OP_RECORD:
+                String k = readString(in);
+                if (in.readBoolean()) j++;
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                children.add(new Record(k, data));
+                break;
+            case OP_CONTAINER:
+                k = readString(in);
+                Node match = (in.readBoolean()) ? old.get(j++) : null;
+                children.add(readContainer(in, k,
+                        (match instanceof Container) ? (Container)match
+                        : null));
+                break;
+            case OP_END:
+                return new Container(key, tag, attributes, children);
+            default:
+                throw new IOException("Bad delta operation: " + op);
+            }
+        }
+    }
+
+    /**
+     * Write a string of any length.
+     *
+     * @param out The <code>DataOutputStream</code> to write to.
+     * @param s The string to write.
+     * @exception IOException if the stream fails.
+     */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString.
+     *
+     * @param in The <code>DataInputStream</code> to read from.
+     * @return The string read.
+     * @exception IOException if the stream fails.
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -20,8 +20,8 @@
 package net.sf.freecol.server;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.net.BindException;
 import java.net.InetAddress;
@@ -33,8 +33,11 @@ import java.util.Properties;
 import java.util.Random;
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -46,6 +49,7 @@ import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.FreeColSeed;
 import net.sf.freecol.common.debug.FreeColDebugger;
+import net.sf.freecol.common.io.BinaryXMLWriter;
 import net.sf.freecol.common.io.FreeColDirectories;
 import net.sf.freecol.common.io.FreeColSavegameFile;
 import net.sf.freecol.common.io.FreeColXMLReader;
@@ -66,6 +70,7 @@ import net.sf.freecol.common.model.Tile;
 import net.sf.freecol.common.model.Unit;
 import net.sf.freecol.common.networking.Connection;
 import net.sf.freecol.common.networking.DOMMessage;
+import net.sf.freecol.common.networking.NetworkMetrics;
 import net.sf.freecol.common.option.BooleanOption;
 import net.sf.freecol.common.option.OptionGroup;
 import static net.sf.freecol.common.util.CollectionUtils.*;
@@ -117,6 +122,9 @@ public final class FreeColServer {
 
     private static final int META_SERVER_UPDATE_INTERVAL = 60000;
 
+    /** How often to log a summary of the network traffic, in ms. */
+    private static final int NETWORK_SUMMARY_INTERVAL = 300000;
+
     /**
      * The save game format used for saving games.
      *
@@ -195,6 +203,20 @@ public final class FreeColServer {
     /** An active unit specified in a saved game. */
     private Unit activeUnit = null;
 
+    /** Writes the background saves, one at a time. */
+    private final ExecutorService saver
+        = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, FreeCol.SERVER_THREAD + "Saver");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+    /** The chain of delta saves being written, only used by the saver. */
+    private DeltaChain deltaChain = null;
+
     
     /**
      * Starts a new server, with a new game.
@@ -373,9 +395,12 @@ public final class FreeColServer {
         }
         logger.finest("serverStart(" + firstPort + ") => " + port
             + " x " + tries);
+        NetworkMetrics.register();
+        NetworkMetrics.startSummaryLog(NETWORK_SUMMARY_INTERVAL);
         for (int i = tries; i > 0; i--) {
             try {
-                server = new Server(this, host, port);
+                server = new Server(this, host, port,
+                                    FreeCol.getServerChannels());
                 server.start();
                 break;
             } catch (BindException be) {
@@ -756,34 +781,160 @@ public final class FreeColServer {
      */
     public void saveGame(File file, OptionGroup options, BufferedImage image)
         throws IOException {
+        captureGame(options, image).write(file, null, null);
+    }
+
+    /**
+     * Saves a game in the background.  The game is captured in memory
+     * before returning, and compressed and written out later.  Saves
+     * are written one at a time, in the order they were made.
+     *
+     * @param file The file where the data will be written.
+     * @param backup If not null, the file to move any existing save to
+     *     before writing.
+     * @param options Optional client options to save in the game.
+     * @param listener An optional <code>SaveImage.Listener</code> to
+     *     follow the save with.
+     * @return A <code>Future</code> that completes when the save has
+     *     been written.
+     * @exception IOException If the game could not be captured.
+     */
+    public Future<?> saveGameInBackground(final File file, final File backup,
+                                          OptionGroup options,
+                                          final SaveImage.Listener listener)
+        throws IOException {
+        final SaveImage saveImage = captureGame(options, null);
+        return saver.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        saveImage.write(file, backup, listener);
+                    } catch (IOException ioe) {
+                        logger.log(Level.WARNING, "Background save failed: "
+                            + file.getPath(), ioe);
+                    }
+                }
+            });
+    }
+
+    /**
+     * Saves a game in the background as a delta to the previous save
+     * to the same file.  The first save, and every save after the
+     * chain reaches its limit, writes the whole game.
+     *
+     * @param file The base file of the chain.
+     * @param options Optional client options to save in the game.
+     * @param listener An optional <code>SaveImage.Listener</code> to
+     *     follow the save with.
+     * @return A <code>Future</code> that completes when the save has
+     *     been written.
+     * @exception IOException If the game could not be captured.
+     * @see DeltaChain
+     */
+    public Future<?> saveGameDelta(final File file, OptionGroup options,
+                                   final SaveImage.Listener listener)
+        throws IOException {
+        final SaveImage saveImage = captureGame(options, null, true);
+        return saver.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (deltaChain == null
+                        || !deltaChain.getFile().equals(file)) {
+                        deltaChain = new DeltaChain(file,
+                                                    DeltaChain.DEFAULT_LIMIT);
+                    }
+                    try {
+                        deltaChain.save(saveImage, listener);
+                    } catch (IOException ioe) {
+                        logger.log(Level.WARNING, "Delta save failed: "
+                            + file.getPath(), ioe);
+                    }
+                }
+            });
+    }
+
+    /**
+     * Wait for all the background saves made so far to be written.
+     */
+    public void waitForSaves() {
+        try {
+            saver.submit(new Runnable() {
+                    @Override
+                    public void run() {}
+                }).get();
+        } catch (InterruptedException | ExecutionException e) {
+            logger.log(Level.WARNING, "Interrupted waiting for saves", e);
+        }
+    }
+
+    /**
+     * Capture a game in memory, ready to be saved.  This is the only
+     * part of a save that must be done while the game is not changing.
+     *
+     * @param options Optional client options to save in the game.
+     * @param image A thumbnail <code>Image</code> value to save in the game.
+     * @return A <code>SaveImage</code> of the game.
+     * @exception IOException If there is a problem serializing the game.
+     */
+    public SaveImage captureGame(OptionGroup options, BufferedImage image)
+        throws IOException {
+        return captureGame(options, image, FreeCol.getBinarySaves());
+    }
+
+    /**
+     * Capture a game in memory, ready to be saved.
+     *
+     * @param options Optional client options to save in the game.
+     * @param image A thumbnail <code>Image</code> value to save in the game.
+     * @param binary If true, capture the game in the binary format.
+     * @return A <code>SaveImage</code> of the game.
+     * @exception IOException If there is a problem serializing the game.
+     */
+    private SaveImage captureGame(OptionGroup options, BufferedImage image,
+                                  boolean binary) throws IOException {
+        final long start = System.nanoTime();
         final ServerGame game = getGame();
-        try (
-            JarOutputStream fos = new JarOutputStream(new FileOutputStream(file));
-        ) {
+        try {
+            byte[] thumbnail = null;
             if (image != null) {
-                fos.putNextEntry(new JarEntry(FreeColSavegameFile.THUMBNAIL_FILE));
-                ImageIO.write(image, "png", fos);
-                fos.closeEntry();
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", bos);
+                thumbnail = bos.toByteArray();
             }
 
+            byte[] clientOptions = null;
             if (options != null) {
-                fos.putNextEntry(new JarEntry(FreeColSavegameFile.CLIENT_OPTIONS));
-                options.save(fos, FreeColXMLWriter.WriteScope.toSave(), true);
-                fos.closeEntry();
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                options.save(bos, FreeColXMLWriter.WriteScope.toSave(), true);
+                clientOptions = bos.toByteArray();
             }
 
             Properties properties = new Properties();
-            properties.put("map.width", Integer.toString(game.getMap().getWidth()));
-            properties.put("map.height", Integer.toString(game.getMap().getHeight()));
-            fos.putNextEntry(new JarEntry(FreeColSavegameFile.SAVEGAME_PROPERTIES));
-            properties.store(fos, null);
-            fos.closeEntry();
+            properties.put(FreeColSavegameFile.MAP_WIDTH_PROPERTY,
+                           Integer.toString(game.getMap().getWidth()));
+            properties.put(FreeColSavegameFile.MAP_HEIGHT_PROPERTY,
+                           Integer.toString(game.getMap().getHeight()));
+            properties.put(FreeColSavegameFile.TURN_PROPERTY,
+                           Integer.toString(game.getTurn().getNumber()));
+            properties.put(FreeColSavegameFile.VERSION_PROPERTY,
+                           Integer.toString(SAVEGAME_VERSION));
+            for (Player p : game.getLiveEuropeanPlayers(null)) {
+                if (p.isAI()) continue;
+                properties.put(FreeColSavegameFile.NATION_PROPERTY,
+                               p.getNationId());
+                break;
+            }
+            ByteArrayOutputStream pos = new ByteArrayOutputStream();
+            properties.store(pos, null);
 
             // save the actual game data
-            fos.putNextEntry(new JarEntry(FreeColSavegameFile.SAVEGAME_FILE));
+            ByteArrayOutputStream gos = new ByteArrayOutputStream(1 << 20);
             try (
-                FreeColXMLWriter xw = new FreeColXMLWriter(fos,
-                    FreeColXMLWriter.WriteScope.toSave(), false);
+                FreeColXMLWriter xw = (binary)
+                    ? new FreeColXMLWriter(new BinaryXMLWriter(gos),
+                        FreeColXMLWriter.WriteScope.toSave())
+                    : new FreeColXMLWriter(gos,
+                        FreeColXMLWriter.WriteScope.toSave(), false);
             ) {
                 xw.writeStartDocument("UTF-8", "1.0");
 
@@ -830,7 +981,12 @@ public final class FreeColServer {
                 xw.writeEndDocument();
                 xw.flush();
             }
-            fos.closeEntry();
+            return new SaveImage(thumbnail, clientOptions, pos.toByteArray(),
+                gos.toByteArray(), (binary)
+                ? FreeColSavegameFile.SAVEGAME_BINARY_FILE
+                : FreeColSavegameFile.SAVEGAME_FILE,
+                !binary && FreeCol.getSectionedSaves(),
+                System.nanoTime() - start);
         } catch (XMLStreamException e) {
             throw new IOException("Failed to save (XML)", e);
         } catch (Exception e) {
@@ -888,7 +1044,8 @@ public final class FreeColServer {
      * Reads just the game part from a save game from a stream.
      *
      * When the specification is not supplied, the one found in the saved
-     * game will be used.
+     * game will be used.  Any chain of delta saves kept with the saved
+     * game is applied.
      *
      * @param fis The stream to read from.
      * @param specification An optional <code>Specification</code> to use.
@@ -910,7 +1067,7 @@ public final class FreeColServer {
 
         ServerGame game = null;
         try (
-            FreeColXMLReader xr = fis.getFreeColXMLReader();
+            FreeColXMLReader xr = DeltaChain.getFreeColXMLReader(fis);
         ) {
             // Switch to the read scope that creates server objects.
             xr.setReadScope(FreeColXMLReader.ReadScope.SERVER);
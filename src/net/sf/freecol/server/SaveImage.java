@@ -0,0 +1,298 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.io.SavegameIndex;
+import net.sf.freecol.common.io.SavegameSections;
+
+
+/**
+ * An image of a saved game, captured in memory so that the game can
+ * carry on while the image is compressed and written out.
+ *
+ * The image holds the uncompressed entries of the savegame.  Writing
+ * goes to a temporary file next to the target, which then replaces
+ * the target, so an interrupted save never leaves a truncated game.
+ */
+public final class SaveImage {
+
+    private static final Logger logger = Logger.getLogger(SaveImage.class.getName());
+
+    /** The suffix of the temporary file written to. */
+    private static final String TEMPORARY_SUFFIX = ".part";
+
+    /** The size of the pieces the game is written in, for progress. */
+    private static final int CHUNK = 1 << 16;
+
+    /** Follows the progress of a save. */
+    public interface Listener {
+
+        /**
+         * Called as the game is written.
+         *
+         * @param file The <code>File</code> being saved to.
+         * @param percent The percentage written so far.
+         */
+        public void saveProgress(File file, int percent);
+
+        /**
+         * Called when the save has finished.
+         *
+         * @param image The <code>SaveImage</code> that was saved.
+         * @param file The <code>File</code> saved to.
+         * @param failure The exception that stopped the save, or
+         *     null if it succeeded.
+         */
+        public void saveFinished(SaveImage image, File file,
+                                 IOException failure);
+    }
+
+    /** The thumbnail, in PNG format, or null if none. */
+    private final byte[] thumbnail;
+
+    /** The client options, or null if none. */
+    private final byte[] options;
+
+    /** The savegame properties. */
+    private final byte[] properties;
+
+    /** The game itself. */
+    private final byte[] game;
+
+    /** The name of the entry the game is saved in. */
+    private final String gameEntry;
+
+    /** Is the game written in the sectioned layout? */
+    private final boolean sectioned;
+
+    /** How long the game was held up capturing the image. */
+    private final long pauseNanos;
+
+    /** How long writing the image took, once written. */
+    private volatile long writeNanos = -1L;
+
+
+    /**
+     * Create a new <code>SaveImage</code>.
+     *
+     * @param thumbnail The thumbnail, or null if none.
+     * @param options The client options, or null if none.
+     * @param properties The savegame properties.
+     * @param game The game.
+     * @param gameEntry The name of the entry to save the game in, which
+     *     depends on the format the game was captured in.
+     * @param sectioned If true, write an XML game in the sectioned layout.
+     * @param pauseNanos How long capturing took.
+     */
+    public SaveImage(byte[] thumbnail, byte[] options, byte[] properties,
+                     byte[] game, String gameEntry, boolean sectioned,
+                     long pauseNanos) {
+        this.thumbnail = thumbnail;
+        this.options = options;
+        this.properties = properties;
+        this.game = game;
+        this.gameEntry = gameEntry;
+        this.sectioned = sectioned;
+        this.pauseNanos = pauseNanos;
+    }
+
+
+    /**
+     * Get the time the game was held up while capturing this image.
+     *
+     * @return The pause time in nanoseconds.
+     */
+    public long getPauseNanos() {
+        return pauseNanos;
+    }
+
+    /**
+     * Get the time taken to write this image.
+     *
+     * @return The write time in nanoseconds, or negative if not
+     *     yet written.
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * Get the captured game itself.
+     *
+     * @return The game data, which must not be modified.
+     */
+    byte[] getGameData() {
+        return game;
+    }
+
+    /**
+     * Get the size of the uncompressed game.
+     *
+     * @return The game size in bytes.
+     */
+    public int getGameSize() {
+        return game.length;
+    }
+
+    /**
+     * Write this image to a file.
+     *
+     * @param file The <code>File</code> to write to.
+     * @param backup If not null, a <code>File</code> to move any
+     *     existing file to first.
+     * @param listener An optional <code>Listener</code> to report to.
+     * @exception IOException if the file can not be written.
+     */
+    public void write(File file, File backup, Listener listener)
+        throws IOException {
+        final long start = System.nanoTime();
+        IOException failure = null;
+        try {
+            if (backup != null && file.exists()) {
+                move(file, backup);
+            }
+            File temporary = new File(file.getPath() + TEMPORARY_SUFFIX);
+            try (
+                JarOutputStream fos
+                    = new JarOutputStream(new FileOutputStream(temporary));
+            ) {
+                if (thumbnail != null) {
+                    writeEntry(fos, FreeColSavegameFile.THUMBNAIL_FILE,
+                               thumbnail);
+                }
+                if (options != null) {
+                    writeEntry(fos, FreeColSavegameFile.CLIENT_OPTIONS,
+                               options);
+                }
+                writeEntry(fos, FreeColSavegameFile.SAVEGAME_PROPERTIES,
+                           properties);
+                if (sectioned) {
+                    writeSections(fos);
+                    if (listener != null) listener.saveProgress(file, 100);
+                } else {
+                    fos.putNextEntry(new JarEntry(gameEntry));
+                    for (int off = 0; off < game.length; off += CHUNK) {
+                        fos.write(game, off,
+                                  Math.min(CHUNK, game.length - off));
+                        if (listener != null) {
+                            listener.saveProgress(file, (int)(100L
+                                    * Math.min(off + CHUNK, game.length)
+                                    / Math.max(1, game.length)));
+                        }
+                    }
+                    fos.closeEntry();
+                }
+            } catch (IOException ioe) {
+                temporary.delete();
+                throw ioe;
+            }
+            move(temporary, file);
+            updateIndex(file);
+            writeNanos = System.nanoTime() - start;
+            logger.info("Saved " + file.getName() + " (" + game.length
+                + " bytes), paused " + pauseNanos / 1000000
+                + "ms, wrote " + writeNanos / 1000000 + "ms");
+        } catch (IOException ioe) {
+            failure = ioe;
+            throw ioe;
+        } finally {
+            if (listener != null) listener.saveFinished(this, file, failure);
+        }
+    }
+
+    /**
+     * Update the index of the directory a game was saved to.
+     *
+     * @param file The <code>File</code> the game was saved to.
+     */
+    void updateIndex(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (directory != null) {
+            SavegameIndex.getIndex(directory)
+                .update(file, properties, thumbnail);
+        }
+    }
+
+    /**
+     * Write the game in the sectioned layout.
+     *
+     * @param os The <code>JarOutputStream</code> to write to.
+     * @exception IOException if the game can not be written.
+     */
+    private void writeSections(JarOutputStream os) throws IOException {
+        try (
+            FreeColXMLReader xr
+                = new FreeColXMLReader(new ByteArrayInputStream(game));
+        ) {
+            SavegameSections.write(xr, os);
+        } catch (XMLStreamException xse) {
+            throw new IOException("Failed to write sections", xse);
+        }
+    }
+
+    /**
+     * Write an entry to a savegame.
+     *
+     * @param os The <code>JarOutputStream</code> to write to.
+     * @param name The name of the entry.
+     * @param data The contents of the entry.
+     * @exception IOException if the entry can not be written.
+     */
+    private static void writeEntry(JarOutputStream os, String name,
+                                   byte[] data) throws IOException {
+        os.putNextEntry(new JarEntry(name));
+        os.write(data);
+        os.closeEntry();
+    }
+
+    /**
+     * Replace a file, atomically if the file system allows.
+     *
+     * @param from The <code>File</code> to move.
+     * @param to The <code>File</code> to replace.
+     * @exception IOException if the file can not be moved.
+     */
+    private static void move(File from, File to) throws IOException {
+        try {
+            Files.move(from.toPath(), to.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(from.toPath(), to.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -23,6 +23,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,6 +50,7 @@ import net.sf.freecol.common.networking.MessageHandler;
 import net.sf.freecol.common.networking.MonarchActionMessage;
 import net.sf.freecol.common.networking.NewLandNameMessage;
 import net.sf.freecol.common.networking.NewRegionNameMessage;
+import static net.sf.freecol.common.util.CollectionUtils.*;
 import net.sf.freecol.server.FreeColServer;
 import net.sf.freecol.server.model.ServerPlayer;
 
@@ -63,6 +65,17 @@ public final class AIInGameInputHandler implements MessageHandler {
 
     private static final Logger logger = Logger.getLogger(AIInGameInputHandler.class.getName());
 
+    /**
+     * The messages the AI ignores.  Since we're the server, we can
+     * see everything, so most of these messages are useless.  This
+     * may change one day.
+     */
+    private static final Set<String> IGNORED = makeUnmodifiableSet(
+        "addObject", "addPlayer", "animateMove", "animateAttack", "chat",
+        "disconnect", "error", "featureChange", "gameEnded", "logout",
+        "newTurn", "remove", "removeGoods", "setAI", "setDead",
+        "setStance", "startGame", "update", "updateGame");
+
     /** The player for whom I work. */
     private final ServerPlayer serverPlayer;
 
@@ -133,6 +146,7 @@ public final class AIInGameInputHandler implements MessageHandler {
     public synchronized Element handle(Connection connection, Element element) {
         if (element == null) return null;
         final String tag = element.getTagName();
+        if (IGNORED.contains(tag)) return null;
         Element reply = null;
         try {
             switch (tag) {
@@ -160,18 +174,6 @@ public final class AIInGameInputHandler implements MessageHandler {
                 reply = newRegionName(connection, element); break;
             case "setCurrentPlayer":
                 reply = setCurrentPlayer(connection, element); break;
-                
-            // Since we're the server, we can see everything.
-            // Therefore most of these messages are useless.  This
-            // may change one day.
-            case "addObject": case "addPlayer": case "animateMove":
-            case "animateAttack": case "chat": case "disconnect":
-            case "error": case "featureChange": case "gameEnded":
-            case "logout": case "newTurn": case "remove":
-            case "removeGoods": case "setAI": case "setDead":
-            case "setStance": case "startGame": case "update":
-            case "updateGame":
-                break;
             default:
                 logger.warning("Unknown message type: " + tag);
                 break;
@@ -183,6 +185,14 @@ public final class AIInGameInputHandler implements MessageHandler {
         return reply;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isInterested(String tag) {
+        return !IGNORED.contains(tag);
+    }
+
     // Individual message handlers
 
     /**
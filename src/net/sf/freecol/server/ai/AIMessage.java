@@ -72,6 +72,7 @@ import net.sf.freecol.common.networking.MoveToMessage;
 import net.sf.freecol.common.networking.PutOutsideColonyMessage;
 import net.sf.freecol.common.networking.RearrangeColonyMessage;
 import net.sf.freecol.common.networking.ScoutSpeakToChiefMessage;
+import net.sf.freecol.common.networking.ServerRequest;
 import net.sf.freecol.common.networking.SetBuildQueueMessage;
 import net.sf.freecol.common.networking.TrainUnitInEuropeMessage;
 import net.sf.freecol.common.networking.UnloadGoodsMessage;
@@ -219,9 +220,28 @@ public class AIMessage {
      */
     private static boolean sendMessage(Connection connection,
                                        DOMMessage message) {
-        return (connection != null && message != null)
-            ? sendMessage(connection, message.toXMLElement())
-            : false;
+        if (connection == null || message == null) return false;
+        if (!(message instanceof ServerRequest)) {
+            return sendMessage(connection, message.toXMLElement());
+        }
+
+        // Requests the server can handle directly skip the element form.
+        Element reply;
+        try {
+            reply = connection.ask((ServerRequest)message);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not send \""
+                + message.getType() + "\"-message.", e);
+            return true;
+        }
+        if (reply == null) return true;
+        if (checkError(reply, message.getType())) return false;
+        try {
+            return askHandling(connection, connection.handle(reply));
+        } catch (FreeColException fce) {
+            logger.log(Level.WARNING, "AI handler failed: " + reply, fce);
+            return false;
+        }
     }
 
     /**
@@ -19,12 +19,23 @@
 
 package net.sf.freecol.server.control;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
+import net.sf.freecol.common.io.TeeXMLStreamWriter;
 
 import net.sf.freecol.common.model.Ability;
 import net.sf.freecol.common.model.Feature;
@@ -46,8 +57,11 @@ import net.sf.freecol.common.model.Tile;
 import net.sf.freecol.common.model.TradeRoute;
 import net.sf.freecol.common.model.Unit;
 import net.sf.freecol.common.model.WorkLocation;
+import net.sf.freecol.common.networking.Connection;
 import net.sf.freecol.common.networking.DOMMessage;
+import net.sf.freecol.common.networking.StreamedMessage;
 import net.sf.freecol.server.model.ServerPlayer;
+import net.sf.freecol.server.networking.UpdateLog;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -293,6 +307,46 @@ public class ChangeSet {
             return true;
         }
 
+        /**
+         * Gets the tag and attributes of the element this change is
+         * specialized to for a particular player.
+         *
+         * Changes with the same header can be collapsed together.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @return An array containing the element tag followed by
+         *     attribute key,value pairs.
+         */
+        public abstract String[] getHeader(ServerPlayer serverPlayer);
+
+        /**
+         * Gets the tag of the element this change is specialized to
+         * for a particular player.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @return The element tag.
+         */
+        public String getTag(ServerPlayer serverPlayer) {
+            return getHeader(serverPlayer)[0];
+        }
+
+        /**
+         * Create an element using the header of this change.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @param doc The owner <code>Document</code> to build the element in.
+         * @return A new <code>Element</code> with no children.
+         */
+        protected Element createElement(ServerPlayer serverPlayer,
+                                        Document doc) {
+            String[] header = getHeader(serverPlayer);
+            Element element = doc.createElement(header[0]);
+            for (int i = 1; i < header.length; i += 2) {
+                element.setAttribute(header[i], header[i+1]);
+            }
+            return element;
+        }
+
         /**
          * Specialize a Change for a particular player.
          *
@@ -303,6 +357,20 @@ public class ChangeSet {
         public abstract Element toElement(ServerPlayer serverPlayer,
                                           Document doc);
 
+        /**
+         * Write the children of the element this change is specialized
+         * to directly to a stream.  The header has already been
+         * written by the caller, which allows collapsing.
+         *
+         * @param xw The <code>FreeColXMLWriter</code> to write to.
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @exception XMLStreamException if there is a problem writing
+         *     to the stream.
+         */
+        public abstract void writeChildren(FreeColXMLWriter xw,
+                                           ServerPlayer serverPlayer)
+            throws XMLStreamException;
+
         /**
          * Some changes can not be directly specialized, but need to be
          * directly attached to an element.
@@ -310,6 +378,14 @@ public class ChangeSet {
          * @param element The <code>Element</code> to attach to.
          */
         public abstract void attachToElement(Element element);
+
+        /**
+         * Streaming equivalent of attachToElement, accumulating
+         * attributes to be written to the enclosing element.
+         *
+         * @param attributes A map of attribute key to value to add to.
+         */
+        public void attachToHeader(Map<String, String> attributes) {} // Noop
     }
 
     /**
@@ -384,6 +460,19 @@ public class ChangeSet {
                     && serverPlayer.canSee(defender.getTile()));
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return new String[] { "animateAttack",
+                "attacker", attacker.getId(),
+                "defender", defender.getId(),
+                "attackerTile", attacker.getTile().getId(),
+                "defenderTile", defender.getTile().getId(),
+                "success", Boolean.toString(success) };
+        }
+
         /**
          * Specialize a AttackChange into an "animateAttack" element
          * for a particular player.
@@ -394,13 +483,7 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            final Game game = serverPlayer.getGame();
-            Element element = doc.createElement("animateAttack");
-            element.setAttribute("attacker", attacker.getId());
-            element.setAttribute("defender", defender.getId());
-            element.setAttribute("attackerTile", attacker.getTile().getId());
-            element.setAttribute("defenderTile", defender.getTile().getId());
-            element.setAttribute("success", Boolean.toString(success));
+            Element element = createElement(serverPlayer, doc);
             if (!canSeeUnit(serverPlayer, attacker)) {
                 element.appendChild(attacker.toXMLElement(doc));
                 if (attacker.getLocation() instanceof Unit) {
@@ -416,6 +499,27 @@ public class ChangeSet {
             return element;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            if (!canSeeUnit(serverPlayer, attacker)) {
+                writeObject(xw, attacker, WriteScope.toServer());
+                if (attacker.getLocation() instanceof Unit) {
+                    Unit loc = (Unit)attacker.getLocation();
+                    writeObject(xw, loc, WriteScope.toClient(serverPlayer));
+                }
+            }
+            if (!canSeeUnit(serverPlayer, defender)
+                || this.defenderInSettlement) {
+                defender.setWorkType(null);
+                writeObject(xw, defender, WriteScope.toServer());
+            }
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -482,6 +586,17 @@ public class ChangeSet {
             return false;
         }
 
+        /**
+         * AttributeChanges have no element.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @return Null.
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return null;
+        }
+
         /**
          * We do not specialize AttributeChanges.
          *
@@ -494,6 +609,13 @@ public class ChangeSet {
             return null;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer) {} // Noop
+
         /**
          * Tack attributes onto the element.
          *
@@ -504,6 +626,16 @@ public class ChangeSet {
             element.setAttribute(key, value);
         }
 
+        /**
+         * Tack attributes onto the header.
+         *
+         * @param attributes The attribute map to add to.
+         */
+        @Override
+        public void attachToHeader(Map<String, String> attributes) {
+            attributes.put(key, value);
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -526,6 +658,8 @@ public class ChangeSet {
     private static class MessageChange extends Change {
         private final ChangePriority priority;
         private final DOMMessage message;
+        /** The message element, not player specific so built once. */
+        private Element messageElement = null;
 
         /**
          * Build a new MessageChange.
@@ -541,6 +675,18 @@ public class ChangeSet {
             this.message = message;
         }
 
+        /**
+         * Get the element for the message, building it if needed.
+         *
+         * @return The message <code>Element</code>.
+         */
+        private synchronized Element getMessageElement() {
+            if (messageElement == null) {
+                messageElement = message.toXMLElement();
+            }
+            return messageElement;
+        }
+
         /**
          * Gets the sort priority.
          *
@@ -551,6 +697,14 @@ public class ChangeSet {
             return priority.getPriority();
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return DOMMessage.getHeader(getMessageElement());
+        }
+
         /**
          * Specialize a MessageChange to a particular player.
          *
@@ -560,8 +714,17 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = message.toXMLElement();
-            return (Element) doc.importNode(element, true);
+            return (Element)doc.importNode(getMessageElement(), true);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            DOMMessage.writeChildren(xw, getMessageElement());
         }
 
         /**
@@ -676,10 +839,7 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement("animateMove");
-            element.setAttribute("unit", unit.getId());
-            element.setAttribute("oldTile", oldLocation.getTile().getId());
-            element.setAttribute("newTile", newTile.getId());
+            Element element = createElement(serverPlayer, doc);
             if (!seeOld(serverPlayer)) {
                 // We can not rely on the unit that is about to move
                 // being present on the client side, and it is needed
@@ -690,6 +850,29 @@ public class ChangeSet {
             return element;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return new String[] { "animateMove",
+                "unit", unit.getId(),
+                "oldTile", oldLocation.getTile().getId(),
+                "newTile", newTile.getId() };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            if (!seeOld(serverPlayer)) { // See toElement
+                writeObject(xw, unit, WriteScope.toClient(serverPlayer));
+            }
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -792,11 +975,30 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement("update");
+            Element element = createElement(serverPlayer, doc);
             element.appendChild(fcgo.toXMLElement(doc, serverPlayer));
             return element;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return new String[] { "update" };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            // The connection sends only what changed since the last update
+            writeObject(xw, fcgo, WriteScope.toClient(serverPlayer));
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -858,11 +1060,21 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement("update");
+            Element element = createElement(serverPlayer, doc);
             element.appendChild(fcgo.toXMLElementPartial(doc, fields));
             return element;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            fcgo.toXMLPartial(xw, fields);
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -914,17 +1126,34 @@ public class ChangeSet {
             return true;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return new String[] { "addPlayer" };
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            final Game game = serverPlayer.getGame();
-            Element element = doc.createElement("addPlayer");
+            Element element = createElement(serverPlayer, doc);
             element.appendChild(this.player.toXMLElement(doc, serverPlayer));
             return element;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            writeObject(xw, this.player, WriteScope.toClient(serverPlayer));
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1008,20 +1237,54 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement("remove");
-            // The main object may be visible, but the contents are
-            // only visible if the deeper ownership test succeeds.
-            if (fcgo instanceof Ownable && serverPlayer.owns((Ownable)fcgo)) {
+            Element element = createElement(serverPlayer, doc);
+            if (seeContents(serverPlayer)) {
                 for (FreeColGameObject o : contents) {
                     element.appendChild(o.toXMLElementPartial(doc));
                 }
-                element.setAttribute("divert", (tile != null) ? tile.getId()
-                                     : serverPlayer.getId());
             }
             element.appendChild(fcgo.toXMLElementPartial(doc));
             return element;
         }
 
+        /**
+         * The main object may be visible, but the contents are
+         * only visible if the deeper ownership test succeeds.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @return True if the contents are visible.
+         */
+        private boolean seeContents(ServerPlayer serverPlayer) {
+            return fcgo instanceof Ownable
+                && serverPlayer.owns((Ownable)fcgo);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return (seeContents(serverPlayer))
+                ? new String[] { "remove", "divert",
+                    (tile != null) ? tile.getId() : serverPlayer.getId() }
+                : new String[] { "remove" };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            if (seeContents(serverPlayer)) {
+                for (FreeColGameObject o : contents) {
+                    o.toXMLPartial(xw, new String[0]);
+                }
+            }
+            fcgo.toXMLPartial(xw, new String[0]);
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1083,13 +1346,39 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement("addObject");
+            Element element = createElement(serverPlayer, doc);
             Element child = fco.toXMLElement(doc, serverPlayer);
             child.setAttribute("owner", serverPlayer.getId());
             element.appendChild(child);
             return element;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return new String[] { "addObject" };
+        }
+
+        /**
+         * Owned objects are small, but need an extra owner attribute
+         * that the streaming serialization can not add, so just
+         * convert the element form.
+         *
+         * @param xw The <code>FreeColXMLWriter</code> to write to.
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @exception XMLStreamException if there is a problem writing
+         *     to the stream.
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            DOMMessage.writeChildren(xw,
+                toElement(serverPlayer, DOMMessage.createNewDocument()));
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1155,14 +1444,32 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement("featureChange");
-            element.setAttribute("add", Boolean.toString(add));
-            element.setAttribute(FreeColObject.ID_ATTRIBUTE_TAG, object.getId());
+            Element element = createElement(serverPlayer, doc);
             Element child = feature.toXMLElement(doc);
             element.appendChild(child);
             return element;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return new String[] { "featureChange",
+                "add", Boolean.toString(add),
+                FreeColObject.ID_ATTRIBUTE_TAG, object.getId() };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            writeObject(xw, feature, WriteScope.toServer());
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1223,8 +1530,7 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement("spyResult");
-            element.setAttribute("tile", tile.getId());
+            Element element = createElement(serverPlayer, doc);
             // Have to tack on two copies of the settlement tile.
             // One full version, one ordinary version to restore.
             element.appendChild(tile.toXMLElement(doc));
@@ -1233,6 +1539,26 @@ public class ChangeSet {
             return element;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return new String[] { "spyResult", "tile", tile.getId() };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer)
+            throws XMLStreamException {
+            writeObject(xw, tile, WriteScope.toServer());
+            writeObject(xw, tile.getCachedTile(serverPlayer),
+                        WriteScope.toClient(serverPlayer));
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1297,13 +1623,27 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement("setStance");
-            element.setAttribute("stance", stance.toString());
-            element.setAttribute("first", first.getId());
-            element.setAttribute("second", second.getId());
-            return element;
+            return createElement(serverPlayer, doc);
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            return new String[] { "setStance",
+                "stance", stance.toString(),
+                "first", first.getId(),
+                "second", second.getId() };
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer) {} // Noop
+
         /**
          * {@inheritDoc}
          */
@@ -1373,13 +1713,27 @@ public class ChangeSet {
          */
         @Override
         public Element toElement(ServerPlayer serverPlayer, Document doc) {
-            Element element = doc.createElement(name);
-            for (int i = 0; i < attributes.length; i += 2) {
-                element.setAttribute(attributes[i], attributes[i+1]);
-            }
-            return element;
+            return createElement(serverPlayer, doc);
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String[] getHeader(ServerPlayer serverPlayer) {
+            String[] header = new String[attributes.length + 1];
+            header[0] = name;
+            System.arraycopy(attributes, 0, header, 1, attributes.length);
+            return header;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void writeChildren(FreeColXMLWriter xw,
+                                  ServerPlayer serverPlayer) {} // Noop
+
         /**
          * {@inheritDoc}
          */
@@ -1399,6 +1753,180 @@ public class ChangeSet {
         }
     }
 
+    /**
+     * An update for a particular player that writes itself directly
+     * to a stream.
+     */
+    private static class StreamedUpdate implements StreamedMessage {
+        private final ServerPlayer serverPlayer;
+        private final List<Change> converted;
+        private final List<Change> diverted;
+        /** The headers of the converted changes. */
+        private final List<String[]> headers = new ArrayList<>();
+        /** The number of elements remaining after collapsing. */
+        private final int groups;
+        /**
+         * The sequence number of the update in the update log of the
+         * player, once it has been logged.
+         */
+        private int sequence = 0;
+
+        /**
+         * Build a new StreamedUpdate.
+         *
+         * @param serverPlayer The <code>ServerPlayer</code> to update.
+         * @param converted The <code>Change</code>s to write as elements.
+         * @param diverted The <code>Change</code>s to attach to the result.
+         */
+        public StreamedUpdate(ServerPlayer serverPlayer,
+                              List<Change> converted, List<Change> diverted) {
+            this.serverPlayer = serverPlayer;
+            this.converted = converted;
+            this.diverted = diverted;
+            String[] prev = null;
+            int n = 0;
+            for (Change change : converted) {
+                String[] header = change.getHeader(serverPlayer);
+                if (prev == null || !Arrays.equals(prev, header)) n++;
+                headers.add(prev = header);
+            }
+            this.groups = n;
+        }
+
+        /**
+         * Write an element header.
+         *
+         * @param xw The <code>FreeColXMLWriter</code> to write to.
+         * @param header The tag and attributes to write.
+         * @param extra Extra attributes to write, overriding the header.
+         * @exception XMLStreamException if there is a problem writing
+         *     to the stream.
+         */
+        private static void writeHeader(FreeColXMLWriter xw, String[] header,
+                                        Map<String, String> extra)
+            throws XMLStreamException {
+            xw.writeStartElement(header[0]);
+            for (int i = 1; i < header.length; i += 2) {
+                if (extra != null && extra.containsKey(header[i])) continue;
+                xw.writeAttribute(header[i], header[i+1]);
+            }
+            if (extra != null) {
+                for (Map.Entry<String, String> e : extra.entrySet()) {
+                    xw.writeAttribute(e.getKey(), e.getValue());
+                }
+            }
+        }
+
+        /**
+         * Write the update, keeping a copy of it in the update log of
+         * the player as it is written, so that it can be sent again
+         * should the client reconnect.
+         *
+         * @param xw The <code>FreeColXMLWriter</code> to write to, or
+         *     null to only log the update.
+         * @exception XMLStreamException if there is a problem writing
+         *     to the stream.
+         */
+        public void writeLogged(FreeColXMLWriter xw)
+            throws XMLStreamException {
+            final UpdateLog log = serverPlayer.getUpdateLog();
+            final WriteScope scope = (xw == null) ? WriteScope.toServer()
+                : xw.getWriteScope();
+            if (sequence == 0) sequence = log.reserve();
+            ByteArrayOutputStream capture = new ByteArrayOutputStream(4096);
+            FreeColXMLWriter cw;
+            try {
+                cw = new FreeColXMLWriter(capture, scope, false);
+            } catch (IOException ioe) {
+                throw new XMLStreamException(ioe);
+            }
+            try {
+                write((xw == null) ? cw : new FreeColXMLWriter(
+                        new TeeXMLStreamWriter(xw, cw), scope));
+                cw.flush();
+            } finally {
+                cw.close();
+            }
+            log.record(sequence, capture.toByteArray());
+        }
+
+        /**
+         * Write the update.
+         *
+         * @param xw The <code>FreeColXMLWriter</code> to write to.
+         * @exception XMLStreamException if there is a problem writing
+         *     to the stream.
+         */
+        private void write(FreeColXMLWriter xw) throws XMLStreamException {
+            Map<String, String> attributes = new LinkedHashMap<>();
+            for (Change change : diverted) change.attachToHeader(attributes);
+            if (sequence > 0) {
+                attributes.put(Connection.UPDATE_SEQUENCE_TAG,
+                               Integer.toString(sequence));
+            }
+
+            if (groups == 1) { // Everything collapses into one element
+                writeHeader(xw, headers.get(0), attributes);
+                for (Change change : converted) {
+                    change.writeChildren(xw, serverPlayer);
+                }
+                xw.writeEndElement();
+                return;
+            }
+
+            writeHeader(xw, new String[] { getType() }, attributes);
+            String[] open = null;
+            for (int i = 0; i < converted.size(); i++) {
+                String[] header = headers.get(i);
+                if (open == null || !Arrays.equals(open, header)) {
+                    if (open != null) xw.writeEndElement();
+                    writeHeader(xw, header, null);
+                    open = header;
+                }
+                converted.get(i).writeChildren(xw, serverPlayer);
+            }
+            if (open != null) xw.writeEndElement();
+            xw.writeEndElement();
+        }
+
+        // Implement StreamedMessage
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public String getType() {
+            return (groups == 0) ? "update"
+                : (groups == 1) ? headers.get(0)[0]
+                : "multiple";
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void toXML(FreeColXMLWriter xw) throws XMLStreamException {
+            if (serverPlayer.isLoggingUpdates()) {
+                writeLogged(xw);
+            } else {
+                write(xw);
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Element toXMLElement() {
+            Element result = build(serverPlayer, converted, diverted);
+            if (result != null && sequence > 0) {
+                result.setAttribute(Connection.UPDATE_SEQUENCE_TAG,
+                                    Integer.toString(sequence));
+            }
+            return result;
+        }
+    }
+
     /**
      * Simple constructor.
      */
@@ -1860,37 +2388,105 @@ public class ChangeSet {
     }
 
     /**
-     * Build a generalized update.
-     * Beware that removing an object does not necessarily update
-     * its tile correctly on the client side--- if a tile update
-     * is needed the tile should be supplied in the objects list.
+     * Write an object to a stream with a given scope, restoring the
+     * original scope afterwards.
+     *
+     * @param xw The <code>FreeColXMLWriter</code> to write to.
+     * @param fco The <code>FreeColObject</code> to write.
+     * @param scope The <code>WriteScope</code> to write with.
+     * @exception XMLStreamException if there is a problem writing to
+     *     the stream.
+     */
+    private static void writeObject(FreeColXMLWriter xw, FreeColObject fco,
+                                    WriteScope scope)
+        throws XMLStreamException {
+        final WriteScope oldScope = xw.getWriteScope();
+        xw.setWriteScope(scope);
+        try {
+            fco.toXML(xw);
+        } finally {
+            xw.setWriteScope(oldScope);
+        }
+    }
+
+    /**
+     * Collect the changes that are notifiable to a player.
+     *
+     * For all sorted changes, if it is notifiable to the target
+     * player then add it to the converted list if it converts to an
+     * element, or divert it for later attachment.  Then add all
+     * consequence changes to the list.  Changes the connection of
+     * the player reports would be ignored are dropped, which spares
+     * the AI players updates they have no use for.
      *
      * @param serverPlayer The <code>ServerPlayer</code> to send the
-     *            update to.
-     * @return An element encapsulating an update of the objects to
-     *         consider, or null if there is nothing to report.
+     *     update to.
+     * @param converted A list of <code>Change</code>s that convert
+     *     directly to elements to add to.
+     * @param diverted A list of <code>Change</code>s to attach to the
+     *     final element to add to.
      */
-    public Element build(ServerPlayer serverPlayer) {
+    private void collect(ServerPlayer serverPlayer, List<Change> converted,
+                         List<Change> diverted) {
+        final Connection conn = serverPlayer.getConnection();
         List<Change> c = new ArrayList<>(changes);
-        List<Element> elements = new ArrayList<>();
-        List<Change> diverted = new ArrayList<>();
-        Document doc = DOMMessage.createNewDocument();
-
-        // For all sorted changes, if it is notifiable to the target
-        // player then convert it to an Element, or divert for later
-        // attachment.  Then add all consequence changes to the list.
         Collections.sort(c, changeComparator);
         while (!c.isEmpty()) {
             Change change = c.remove(0);
             if (change.isNotifiable(serverPlayer)) {
                 if (change.convertsToElement()) {
-                    elements.add(change.toElement(serverPlayer, doc));
+                    if (conn == null
+                        || conn.isInterested(change.getTag(serverPlayer))) {
+                        converted.add(change);
+                    }
                 } else {
                     diverted.add(change);
                 }
                 c.addAll(change.consequences(serverPlayer));
             }
         }
+    }
+
+    /**
+     * Build a generalized update.
+     * Beware that removing an object does not necessarily update
+     * its tile correctly on the client side--- if a tile update
+     * is needed the tile should be supplied in the objects list.
+     * The update is logged for the player, so that it can be sent
+     * again if the client reconnects.
+     *
+     * @param serverPlayer The <code>ServerPlayer</code> to send the
+     *            update to.
+     * @return An element encapsulating an update of the objects to
+     *         consider, or null if there is nothing to report.
+     */
+    public Element build(ServerPlayer serverPlayer) {
+        List<Change> converted = new ArrayList<>();
+        List<Change> diverted = new ArrayList<>();
+        collect(serverPlayer, converted, diverted);
+        Element result = build(serverPlayer, converted, diverted);
+        if (result != null) serverPlayer.logUpdate(result);
+        return result;
+    }
+
+    /**
+     * Build a generalized update from collected changes.
+     *
+     * @param serverPlayer The <code>ServerPlayer</code> to send the
+     *     update to.
+     * @param converted The <code>Change</code>s to convert to elements.
+     * @param diverted The <code>Change</code>s to attach to the result.
+     * @return An element encapsulating the update, or null if there
+     *     is nothing to report.
+     */
+    private static Element build(ServerPlayer serverPlayer,
+                                 List<Change> converted,
+                                 List<Change> diverted) {
+        List<Element> elements = new ArrayList<>();
+        Document doc = DOMMessage.createNewDocument();
+        for (Change change : converted) {
+            elements.add(change.toElement(serverPlayer, doc));
+        }
         elements = collapseElementList(elements);
 
         // Decide what to return.  If there are several parts with
@@ -1916,6 +2512,45 @@ public class ChangeSet {
         return result;
     }
 
+    /**
+     * Build a generalized update that can be written directly to a
+     * connection without building an intermediate document.
+     *
+     * The result is equivalent to that of {@link #build(ServerPlayer)},
+     * including the collapsing of adjacent elements, which is applied
+     * as the changes are written.  If updates are logged for the
+     * player, the update is logged as it is written.
+     *
+     * @param serverPlayer The <code>ServerPlayer</code> to send the
+     *     update to.
+     * @return A <code>StreamedMessage</code> encapsulating the update,
+     *     or null if there is nothing to report.
+     */
+    public StreamedMessage buildStreamed(ServerPlayer serverPlayer) {
+        List<Change> converted = new ArrayList<>();
+        List<Change> diverted = new ArrayList<>();
+        collect(serverPlayer, converted, diverted);
+        if (converted.isEmpty() && diverted.isEmpty()) return null;
+        return new StreamedUpdate(serverPlayer, converted, diverted);
+    }
+
+    /**
+     * Log the update for a player without sending it, as for a
+     * player that is not connected.
+     *
+     * @param serverPlayer The <code>ServerPlayer</code> to log the
+     *     update for.
+     * @exception XMLStreamException if the update can not be written.
+     */
+    public void log(ServerPlayer serverPlayer) throws XMLStreamException {
+        if (!serverPlayer.isLoggingUpdates()) return;
+        List<Change> converted = new ArrayList<>();
+        List<Change> diverted = new ArrayList<>();
+        collect(serverPlayer, converted, diverted);
+        if (converted.isEmpty() && diverted.isEmpty()) return;
+        new StreamedUpdate(serverPlayer, converted, diverted).writeLogged(null);
+    }
+
     /**
      * {@inheritDoc}
      */
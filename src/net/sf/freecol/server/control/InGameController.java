@@ -53,6 +53,7 @@ import net.sf.freecol.common.model.Colony;
 import net.sf.freecol.common.model.ColonyTile;
 import net.sf.freecol.common.model.CombatModel.CombatResult;
 import net.sf.freecol.common.model.DiplomaticTrade;
+import net.sf.freecol.common.model.Direction;
 import net.sf.freecol.common.model.DiplomaticTrade.TradeStatus;
 import net.sf.freecol.common.model.Disaster;
 import net.sf.freecol.common.model.Europe;
@@ -100,6 +101,7 @@ import net.sf.freecol.common.model.TradeRouteStop;
 import net.sf.freecol.common.model.Turn;
 import net.sf.freecol.common.model.Unit;
 import net.sf.freecol.common.model.Role;
+import net.sf.freecol.common.model.Unit.MoveType;
 import net.sf.freecol.common.model.Unit.UnitState;
 import net.sf.freecol.common.model.UnitLocation;
 import net.sf.freecol.common.model.UnitType;
@@ -1676,6 +1678,57 @@ public final class InGameController extends Controller {
         return cs.build(serverPlayer);
     }
 
+    /**
+     * Move a unit several steps along a path.
+     *
+     * Only ordinary moves are made.  The unit stops early when it
+     * runs out of moves, or when it reaches a settlement, a
+     * discoverable region, its first landing, or a tile next to a
+     * foreign unit or settlement, so that the owner can deal with
+     * whatever it found.
+     *
+     * @param serverPlayer The <code>ServerPlayer</code> that is moving.
+     * @param unit The <code>ServerUnit</code> to move.
+     * @param directions The <code>Direction</code>s of the steps to take.
+     * @return An <code>Element</code> encapsulating this action.
+     */
+    public Element movePath(ServerPlayer serverPlayer, ServerUnit unit,
+                            List<Direction> directions) {
+        ChangeSet cs = new ChangeSet();
+        for (Direction d : directions) {
+            Tile tile = unit.getTile().getNeighbourOrNull(d);
+            if (tile == null || unit.getMoveType(tile) != MoveType.MOVE) break;
+            boolean named = serverPlayer.isNewLandNamed();
+            unit.csMove(tile, random, cs);
+            if (unit.isDisposed()
+                || unit.getMovesLeft() <= 0
+                || tile.hasSettlement()
+                || tile.getDiscoverableRegion() != null
+                || named != serverPlayer.isNewLandNamed()
+                || hasForeignNeighbour(serverPlayer, tile)) break;
+        }
+        getGame().sendToOthers(serverPlayer, cs);
+        return cs.build(serverPlayer);
+    }
+
+    /**
+     * Is there a foreign unit or settlement next to a tile?
+     *
+     * @param serverPlayer The <code>ServerPlayer</code> to check for.
+     * @param tile The <code>Tile</code> to check around.
+     * @return True if a neighbouring tile holds something foreign.
+     */
+    private static boolean hasForeignNeighbour(ServerPlayer serverPlayer,
+                                               Tile tile) {
+        for (Tile t : tile.getSurroundingTiles(1)) {
+            Settlement settlement = t.getSettlement();
+            Unit unit = t.getFirstUnit();
+            if ((settlement != null && !serverPlayer.owns(settlement))
+                || (unit != null && !serverPlayer.owns(unit))) return true;
+        }
+        return false;
+    }
+
     /**
      * Decline to investigate strange mounds.
      *
@@ -67,6 +67,7 @@ import net.sf.freecol.common.networking.LootCargoMessage;
 import net.sf.freecol.common.networking.MissionaryMessage;
 import net.sf.freecol.common.networking.MonarchActionMessage;
 import net.sf.freecol.common.networking.MoveMessage;
+import net.sf.freecol.common.networking.MovePathMessage;
 import net.sf.freecol.common.networking.MoveToMessage;
 import net.sf.freecol.common.networking.NetworkConstants;
 import net.sf.freecol.common.networking.NewLandNameMessage;
@@ -415,6 +416,14 @@ public final class InGameInputHandler extends InputHandler
                 return new MoveMessage(getGame(), element)
                     .handle(freeColServer, player, connection);
             }});
+        register(MovePathMessage.getXMLElementTagName(),
+                 new CurrentPlayerNetworkRequestHandler(freeColServer) {
+            @Override
+            public Element handle(Player player, Connection connection,
+                                  Element element) {
+                return new MovePathMessage(getGame(), element)
+                    .handle(freeColServer, player, connection);
+            }});
         register(MoveToMessage.getXMLElementTagName(),
                  new CurrentPlayerNetworkRequestHandler(freeColServer) {
             @Override
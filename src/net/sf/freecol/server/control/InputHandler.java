@@ -29,8 +29,11 @@ import java.util.logging.Logger;
 import net.sf.freecol.common.networking.Connection;
 import net.sf.freecol.common.networking.DOMMessage;
 import net.sf.freecol.common.networking.ChatMessage;
+import net.sf.freecol.common.networking.CurrentPlayerNetworkRequestHandler;
 import net.sf.freecol.common.networking.MessageHandler;
 import net.sf.freecol.common.networking.NetworkRequestHandler;
+import net.sf.freecol.common.networking.NetworkMetrics;
+import net.sf.freecol.common.networking.ServerRequest;
 import net.sf.freecol.server.FreeColServer;
 import net.sf.freecol.server.model.ServerPlayer;
 import net.sf.freecol.server.networking.Server;
@@ -107,6 +110,7 @@ public abstract class InputHandler extends FreeColServerHolder implements Messag
         String tagName = element.getTagName();
         NetworkRequestHandler handler = _handlerMap.get(tagName);
         if (handler != null) {
+            final long start = System.nanoTime();
             try {
                 logger.log(Level.FINEST, "Handling " + tagName);
                 return handler.handle(connection, element);
@@ -114,6 +118,9 @@ public abstract class InputHandler extends FreeColServerHolder implements Messag
                 // FIXME: should we really catch Exception? The old code did.
                 logger.log(Level.WARNING, "Handler failed", e);
                 sendReconnectSafely(connection);
+            } finally {
+                NetworkMetrics.recordHandled(tagName,
+                                             System.nanoTime() - start);
             }
         } else {
             // Should we return an error here? The old handler returned null.
@@ -122,6 +129,38 @@ public abstract class InputHandler extends FreeColServerHolder implements Messag
         return null;
     }
 
+    /**
+     * Deals with a request from a player on this server, without
+     * converting it to an element if the handler for it allows.
+     * Only requests for the current player can be handled directly,
+     * others are converted and handled as usual.
+     *
+     * @param connection The <code>Connection</code> the request was
+     *     received on.
+     * @param request The <code>ServerRequest</code> to handle.
+     * @return The reply.
+     */
+    public final Element handle(Connection connection, ServerRequest request) {
+        if (request == null) return null;
+        NetworkRequestHandler handler = _handlerMap.get(request.getType());
+        if (!(handler instanceof CurrentPlayerNetworkRequestHandler)) {
+            return handle(connection, request.toXMLElement());
+        }
+        final long start = System.nanoTime();
+        try {
+            logger.log(Level.FINEST, "Handling direct " + request.getType());
+            return ((CurrentPlayerNetworkRequestHandler)handler)
+                .handle(connection, request);
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Handler failed", e);
+            sendReconnectSafely(connection);
+        } finally {
+            NetworkMetrics.recordHandled(request.getType(),
+                                         System.nanoTime() - start);
+        }
+        return null;
+    }
+
     /**
      * Send a reconnect message ignoring (but logging) IO errors.
      * 
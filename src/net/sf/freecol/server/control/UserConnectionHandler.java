@@ -19,6 +19,8 @@
 
 package net.sf.freecol.server.control;
 
+import java.net.Socket;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -33,6 +35,7 @@ import net.sf.freecol.common.networking.MessageHandler;
 import net.sf.freecol.server.FreeColServer;
 import net.sf.freecol.server.model.ServerPlayer;
 import net.sf.freecol.server.networking.Server;
+import net.sf.freecol.server.networking.UpdateLog;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -256,13 +259,53 @@ public final class UserConnectionHandler extends FreeColServerHolder
             mh = freeColServer.getInGameInputHandler();
         }
 
+        // Clients that can read the binary encoding say so, and old
+        // ones keep getting XML.
+        boolean binary = Boolean.parseBoolean(element
+            .getAttribute(Connection.BINARY_TAG));
+        if (binary) connection.enableBinary();
+
+        // Likewise only send object updates as deltas to clients that
+        // can decode them.
+        if (Boolean.parseBoolean(element.getAttribute(Connection.DELTA_TAG))) {
+            connection.enableDeltaUpdates();
+        }
+
+        // Compress the game and later traffic if the client can
+        // decompress, as the server policy allows.  The reply to this
+        // request is already compressed.
+        Socket socket = connection.getSocket();
+        boolean compress = FreeCol.getServerCompression().shouldCompress(
+            Boolean.parseBoolean(element.getAttribute(Connection.COMPRESS_TAG)),
+            socket == null || socket.getInetAddress().isLoopbackAddress());
+        if (compress) connection.enableCompression();
+
         connection.setMessageHandler(mh);
         server.addConnection(connection);
         freeColServer.updateMetaServer();
+        // A reconnecting client that still holds the game need only be
+        // sent the updates it missed, if they are all still logged.
+        final UpdateLog log = player.getUpdateLog();
+        List<Element> missed = null;
+        int lastUpdate;
+        synchronized (log) {
+            if (!starting) {
+                try {
+                    missed = log.getSince(Integer.parseInt(element
+                            .getAttribute(LoginMessage.LAST_UPDATE_TAG)));
+                } catch (NumberFormatException nfe) {} // Not reconnecting
+            }
+            lastUpdate = log.getLast();
+        }
+        if (missed != null) {
+            logger.info("Resynchronizing " + userName + " with "
+                + missed.size() + " updates");
+        }
         return new LoginMessage(player, userName, version, !starting,
                                 freeColServer.getSinglePlayer(),
                                 isCurrentPlayer, active,
-                                game).toXMLElement();
+                                game, binary, compress,
+                                lastUpdate, missed).toXMLElement();
     }
 
     /**
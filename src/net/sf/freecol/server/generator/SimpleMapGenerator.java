@@ -817,7 +817,8 @@ public class SimpleMapGenerator implements MapGenerator {
             carriers.clear();
             passengers.clear();
             List<AbstractUnit> unitList = ((EuropeanNationType) player.getNationType())
-                .getStartingUnits();
+                .getStartingUnits(String.valueOf(spec
+                        .getBoolean(GameOptions.EXPERT_STARTING_UNITS)));
             for (AbstractUnit startingUnit : unitList) {
                 UnitType type = startingUnit.getType(spec);
                 Role role = startingUnit.getRole(spec);
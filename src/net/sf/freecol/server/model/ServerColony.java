@@ -468,7 +468,7 @@ public class ServerColony extends Colony implements ServerModelObject {
                                  (sonsOfLiberty > oldSonsOfLiberty)
                                  ? "model.colony.soLIncrease"
                                  : "model.colony.soLDecrease",
-                                 this, spec.getGoodsType("model.goods.bells"))
+                                 this, spec.getType(GoodsType.BELLS))
                     .addAmount("%oldSoL%", oldSonsOfLiberty)
                     .addAmount("%newSoL%", sonsOfLiberty)
                     .addName("%colony%", getName()));
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -136,6 +137,7 @@ public class ServerGame extends Game implements ServerModelObject {
             if (!live.contains(sp)) live.add(sp);
         }
         sendToList(live, cs);
+        logForDisconnected(cs, live);
     }
     
     /**
@@ -145,7 +147,33 @@ public class ServerGame extends Game implements ServerModelObject {
      * @param cs The <code>ChangeSet</code> encapsulating the update.
      */
     public void sendToOthers(ServerPlayer serverPlayer, ChangeSet cs) {
-        sendToList(getConnectedPlayers(serverPlayer), cs);
+        List<ServerPlayer> others = getConnectedPlayers(serverPlayer);
+        sendToList(others, cs);
+        logForDisconnected(cs, others);
+    }
+
+    /**
+     * Log a change set for the live human players that have been
+     * sent updates but are not connected, so that they can be sent
+     * just the updates they missed should they reconnect.
+     *
+     * @param cs The <code>ChangeSet</code> to log.
+     * @param sent The <code>ServerPlayer</code>s it was sent to.
+     */
+    private void logForDisconnected(ChangeSet cs, List<ServerPlayer> sent) {
+        for (Player p : getLivePlayers(null)) {
+            ServerPlayer sp = (ServerPlayer)p;
+            if (!sp.isConnected() && !sent.contains(sp)
+                && sp.isLoggingUpdates()
+                && sp.getUpdateLog().getLast() > 0) {
+                try {
+                    cs.log(sp);
+                } catch (XMLStreamException xse) {
+                    logger.log(Level.WARNING, "Failed to log update for "
+                        + sp.getName(), xse);
+                }
+            }
+        }
     }
 
     /**
@@ -289,7 +289,7 @@ public class ServerIndianSettlement extends IndianSettlement
 
         // Try to breed horses
         // FIXME: Make this generic.
-        GoodsType horsesType = spec.getGoodsType("model.goods.horses");
+        GoodsType horsesType = spec.getType(GoodsType.HORSES);
         // FIXME: remove this
         GoodsType grainType = spec.getGoodsType("model.goods.grain");
         int foodProdAvail = getTotalProductionOf(grainType) - getFoodConsumption();
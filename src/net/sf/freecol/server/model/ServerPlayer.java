@@ -93,12 +93,14 @@ import net.sf.freecol.common.networking.DiplomacyMessage;
 import net.sf.freecol.common.networking.FirstContactMessage;
 import net.sf.freecol.common.networking.LootCargoMessage;
 import net.sf.freecol.common.networking.MonarchActionMessage;
+import net.sf.freecol.common.networking.StreamedMessage;
 import net.sf.freecol.common.util.LogBuilder;
 import net.sf.freecol.common.util.RandomChoice;
 import static net.sf.freecol.common.util.RandomUtils.*;
 import net.sf.freecol.server.control.ChangeSet;
 import net.sf.freecol.server.control.ChangeSet.ChangePriority;
 import net.sf.freecol.server.control.ChangeSet.See;
+import net.sf.freecol.server.networking.UpdateLog;
 
 import org.w3c.dom.Element;
 
@@ -148,6 +150,10 @@ public class ServerPlayer extends Player implements ServerModelObject {
 
     private boolean connected = false;
 
+    /** The recent updates sent to the player's client. */
+    private final UpdateLog updateLog
+        = new UpdateLog(UpdateLog.DEFAULT_CAPACITY);
+
     /** Remaining emigrants to select due to a fountain of youth */
     private int remainingEmigrants = 0;
 
@@ -285,13 +291,57 @@ public class ServerPlayer extends Player implements ServerModelObject {
         connected = (connection != null);
     }
 
+    /**
+     * Gets the recent updates sent to this player.
+     *
+     * @return The <code>UpdateLog</code>.
+     */
+    public UpdateLog getUpdateLog() {
+        return updateLog;
+    }
+
+    /**
+     * Are the updates sent to this player logged?  Only human
+     * players reconnect, so only their updates are kept.
+     *
+     * @return True if updates are logged.
+     */
+    public boolean isLoggingUpdates() {
+        return !isAI();
+    }
+
+    /**
+     * Log an update sent to this player, if updates are logged.
+     *
+     * @param update The update <code>Element</code>.
+     * @return The sequence number of the update, or zero if not logged.
+     */
+    public int logUpdate(Element update) {
+        return (isLoggingUpdates()) ? updateLog.add(update) : 0;
+    }
+
     /**
      * Send a change set to this player.
      *
+     * The update is streamed directly to the connection, but any
+     * further requests arising from the reply are handled as elements.
+     *
      * @param cs The <code>ChangeSet</code> to send.
      */
     public void send(ChangeSet cs) {
-        askElement(cs.build(this));
+        if (this.connection == null) return;
+        StreamedMessage update = cs.buildStreamed(this);
+        if (update == null) return;
+
+        Element reply;
+        try {
+            reply = this.connection.ask(update);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not send \""
+                + update.getType() + "\"-message.", e);
+            return;
+        }
+        if (reply != null) askElement(handleReply(reply));
     }
     
     /**
@@ -313,15 +363,24 @@ public class ServerPlayer extends Player implements ServerModelObject {
                     + request.getTagName() + "\"-message.", e);
                 break;
             }
+            request = handleReply(reply);
+        }
+    }
 
-            try {
-                request = this.connection.handle(reply);
-            } catch (FreeColException fce) {
-                logger.log(Level.WARNING, "Exception processing reply \""
-                    + reply.getTagName() + "\"-message.", fce);
-                break;
-            }
+    /**
+     * Handle a reply to an update.
+     *
+     * @param reply The reply <code>Element</code>.
+     * @return A further request to send, or null if none.
+     */
+    private Element handleReply(Element reply) {
+        try {
+            return this.connection.handle(reply);
+        } catch (FreeColException fce) {
+            logger.log(Level.WARNING, "Exception processing reply \""
+                + reply.getTagName() + "\"-message.", fce);
         }
+        return null;
     }
 
     /**
@@ -20,10 +20,14 @@
 package net.sf.freecol.server.networking;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.networking.Connection;
 import net.sf.freecol.common.networking.MessageHandler;
+import net.sf.freecol.common.networking.ServerRequest;
+import net.sf.freecol.common.networking.StreamedMessage;
+import net.sf.freecol.server.control.InputHandler;
 
 import org.w3c.dom.Element;
 
@@ -143,6 +147,67 @@ public final class DummyConnection extends Connection {
         return reply;
     }
 
+    /**
+     * Sends a message to the other peer without waiting for the reply.
+     * There is nothing to wait for, so just ask.
+     *
+     * @param request The question for the other peer.
+     * @return A completed future holding the reply from the other peer.
+     * @throws IOException If an error occur while sending the message.
+     */
+    @Override
+    public CompletableFuture<Element> askAsync(Element request)
+        throws IOException {
+        return CompletableFuture.completedFuture(ask(request));
+    }
+
+    /**
+     * Sends a streamed message to the other peer and returns the reply.
+     * There is no stream, so just ask with the element form.
+     *
+     * @param message The <code>StreamedMessage</code> question.
+     * @return The reply from the other peer.
+     * @throws IOException If an error occur while sending the message.
+     */
+    @Override
+    public Element ask(StreamedMessage message) throws IOException {
+        Element request = message.toXMLElement();
+        return (request == null) ? null : ask(request);
+    }
+
+    /**
+     * Sends a request to the server and returns the reply.
+     * If the server input handler is on the other end, hand it the
+     * request directly.
+     *
+     * @param request The <code>ServerRequest</code> question.
+     * @return The reply from the other peer.
+     * @throws IOException If an error occur while sending the message.
+     */
+    @Override
+    public Element ask(ServerRequest request) throws IOException {
+        if (!(outgoingMessageHandler instanceof InputHandler)) {
+            return ask(request.toXMLElement());
+        }
+        Element reply = ((InputHandler)outgoingMessageHandler)
+            .handle(getOtherConnection(), request);
+        log(reply, false);
+        return reply;
+    }
+
+    /**
+     * Would the other end of this connection act on a message?
+     * Ask the handler directly.
+     *
+     * @param tag The message tag.
+     * @return True if the outgoing handler might act on the message.
+     */
+    @Override
+    public boolean isInterested(String tag) {
+        return outgoingMessageHandler == null
+            || outgoingMessageHandler.isInterested(tag);
+    }
+
     /**
      * {@inheritDoc}
      */
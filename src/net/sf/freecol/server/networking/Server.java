@@ -21,14 +21,18 @@ package net.sf.freecol.server.networking;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.networking.ChannelConnection;
+import net.sf.freecol.common.networking.ChannelIOPool;
 import net.sf.freecol.common.networking.Connection;
 import net.sf.freecol.common.networking.MessageHandler;
 import net.sf.freecol.server.FreeColServer;
@@ -46,6 +50,13 @@ import org.w3c.dom.Element;
  * is made, with {@link net.sf.freecol.server.control.UserConnectionHandler}
  * as the control object.
  *
+ * <br><br>
+ *
+ * Connections normally have a receiving thread each.  Alternatively
+ * the server can accept on a channel, and serve all its connections
+ * with a small {@link ChannelIOPool}.  Either way the connections
+ * call the same message handlers.
+ *
  * @see net.sf.freecol.common.networking
  */
 public final class Server extends Thread {
@@ -58,6 +69,12 @@ public final class Server extends Thread {
     /** The public "well-known" socket to which clients may connect. */
     private final ServerSocket serverSocket;
 
+    /** The channel of the public socket, if serving with channels. */
+    private final ServerSocketChannel serverChannel;
+
+    /** The threads serving the connections, if serving with channels. */
+    private final ChannelIOPool ioPool;
+
     /** A hash of Connection objects, keyed by the Socket they relate to. */
     private final HashMap<Socket, Connection> connections = new HashMap<>();
 
@@ -91,14 +108,47 @@ public final class Server extends Thread {
      */
     public Server(FreeColServer freeColServer, String host,
                   int port) throws IOException {
+        this(freeColServer, host, port, false);
+    }
+
+    /**
+     * Creates a new network server. Use {@link #run server.start()} to start
+     * listening for new connections.
+     *
+     * @param freeColServer The owner of this <code>Server</code>.
+     * @param host The name of the host for the public socket.
+     * @param port The TCP port to use for the public socket.
+     * @param channels If true, serve the connections with non-blocking
+     *     channels.
+     * @throws IOException if the public socket cannot be created.
+     */
+    public Server(FreeColServer freeColServer, String host, int port,
+                  boolean channels) throws IOException {
         super(FreeCol.SERVER_THREAD + "Server");
 
         this.freeColServer = freeColServer;
         this.host = host;
         this.port = port;
-        this.serverSocket = new ServerSocket(port, BACKLOG_DEFAULT,
-                                             InetAddress.getByName(host));
-        this.serverSocket.setReuseAddress(true);
+        if (channels) {
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverSocket = this.serverChannel.socket();
+            try {
+                this.serverSocket.setReuseAddress(true);
+                this.serverSocket.bind(new InetSocketAddress(InetAddress
+                        .getByName(host), port), BACKLOG_DEFAULT);
+            } catch (IOException ioe) {
+                this.serverChannel.close();
+                throw ioe;
+            }
+            this.ioPool = new ChannelIOPool(FreeCol.SERVER_THREAD + "Server",
+                                            ChannelIOPool.DEFAULT_THREADS);
+        } else {
+            this.serverChannel = null;
+            this.serverSocket = new ServerSocket(port, BACKLOG_DEFAULT,
+                                                 InetAddress.getByName(host));
+            this.serverSocket.setReuseAddress(true);
+            this.ioPool = null;
+        }
     }
 
 
@@ -227,17 +277,18 @@ public final class Server extends Thread {
         // ServerSocket is REALLY closed after execution of shutdown.
         synchronized (shutdownLock) {
             while (running) {
-                Socket clientSocket = null;
                 try {
-                    clientSocket = serverSocket.accept();
-
+                    Connection connection = (serverChannel == null)
+                        ? new Connection(serverSocket.accept(),
+                            freeColServer.getUserConnectionHandler(),
+                            FreeCol.SERVER_THREAD)
+                        : new ChannelConnection(serverChannel.accept(),
+                            freeColServer.getUserConnectionHandler(),
+                            FreeCol.SERVER_THREAD, ioPool);
+                    Socket clientSocket = connection.getSocket();
                     logger.info("Got client connection from "
                         + clientSocket.getInetAddress()
                         + ":" + clientSocket.getPort());
-                    Connection connection =
-                        new Connection(clientSocket,
-                            freeColServer.getUserConnectionHandler(),
-                            FreeCol.SERVER_THREAD);
                     addConnection(connection);
                 } catch (IOException e) {
                     if (running) {
@@ -270,6 +321,7 @@ public final class Server extends Thread {
             if (c.isAlive()) c.close();
         }
         connections.clear();
+        if (ioPool != null) ioPool.shutdown();
 
         freeColServer.removeFromMetaServer();
         logger.fine("Server shutdown.");
@@ -0,0 +1,155 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.server.networking;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.freecol.common.networking.Connection;
+import net.sf.freecol.common.networking.DOMMessage;
+
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+
+
+/**
+ * The most recent updates sent to a player, so that a client that
+ * reconnects can be sent just the updates it missed rather than the
+ * whole game.
+ *
+ * Each update is stamped with a sequence number in the
+ * {@link Connection#UPDATE_SEQUENCE_TAG} attribute, which the client
+ * remembers and reports back when it logs in again.  Only a bounded
+ * number of updates is kept, and once a client has missed more than
+ * that it must be sent the whole game.
+ *
+ * Updates are kept serialized, as captured while they were written to
+ * the client, and are only read back into elements for a client that
+ * reconnects.
+ */
+public class UpdateLog {
+
+    private static final Logger logger = Logger.getLogger(UpdateLog.class.getName());
+
+    /** The number of updates kept by default. */
+    public static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * The serialized updates, indexed by sequence number modulo the
+     * capacity.  An entry is null while its update is being written.
+     */
+    private final byte[][] updates;
+
+    /** The sequence number of the last update added. */
+    private int last = 0;
+
+
+    /**
+     * Create a new <code>UpdateLog</code>.
+     *
+     * @param capacity The number of updates to keep.
+     */
+    public UpdateLog(int capacity) {
+        this.updates = new byte[capacity][];
+    }
+
+
+    /**
+     * Get the sequence number of the last update added.
+     *
+     * @return The last sequence number, zero if there were none.
+     */
+    public synchronized int getLast() {
+        return last;
+    }
+
+    /**
+     * Add an update, stamping it with the next sequence number.
+     *
+     * @param update The update <code>Element</code>.
+     * @return The sequence number of the update.
+     */
+    public synchronized int add(Element update) {
+        int sequence = reserve();
+        update.setAttribute(Connection.UPDATE_SEQUENCE_TAG,
+                            Integer.toString(sequence));
+        record(sequence, DOMMessage.elementToString(update)
+            .getBytes(StandardCharsets.UTF_8));
+        return sequence;
+    }
+
+    /**
+     * Reserve the next sequence number, for an update that is about
+     * to be written.  Until it is recorded, a client that missed it
+     * is sent the whole game.
+     *
+     * @return The sequence number to stamp the update with.
+     */
+    public synchronized int reserve() {
+        last++;
+        updates[last % updates.length] = null;
+        return last;
+    }
+
+    /**
+     * Record an update once it has been written.
+     *
+     * @param sequence The sequence number reserved for the update.
+     * @param update The update as written, in UTF-8.
+     */
+    public synchronized void record(int sequence, byte[] update) {
+        if (sequence > 0 && sequence <= last
+            && last - sequence < updates.length) {
+            updates[sequence % updates.length] = update;
+        }
+    }
+
+    /**
+     * Get the updates since a given one.
+     *
+     * @param seen The sequence number of the last update seen.
+     * @return The updates after the one seen, in order, or null if
+     *     some have been dropped from the log or are not yet recorded,
+     *     or the sequence number is not one that was issued.
+     */
+    public synchronized List<Element> getSince(int seen) {
+        if (seen < 0 || seen > last || last - seen > updates.length) {
+            return null;
+        }
+        List<Element> result = new ArrayList<>(last - seen);
+        for (int i = seen + 1; i <= last; i++) {
+            byte[] update = updates[i % updates.length];
+            if (update == null) return null;
+            try {
+                result.add(new DOMMessage(new ByteArrayInputStream(update))
+                    .getDocument().getDocumentElement());
+            } catch (IOException | SAXException e) {
+                logger.log(Level.WARNING, "Bad logged update " + i, e);
+                return null;
+            }
+        }
+        return result;
+    }
+}
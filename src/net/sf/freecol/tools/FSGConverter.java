@@ -28,9 +28,23 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
 import java.util.zip.GZIPInputStream;
 
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
 import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.io.BinaryXMLWriter;
+import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.io.SavegameSections;
 
 
 /**
@@ -168,6 +182,147 @@ public class FSGConverter {
     }
     
     
+    /**
+     * Converts a saved game between the XML and binary formats.  The
+     * other entries of the saved game are copied unchanged, and any
+     * sections are merged back into the game.
+     *
+     * The conversion is lossless: converting a saved game to binary
+     * and back gives the original XML.
+     *
+     * @param in The input saved game, in either format.
+     * @param out The output saved game.  This file will be overwritten
+     *     if it already exists.
+     * @param binary If true convert to the binary format, otherwise
+     *     to XML.
+     * @throws IOException if thrown while reading or writing the files.
+     */
+    public void convertSavegame(File in, File out, boolean binary)
+        throws IOException {
+        final FreeColSavegameFile fsg = new FreeColSavegameFile(in);
+        try (
+            JarOutputStream jos = new JarOutputStream(new FileOutputStream(out));
+        ) {
+            copyOtherEntries(in, jos);
+            jos.putNextEntry(new JarEntry((binary)
+                    ? FreeColSavegameFile.SAVEGAME_BINARY_FILE
+                    : FreeColSavegameFile.SAVEGAME_FILE));
+            try (
+                FreeColXMLReader xr = fsg.getFreeColXMLReader();
+            ) {
+                XMLStreamWriter xw = (binary) ? new BinaryXMLWriter(jos)
+                    : XMLOutputFactory.newInstance()
+                        .createXMLStreamWriter(jos, "UTF-8");
+                copyEvents(xr, xw);
+                xw.flush();
+            } catch (XMLStreamException xse) {
+                throw new IOException("Failed to convert " + in.getName(),
+                                      xse);
+            }
+            jos.closeEntry();
+        }
+    }
+
+    /**
+     * Converts a saved game to the sectioned layout.  The other
+     * entries of the saved game are copied unchanged.
+     *
+     * @param in The input saved game, in any format.
+     * @param out The output saved game.  This file will be overwritten
+     *     if it already exists.
+     * @throws IOException if thrown while reading or writing the files.
+     * @see SavegameSections
+     */
+    public void convertToSectioned(File in, File out) throws IOException {
+        final FreeColSavegameFile fsg = new FreeColSavegameFile(in);
+        try (
+            JarOutputStream jos = new JarOutputStream(new FileOutputStream(out));
+            FreeColXMLReader xr = fsg.getFreeColXMLReader();
+        ) {
+            copyOtherEntries(in, jos);
+            SavegameSections.write(xr, jos);
+        } catch (XMLStreamException xse) {
+            throw new IOException("Failed to convert " + in.getName(), xse);
+        }
+    }
+
+    /**
+     * Copy the entries of a saved game other than the game itself.
+     *
+     * @param in The saved game <code>File</code> to copy from.
+     * @param jos The <code>JarOutputStream</code> to copy to.
+     * @throws IOException if thrown while reading or writing the files.
+     */
+    private static void copyOtherEntries(File in, JarOutputStream jos)
+        throws IOException {
+        try (
+            JarFile jf = new JarFile(in);
+        ) {
+            Enumeration<JarEntry> entries = jf.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                String name = entry.getName();
+                if (name.endsWith(FreeColSavegameFile.SAVEGAME_FILE)
+                    || name.endsWith(FreeColSavegameFile.SAVEGAME_BINARY_FILE)
+                    || name.startsWith(SavegameSections.SECTION_DIRECTORY)) {
+                    continue;
+                }
+                jos.putNextEntry(new JarEntry(name));
+                try (
+                    InputStream is = jf.getInputStream(entry);
+                ) {
+                    byte[] buf = new byte[8192];
+                    int n;
+                    while ((n = is.read(buf)) > 0) jos.write(buf, 0, n);
+                }
+                jos.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Copy the events of an XML stream from a reader to a writer.
+     *
+     * @param xr The <code>XMLStreamReader</code> to read from, which
+     *     should be at the start of the document.
+     * @param xw The <code>XMLStreamWriter</code> to write to.
+     * @exception XMLStreamException if there is a problem with
+     *     either stream.
+     */
+    public static void copyEvents(XMLStreamReader xr, XMLStreamWriter xw)
+        throws XMLStreamException {
+        for (int event = xr.getEventType();; event = xr.next()) {
+            switch (event) {
+            case XMLStreamConstants.START_DOCUMENT:
+                xw.writeStartDocument("UTF-8", "1.0");
+                break;
+            case XMLStreamConstants.START_ELEMENT:
+                xw.writeStartElement(xr.getLocalName());
+                for (int i = 0; i < xr.getAttributeCount(); i++) {
+                    xw.writeAttribute(xr.getAttributeLocalName(i),
+                                      xr.getAttributeValue(i));
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                xw.writeEndElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                xw.writeCharacters(xr.getText());
+                break;
+            case XMLStreamConstants.COMMENT:
+                xw.writeComment(xr.getText());
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                xw.writeEndDocument();
+                return;
+            default:
+                break; // Nothing else is used in saved games
+            }
+        }
+    }
+
     /**
      * Prints the usage of this program to standard out.
      */
@@ -178,6 +333,12 @@ public class FSGConverter {
         System.out.println();
         System.out.println("output:xml \tThe output will be indented XML.");
         System.out.println();
+        System.out.println("Usage: java -cp FreeCol.jar net.sf.freecol.tools.FSGConverter [-][-]output:binary|output:savegame|output:sectioned FSG_FILE OUTPUT_FILE");
+        System.out.println();
+        System.out.println("output:binary \tThe output will be a saved game in the binary format.");
+        System.out.println("output:savegame \tThe output will be a saved game in the XML format.");
+        System.out.println("output:sectioned \tThe output will be a saved game in the sectioned XML layout.");
+        System.out.println();
         System.out.println("The output file will get the same name as FSG_FILE if not specified (with \".fsg\" replaced with \".xml\").");
     }
     
@@ -212,6 +373,36 @@ public class FSGConverter {
                 e.printStackTrace();
                 System.exit(1);
             }
+        } else if (args.length >= 3 && args[0].endsWith("output:sectioned")) {
+            File in = new File(args[1]);
+            if (!in.exists()) {
+                printUsage();
+                System.exit(1);
+            }
+            try {
+                FSGConverter fsgc = FSGConverter.getFSGConverter();
+                fsgc.convertToSectioned(in, new File(args[2]));
+            } catch (IOException e) {
+                System.out.println("An error occured while converting the file.");
+                e.printStackTrace();
+                System.exit(1);
+            }
+        } else if (args.length >= 3 && (args[0].endsWith("output:binary")
+                || args[0].endsWith("output:savegame"))) {
+            File in = new File(args[1]);
+            if (!in.exists()) {
+                printUsage();
+                System.exit(1);
+            }
+            try {
+                FSGConverter fsgc = FSGConverter.getFSGConverter();
+                fsgc.convertSavegame(in, new File(args[2]),
+                                     args[0].endsWith("output:binary"));
+            } catch (IOException e) {
+                System.out.println("An error occured while converting the file.");
+                e.printStackTrace();
+                System.exit(1);
+            }
         } else {
             printUsage();
             System.exit(1);
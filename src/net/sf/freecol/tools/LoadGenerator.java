@@ -0,0 +1,489 @@
+/**
+ *  Copyright (C) 2002-2015   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package net.sf.freecol.tools;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.i18n.Messages;
+import net.sf.freecol.common.io.FreeColTcFile;
+import net.sf.freecol.common.model.Direction;
+import net.sf.freecol.common.model.FreeColGameObject;
+import net.sf.freecol.common.model.FreeColObject;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.model.Unit.MoveType;
+import net.sf.freecol.common.networking.Connection;
+import net.sf.freecol.common.networking.MessageHandler;
+import net.sf.freecol.common.networking.NetworkMetrics;
+import net.sf.freecol.common.networking.ServerAPI;
+import net.sf.freecol.server.FreeColServer;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+
+/**
+ * Load test a multiplayer server with simulated clients.
+ *
+ * Starts a server, connects a number of headless clients to it
+ * through real sockets, launches the game and plays it for a number
+ * of turns.  On its turn each client moves its units at random,
+ * occasionally builds a colony, and ends the turn.  At the end the
+ * CPU used, the time taken by each round of turns, the message rates
+ * and the latency of the client requests are reported.
+ *
+ * Usage: LoadGenerator [--clients N] [--turns N] [--actions N]
+ *     [--port N] [--seed N]
+ *
+ * From ant: ant loadtest -Dloadtest.args="--clients 8 --turns 20"
+ *
+ * The server and the clients share this process, so the CPU time
+ * and the network statistics include the work of both.
+ */
+public class LoadGenerator {
+
+    private static final Logger logger = Logger.getLogger(LoadGenerator.class.getName());
+
+    /** The longest to wait for the game to launch, in milliseconds. */
+    private static final long LAUNCH_TIMEOUT = 60000L;
+
+    /** The longest to wait for a turn to pass, in milliseconds. */
+    private static final long TURN_TIMEOUT = 300000L;
+
+    /** The chance of a colonist trying to build a colony, in percent. */
+    private static final int BUILD_PERCENT = 5;
+
+    /** Latency of the requests made by the clients. */
+    private static final NetworkMetrics.Histogram requestTimes
+        = new NetworkMetrics.Histogram();
+
+    /** Time from ending a turn to the next turn starting. */
+    private static final NetworkMetrics.Histogram turnTimes
+        = new NetworkMetrics.Histogram();
+
+    /** The number of error replies received. */
+    private static final AtomicLong errors = new AtomicLong();
+
+
+    /**
+     * A headless client playing by a simple random policy.
+     */
+    private static class SimulatedClient extends ServerAPI
+        implements MessageHandler, Runnable {
+
+        /** The user name. */
+        private final String name;
+
+        /** The number of actions to try per turn. */
+        private final int actions;
+
+        /** The source of the random choices. */
+        private final Random random;
+
+        /** Guards the game, which is updated by the handler threads. */
+        private final Object lock = new Object();
+
+        /** The client copy of the game, once it has started. */
+        private Game game = null;
+
+        /** The player of this client. */
+        private Player player = null;
+
+        /** Is it the turn of this client? */
+        private boolean myTurn = false;
+
+        /** When this client last ended its turn, or zero. */
+        private long endedTurn = 0L;
+
+        /** The number of colonies built, for naming them. */
+        private int colonies = 0;
+
+        /** Keep playing? */
+        private volatile boolean running = true;
+
+
+        public SimulatedClient(String name, int actions, long seed) {
+            this.name = name;
+            this.actions = actions;
+            this.random = new Random(seed);
+        }
+
+
+        /**
+         * Connect to the server and log in.
+         *
+         * @param port The server port.
+         * @return True if the login succeeded.
+         * @exception IOException if the connection fails.
+         */
+        public boolean start(int port) throws IOException {
+            return connect(name, "localhost", port, this)
+                && login(name, FreeCol.getVersion()) != null;
+        }
+
+        public void stop() {
+            running = false;
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Wait for the turn of this client.
+         *
+         * @return True if it is our turn, false if stopped.
+         */
+        private boolean waitForTurn() {
+            synchronized (lock) {
+                while (running && !myTurn) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ie) {
+                        return false;
+                    }
+                }
+                myTurn = false;
+                return running;
+            }
+        }
+
+        /**
+         * Start the turn of this client.
+         */
+        private void startTurn() {
+            synchronized (lock) {
+                if (endedTurn != 0L) {
+                    turnTimes.add(System.nanoTime() - endedTurn);
+                    endedTurn = 0L;
+                }
+                myTurn = true;
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Choose the next action, and the unit to perform it.
+         *
+         * @param choice A list to add the direction to move in, or
+         *     nothing if a colony should be built.
+         * @return The <code>Unit</code> to act, or null if none can.
+         */
+        private Unit choose(List<Direction> choice) {
+            synchronized (lock) {
+                List<Unit> units = new ArrayList<>();
+                for (Unit u : player.getUnits()) {
+                    if (!u.isDisposed() && u.hasTile()
+                        && u.getMovesLeft() > 0) units.add(u);
+                }
+                while (!units.isEmpty()) {
+                    Unit u = units.remove(random.nextInt(units.size()));
+                    if (u.canBuildColony() && !u.isOnCarrier()
+                        && random.nextInt(100) < BUILD_PERCENT
+                        && player.canClaimToFoundSettlement(u.getTile())) {
+                        return u;
+                    }
+                    List<Direction> moves = new ArrayList<>();
+                    for (Direction d : Direction.values()) {
+                        if (u.getMoveType(d) == MoveType.MOVE) moves.add(d);
+                    }
+                    if (!moves.isEmpty()) {
+                        choice.add(moves.get(random.nextInt(moves.size())));
+                        return u;
+                    }
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Play one turn.
+         */
+        private void playTurn() {
+            for (int i = 0; i < actions && running; i++) {
+                List<Direction> choice = new ArrayList<>();
+                Unit unit = choose(choice);
+                if (unit == null) break;
+                long start = System.nanoTime();
+                if (choice.isEmpty()) {
+                    buildColony(name + " " + ++colonies, unit);
+                } else {
+                    move(unit, choice.get(0));
+                }
+                requestTimes.add(System.nanoTime() - start);
+            }
+            synchronized (lock) {
+                endedTurn = System.nanoTime();
+            }
+            long start = System.nanoTime();
+            endTurn();
+            requestTimes.add(System.nanoTime() - start);
+        }
+
+        /**
+         * Apply an update to the client game.
+         *
+         * @param element The "update" <code>Element</code>.
+         */
+        private void update(Element element) {
+            synchronized (lock) {
+                if (game == null) return;
+                NodeList nl = element.getChildNodes();
+                for (int i = 0; i < nl.getLength(); i++) {
+                    if (!(nl.item(i) instanceof Element)) continue;
+                    Element e = (Element)nl.item(i);
+                    FreeColGameObject fcgo
+                        = game.getFreeColGameObject(FreeColObject.readId(e));
+                    if (fcgo != null) fcgo.readFromXMLElement(e);
+                }
+                player.invalidateCanSeeTiles();
+            }
+        }
+
+        // Implement Runnable
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            while (waitForTurn()) {
+                try {
+                    playTurn();
+                } catch (RuntimeException re) {
+                    logger.log(Level.WARNING, name + " failed", re);
+                }
+            }
+        }
+
+        // Implement MessageHandler
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Element handle(Connection connection, Element element) {
+            final String tag = element.getTagName();
+            switch (tag) {
+            case "updateGame":
+                synchronized (lock) {
+                    game = new Game((Element)element.getFirstChild(), name);
+                    player = game.getPlayerByName(name);
+                }
+                break;
+            case "startGame":
+                synchronized (lock) {
+                    if (game != null && game.getCurrentPlayer() == player) {
+                        startTurn();
+                    }
+                }
+                break;
+            case "setCurrentPlayer":
+                synchronized (lock) {
+                    if (player != null && player.getId()
+                        .equals(element.getAttribute("player"))) {
+                        startTurn();
+                    }
+                }
+                break;
+            case "update":
+                update(element);
+                break;
+            case "multiple":
+                NodeList nl = element.getChildNodes();
+                for (int i = 0; i < nl.getLength(); i++) {
+                    Node n = nl.item(i);
+                    if (n instanceof Element) handle(connection, (Element)n);
+                }
+                break;
+            case "error":
+                errors.incrementAndGet();
+                break;
+            default:
+                break;
+            }
+            return null;
+        }
+
+        // Implement ServerAPI
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doClientProcessingFor(Element reply) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected void doRaiseErrorMessage(String complaint) {
+            errors.incrementAndGet();
+        }
+    }
+
+
+    private static void printUsage() {
+        System.err.println("Usage: java net.sf.freecol.tools.LoadGenerator"
+            + " [--clients N] [--turns N] [--actions N] [--port N]"
+            + " [--seed N]");
+    }
+
+    /**
+     * Get the CPU time used by this process.
+     *
+     * @return The CPU time in nanoseconds, or negative if unavailable.
+     */
+    private static long getProcessCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return (os instanceof com.sun.management.OperatingSystemMXBean)
+            ? ((com.sun.management.OperatingSystemMXBean)os)
+                .getProcessCpuTime()
+            : -1L;
+    }
+
+    public static void main(String[] args) {
+        try {
+            run(args);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @param args The command line arguments.
+     * @exception Exception if the server or a client fails.
+     */
+    private static void run(String[] args) throws Exception {
+        int clients = 4, turns = 10, actions = 20,
+            port = FreeCol.getServerPort();
+        long seed = 1L;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                int value = Integer.parseInt(args[i + 1]);
+                switch (args[i]) {
+                case "--clients": clients = value; break;
+                case "--turns":   turns = value;   break;
+                case "--actions": actions = value; break;
+                case "--port":    port = value;    break;
+                case "--seed":    seed = value;    break;
+                default: printUsage(); System.exit(1);
+                }
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            printUsage();
+            System.exit(1);
+        }
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        Messages.loadMessageBundle(Locale.US);
+
+        Specification spec = FreeCol.loadSpecification(
+            new FreeColTcFile("freecol"), null, "model.difficulty.medium");
+        FreeColServer server = new FreeColServer(false, false, spec, port,
+                                                 "LoadGenerator");
+        List<SimulatedClient> all = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            SimulatedClient c = new SimulatedClient("load" + i, actions,
+                                                    seed + i);
+            if (!c.start(server.getPort())) {
+                System.err.println("Client " + i + " failed to log in");
+                System.exit(1);
+            }
+            all.add(c);
+            new Thread(c, "LoadGenerator-" + i).start();
+        }
+
+        // Launch the game
+        for (SimulatedClient c : all) c.setReady(true);
+        long end = System.currentTimeMillis() + LAUNCH_TIMEOUT;
+        while (server.getGameState() != FreeColServer.GameState.IN_GAME) {
+            if (System.currentTimeMillis() > end) {
+                System.err.println("Game did not launch");
+                System.exit(1);
+            }
+            all.get(0).requestLaunch();
+            Thread.sleep(1000);
+        }
+
+        // Play
+        final Game game = server.getGame();
+        final int first = game.getTurn().getNumber();
+        int turn = first;
+        long cpu = getProcessCpuTime(), time = System.nanoTime();
+        NetworkMetrics.reset();
+        while (turn < first + turns) {
+            end = System.currentTimeMillis() + TURN_TIMEOUT;
+            while (game.getTurn().getNumber() == turn) {
+                if (System.currentTimeMillis() > end) {
+                    System.err.println("Turn " + turn + " did not end");
+                    System.exit(1);
+                }
+                Thread.sleep(100);
+            }
+            turn = game.getTurn().getNumber();
+            System.out.println("Turn " + turn + ": " + NetworkMetrics
+                .getSummary());
+        }
+        cpu = getProcessCpuTime() - cpu;
+        time = System.nanoTime() - time;
+        for (SimulatedClient c : all) c.stop();
+
+        double seconds = time / 1.0e9;
+        long messages = 0, bytes = 0;
+        for (NetworkMetrics.Traffic t : NetworkMetrics.getSent().values()) {
+            messages += t.getMessages();
+            bytes += t.getBytes();
+        }
+        System.out.println(clients + " clients, " + turns + " turns in "
+            + String.format("%.1f", seconds) + "s");
+        System.out.println("CPU: "
+            + ((cpu < 0) ? "unavailable"
+                : String.format("%.1fs (%.0f%%)", cpu / 1.0e9,
+                                100.0 * cpu / time)));
+        System.out.println("Messages: " + messages + " ("
+            + String.format("%.0f/s, %.0f bytes/s", messages / seconds,
+                            bytes / seconds) + ")");
+        System.out.println("Turn round trip: " + turnTimes);
+        System.out.println("Requests: " + requestTimes
+            + ", errors " + errors.get());
+        for (java.util.Map.Entry<String, NetworkMetrics.Histogram> e
+                 : NetworkMetrics.getHandlerTimes().entrySet()) {
+            System.out.println("  " + e.getKey() + ": " + e.getValue());
+        }
+        server.getController().shutdown();
+    }
+}
@@ -17,67 +17,444 @@
  *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
  */
 
+
 package net.sf.freecol.tools;
 
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.transform.stax.StAXSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
 
+import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.server.FreeColServer;
 
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
 
 /**
- * Validate a saved game.
+ * Validate saved games against the schema, and optionally migrate
+ * them to the current saved game version.
+ *
+ * Each game is streamed through the validator, whatever format or
+ * layout it was saved in, so only the games being checked are held
+ * in memory.  Games are checked in parallel.  Migrating loads the
+ * game into a server, which applies all the compatibility fixes for
+ * older versions, and saves it again, so that loading the migrated
+ * game no longer needs them.
  */
 public class SaveGameValidator {
 
-    public static void main(String[] args) throws Exception {
+    private static final Logger logger = Logger.getLogger(SaveGameValidator.class.getName());
 
-        SchemaFactory factory = SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema");
-        File schemaLocation = new File("schema/data/data-savedGame.xsd");
-        Schema schema = factory.newSchema(schemaLocation);
-        Validator saveGameValidator = schema.newValidator();
+    /** The saved game schema. */
+    public static final String SCHEMA_FILE = "schema/data/data-savedGame.xsd";
 
-        List<File> allFiles = new ArrayList<>();
-        FileFilter ff = FreeColSavegameFile.getFileFilter();
-        for (String name : args) {
-            File file = new File(name);
-            if (file.exists()) {
-                if (file.isDirectory()) {
-                    for (File fsg : file.listFiles(ff)) {
-                        allFiles.add(fsg);
+    /**
+     * Migration is done one game at a time, as loading a game into a
+     * server sets global state.
+     */
+    private static final Object migrationLock = new Object();
+
+    /** The outcome of checking a saved game. */
+    public static enum Status {
+        VALID,      // Matches the schema
+        INVALID,    // Readable, but does not match the schema
+        UNREADABLE  // Could not be read at all
+    }
+
+    /** The result of checking one saved game. */
+    public static final class Result {
+
+        /** The saved game checked. */
+        private final File file;
+
+        /** The outcome. */
+        private final Status status;
+
+        /** The saved game version found, or negative if unknown. */
+        private final int version;
+
+        /** A description of the problem, or null if none. */
+        private final String message;
+
+        /** The migrated saved game, or null if not migrated. */
+        private final File migrated;
+
+
+        /**
+         * Create a new <code>Result</code>.
+         *
+         * @param file The saved game <code>File</code> checked.
+         * @param status The <code>Status</code> found.
+         * @param version The saved game version.
+         * @param message A description of the problem, or null if none.
+         * @param migrated The migrated <code>File</code>, or null if none.
+         */
+        public Result(File file, Status status, int version, String message,
+                      File migrated) {
+            this.file = file;
+            this.status = status;
+            this.version = version;
+            this.message = message;
+            this.migrated = migrated;
+        }
+
+
+        public File getFile() {
+            return file;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getVersion() {
+            return version;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public File getMigrated() {
+            return migrated;
+        }
+    }
+
+    /** The schema to validate against. */
+    private final Schema schema;
+
+    /** The directory to write migrated games to, or null if none. */
+    private final File migrateDirectory;
+
+
+    /**
+     * Create a new <code>SaveGameValidator</code>.
+     *
+     * @param schema The <code>Schema</code> to validate against.
+     * @param migrateDirectory A directory to write games older than
+     *     the current version to, after migrating them, or null to
+     *     only validate.
+     */
+    public SaveGameValidator(Schema schema, File migrateDirectory) {
+        this.schema = schema;
+        this.migrateDirectory = migrateDirectory;
+    }
+
+
+    /**
+     * Load the saved game schema.
+     *
+     * @param file The schema <code>File</code>.
+     * @return The <code>Schema</code> loaded.
+     * @exception SAXException if the schema is malformed.
+     */
+    public static Schema loadSchema(File file) throws SAXException {
+        return SchemaFactory.newInstance("http://www.w3.org/2001/XMLSchema")
+            .newSchema(file);
+    }
+
+    /**
+     * Check a saved game, migrating it if it is old and migration
+     * was asked for.  The migrated game is checked in its place.
+     *
+     * @param file The saved game <code>File</code> to check.
+     * @return The <code>Result</code> of the check.
+     */
+    public Result check(File file) {
+        Result result = validate(file);
+        if (migrateDirectory == null
+            || result.getStatus() == Status.UNREADABLE
+            || result.getVersion() >= FreeColServer.SAVEGAME_VERSION) {
+            return result;
+        }
+        File out = new File(migrateDirectory, file.getName());
+        String failure = migrate(file, out);
+        if (failure != null) {
+            return new Result(file, result.getStatus(), result.getVersion(),
+                ((result.getMessage() == null) ? ""
+                    : result.getMessage() + "; ") + failure, null);
+        }
+        Result migrated = validate(out);
+        return new Result(file, migrated.getStatus(), result.getVersion(),
+                          migrated.getMessage(), out);
+    }
+
+    /**
+     * Validate a saved game against the schema.
+     *
+     * @param file The saved game <code>File</code> to validate.
+     * @return The <code>Result</code> of the validation.
+     */
+    public Result validate(File file) {
+        final int[] version = { -1 };
+        try (
+            FreeColXMLReader xr = new FreeColSavegameFile(file)
+                .getFreeColXMLReader();
+        ) {
+            // Note the version as the root element goes past
+            XMLStreamReader vr = new StreamReaderDelegate(xr) {
+                    @Override
+                    public int next() throws XMLStreamException {
+                        int event = super.next();
+                        if (event == XMLStreamConstants.START_ELEMENT
+                            && version[0] < 0) {
+                            String v = getAttributeValue(null,
+                                FreeColSavegameFile.VERSION_TAG);
+                            version[0] = (v == null) ? 0 : parseVersion(v);
+                        }
+                        return event;
+                    }
+                };
+            Validator validator = schema.newValidator();
+            validator.validate(new StAXSource(vr));
+            return new Result(file, Status.VALID, version[0], null, null);
+        } catch (SAXException se) {
+            // The schema error may be wrapped by the transformer and
+            // the stream reader, find it.
+            for (Throwable t = se; t != null; t = t.getCause()) {
+                if (t instanceof SAXParseException) {
+                    SAXParseException spe = (SAXParseException)t;
+                    String message = spe.getMessage();
+                    if (spe.getLineNumber() >= 0) {
+                        message += " at line=" + spe.getLineNumber()
+                            + " column=" + spe.getColumnNumber();
                     }
-                } else if (ff.accept(file)) {
-                    allFiles.add(file);
+                    return new Result(file, Status.INVALID, version[0],
+                                      message, null);
                 }
             }
+            return new Result(file, Status.UNREADABLE, version[0],
+                              se.getMessage(), null);
+        } catch (IOException | IllegalArgumentException e) {
+            return new Result(file, Status.UNREADABLE, version[0],
+                              e.getMessage(), null);
+        }
+    }
+
+    /**
+     * Parse a version attribute.
+     *
+     * @param value The attribute value.
+     * @return The version, or zero if malformed.
+     */
+    private static int parseVersion(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            return 0;
         }
+    }
 
-        for (File file : allFiles) {
-            System.out.println("Processing file " + file.getPath());
+    /**
+     * Migrate a saved game to the current version.
+     *
+     * @param in The saved game <code>File</code> to migrate.
+     * @param out The <code>File</code> to save the migrated game to.
+     * @return A description of the problem, or null on success.
+     */
+    private static String migrate(File in, File out) {
+        synchronized (migrationLock) {
+            FreeColServer server = null;
             try {
-                FreeColSavegameFile mapFile = new FreeColSavegameFile(file);
-                saveGameValidator.validate(new StreamSource(mapFile.getSavegameInputStream()));
-                System.out.println("Successfully validated " + file.getName());
-            } catch (SAXParseException e) {
-                System.out.println(e.getMessage() 
-                                   + " at line=" + e.getLineNumber() 
-                                   + " column=" + e.getColumnNumber());
-            } catch (IOException | SAXException e) {
-                System.out.println("Failed to read " + file.getName());
+                server = new FreeColServer(new FreeColSavegameFile(in),
+                    (Specification)null, -1, "SaveGameValidator");
+                if (server.getIntegrity() < 0) {
+                    return "not migrated, integrity check failed";
+                }
+                server.saveGame(out, null);
+                return null;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Migration failed: " + in.getPath(),
+                           e);
+                return "migration failed: " + e.getMessage();
+            } finally {
+                if (server != null) server.getController().shutdown();
             }
         }
     }
 
-}
+    /**
+     * Collect the saved games to check.  Directories that are not
+     * saved games themselves are searched recursively.
+     *
+     * @param file The <code>File</code> to start from.
+     * @param filter The saved game <code>FileFilter</code>.
+     * @param files The list of saved games to add to.
+     */
+    private static void collect(File file, FileFilter filter,
+                                List<File> files) {
+        if (filter.accept(file)) {
+            files.add(file);
+        } else if (file.isDirectory()) {
+            File[] children = file.listFiles();
+            if (children == null) return;
+            Arrays.sort(children);
+            for (File child : children) collect(child, filter, files);
+        }
+    }
+
+    /**
+     * Write a summary of the results.
+     *
+     * @param results The <code>Result</code>s to summarize.
+     * @param out The <code>PrintWriter</code> to write to.
+     */
+    public static void report(List<Result> results, PrintWriter out) {
+        Map<Status, Integer> statuses = new TreeMap<>();
+        Map<Integer, Integer> versions = new TreeMap<>();
+        Map<String, Integer> messages = new TreeMap<>();
+        int migrated = 0;
+        for (Result r : results) {
+            statuses.merge(r.getStatus(), 1, Integer::sum);
+            versions.merge(r.getVersion(), 1, Integer::sum);
+            if (r.getMigrated() != null) migrated++;
+            if (r.getMessage() != null) {
+                // Group problems by message, without the position
+                String m = r.getMessage().replaceAll(" at line=.*$", "");
+                messages.merge(m, 1, Integer::sum);
+            }
+        }
+        out.println("Checked " + results.size() + " saved games: "
+            + statuses.getOrDefault(Status.VALID, 0) + " valid, "
+            + statuses.getOrDefault(Status.INVALID, 0) + " invalid, "
+            + statuses.getOrDefault(Status.UNREADABLE, 0) + " unreadable, "
+            + migrated + " migrated");
+        out.print("Versions:");
+        for (Map.Entry<Integer, Integer> e : versions.entrySet()) {
+            out.print(" " + ((e.getKey() < 0) ? "unknown" : e.getKey())
+                + "=" + e.getValue());
+        }
+        out.println();
+        if (!messages.isEmpty()) {
+            out.println("Problems:");
+            for (Map.Entry<String, Integer> e : messages.entrySet()) {
+                out.println(String.format("%6d  %s", e.getValue(),
+                                          e.getKey()));
+            }
+        }
+        for (Result r : results) {
+            if (r.getStatus() == Status.VALID && r.getMigrated() == null
+                && r.getMessage() == null) {
+                continue;
+            }
+            out.println(r.getStatus() + " " + r.getFile().getPath()
+                + ((r.getMigrated() == null) ? ""
+                    : " -> " + r.getMigrated().getPath())
+                + ((r.getMessage() == null) ? "" : ": " + r.getMessage()));
+        }
+        out.flush();
+    }
 
+    /**
+     * Prints the usage of this program to standard out.
+     */
+    private static void printUsage() {
+        System.out.println("Usage: java -cp FreeCol.jar net.sf.freecol.tools.SaveGameValidator [--threads N] [--migrate DIRECTORY] [--report FILE] FILE|DIRECTORY...");
+        System.out.println();
+        System.out.println("--threads N \tCheck N saved games at a time, by default one per processor.");
+        System.out.println("--migrate DIRECTORY \tWrite games older than the current version to DIRECTORY, migrated to the current version.");
+        System.out.println("--report FILE \tWrite the report to FILE instead of standard out.");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = Runtime.getRuntime().availableProcessors();
+        File migrate = null, report = null;
+        List<File> files = new ArrayList<>();
+        FileFilter ff = FreeColSavegameFile.getFileFilter();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                case "--threads":
+                    threads = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                case "--migrate":
+                    migrate = new File(args[++i]);
+                    break;
+                case "--report":
+                    report = new File(args[++i]);
+                    break;
+                default:
+                    File file = new File(args[i]);
+                    if (file.exists()) collect(file, ff, files);
+                    break;
+                }
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            printUsage();
+            System.exit(1);
+        }
+        if (files.isEmpty()) {
+            printUsage();
+            System.exit(1);
+        }
+        if (migrate != null) {
+            if (!migrate.isDirectory() && !migrate.mkdirs()) {
+                System.out.println("Can not create " + migrate.getPath());
+                System.exit(1);
+            }
+            Logger.getLogger("").setLevel(Level.SEVERE);
+            Messages.loadMessageBundle(Locale.US);
+        }
+
+        final SaveGameValidator validator
+            = new SaveGameValidator(loadSchema(new File(SCHEMA_FILE)), migrate);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Result>> futures = new ArrayList<>();
+        for (final File file : files) {
+            futures.add(executor.submit(() -> validator.check(file)));
+        }
+        List<Result> results = new ArrayList<>();
+        boolean ok = true;
+        for (Future<Result> f : futures) {
+            try {
+                Result r = f.get();
+                if (r.getStatus() != Status.VALID) ok = false;
+                results.add(r);
+            } catch (ExecutionException | InterruptedException e) {
+                logger.log(Level.WARNING, "Check failed", e);
+                ok = false;
+            }
+        }
+        executor.shutdown();
+
+        try (
+            PrintWriter out = (report == null)
+                ? new PrintWriter(new OutputStreamWriter(System.out,
+                        StandardCharsets.UTF_8))
+                : new PrintWriter(new OutputStreamWriter(
+                        new FileOutputStream(report), StandardCharsets.UTF_8));
+        ) {
+            report(results, out);
+        }
+        System.exit((ok) ? 0 : 2);
+    }
+}
@@ -27,7 +27,9 @@ public class AllTests {
 
     public static Test suite() {
 	TestSuite suite = new TestSuite("Test for net.sf.freecol.common.option");
+        suite.addTestSuite(BinaryXMLTest.class);
         suite.addTestSuite(ModTest.class);
+        suite.addTestSuite(SpecificationSnapshotTest.class);
         return suite;
     }
 
@@ -0,0 +1,145 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+public class BinaryXMLTest extends FreeColTestCase {
+
+    private static final String LONG_TEXT
+        = "A line of text that is too long to be worth putting in the table.";
+
+    private static byte[] writeSample() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(new BinaryXMLWriter(bos),
+                FreeColXMLWriter.WriteScope.toSave());
+        ) {
+            xw.writeStartDocument("UTF-8", "1.0");
+            xw.writeComment("sample");
+            xw.writeStartElement("game");
+            xw.writeAttribute("id", "game:1");
+            xw.writeAttribute("turn", 42);
+            xw.writeAttribute("score", -7);
+            xw.writeAttribute("spanish", true);
+            xw.writeAttribute("name", "Nueva España");
+            xw.writeAttribute("zero", "007");
+            for (int i = 0; i < 3; i++) {
+                xw.writeStartElement("unit");
+                xw.writeAttribute("id", "unit:" + (1000 + i));
+                xw.writeAttribute("type", "model.unit.freeColonist");
+                xw.writeEndElement();
+            }
+            xw.writeEmptyElement("empty");
+            xw.writeStartElement("text");
+            xw.writeCharacters(LONG_TEXT.substring(0, 10));
+            xw.writeCharacters(LONG_TEXT.substring(10));
+            xw.writeEndElement();
+            xw.writeEndElement();
+            xw.writeEndDocument();
+        }
+        return bos.toByteArray();
+    }
+
+    public void testRoundTrip() throws Exception {
+        byte[] data = writeSample();
+        assertTrue(BinaryXMLReader.isBinary(data));
+
+        try (
+            FreeColXMLReader xr = new FreeColXMLReader(new BinaryXMLReader(
+                    new ByteArrayInputStream(data)));
+        ) {
+            assertEquals(XMLStreamConstants.START_ELEMENT, xr.nextTag());
+            assertTrue(xr.atTag("game"));
+            assertEquals("game:1", xr.readId());
+            assertEquals(42, xr.getAttribute("turn", 0));
+            assertEquals(-7, xr.getAttribute("score", 0));
+            assertTrue(xr.getAttribute("spanish", false));
+            assertEquals("Nueva España",
+                         xr.getAttribute("name", (String)null));
+            assertEquals("007", xr.getAttribute("zero", (String)null));
+            assertNull(xr.getAttribute("missing", (String)null));
+
+            for (int i = 0; i < 3; i++) {
+                assertEquals(XMLStreamConstants.START_ELEMENT, xr.nextTag());
+                assertTrue(xr.atTag("unit"));
+                assertEquals("unit:" + (1000 + i), xr.readId());
+                assertEquals("model.unit.freeColonist",
+                             xr.getAttribute("type", (String)null));
+                xr.closeTag("unit");
+            }
+            assertEquals(XMLStreamConstants.START_ELEMENT, xr.nextTag());
+            assertTrue(xr.atTag("empty"));
+            assertEquals(0, xr.getAttributeCount());
+            xr.closeTag("empty");
+
+            assertEquals(XMLStreamConstants.START_ELEMENT, xr.nextTag());
+            assertEquals(LONG_TEXT, xr.getElementText());
+            xr.closeTag("game");
+            assertEquals(XMLStreamConstants.END_DOCUMENT, xr.next());
+            assertFalse(xr.hasNext());
+        }
+    }
+
+    public void testStringTable() throws Exception {
+        byte[] data = writeSample();
+        String s = new String(data, StandardCharsets.ISO_8859_1);
+        // Names and types are only written in full once
+        assertEquals(s.indexOf("type"), s.lastIndexOf("type"));
+        assertEquals(s.indexOf("model.unit.freeColonist"),
+                     s.lastIndexOf("model.unit.freeColonist"));
+    }
+
+    public void testNotBinary() throws Exception {
+        byte[] xml = "<?xml version=\"1.0\"?><game/>"
+            .getBytes(StandardCharsets.UTF_8);
+        assertFalse(BinaryXMLReader.isBinary(xml));
+        try {
+            new BinaryXMLReader(new ByteArrayInputStream(xml));
+            fail("XML read as binary");
+        } catch (IOException ioe) {
+            ; // expected
+        }
+    }
+
+    public void testTruncated() throws Exception {
+        byte[] data = writeSample();
+        byte[] part = new byte[data.length / 2];
+        System.arraycopy(data, 0, part, 0, part.length);
+        try (
+            FreeColXMLReader xr = new FreeColXMLReader(new BinaryXMLReader(
+                    new ByteArrayInputStream(part)));
+        ) {
+            while (xr.hasNext()) xr.next();
+            fail("Truncated stream read");
+        } catch (XMLStreamException xse) {
+            ; // expected
+        }
+    }
+}
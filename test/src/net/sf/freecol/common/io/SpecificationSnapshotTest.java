@@ -0,0 +1,93 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+
+import net.sf.freecol.common.model.FeatureContainer;
+import net.sf.freecol.common.model.GoodsType;
+import net.sf.freecol.common.model.ResourceType;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.common.model.UnitType;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+public class SpecificationSnapshotTest extends FreeColTestCase {
+
+    private static String toXML(Specification spec) throws Exception {
+        StringWriter sw = new StringWriter();
+        FreeColXMLWriter xw = new FreeColXMLWriter(sw,
+            FreeColXMLWriter.WriteScope.toSave());
+        spec.toXML(xw);
+        xw.close();
+        return sw.toString();
+    }
+
+    public void testSnapshot() throws Exception {
+        File directory = Files.createTempDirectory("snapshot").toFile();
+        SpecificationSnapshot.setDirectory(directory);
+        try {
+            FreeColTcFile tc = new FreeColTcFile("freecol");
+            Specification first = tc.getSpecification();
+            File[] files = directory.listFiles();
+            assertEquals(1, files.length);
+            assertTrue(files[0].getName().startsWith("freecol-"));
+            assertTrue(files[0].getName()
+                .endsWith(SpecificationSnapshot.SNAPSHOT_EXTENSION));
+
+            Specification second = tc.getSpecification();
+            assertNotSame(first, second);
+            assertEquals(first.getUnitTypeList().size(),
+                         second.getUnitTypeList().size());
+            assertEquals(first.getNations().size(),
+                         second.getNations().size());
+
+            // The snapshot is the same as the rules read directly
+            Specification direct;
+            try (InputStream is = tc.getSpecificationInputStream()) {
+                direct = new Specification(is);
+            }
+            assertEquals(toXML(direct), toXML(second));
+
+            // Scoped modifiers survive the snapshot
+            ResourceType grain = second.getResourceType("model.resource.grain");
+            GoodsType grainType = second.getGoodsType("model.goods.grain");
+            UnitType farmer = second.getUnitType("model.unit.expertFarmer");
+            assertEquals(7f, FeatureContainer.applyModifiers(5f, null,
+                    grain.getModifiers(grainType.getId(), null)));
+            assertEquals(9f, FeatureContainer.applyModifiers(5f, null,
+                    grain.getModifiers(grainType.getId(), farmer)));
+
+            // A bad snapshot is replaced
+            Files.write(files[0].toPath(), new byte[] { 1, 2, 3 });
+            Specification third = tc.getSpecification();
+            assertEquals(first.getUnitTypeList().size(),
+                         third.getUnitTypeList().size());
+            assertTrue(files[0].length() > 3);
+        } finally {
+            SpecificationSnapshot.setDirectory(SNAPSHOT_DIRECTORY);
+            for (File f : directory.listFiles()) f.delete();
+            directory.delete();
+        }
+    }
+}
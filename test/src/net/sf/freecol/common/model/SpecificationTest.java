@@ -27,10 +27,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.io.FreeColModFile;
 import net.sf.freecol.common.io.FreeColTcFile;
 import net.sf.freecol.common.model.Modifier;
 import net.sf.freecol.common.model.Modifier.ModifierType;
+import net.sf.freecol.common.option.BooleanOption;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.ServerTestHelper;
+import net.sf.freecol.server.control.PreGameController;
 import net.sf.freecol.util.test.FreeColTestCase;
 
 
@@ -449,4 +454,94 @@ public final class SpecificationTest extends FreeColTestCase {
             fail(e.getMessage());
         }
     }
+
+    public void testKeys() {
+        Specification spec = spec();
+        assertEquals(spec.getGoodsType("model.goods.food"),
+                     spec.getType(GoodsType.FOOD));
+        assertEquals(spec.getGoodsType("model.goods.bells"),
+                     spec.getType(GoodsType.BELLS));
+        assertEquals(spec.getInteger(GameOptions.TURNS_TO_SAIL),
+                     spec.getInteger(GameOptions.TURNS_TO_SAIL_KEY));
+
+        BooleanOption fog = spec.getBooleanOption(GameOptions.FOG_OF_WAR);
+        boolean value = fog.getValue();
+        assertEquals(value, spec.getBoolean(GameOptions.FOG_OF_WAR_KEY));
+        fog.setValue(!value);
+        assertEquals(!value, spec.getBoolean(GameOptions.FOG_OF_WAR_KEY));
+        fog.setValue(value);
+
+        try {
+            spec.getType(new TypeKey<>("model.goods.noSuchGoods",
+                                       GoodsType.class));
+            fail("Missing type should throw");
+        } catch (IllegalArgumentException iae) {}
+    }
+
+    public void testOverlay() throws Exception {
+        Specification base = FreeCol.loadSpecification(
+            new FreeColTcFile("freecol"), null, "model.difficulty.medium");
+        Specification one = base.createOverlay();
+        Specification two = base.createOverlay();
+        two.prepare(null, "model.difficulty.veryHard");
+        assertTrue(base.isShared());
+        assertTrue(one.isShared());
+
+        // Types are shared
+        assertSame(base.getUnitType("model.unit.freeColonist"),
+                   one.getUnitType("model.unit.freeColonist"));
+        assertSame(one.getGoodsType("model.goods.food"),
+                   two.getGoodsType("model.goods.food"));
+        assertEquals(base.getUnitTypeList(), two.getUnitTypeList());
+        assertEquals(base.getEuropeanNations(), one.getEuropeanNations());
+
+        // Options are not
+        assertNotSame(one.getGameOptions(), two.getGameOptions());
+        assertEquals("model.difficulty.medium", one.getDifficultyLevel());
+        assertEquals("model.difficulty.veryHard", two.getDifficultyLevel());
+        BooleanOption fog = one.getBooleanOption(GameOptions.FOG_OF_WAR);
+        boolean value = fog.getValue();
+        fog.setValue(!value);
+        assertEquals(!value, one.getBoolean(GameOptions.FOG_OF_WAR_KEY));
+        assertEquals(value, two.getBoolean(GameOptions.FOG_OF_WAR_KEY));
+        assertEquals(value, base.getBoolean(GameOptions.FOG_OF_WAR));
+
+        // The customs house restriction is per game
+        BuildingType customs = one.getBuildingType("model.building.customHouse");
+        one.getBooleanOption(GameOptions.CUSTOMS_ON_COAST).setValue(true);
+        two.getBooleanOption(GameOptions.CUSTOMS_ON_COAST).setValue(false);
+        assertTrue(one.isCoastalOnly(customs));
+        assertFalse(two.isCoastalOnly(customs));
+
+        try {
+            one.loadMods(new ArrayList<FreeColModFile>());
+            fail("Loading mods into an overlay should fail");
+        } catch (IllegalStateException ise) {}
+    }
+
+    public void testSharedGames() throws Exception {
+        FreeColTcFile tc = new FreeColTcFile("freecol");
+        Specification first = FreeCol.loadSharedSpecification(tc, null,
+            "model.difficulty.medium");
+        Specification second = FreeCol.loadSharedSpecification(tc, null,
+            "model.difficulty.veryHard");
+        assertNotSame(first, second);
+        assertSame(first.getUnitType("model.unit.freeColonist"),
+                   second.getUnitType("model.unit.freeColonist"));
+
+        // A game can be created and played on a shared specification
+        FreeColServer server = ServerTestHelper.startServer(false, true,
+                                                            first);
+        try {
+            ((PreGameController)server.getController()).startGame();
+            assertEquals(FreeColServer.GameState.IN_GAME,
+                         server.getGameState());
+            assertSame(first, server.getGame().getSpecification());
+            ServerTestHelper.newTurn();
+            assertEquals("model.difficulty.veryHard",
+                         second.getDifficultyLevel());
+        } finally {
+            ServerTestHelper.stopServer();
+        }
+    }
 }
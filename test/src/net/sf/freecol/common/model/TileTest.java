@@ -19,8 +19,10 @@
 
 package net.sf.freecol.common.model;
 
+import java.io.StringReader;
 import java.util.List;
 
+import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.util.test.FreeColTestCase;
 import net.sf.freecol.util.test.FreeColTestUtils;
 
@@ -724,7 +726,7 @@ public class TileTest extends FreeColTestCase {
         assertTrue(road.getZIndex() < Tile.RESOURCE_ZINDEX);
     }
 
-    public void testCopy() {
+    public void testCopy() throws Exception {
         Game game = getStandardGame();
         game.setMap(getTestMap(plains));
         Colony colony = getStandardColony();
@@ -745,6 +747,15 @@ public class TileTest extends FreeColTestCase {
         // Do not test units, colony owned tiles are not correctly
         // recognized as belonging to the colony which stops those
         // work locations from contributing their units.
+
+        // The copy is the same as reading back the serialized tile
+        try (
+            FreeColXMLReader xr
+                = new FreeColXMLReader(new StringReader(tile.serialize()));
+        ) {
+            assertEquals(xr.copy(game, Tile.class).serialize(),
+                         otherTile.serialize());
+        }
     }
 
     public void testGetBestDisembarkTile() {
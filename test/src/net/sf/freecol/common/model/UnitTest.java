@@ -20,10 +20,12 @@
 package net.sf.freecol.common.model;
 
 import java.io.ByteArrayInputStream;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.DocumentBuilder;
 
+import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.model.Role;
 import net.sf.freecol.server.model.ServerColony;
 import net.sf.freecol.server.model.ServerUnit;
@@ -557,7 +559,7 @@ public class UnitTest extends FreeColTestCase {
     }
 
 
-    public void testCopy() {
+    public void testCopy() throws Exception {
         Game game = getStandardGame();
         Player dutch = game.getPlayerByNationId("model.nation.dutch");
         Map map = getTestMap(plains, true);
@@ -586,6 +588,16 @@ public class UnitTest extends FreeColTestCase {
                     == other.getUnitList().get(0));
         assertEquals(merchantman.getUnitList().get(0).getId(),
             other.getUnitList().get(0).getId());
+
+        // The copy is the same as reading back the serialized unit
+        assertEquals(merchantman.serialize(), other.serialize());
+        try (
+            FreeColXMLReader xr
+                = new FreeColXMLReader(new StringReader(merchantman.serialize()));
+        ) {
+            assertEquals(xr.copy(game, Unit.class).serialize(),
+                         other.serialize());
+        }
     }
 
     public void testElement() {
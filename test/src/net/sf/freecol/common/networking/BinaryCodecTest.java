@@ -0,0 +1,119 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class BinaryCodecTest extends FreeColTestCase {
+
+    private static void checkRoundTrip(BinaryCodec encoder,
+                                       BinaryCodec decoder,
+                                       Element element) throws IOException {
+        Element decoded = decoder.decode(encoder.encode(element));
+        assertTrue("Decoded " + DOMMessage.elementToString(decoded)
+            + " should match " + DOMMessage.elementToString(element),
+            decoded.isEqualNode(element));
+    }
+
+    public void testValues() throws IOException {
+        BinaryCodec encoder = new BinaryCodec();
+        BinaryCodec decoder = new BinaryCodec();
+        Element e = DOMMessage.createMessage("test",
+            "zero", "0", "negative", "-42", "big", "123456789012345678",
+            "padded", "007", "minusZero", "-0", "id", "unit:1234",
+            "odd", "a:-1", "empty", "", "text", "Hello\nworld é");
+        e.appendChild(e.getOwnerDocument().createTextNode("some text"));
+        e.appendChild(e.getOwnerDocument().createElement("child"));
+        checkRoundTrip(encoder, decoder, e);
+        // Again, now the names are in the dictionary
+        checkRoundTrip(encoder, decoder, e);
+    }
+
+    public void testGame() throws IOException {
+        Game game = getStandardGame();
+        game.setMap(getTestMap());
+        getStandardColony(3);
+        Element element = game.toXMLElement(DOMMessage.createNewDocument());
+        BinaryCodec encoder = new BinaryCodec();
+        BinaryCodec decoder = new BinaryCodec();
+        byte[] data = encoder.encode(element);
+        assertTrue("Binary should be smaller than XML",
+            data.length < DOMMessage.elementToString(element).length());
+        assertTrue(decoder.decode(data).isEqualNode(element));
+    }
+
+    public void testStreamed() throws IOException, XMLStreamException {
+        BinaryCodec encoder = new BinaryCodec();
+        BinaryCodec decoder = new BinaryCodec();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (FreeColXMLWriter xw = new FreeColXMLWriter(encoder.newWriter(out),
+                WriteScope.toServer())) {
+            xw.writeStartElement("test");
+            xw.writeAttribute("number", 42);
+            xw.writeAttribute("text", "Hello");
+            xw.writeCharacters("some ");
+            xw.writeCharacters("text");
+            xw.writeStartElement("child");
+            xw.writeEndElement();
+            xw.writeEndElement();
+        }
+        Element e = DOMMessage.createMessage("test",
+            "number", "42", "text", "Hello");
+        e.appendChild(e.getOwnerDocument().createTextNode("some text"));
+        e.appendChild(e.getOwnerDocument().createElement("child"));
+        assertTrue(decoder.decode(out.toByteArray()).isEqualNode(e));
+        // The dictionary is shared with elements encoded later
+        checkRoundTrip(encoder, decoder, e);
+
+        Game game = getStandardGame();
+        game.setMap(getTestMap());
+        getStandardColony(3);
+        out.reset();
+        try (FreeColXMLWriter xw = new FreeColXMLWriter(encoder.newWriter(out),
+                WriteScope.toServer())) {
+            game.toXML(xw);
+        }
+        Element element = game.toXMLElement(DOMMessage.createNewDocument());
+        assertTrue(decoder.decode(out.toByteArray()).isEqualNode(element));
+    }
+
+    public void testTruncated() {
+        BinaryCodec encoder = new BinaryCodec();
+        byte[] data = encoder.encode(DOMMessage.createMessage("test",
+                "name", "value"));
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        try {
+            new BinaryCodec().decode(truncated);
+            fail("Truncated message should not decode");
+        } catch (IOException ioe) {}
+    }
+}
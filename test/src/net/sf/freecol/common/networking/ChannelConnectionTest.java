@@ -0,0 +1,405 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package net.sf.freecol.common.networking;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.sf.freecol.common.FreeColException;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+
+public class ChannelConnectionTest extends FreeColTestCase {
+
+    /** Replies to "ping" with "pong", carrying the value back. */
+    private static final MessageHandler echo = new MessageHandler() {
+            @Override
+            public Element handle(Connection connection, Element element) {
+                return ("ping".equals(element.getTagName()))
+                    ? DOMMessage.createMessage("pong",
+                        "value", element.getAttribute("value"))
+                    : null;
+            }
+        };
+
+    private ServerSocketChannel serverChannel;
+
+    private ChannelIOPool pool;
+
+    private final List<Connection> connections = new ArrayList<>();
+
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress(InetAddress
+                .getLoopbackAddress(), 0));
+        pool = new ChannelIOPool("test", 2);
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        for (Connection c : connections) c.reallyClose();
+        connections.clear();
+        pool.shutdown();
+        serverChannel.close();
+        super.tearDown();
+    }
+
+    private Connection connect() throws Exception {
+        Connection c = new Connection(InetAddress.getLoopbackAddress()
+            .getHostAddress(), serverChannel.socket().getLocalPort(),
+            echo, "client");
+        connections.add(c);
+        return c;
+    }
+
+    private ChannelConnection accept() throws Exception {
+        return accept(echo);
+    }
+
+    private ChannelConnection accept(MessageHandler handler)
+        throws Exception {
+        ChannelConnection c = new ChannelConnection(serverChannel.accept(),
+                                                    handler, "server", pool);
+        connections.add(c);
+        return c;
+    }
+
+    private static void checkPing(Connection c, String value)
+        throws Exception {
+        Element reply = c.ask(DOMMessage.createMessage("ping",
+                "value", value));
+        assertNotNull(reply);
+        assertEquals("pong", reply.getTagName());
+        assertEquals(value, reply.getAttribute("value"));
+    }
+
+    public void testAskBothWays() throws Exception {
+        Connection client = connect();
+        ChannelConnection server = accept();
+        for (int i = 0; i < 20; i++) {
+            checkPing(client, "client" + i);
+            checkPing(server, "server" + i);
+        }
+    }
+
+    public void testBinary() throws Exception {
+        Connection client = connect();
+        ChannelConnection server = accept();
+        client.enableBinary();
+        server.enableBinary();
+        for (int i = 0; i < 20; i++) {
+            checkPing(client, "unit:" + i);
+            checkPing(server, "tile:" + i);
+        }
+    }
+
+    public void testLargeMessage() throws Exception {
+        Connection client = connect();
+        ChannelConnection server = accept();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) sb.append("line ").append(i).append('\n');
+        checkPing(client, sb.toString());
+        checkPing(client, "small again");
+        client.enableBinary();
+        checkPing(client, sb.toString());
+    }
+
+    public void testCompressed() throws Exception {
+        Connection client = connect();
+        ChannelConnection server = accept();
+        client.enableCompression();
+        server.enableCompression();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20000; i++) sb.append("line ").append(i).append('\n');
+        for (int i = 0; i < 10; i++) {
+            checkPing(client, "client" + i);
+            checkPing(server, "server" + i);
+        }
+        checkPing(client, sb.toString());
+        checkPing(server, sb.toString());
+        client.enableBinary();
+        server.enableBinary();
+        for (int i = 0; i < 10; i++) {
+            checkPing(client, "unit:" + i);
+            checkPing(server, "tile:" + i);
+        }
+        assertTrue(NetworkMetrics.getCompressionRatio() < 1.0);
+    }
+
+    public void testManyConnections() throws Exception {
+        final int n = 100;
+        List<Connection> clients = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            clients.add(connect());
+            accept();
+        }
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < n; i++) {
+                checkPing(clients.get(i), i + "/" + round);
+            }
+        }
+    }
+
+    public void testAskAsync() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final MessageHandler sequencer = new MessageHandler() {
+                @Override
+                public Element handle(Connection connection,
+                                      Element element) {
+                    return DOMMessage.createMessage("pong",
+                        "value", element.getAttribute("value"),
+                        "sequence", Integer.toString(count.getAndIncrement()));
+                }
+            };
+        Connection client = connect();
+        accept(sequencer);
+        List<CompletableFuture<Element>> replies = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            replies.add(client.askAsync(DOMMessage.createMessage("ping",
+                        "value", Integer.toString(i))));
+        }
+        for (int i = 0; i < 50; i++) {
+            Element reply = replies.get(i).get();
+            assertNotNull(reply);
+            assertEquals(Integer.toString(i), reply.getAttribute("value"));
+            assertEquals(Integer.toString(i), reply.getAttribute("sequence"));
+        }
+        checkPing(client, "blocking");
+    }
+
+    public void testAskAsyncClosed() throws Exception {
+        final MessageHandler silent = new MessageHandler() {
+                @Override
+                public Element handle(Connection connection,
+                                      Element element) {
+                    try {
+                        Thread.sleep(1000);
+                    } catch (InterruptedException ie) {}
+                    return null;
+                }
+            };
+        Connection client = connect();
+        ChannelConnection server = accept(silent);
+        CompletableFuture<Element> reply
+            = client.askAsync(DOMMessage.createMessage("ping"));
+        server.reallyClose();
+        assertNull(reply.get());
+    }
+
+    public void testDeltaResync() throws Exception {
+        final BlockingQueue<String> values = new LinkedBlockingQueue<>();
+        final MessageHandler recorder = new MessageHandler() {
+                @Override
+                public Element handle(Connection connection,
+                                      Element element) {
+                    NodeList nl = element.getChildNodes();
+                    for (int i = 0; i < nl.getLength(); i++) {
+                        values.add(((Element)nl.item(i)).getAttribute("x"));
+                    }
+                    return null;
+                }
+            };
+        Connection client = new Connection(InetAddress.getLoopbackAddress()
+            .getHostAddress(), serverChannel.socket().getLocalPort(),
+            recorder, "client");
+        connections.add(client);
+        ChannelConnection server = accept();
+        server.enableDeltaUpdates();
+
+        Element update = DOMMessage.createMessage("update");
+        Element a = update.getOwnerDocument().createElement("thing");
+        a.setAttribute("id", "a");
+        a.setAttribute("x", "1");
+        update.appendChild(a);
+        server.send(update);
+        assertEquals("1", values.poll(5, TimeUnit.SECONDS));
+
+        // Lose an update, then the next delta can not be applied
+        a.setAttribute("x", "2");
+        server.encodeDelta((Element)a.cloneNode(true));
+        a.setAttribute("x", "3");
+        server.send(update);
+        assertEquals("Client should get the object again in full",
+                     "3", values.poll(5, TimeUnit.SECONDS));
+
+        a.setAttribute("x", "4");
+        server.send(update);
+        assertEquals("4", values.poll(5, TimeUnit.SECONDS));
+        assertNull(values.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    public void testClose() throws Exception {
+        Connection client = connect();
+        ChannelConnection server = accept();
+        checkPing(client, "before");
+        client.close();
+        for (int i = 0; i < 100 && server.isAlive(); i++) Thread.sleep(50);
+        assertFalse(server.isAlive());
+    }
+
+    public void testSaturation() throws Exception {
+        // A client flooding a slow handler is slowed down, but none
+        // of its messages are lost
+        final int n = 500;
+        final AtomicInteger handled = new AtomicInteger();
+        Connection client = connect();
+        accept(new MessageHandler() {
+                @Override
+                public Element handle(Connection connection,
+                                      Element element)
+                    throws FreeColException {
+                    if ("tick".equals(element.getTagName())) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException ie) {}
+                        handled.incrementAndGet();
+                        return null;
+                    }
+                    return echo.handle(connection, element);
+                }
+            });
+        for (int i = 0; i < n; i++) {
+            client.send(DOMMessage.createMessage("tick",
+                    "value", Integer.toString(i)));
+        }
+        checkPing(client, "after");
+        for (int i = 0; i < 100 && handled.get() < n; i++) Thread.sleep(50);
+        assertEquals(n, handled.get());
+    }
+
+    public void testOversizedFrame() throws Exception {
+        // A frame claiming to be 2GB long must close either kind of
+        // connection at once, rather than be allocated
+        final byte[] header = { BinaryCodec.FRAME_MARKER,
+                                0x7f, (byte)0xff, (byte)0xff, (byte)0xff };
+        Socket peer = new Socket(InetAddress.getLoopbackAddress(),
+                                 serverChannel.socket().getLocalPort());
+        ChannelConnection server = accept();
+        Socket peer2 = new Socket(InetAddress.getLoopbackAddress(),
+                                  serverChannel.socket().getLocalPort());
+        Connection plain = new Connection(serverChannel.accept().socket(),
+                                          echo, "plain");
+        connections.add(plain);
+        try {
+            peer.getOutputStream().write(header);
+            peer.getOutputStream().flush();
+            peer2.getOutputStream().write(header);
+            peer2.getOutputStream().flush();
+            for (int i = 0; i < 100 && (server.isAlive() || plain.isAlive());
+                 i++) Thread.sleep(50);
+            assertFalse(server.isAlive());
+            assertFalse(plain.isAlive());
+        } finally {
+            peer.close();
+            peer2.close();
+        }
+    }
+
+    public void testPendingLimit() throws Exception {
+        Socket peer = new Socket(InetAddress.getLoopbackAddress(),
+                                 serverChannel.socket().getLocalPort());
+        SocketChannel channel = serverChannel.accept();
+        channel.configureBlocking(false);
+        ChannelOutputStream os = new ChannelOutputStream(channel,
+            pool.next(), 1 << 16, 200);
+        byte[] chunk = new byte[1 << 14];
+        boolean failed = false;
+        try {
+            // The peer never reads, so the writer must eventually fail
+            for (int i = 0; i < 10000 && !failed; i++) {
+                try {
+                    os.write(chunk);
+                    os.flush();
+                } catch (IOException ioe) {
+                    failed = true;
+                }
+            }
+            assertTrue("Writer should give up", failed);
+            assertFalse(channel.isOpen());
+        } finally {
+            peer.close();
+            channel.close();
+        }
+    }
+
+    public void testPendingDrain() throws Exception {
+        final Socket peer = new Socket(InetAddress.getLoopbackAddress(),
+            serverChannel.socket().getLocalPort());
+        SocketChannel channel = serverChannel.accept();
+        channel.configureBlocking(false);
+        final ChannelOutputStream os = new ChannelOutputStream(channel,
+            pool.next(), 1 << 16, 5000);
+        final int total = 1 << 24;
+        final AtomicInteger read = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+                byte[] b = new byte[1 << 14];
+                try {
+                    InputStream in = peer.getInputStream();
+                    int n;
+                    while (read.get() < total && (n = in.read(b)) > 0) {
+                        read.addAndGet(n);
+                    }
+                } catch (IOException ioe) {}
+            });
+        // Stands in for the I/O thread, which is not selecting on
+        // this channel
+        Thread pump = new Thread(() -> {
+                try {
+                    while (read.get() < total) {
+                        os.writePending();
+                        Thread.sleep(1);
+                    }
+                } catch (IOException|InterruptedException e) {}
+            });
+        reader.start();
+        pump.start();
+        try {
+            // A slow peer blocks the writer without losing any output
+            byte[] chunk = new byte[1 << 14];
+            for (int i = 0; i < total / chunk.length; i++) {
+                os.write(chunk);
+                os.flush();
+            }
+            reader.join(5000);
+            assertEquals(total, read.get());
+        } finally {
+            pump.interrupt();
+            peer.close();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+public class DeflateCodecTest extends FreeColTestCase {
+
+    public void testRoundTrip() throws IOException {
+        Game game = getStandardGame();
+        game.setMap(getTestMap());
+        getStandardColony(3);
+        byte[] data = DOMMessage.elementToString(game
+            .toXMLElement(DOMMessage.createNewDocument()))
+            .getBytes(StandardCharsets.UTF_8);
+        DeflateCodec compressor = new DeflateCodec();
+        DeflateCodec decompressor = new DeflateCodec();
+
+        byte[] first = compressor.compress(data);
+        assertTrue("Game should compress well",
+                   first.length < data.length / 4);
+        assertTrue(Arrays.equals(data,
+                                           decompressor.decompress(first)));
+
+        // The second copy compresses against the first
+        byte[] second = compressor.compress(data);
+        assertTrue(second.length < first.length);
+        assertTrue(Arrays.equals(data,
+                                           decompressor.decompress(second)));
+
+        byte[] empty = compressor.compress(new byte[0]);
+        assertEquals(0, decompressor.decompress(empty).length);
+        compressor.end();
+        decompressor.end();
+    }
+
+    public void testCorrupt() {
+        DeflateCodec compressor = new DeflateCodec();
+        byte[] data = compressor.compress("some message\n"
+            .getBytes(StandardCharsets.UTF_8));
+        for (int i = 0; i < data.length; i++) data[i] ^= 0x5A;
+        try {
+            new DeflateCodec().decompress(data);
+            fail("Corrupt frame should not decompress");
+        } catch (IOException ioe) {}
+    }
+
+    public void testPolicy() {
+        assertTrue(DeflateCodec.Policy.FORCE.shouldCompress(true, true));
+        assertFalse(DeflateCodec.Policy.FORCE.shouldCompress(false, false));
+        assertTrue(DeflateCodec.Policy.ALLOW.shouldCompress(true, false));
+        assertFalse(DeflateCodec.Policy.ALLOW.shouldCompress(true, true));
+        assertFalse(DeflateCodec.Policy.DISABLE.shouldCompress(true, false));
+    }
+}
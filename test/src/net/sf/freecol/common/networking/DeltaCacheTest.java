@@ -0,0 +1,226 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.xml.stream.XMLOutputFactory;
+
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
+import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.FreeColObject;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.GoodsType;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class DeltaCacheTest extends FreeColTestCase {
+
+    private static final GoodsType foodType
+        = spec().getPrimaryFoodType();
+
+
+    private static Element update(Element... objects) {
+        Element update = DOMMessage.createMessage("update");
+        for (Element e : objects) {
+            update.appendChild(update.getOwnerDocument().importNode(e, true));
+        }
+        return update;
+    }
+
+    /**
+     * Send an update through a pair of caches, checking it arrives intact.
+     *
+     * @return The encoded update.
+     */
+    private static Element roundTrip(DeltaCache sent, DeltaCache received,
+                                     Element full) {
+        Element update = update(full);
+        Element encoded = sent.encodeMessage(update);
+        Element wire = update((Element)encoded.getFirstChild());
+        received.decodeMessage(wire);
+        assertTrue("Decoded update should match the original",
+                   wire.getFirstChild().isEqualNode(update.getFirstChild()));
+        return (Element)encoded.getFirstChild();
+    }
+
+    /**
+     * Stream an update of an object through a delta writer.
+     *
+     * @param partial Fields to write a partial update of, if any.
+     * @return The update as sent.
+     */
+    private static Element stream(DeltaCache sent, FreeColObject fco,
+                                  String... partial) throws Exception {
+        StringWriter sw = new StringWriter();
+        FreeColXMLWriter xw = new FreeColXMLWriter(new DeltaWriter(
+                XMLOutputFactory.newInstance().createXMLStreamWriter(sw),
+                sent), WriteScope.toServer());
+        xw.writeStartElement("multiple");
+        xw.writeStartElement("update");
+        if (partial.length > 0) {
+            fco.toXMLPartial(xw, partial);
+        } else {
+            fco.toXML(xw);
+        }
+        xw.writeEndElement();
+        xw.writeEndElement();
+        xw.close();
+        return new DOMMessage(new ByteArrayInputStream(sw.toString()
+                .getBytes(StandardCharsets.UTF_8)))
+            .getDocument().getDocumentElement();
+    }
+
+    public void testStreamedDelta() throws Exception {
+        Game game = getStandardGame();
+        game.setMap(getTestMap());
+        Colony colony = getStandardColony(3);
+        DeltaCache sent = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+        DeltaCache received = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+
+        Element wire = stream(sent, colony);
+        assertTrue(received.decodeMessage(wire).isEmpty());
+
+        colony.addGoods(foodType, 17);
+        wire = stream(sent, colony);
+        Element delta = (Element)wire.getFirstChild().getFirstChild();
+        assertTrue(delta.hasAttribute(DeltaCache.DELTA_BASE_TAG));
+        assertTrue(received.decodeMessage(wire).isEmpty());
+        Element full = colony.toXMLElement(DOMMessage.createNewDocument());
+        assertTrue("Decoded update should match the object",
+            wire.getFirstChild().getFirstChild().isEqualNode(full));
+
+        // Partial updates pass through, and leave the cache alone
+        colony.setName(colony.getName() + "x");
+        wire = stream(sent, colony, "name");
+        Element partial = (Element)wire.getFirstChild().getFirstChild();
+        assertFalse(partial.hasAttribute(DeltaCache.DELTA_VERSION_TAG));
+        assertTrue(received.decodeMessage(wire).isEmpty());
+        wire = stream(sent, colony);
+        assertTrue(received.decodeMessage(wire).isEmpty());
+        full = colony.toXMLElement(DOMMessage.createNewDocument());
+        assertTrue("Decoded update should match the object",
+            wire.getFirstChild().getFirstChild().isEqualNode(full));
+    }
+
+    public void testColonyDelta() {
+        Game game = getStandardGame();
+        game.setMap(getTestMap());
+        Colony colony = getStandardColony(3);
+        DeltaCache sent = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+        DeltaCache received = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+
+        Element first = roundTrip(sent, received,
+            colony.toXMLElement(DOMMessage.createNewDocument()));
+        assertFalse(first.hasAttribute(DeltaCache.DELTA_BASE_TAG));
+
+        colony.addGoods(foodType, 17);
+        Element full = colony.toXMLElement(DOMMessage.createNewDocument());
+        Element delta = roundTrip(sent, received, full);
+        assertTrue(delta.hasAttribute(DeltaCache.DELTA_BASE_TAG));
+        assertTrue("Delta should be smaller",
+                   DOMMessage.elementToString(delta).length()
+                   < DOMMessage.elementToString(full).length());
+
+        Unit unit = colony.getUnitList().get(0);
+        unit.changeWorkType(foodType);
+        roundTrip(sent, received,
+            colony.toXMLElement(DOMMessage.createNewDocument()));
+    }
+
+    public void testUnitAttributes() {
+        Game game = getStandardGame();
+        game.setMap(getTestMap());
+        Colony colony = getStandardColony(1);
+        Unit unit = colony.getTile().getUnitList().isEmpty()
+            ? colony.getUnitList().get(0)
+            : colony.getTile().getUnitList().get(0);
+        DeltaCache sent = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+        DeltaCache received = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+
+        roundTrip(sent, received,
+                  unit.toXMLElement(DOMMessage.createNewDocument()));
+        unit.setMovesLeft(unit.getMovesLeft() + 1);
+        Element delta = roundTrip(sent, received,
+            unit.toXMLElement(DOMMessage.createNewDocument()));
+        assertTrue(delta.hasAttribute("movesLeft"));
+        assertFalse(delta.hasAttribute("unitType"));
+    }
+
+    public void testEviction() {
+        DeltaCache sent = new DeltaCache(1);
+        DeltaCache received = new DeltaCache(1);
+        Element a = DOMMessage.createMessage("thing", "id", "a", "x", "1");
+        Element b = DOMMessage.createMessage("thing", "id", "b", "x", "1");
+
+        roundTrip(sent, received, a);
+        roundTrip(sent, received, b);
+        a.setAttribute("x", "2");
+        Element e = roundTrip(sent, received, a);
+        assertFalse("Evicted object should be sent in full",
+                    e.hasAttribute(DeltaCache.DELTA_BASE_TAG));
+    }
+
+    public void testResync() {
+        DeltaCache sent = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+        DeltaCache received = new DeltaCache(DeltaCache.DEFAULT_CAPACITY);
+        Element a = DOMMessage.createMessage("thing", "id", "a", "x", "1");
+        roundTrip(sent, received, a);
+
+        // Lose an update, so the next delta has the wrong base
+        a.setAttribute("x", "2");
+        sent.encodeMessage(update(a));
+        a.setAttribute("x", "3");
+        Element wire = update((Element)sent.encodeMessage(update(a))
+                              .getFirstChild());
+        List<String> failed = received.decodeMessage(wire);
+        assertEquals(1, failed.size());
+        assertEquals("a", failed.get(0));
+        assertNull("Bad delta should be dropped", wire.getFirstChild());
+
+        // Later deltas fail too, but are only asked for once
+        a.setAttribute("y", "4");
+        wire = update((Element)sent.encodeMessage(update(a)).getFirstChild());
+        assertTrue(received.decodeMessage(wire).isEmpty());
+
+        // The sender resends the last full state it sent
+        Element resync = sent.resync(DeltaCache.createResyncMessage(failed));
+        assertNotNull(resync);
+        Element full = (Element)sent.encodeMessage(resync).getFirstChild();
+        assertFalse(full.hasAttribute(DeltaCache.DELTA_BASE_TAG));
+        wire = update(full);
+        assertTrue(received.decodeMessage(wire).isEmpty());
+        Element decoded = (Element)wire.getFirstChild();
+        assertEquals("3", decoded.getAttribute("x"));
+        assertEquals("4", decoded.getAttribute("y"));
+
+        // And deltas work again
+        a.setAttribute("x", "5");
+        Element delta = roundTrip(sent, received, a);
+        assertTrue(delta.hasAttribute(DeltaCache.DELTA_BASE_TAG));
+    }
+}
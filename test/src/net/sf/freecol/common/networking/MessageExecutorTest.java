@@ -0,0 +1,203 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+public class MessageExecutorTest extends FreeColTestCase {
+
+    public void testOrdered() throws InterruptedException {
+        final int n = 200; // More than the queue limit
+        final List<Integer> seen
+            = Collections.synchronizedList(new ArrayList<Integer>());
+        final CountDownLatch done = new CountDownLatch(n);
+        MessageExecutor executor = new MessageExecutor("test");
+        for (int i = 0; i < n; i++) {
+            final int index = i;
+            executor.execute("test", new Runnable() {
+                    @Override
+                    public void run() {
+                        seen.add(index);
+                        done.countDown();
+                    }
+                }, true, false);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (int i = 0; i < n; i++) assertEquals(i, (int)seen.get(i));
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+    public void testUnorderedIsConcurrent() throws InterruptedException {
+        // Two questions that each wait for the other must both run.
+        final CountDownLatch both = new CountDownLatch(2);
+        final CountDownLatch done = new CountDownLatch(2);
+        MessageExecutor executor = new MessageExecutor("test");
+        for (int i = 0; i < 2; i++) {
+            executor.execute("test", new Runnable() {
+                    @Override
+                    public void run() {
+                        both.countDown();
+                        try {
+                            if (both.await(10, TimeUnit.SECONDS)) {
+                                done.countDown();
+                            }
+                        } catch (InterruptedException ie) {}
+                    }
+                }, false, false);
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Make a handler that waits on a latch.
+     *
+     * @param release The latch to wait on.
+     * @param ran Counted down by each handler run.
+     * @return The handler.
+     */
+    private static Runnable waiter(final CountDownLatch release,
+                                   final AtomicInteger ran) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {}
+                ran.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Wait for a number of handlers to have run.
+     *
+     * @param ran The count of handlers run.
+     * @param n The number expected.
+     */
+    private static void awaitRan(AtomicInteger ran, int n)
+        throws InterruptedException {
+        for (int i = 0; i < 100 && ran.get() < n; i++) Thread.sleep(100);
+        assertEquals(n, ran.get());
+    }
+
+    public void testSaturation() throws InterruptedException {
+        // A flood of ordered messages holds up the reader, without
+        // any being dropped
+        final int n = 500;
+        final MessageExecutor executor = new MessageExecutor("test");
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger ran = new AtomicInteger();
+        final AtomicInteger submitted = new AtomicInteger();
+        final List<Integer> seen
+            = Collections.synchronizedList(new ArrayList<Integer>());
+        Thread reader = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < n; i++) {
+                        final int index = i;
+                        final Runnable wait = waiter(release, ran);
+                        assertTrue(executor.execute("test", new Runnable() {
+                                @Override
+                                public void run() {
+                                    seen.add(index);
+                                    wait.run();
+                                }
+                            }, true, false));
+                        submitted.incrementAndGet();
+                    }
+                }
+            };
+        reader.start();
+        Thread.sleep(500);
+        assertTrue("Reader should be held up", reader.isAlive());
+        assertTrue("Submitted " + submitted.get(), submitted.get() < n);
+        assertTrue(executor.isFull());
+
+        release.countDown();
+        reader.join(10000);
+        assertFalse(reader.isAlive());
+        awaitRan(ran, n);
+        for (int i = 0; i < n; i++) assertEquals(i, (int)seen.get(i));
+        assertFalse(executor.isFull());
+    }
+
+    public void testRejectsOnlyRetriedQuestions() throws InterruptedException {
+        // Without blocking, nothing waits, and only questions that
+        // will be retried are rejected
+        MessageExecutor executor = new MessageExecutor("test");
+        executor.setBlocking(false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        Runnable r = waiter(release, ran);
+        int accepted = 0;
+        while (executor.execute("test", r, false, true)) {
+            accepted++;
+            assertTrue("No question was rejected", accepted < 1000);
+        }
+        assertTrue("Running limit " + accepted, accepted > 1);
+        assertTrue(executor.isFull());
+        for (int i = 0; i < 200; i++) {
+            assertTrue(executor.execute("test", r, true, false));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(executor.execute("test", r, false, false));
+        }
+        assertEquals(accepted + 10, executor.getRunning());
+
+        // The accepted handlers all run once released
+        release.countDown();
+        awaitRan(ran, accepted + 210);
+        assertTrue(executor.execute("test", r, false, true));
+    }
+
+    public void testNoHoldWhileAwaitingReply() throws InterruptedException {
+        // While a reply is awaited the reader must keep reading, even
+        // beyond the size of the shared pool
+        final int n = 200;
+        MessageExecutor executor = new MessageExecutor("test",
+            new BooleanSupplier() {
+                @Override
+                public boolean getAsBoolean() {
+                    return false;
+                }
+            });
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger ran = new AtomicInteger();
+        Runnable r = waiter(release, ran);
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            assertTrue(executor.execute("test", r, true, false));
+            assertTrue(executor.execute("test", r, false, false));
+        }
+        assertTrue(System.currentTimeMillis() - start < 5000);
+        assertFalse(executor.isFull());
+        release.countDown();
+        awaitRan(ran, 2 * n);
+    }
+}
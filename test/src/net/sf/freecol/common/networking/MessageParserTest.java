@@ -0,0 +1,56 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import net.sf.freecol.util.test.FreeColTestCase;
+
+
+public class MessageParserTest extends FreeColTestCase {
+
+    private static InputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void testMatchesDOM() throws Exception {
+        String xml = "<question networkReplyId=\"7\"><update a=\"x&#10;y\">"
+            + "<unit id=\"unit:1\" name=\"café &amp; co\"/>text"
+            + "</update></question>";
+        MessageParser parser = new MessageParser();
+        DOMMessage parsed = parser.parse(stream(xml));
+        DOMMessage dom = new DOMMessage(stream(xml));
+        parsed.getDocument().normalizeDocument();
+        dom.getDocument().normalizeDocument();
+        assertTrue(parsed.getDocument().getDocumentElement()
+            .isEqualNode(dom.getDocument().getDocumentElement()));
+        assertEquals("question:update", NetworkMetrics.getType(parsed));
+
+        // The parser is reusable
+        parsed = parser.parse(stream("<reply networkReplyId=\"8\"/>"));
+        assertEquals("reply", parsed.getType());
+    }
+
+    public void testEmpty() throws Exception {
+        assertNull(new MessageParser().parse(stream("")));
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.Direction;
+import net.sf.freecol.common.model.ExportData;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Goods;
+import net.sf.freecol.common.model.GoodsType;
+import net.sf.freecol.common.model.Monarch.MonarchAction;
+import net.sf.freecol.common.model.StringTemplate;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class MessageRegistryTest extends FreeColTestCase {
+
+    /**
+     * Get the name of the message class for a tag, by the naming
+     * convention the messages follow.
+     *
+     * @param tag The message tag.
+     * @return The class name.
+     */
+    private static String getClassName(String tag) {
+        return "net.sf.freecol.common.networking."
+            + tag.substring(0, 1).toUpperCase() + tag.substring(1)
+            + "Message";
+    }
+
+    public void testAllMessagesRegistered() {
+        File dir = new File("src/net/sf/freecol/common/networking");
+        File[] files = dir.listFiles();
+        if (files == null) return; // Not run from the source tree
+        for (File f : files) {
+            String name = f.getName();
+            if (!name.endsWith("Message.java")) continue;
+            name = name.substring(0, name.length() - ".java".length());
+            if ("DOMMessage".equals(name) || "Message".equals(name)
+                || "StreamedMessage".equals(name)
+                || "TrivialMessage".equals(name)) continue;
+            String tag = name.substring(0, 1).toLowerCase()
+                + name.substring(1, name.length() - "Message".length());
+            assertNotNull("Factory for " + name,
+                          MessageRegistry.getFactory(tag));
+        }
+    }
+
+    public void testFactoriesMatchTags() throws Exception {
+        for (String tag : MessageRegistry.getTags()) {
+            Class<?> c = Class.forName(getClassName(tag));
+            assertEquals(tag, c.getMethod("getXMLElementTagName")
+                .invoke(null));
+        }
+    }
+
+    /**
+     * Get an element to create a message from, for each registered tag.
+     *
+     * Most messages can be created from a bare element, but those
+     * carrying goods, export data or an action need a real one.
+     *
+     * @param colony A <code>Colony</code> to trade with.
+     * @return A map of tag to element.
+     */
+    private static Map<String, Element> getElements(Colony colony) {
+        final Game game = colony.getGame();
+        final Unit unit = colony.getUnitList().get(0);
+        final GoodsType foodType = spec().getGoodsType("model.goods.food");
+        final Goods goods = new Goods(game, colony, foodType, 100);
+        Map<String, Element> result = new HashMap<>();
+        for (String tag : MessageRegistry.getTags()) {
+            result.put(tag, DOMMessage.createMessage(tag));
+        }
+        result.put(BuyMessage.getXMLElementTagName(),
+            new BuyMessage(unit, colony, goods, 100).toXMLElement());
+        result.put(BuyPropositionMessage.getXMLElementTagName(),
+            new BuyPropositionMessage(unit, colony, goods, 100)
+                .toXMLElement());
+        result.put(DeliverGiftMessage.getXMLElementTagName(),
+            new DeliverGiftMessage(unit, colony, goods).toXMLElement());
+        result.put(MonarchActionMessage.getXMLElementTagName(),
+            new MonarchActionMessage(MonarchAction.RAISE_TAX_ACT,
+                StringTemplate.template("model.monarch.action.raiseTax"),
+                "model.monarch.king").toXMLElement());
+        result.put(SellMessage.getXMLElementTagName(),
+            new SellMessage(unit, colony, goods, 100).toXMLElement());
+        result.put(SellPropositionMessage.getXMLElementTagName(),
+            new SellPropositionMessage(unit, colony, goods, 100)
+                .toXMLElement());
+        result.put(SetGoodsLevelsMessage.getXMLElementTagName(),
+            new SetGoodsLevelsMessage(colony, new ExportData(foodType))
+                .toXMLElement());
+        return result;
+    }
+
+    public void testCreateAllTags() throws Exception {
+        Game game = getStandardGame();
+        game.setMap(getTestMap(true));
+        Colony colony = getStandardColony();
+        for (Entry<String, Element> e : getElements(colony).entrySet()) {
+            DOMMessage message = MessageRegistry.create(game, e.getValue());
+            assertNotNull("Create " + e.getKey(), message);
+            assertEquals(Class.forName(getClassName(e.getKey())),
+                         message.getClass());
+        }
+    }
+
+    public void testCreate() {
+        Game game = getStandardGame();
+        Element element = DOMMessage.createMessage(MoveMessage
+            .getXMLElementTagName(), "unit", "unit:1",
+            "direction", Direction.N.toString());
+        DOMMessage message = DOMMessage.createMessage(game, element);
+        assertTrue(message instanceof MoveMessage);
+        assertEquals(MoveMessage.getXMLElementTagName(), message.getType());
+
+        element = DOMMessage.createMessage("noSuchThing");
+        assertNull(MessageRegistry.create(game, element));
+        assertNull(DOMMessage.createMessage(game, element));
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class NetworkMetricsTest extends FreeColTestCase {
+
+    public void testHistogram() {
+        NetworkMetrics.Histogram h = new NetworkMetrics.Histogram();
+        assertEquals(0, h.getPercentile(50));
+        for (int i = 0; i < 90; i++) h.add(3000);    // 3us
+        for (int i = 0; i < 10; i++) h.add(1000000); // 1ms
+        assertEquals(100, h.getCount());
+        assertEquals(4, h.getPercentile(50));
+        assertEquals(4, h.getPercentile(90));
+        assertEquals(1024, h.getPercentile(99));
+        assertEquals(1000000, h.getMaximumNanos());
+
+        long[] counts = h.getCounts();
+        assertEquals(90, counts[2]);
+        assertEquals(10, counts[10]);
+
+        h.add(Long.MAX_VALUE);
+        assertEquals(1, h.getCounts()[NetworkMetrics.Histogram.BUCKETS - 1]);
+    }
+
+    public void testTraffic() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final MessageHandler handler = new MessageHandler() {
+                @Override
+                public Element handle(Connection connection,
+                                      Element element) {
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ie) {}
+                    return DOMMessage.createMessage("pong");
+                }
+            };
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress(InetAddress
+                .getLoopbackAddress(), 0));
+        ChannelIOPool pool = new ChannelIOPool("test", 1);
+        Connection client = new Connection(InetAddress.getLoopbackAddress()
+            .getHostAddress(), serverChannel.socket().getLocalPort(),
+            handler, "client");
+        Connection server = new ChannelConnection(serverChannel.accept(),
+            handler, "server", pool);
+        try {
+            NetworkMetrics.reset();
+            int outstanding = NetworkMetrics.getOutstandingReplies();
+            CompletableFuture<Element> reply
+                = client.askAsync(DOMMessage.createMessage("ping"));
+            assertEquals(outstanding + 1,
+                         NetworkMetrics.getOutstandingReplies());
+            release.countDown();
+            assertNotNull(reply.get(10, TimeUnit.SECONDS));
+            assertEquals(outstanding, NetworkMetrics.getOutstandingReplies());
+
+            NetworkMetrics.Traffic sent
+                = NetworkMetrics.getSent().get("question:ping");
+            assertNotNull(sent);
+            assertEquals(1, sent.getMessages());
+            assertTrue(sent.getBytes() > "<ping/>".length());
+            NetworkMetrics.Traffic received
+                = NetworkMetrics.getReceived().get("question:ping");
+            assertNotNull(received);
+            assertEquals(sent.getBytes(), received.getBytes());
+            assertNotNull(NetworkMetrics.getReceived().get("reply:pong"));
+
+            assertTrue(NetworkMetrics.getSummary().contains("question:ping"));
+        } finally {
+            client.reallyClose();
+            server.reallyClose();
+            pool.shutdown();
+            serverChannel.close();
+        }
+    }
+
+    public void testHandled() {
+        NetworkMetrics.reset();
+        NetworkMetrics.recordHandled("move", 2000000);
+        NetworkMetrics.recordHandled("move", 1000);
+        NetworkMetrics.Histogram h
+            = NetworkMetrics.getHandlerTimes().get("move");
+        assertNotNull(h);
+        assertEquals(2, h.getCount());
+        assertTrue(NetworkMetrics.getSummary().contains("slowest handler move"));
+    }
+
+    public void testRegister() throws Exception {
+        NetworkMetrics.register();
+        NetworkMetrics.register(); // Harmless to repeat
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(NetworkMetrics.OBJECT_NAME);
+        assertTrue(mbs.isRegistered(name));
+        NetworkMetrics.reset();
+        NetworkMetrics.recordSent("test", 10);
+        assertEquals(10L, mbs.getAttribute(name, "BytesSent"));
+        assertNotNull(mbs.getAttribute(name, "Summary"));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.metaserver;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.w3c.dom.Element;
+
+
+public class MetaRegisterTest extends TestCase {
+
+    /** A socket standing in for a game server, so that it can be reached. */
+    private ServerSocket socket;
+
+    private String address;
+
+    private int port;
+
+
+    @Override
+    protected void setUp() throws Exception {
+        socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        address = socket.getInetAddress().getHostAddress();
+        port = socket.getLocalPort();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        socket.close();
+    }
+
+    private void add(MetaRegister mr, String name) throws Exception {
+        mr.updateServer(name, address, port, 4, 1, false, "0.11.6", 0);
+    }
+
+    private static List<String> names(MetaRegister mr) {
+        Element list = mr.createServerList();
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < list.getChildNodes().getLength(); i++) {
+            result.add(((Element)list.getChildNodes().item(i))
+                .getAttribute("name"));
+        }
+        return result;
+    }
+
+
+    public void testSnapshot() throws Exception {
+        MetaRegister mr = new MetaRegister();
+        try {
+            assertTrue(names(mr).isEmpty());
+            add(mr, "first");
+            assertEquals(1, mr.getServerCount());
+            assertEquals("[first]", names(mr).toString());
+
+            add(mr, "renamed");
+            assertEquals(1, mr.getServerCount());
+            assertEquals("[renamed]", names(mr).toString());
+
+            mr.removeServer(address, port);
+            assertEquals(0, mr.getServerCount());
+            assertTrue(names(mr).isEmpty());
+        } finally {
+            mr.shutdown();
+        }
+    }
+
+    public void testExpiry() throws Exception {
+        MetaRegister mr = new MetaRegister(500);
+        try {
+            add(mr, "server");
+            Thread.sleep(250);
+            add(mr, "server"); // Postpones the expiry
+            Thread.sleep(350);
+            assertEquals("Updated server kept", 1, mr.getServerCount());
+            Thread.sleep(600);
+            assertEquals("Silent server expired", 0, mr.getServerCount());
+            assertTrue(names(mr).isEmpty());
+        } finally {
+            mr.shutdown();
+        }
+    }
+
+    public void testConcurrentListing() throws Exception {
+        final MetaRegister mr = new MetaRegister();
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            add(mr, "server0");
+            List<Thread> readers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Thread t = new Thread() {
+                        @Override
+                        public void run() {
+                            try {
+                                for (int j = 0; j < 2000; j++) {
+                                    List<String> names = names(mr);
+                                    if (names.size() != 1
+                                        || !names.get(0).startsWith("server")) {
+                                        throw new IllegalStateException(names.toString());
+                                    }
+                                }
+                            } catch (Throwable e) {
+                                failure.compareAndSet(null, e);
+                            }
+                        }
+                    };
+                readers.add(t);
+                t.start();
+            }
+            for (int i = 1; i <= 200; i++) add(mr, "server" + i);
+            for (Thread t : readers) t.join();
+            assertNull(String.valueOf(failure.get()), failure.get());
+            assertEquals("[server200]", names(mr).toString());
+        } finally {
+            mr.shutdown();
+        }
+    }
+}
@@ -33,6 +33,7 @@ public class AllTests {
         suite.addTest(net.sf.freecol.server.ai.AllTests.suite());
         suite.addTest(net.sf.freecol.server.control.AllTests.suite());
         suite.addTest(net.sf.freecol.server.model.AllTests.suite());
+        suite.addTest(net.sf.freecol.server.networking.AllTests.suite());
         return suite;
     }
 
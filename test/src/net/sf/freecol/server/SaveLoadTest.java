@@ -19,14 +19,41 @@
 
 package net.sf.freecol.server;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.SavegameIndex;
+import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.FeatureContainer;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.GoodsType;
+import net.sf.freecol.common.model.HistoryEvent;
+import net.sf.freecol.common.model.ModelMessage;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.ResourceType;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.TileType;
+import net.sf.freecol.common.model.TradeRoute;
+import net.sf.freecol.common.model.Turn;
+import net.sf.freecol.common.model.UnitType;
 import net.sf.freecol.common.option.FileOption;
 import net.sf.freecol.common.option.MapGeneratorOptions;
+import net.sf.freecol.server.ai.AIMain;
+import net.sf.freecol.server.ai.AIPlayer;
 import net.sf.freecol.server.control.Controller;
 import net.sf.freecol.server.control.PreGameController;
+import net.sf.freecol.server.model.ServerUnit;
+import net.sf.freecol.tools.FSGConverter;
+import net.sf.freecol.tools.SaveGameValidator;
 import net.sf.freecol.util.test.FreeColTestCase;
 
 
@@ -91,4 +118,318 @@ public class SaveLoadTest extends FreeColTestCase {
         file.delete();
         assertFalse(file.exists());
     }
+
+    public void testBackgroundSave() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        FreeColServer server = ServerTestHelper.startServer(file, false, true);
+        File saved = new File(file.getPath() + ".new");
+        File backup = new File(file.getPath() + ".old");
+        final List<Integer> progress = new ArrayList<>();
+        final List<SaveImage> finished = new ArrayList<>();
+        SaveImage.Listener listener = new SaveImage.Listener() {
+                @Override
+                public void saveProgress(File f, int percent) {
+                    progress.add(percent);
+                }
+
+                @Override
+                public void saveFinished(SaveImage image, File f,
+                                         IOException failure) {
+                    assertNull(failure);
+                    finished.add(image);
+                }
+            };
+        try {
+            server.saveGameInBackground(saved, backup, null, listener).get();
+            assertTrue(saved.exists());
+            assertFalse("Nothing to back up", backup.exists());
+            assertEquals(Integer.valueOf(100),
+                         progress.get(progress.size() - 1));
+            assertEquals(1, finished.size());
+            assertTrue(finished.get(0).getPauseNanos() > 0);
+            assertTrue(finished.get(0).getWriteNanos() > 0);
+
+            server.saveGameInBackground(saved, backup, null, null);
+            server.waitForSaves();
+            assertTrue(saved.exists());
+            assertTrue(backup.exists());
+            assertFalse(new File(saved.getPath() + ".part").exists());
+
+            ServerTestHelper.stopServer();
+            server = ServerTestHelper.startServer(saved, false, true);
+            assertNotNull(server.getGame().getMap());
+        } finally {
+            file.delete();
+            saved.delete();
+            backup.delete();
+        }
+    }
+
+    private static byte[] readGameEntry(File file) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (
+            InputStream is = new FreeColSavegameFile(file)
+                .getSavegameInputStream();
+        ) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = is.read(buf)) > 0) bos.write(buf, 0, n);
+        }
+        return bos.toByteArray();
+    }
+
+    public void testBinarySave() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        ServerTestHelper.stopServer();
+        File binary = new File(file.getPath() + ".bin");
+        File text = new File(file.getPath() + ".xml");
+        FSGConverter fsgc = FSGConverter.getFSGConverter();
+        try {
+            assertFalse(new FreeColSavegameFile(file).isBinary());
+            fsgc.convertSavegame(file, binary, true);
+            FreeColSavegameFile fsg = new FreeColSavegameFile(binary);
+            assertTrue(fsg.isBinary());
+            assertEquals(FreeColServer.SAVEGAME_VERSION,
+                         fsg.getSavegameVersion());
+            assertTrue(binary.length() < file.length());
+
+            FreeColServer server
+                = ServerTestHelper.startServer(binary, false, true);
+            assertNotNull(server.getGame());
+            assertNotNull(server.getGame().getMap());
+            ServerTestHelper.stopServer();
+
+            // Converting back gives the original game
+            fsgc.convertSavegame(binary, text, false);
+            assertFalse(new FreeColSavegameFile(text).isBinary());
+            assertTrue(Arrays.equals(readGameEntry(file),
+                                     readGameEntry(text)));
+        } finally {
+            file.delete();
+            binary.delete();
+            text.delete();
+        }
+    }
+
+    public void testSectionedSave() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        FreeColServer server = ServerTestHelper.startServer(file, false, true);
+        final int integrity = server.getIntegrity();
+        ServerTestHelper.stopServer();
+        File sectioned = new File(file.getPath() + ".sections");
+        File text = new File(file.getPath() + ".xml");
+        FSGConverter fsgc = FSGConverter.getFSGConverter();
+        try {
+            assertFalse(new FreeColSavegameFile(file).isSectioned());
+            fsgc.convertToSectioned(file, sectioned);
+            FreeColSavegameFile fsg = new FreeColSavegameFile(sectioned);
+            assertTrue(fsg.isSectioned());
+            assertEquals(FreeColServer.SAVEGAME_VERSION,
+                         fsg.getSavegameVersion());
+            assertTrue("Skeleton should be small",
+                readGameEntry(sectioned).length < readGameEntry(file).length / 4);
+
+            server = ServerTestHelper.startServer(sectioned, false, true);
+            assertNotNull(server.getGame().getMap());
+            assertEquals(integrity, server.getIntegrity());
+            ServerTestHelper.stopServer();
+
+            // Merging the sections gives the original game
+            fsgc.convertSavegame(sectioned, text, false);
+            assertFalse(new FreeColSavegameFile(text).isSectioned());
+            assertTrue(Arrays.equals(readGameEntry(file),
+                                     readGameEntry(text)));
+        } finally {
+            file.delete();
+            sectioned.delete();
+            text.delete();
+        }
+    }
+
+    public void testSavegameIndex() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        FreeColServer server = ServerTestHelper.startServer(file, false, true);
+        File directory = Files.createTempDirectory("index").toFile();
+        File saved = new File(directory, "index.fsg");
+        File index = new File(directory, SavegameIndex.INDEX_FILE);
+        try {
+            Game game = server.getGame();
+            server.saveGame(saved, null, null);
+            assertTrue(index.exists());
+            SavegameIndex.Entry entry
+                = SavegameIndex.getIndex(directory).getEntry(saved);
+            assertEquals("index.fsg", entry.getName());
+            assertEquals(FreeColServer.SAVEGAME_VERSION, entry.getVersion());
+            assertEquals(game.getTurn().getNumber(), entry.getTurn());
+            assertEquals(game.getMap().getWidth(), entry.getMapWidth());
+            assertEquals(game.getMap().getHeight(), entry.getMapHeight());
+
+            // A changed file is read again
+            assertTrue(saved.setLastModified(saved.lastModified() - 10000));
+            entry = SavegameIndex.getIndex(directory).getEntry(saved);
+            assertTrue(entry.matches(saved));
+            assertEquals(game.getTurn().getNumber(), entry.getTurn());
+
+            // Files that are gone are dropped
+            assertTrue(saved.delete());
+            assertTrue(SavegameIndex.getIndex(directory).getEntries()
+                .isEmpty());
+        } finally {
+            file.delete();
+            saved.delete();
+            index.delete();
+            directory.delete();
+        }
+    }
+
+    public void testSaveGameValidator() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        File bad = File.createTempFile("bad", ".fsg");
+        try {
+            SaveGameValidator validator = new SaveGameValidator(
+                SaveGameValidator.loadSchema(
+                    new File(SaveGameValidator.SCHEMA_FILE)), null);
+            SaveGameValidator.Result result = validator.check(file);
+            assertEquals(FreeColServer.SAVEGAME_VERSION, result.getVersion());
+            assertEquals(result.getMessage(),
+                         SaveGameValidator.Status.VALID, result.getStatus());
+            assertNull(result.getMigrated());
+
+            Files.write(bad.toPath(), new byte[] { 1, 2, 3 });
+            result = validator.check(bad);
+            assertEquals(SaveGameValidator.Status.UNREADABLE,
+                         result.getStatus());
+            assertNotNull(result.getMessage());
+        } finally {
+            file.delete();
+            bad.delete();
+        }
+    }
+
+    public void testSaveGameValidatorColony() throws Exception {
+        Game game = ServerTestHelper.startServerGame(getTestMap(true));
+        Colony colony = getStandardColony(4);
+        Player dutch = colony.getOwner();
+        TradeRoute route = new TradeRoute(game, "route", dutch);
+        route.setSilent(true);
+        dutch.getTradeRoutes().add(route);
+        new ServerUnit(game, dutch.getEurope(), dutch,
+                       spec().getUnitType("model.unit.caravel"));
+        dutch.addHistory(new HistoryEvent(game.getTurn(),
+                HistoryEvent.HistoryEventType.FOUND_COLONY, dutch)
+            .addName("%colony%", colony.getName()));
+        dutch.addModelMessage(new ModelMessage(
+                ModelMessage.MessageType.BUILDING_COMPLETED,
+                "model.colony.buildingReady", colony));
+        // Give the AI colony plans, wishes and missions to save
+        AIMain aiMain = ServerTestHelper.getServer().getAIMain();
+        for (Player p : game.getLivePlayers(null)) {
+            AIPlayer aiPlayer = aiMain.getAIPlayer(p);
+            if (aiPlayer != null) aiPlayer.startWorking();
+        }
+        File file = File.createTempFile("colony", ".fsg");
+        try {
+            ServerTestHelper.getServer().saveGame(file, null);
+            SaveGameValidator validator = new SaveGameValidator(
+                SaveGameValidator.loadSchema(
+                    new File(SaveGameValidator.SCHEMA_FILE)), null);
+            SaveGameValidator.Result result = validator.check(file);
+            assertEquals(result.getMessage(),
+                         SaveGameValidator.Status.VALID, result.getStatus());
+        } finally {
+            file.delete();
+        }
+    }
+
+    public void testDeltaSave() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        FreeColServer server = ServerTestHelper.startServer(file, false, true);
+        File saved = new File(file.getPath() + ".chain");
+        File chain = DeltaChain.getChainFile(saved);
+        try {
+            server.saveGameDelta(saved, null, null).get();
+            assertTrue(saved.exists());
+            final long header = chain.length();
+            assertTrue(header > 0);
+
+            Game game = server.getGame();
+            int turn = game.getTurn().getNumber() + 1;
+            game.setTurn(new Turn(turn));
+            Tile tile = game.getMap().getTile(3, 3);
+            TileType type = spec().getTileType((tile.getType().isWater())
+                ? "model.tile.plains" : "model.tile.ocean");
+            tile.setType(type);
+            server.saveGameDelta(saved, null, null).get();
+            long delta = chain.length() - header;
+            assertTrue(delta > 0);
+            assertTrue("Delta should be small", delta < saved.length() / 4);
+
+            ServerTestHelper.stopServer();
+            server = ServerTestHelper.startServer(saved, false, true);
+            game = server.getGame();
+            assertEquals(turn, game.getTurn().getNumber());
+            assertEquals(type, game.getMap().getTile(3, 3).getType());
+
+            // A full save replaces the base, and the old chain is ignored
+            server.getGame().setTurn(new Turn(turn + 1));
+            server.saveGame(saved, null, null);
+            ServerTestHelper.stopServer();
+            server = ServerTestHelper.startServer(saved, false, true);
+            assertEquals(turn + 1, server.getGame().getTurn().getNumber());
+        } finally {
+            file.delete();
+            saved.delete();
+            chain.delete();
+        }
+    }
+
+    public void testDeltaCompaction() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        FreeColServer server = ServerTestHelper.startServer(file, false, true);
+        File saved = new File(file.getPath() + ".chain");
+        DeltaChain deltaChain = new DeltaChain(saved, 2);
+        try {
+            for (int i = 0; i < 4; i++) {
+                server.getGame().setTurn(new Turn(10 + i));
+                deltaChain.save(server.captureGame(null, null), null);
+                assertEquals(i % 3, deltaChain.getLength());
+            }
+            ServerTestHelper.stopServer();
+            server = ServerTestHelper.startServer(saved, false, true);
+            assertEquals(13, server.getGame().getTurn().getNumber());
+        } finally {
+            file.delete();
+            saved.delete();
+            DeltaChain.getChainFile(saved).delete();
+        }
+    }
+
+    private static void checkGrainModifiers(Specification spec) {
+        ResourceType grain = spec.getResourceType("model.resource.grain");
+        GoodsType grainType = spec.getGoodsType("model.goods.grain");
+        UnitType farmer = spec.getUnitType("model.unit.expertFarmer");
+        assertEquals(7f, FeatureContainer.applyModifiers(5f, null,
+                grain.getModifiers(grainType.getId(), null)));
+        assertEquals(9f, FeatureContainer.applyModifiers(5f, null,
+                grain.getModifiers(grainType.getId(), farmer)));
+    }
+
+    public void testSpecificationRoundTrip() throws Exception {
+        File file = ServerTestHelper.createRandomSaveGame();
+        FreeColServer server = ServerTestHelper.startServer(file, false, true);
+        File saved = new File(file.getPath() + ".again");
+        try {
+            // Features scoped to unit types are saved with the game
+            checkGrainModifiers(server.getSpecification());
+
+            // ...and survive saving and loading again
+            server.saveGame(saved, null, null);
+            ServerTestHelper.stopServer();
+            server = ServerTestHelper.startServer(saved, false, true);
+            checkGrainModifiers(server.getSpecification());
+        } finally {
+            file.delete();
+            saved.delete();
+        }
+    }
 }
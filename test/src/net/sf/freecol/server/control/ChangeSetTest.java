@@ -0,0 +1,259 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.server.control;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
+import net.sf.freecol.common.model.Direction;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Stance;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.model.UnitType;
+import net.sf.freecol.common.networking.Connection;
+import net.sf.freecol.common.networking.DOMMessage;
+import net.sf.freecol.common.networking.StreamedMessage;
+import net.sf.freecol.server.ServerTestHelper;
+import net.sf.freecol.server.control.ChangeSet.ChangePriority;
+import net.sf.freecol.server.control.ChangeSet.See;
+import net.sf.freecol.server.model.ServerPlayer;
+import net.sf.freecol.server.model.ServerUnit;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class ChangeSetTest extends FreeColTestCase {
+
+    private static final UnitType colonistType
+        = spec().getUnitType("model.unit.freeColonist");
+
+
+    @Override
+    public void tearDown() throws Exception {
+        ServerTestHelper.stopServerGame();
+        super.tearDown();
+    }
+
+    /**
+     * Stream a change set for a player, and read it back.
+     *
+     * @param cs The <code>ChangeSet</code> to stream.
+     * @param serverPlayer The <code>ServerPlayer</code> to stream for.
+     * @return The <code>Element</code> read back.
+     */
+    private static Element stream(ChangeSet cs, ServerPlayer serverPlayer)
+        throws Exception {
+        StreamedMessage message = cs.buildStreamed(serverPlayer);
+        if (message == null) return null;
+        StringWriter sw = new StringWriter();
+        try (
+            FreeColXMLWriter xw = new FreeColXMLWriter(sw,
+                WriteScope.toServer());
+        ) {
+            message.toXML(xw);
+        }
+        return new DOMMessage(new ByteArrayInputStream(sw.toString()
+                .getBytes("UTF-8"))).getDocument().getDocumentElement();
+    }
+
+    /**
+     * Check that the streamed form of a change set matches the
+     * element form.
+     *
+     * @param cs The <code>ChangeSet</code> to check.
+     * @param serverPlayer The <code>ServerPlayer</code> to check for.
+     */
+    private static void checkStream(ChangeSet cs, ServerPlayer serverPlayer)
+        throws Exception {
+        Element built = cs.build(serverPlayer);
+        Element streamed = stream(cs, serverPlayer);
+        if (built == null) {
+            assertNull(streamed);
+        } else {
+            assertNotNull(streamed);
+            assertTrue("Streamed " + DOMMessage.elementToString(streamed)
+                + " != built " + DOMMessage.elementToString(built),
+                built.isEqualNode(streamed));
+        }
+    }
+
+    public void testEmpty() throws Exception {
+        final Game game = ServerTestHelper.startServerGame(getTestMap());
+        final ServerPlayer dutch
+            = (ServerPlayer)game.getPlayerByNationId("model.nation.dutch");
+
+        ChangeSet cs = new ChangeSet();
+        assertNull(cs.buildStreamed(dutch));
+
+        // Attributes alone still make an update
+        cs.addAttribute(See.only(dutch), "flush", Boolean.TRUE.toString());
+        checkStream(cs, dutch);
+    }
+
+    public void testStreamMatchesBuild() throws Exception {
+        final Game game = ServerTestHelper.startServerGame(getTestMap(true));
+        final ServerPlayer dutch
+            = (ServerPlayer)game.getPlayerByNationId("model.nation.dutch");
+        final ServerPlayer french
+            = (ServerPlayer)game.getPlayerByNationId("model.nation.french");
+        final Tile tile = game.getMap().getTile(5, 8);
+        final Unit unit = new ServerUnit(game, tile, dutch, colonistType);
+
+        ChangeSet cs = new ChangeSet();
+        cs.add(See.perhaps(), unit, tile);
+        cs.addPartial(See.only(dutch), dutch, "gold");
+        cs.addStance(See.all(), dutch, Stance.PEACE, french);
+        cs.addTrivial(See.all(), "newTurn", ChangePriority.CHANGE_LATE,
+                      "turn", "2");
+        cs.addAttribute(See.only(dutch), "flush", Boolean.TRUE.toString());
+        cs.addMove(See.perhaps(), unit, tile,
+                   tile.getNeighbourOrNull(Direction.N));
+
+        checkStream(cs, dutch);
+        checkStream(cs, french);
+    }
+
+    public void testCollapse() throws Exception {
+        final Game game = ServerTestHelper.startServerGame(getTestMap(true));
+        final ServerPlayer dutch
+            = (ServerPlayer)game.getPlayerByNationId("model.nation.dutch");
+        final Tile tile = game.getMap().getTile(5, 8);
+
+        // Several updates should collapse into one.  Detach the AI
+        // connection, which would drop the updates.
+        dutch.setConnection(null);
+        ChangeSet cs = new ChangeSet();
+        cs.add(See.only(dutch), tile, tile.getNeighbourOrNull(
+                Direction.N));
+        cs.addPartial(See.only(dutch), dutch, "gold", "score");
+        Element streamed = stream(cs, dutch);
+        assertEquals("update", streamed.getTagName());
+        assertEquals(3, streamed.getChildNodes().getLength());
+        checkStream(cs, dutch);
+    }
+
+    public void testUninterested() throws Exception {
+        final Game game = ServerTestHelper.startServerGame(getTestMap(true));
+        final ServerPlayer dutch
+            = (ServerPlayer)game.getPlayerByNationId("model.nation.dutch");
+        final Tile tile = game.getMap().getTile(5, 8);
+        assertFalse(dutch.getConnection().isInterested("update"));
+        assertTrue(dutch.getConnection().isInterested("indianDemand"));
+
+        // The AI ignores updates, so they are not built for it
+        ChangeSet cs = new ChangeSet();
+        cs.add(See.only(dutch), tile);
+        cs.addTrivial(See.only(dutch), "newTurn", ChangePriority.CHANGE_LATE,
+                      "turn", "2");
+        assertNull(cs.build(dutch));
+        assertNull(cs.buildStreamed(dutch));
+
+        // ...but messages it acts on still are
+        cs.addTrivial(See.only(dutch), "setCurrentPlayer",
+                      ChangePriority.CHANGE_LATE, "player", dutch.getId());
+        Element e = cs.build(dutch);
+        assertNotNull(e);
+        assertEquals("setCurrentPlayer", e.getTagName());
+        checkStream(cs, dutch);
+    }
+
+    public void testLogged() throws Exception {
+        final Game game = ServerTestHelper.startServerGame(getTestMap(true));
+        final ServerPlayer dutch
+            = (ServerPlayer)game.getPlayerByNationId("model.nation.dutch");
+        final Tile tile = game.getMap().getTile(5, 8);
+
+        // The updates of a human player are logged, and the logged
+        // copy is what is streamed
+        dutch.setAI(false);
+        dutch.setConnection(null);
+        ChangeSet cs = new ChangeSet();
+        cs.add(See.only(dutch), tile);
+        cs.addAttribute(See.only(dutch), "flush", Boolean.TRUE.toString());
+        Element streamed = stream(cs, dutch);
+        assertEquals("1",
+            streamed.getAttribute(Connection.UPDATE_SEQUENCE_TAG));
+        List<Element> logged = dutch.getUpdateLog().getSince(0);
+        assertEquals(1, logged.size());
+        assertTrue(logged.get(0).isEqualNode(streamed));
+    }
+
+    public void testConnectedHumanStreamed() throws Exception {
+        final Game game = ServerTestHelper.startServerGame(getTestMap(true));
+        final ServerPlayer dutch
+            = (ServerPlayer)game.getPlayerByNationId("model.nation.dutch");
+        final Tile tile = game.getMap().getTile(5, 8);
+
+        // A connection that records what it is asked to send
+        final List<String> streamed = new ArrayList<>();
+        Connection conn = new Connection("recorder") {
+                @Override
+                public Element ask(StreamedMessage message) {
+                    StringWriter sw = new StringWriter();
+                    try (
+                        FreeColXMLWriter xw = new FreeColXMLWriter(sw,
+                            WriteScope.toServer());
+                    ) {
+                        message.toXML(xw);
+                    } catch (Exception e) {
+                        fail(e.toString());
+                    }
+                    streamed.add(sw.toString());
+                    return null;
+                }
+
+                @Override
+                public Element ask(Element element) {
+                    fail("Update sent as an element");
+                    return null;
+                }
+            };
+        dutch.setAI(false);
+        dutch.setConnection(conn);
+
+        // The update of a connected human is streamed, and logged
+        // from what was written
+        ChangeSet cs = new ChangeSet();
+        cs.add(See.only(dutch), tile);
+        dutch.send(cs);
+        assertEquals(1, streamed.size());
+        Element sent = new DOMMessage(new ByteArrayInputStream(streamed.get(0)
+                .getBytes("UTF-8"))).getDocument().getDocumentElement();
+        assertEquals("1", sent.getAttribute(Connection.UPDATE_SEQUENCE_TAG));
+        List<Element> logged = dutch.getUpdateLog().getSince(0);
+        assertEquals(1, logged.size());
+        assertTrue(logged.get(0).isEqualNode(sent));
+
+        // Once disconnected, updates are still logged
+        dutch.setConnection(null);
+        cs.log(dutch);
+        logged = dutch.getUpdateLog().getSince(1);
+        assertEquals(1, logged.size());
+        assertEquals("2",
+            logged.get(0).getAttribute(Connection.UPDATE_SEQUENCE_TAG));
+        assertEquals(1, streamed.size());
+    }
+}
@@ -444,6 +444,46 @@ public class InGameControllerTest extends FreeColTestCase {
                      Unit.UnitState.SENTRY, colonist.getState());
     }
 
+    public void testMovePath() {
+        final Game game = ServerTestHelper.startServerGame(getCoastTestMap(plains, true));
+        final Map map = game.getMap();
+        final InGameController igc = ServerTestHelper.getInGameController();
+
+        ServerPlayer dutch = (ServerPlayer)game.getPlayerByNationId("model.nation.dutch");
+        ServerPlayer french = (ServerPlayer)game.getPlayerByNationId("model.nation.french");
+        dutch.setStance(french, Stance.PEACE);
+        french.setStance(dutch, Stance.PEACE);
+        List<Direction> east = new ArrayList<>();
+        for (int i = 0; i < 8; i++) east.add(Direction.E);
+
+        // Follow a short path to its end
+        ServerUnit galleon = new ServerUnit(game, map.getTile(11, 4),
+                                            dutch, galleonType);
+        int moves = galleon.getMovesLeft();
+        igc.movePath(dutch, galleon, east.subList(0, 3));
+        assertEquals("Galleon should follow the whole path",
+                     map.getTile(14, 4), galleon.getTile());
+        assertTrue("Galleon should have used moves",
+                   galleon.getMovesLeft() < moves);
+
+        // Stop when out of moves
+        galleon = new ServerUnit(game, map.getTile(10, 6), dutch, galleonType);
+        int steps = galleon.getMovesLeft() / galleon.getMoveCost(map.getTile(11, 6));
+        assertTrue("Path should be longer than the moves left", steps < 8);
+        igc.movePath(dutch, galleon, east);
+        assertEquals("Galleon should stop when out of moves",
+                     map.getTile(10 + steps, 6), galleon.getTile());
+        assertEquals(0, galleon.getMovesLeft());
+
+        // Stop next to a foreign unit
+        new ServerUnit(game, map.getTile(14, 8), french, caravelType);
+        galleon = new ServerUnit(game, map.getTile(10, 8), dutch, galleonType);
+        igc.movePath(dutch, galleon, east.subList(0, 5));
+        assertEquals("Galleon should stop next to the foreign ship",
+                     map.getTile(13, 8), galleon.getTile());
+        assertTrue(galleon.getMovesLeft() > 0);
+    }
+
     public void testClearSpecialty() {
         final Game game =  ServerTestHelper.startServerGame(getTestMap());
         final Map map = game.getMap();
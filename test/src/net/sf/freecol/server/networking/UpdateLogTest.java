@@ -0,0 +1,149 @@
+/**
+ *  Copyright (C) 2002-2015  The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.server.networking;
+
+import java.util.List;
+
+import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.networking.Connection;
+import net.sf.freecol.common.networking.DOMMessage;
+import net.sf.freecol.common.networking.LoginMessage;
+import net.sf.freecol.server.ServerTestHelper;
+import net.sf.freecol.server.control.UserConnectionHandler;
+import net.sf.freecol.server.model.ServerPlayer;
+import net.sf.freecol.util.test.FreeColTestCase;
+
+import org.w3c.dom.Element;
+
+
+public class UpdateLogTest extends FreeColTestCase {
+
+    private static Element update(int n) {
+        return DOMMessage.createMessage("update", "n", Integer.toString(n));
+    }
+
+    /**
+     * Log in to the test server as a reconnecting client.
+     *
+     * @param lastUpdate The last update the client saw.
+     * @return The reply to the login.
+     */
+    private static Element login(int lastUpdate) {
+        UserConnectionHandler handler
+            = new UserConnectionHandler(ServerTestHelper.getServer());
+        Element reply = handler.handle(new DummyConnection("test", null),
+            DOMMessage.createMessage("login",
+                "userName", "test",
+                "version", FreeCol.getVersion(),
+                LoginMessage.LAST_UPDATE_TAG, Integer.toString(lastUpdate)));
+        assertEquals("login", reply.getTagName());
+        return reply;
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        ServerTestHelper.stopServerGame();
+        super.tearDown();
+    }
+
+
+    public void testSequence() {
+        UpdateLog log = new UpdateLog(4);
+        assertEquals(0, log.getLast());
+        Element e = update(1);
+        assertEquals(1, log.add(e));
+        assertEquals("1", e.getAttribute(Connection.UPDATE_SEQUENCE_TAG));
+        assertEquals(2, log.add(update(2)));
+        assertEquals(2, log.getLast());
+
+        assertTrue(log.getSince(2).isEmpty());
+        List<Element> since = log.getSince(0);
+        assertEquals(2, since.size());
+        assertEquals("1", since.get(0).getAttribute("n"));
+        assertEquals("2", since.get(1).getAttribute("n"));
+    }
+
+    public void testWrapped() {
+        UpdateLog log = new UpdateLog(4);
+        for (int i = 1; i <= 10; i++) log.add(update(i));
+
+        List<Element> since = log.getSince(6);
+        assertEquals(4, since.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.toString(7 + i),
+                         since.get(i).getAttribute("n"));
+        }
+        assertNull("Dropped updates", log.getSince(5));
+        assertNull("Future update", log.getSince(11));
+        assertNull("No update seen", log.getSince(-1));
+    }
+
+    public void testResyncMessage() {
+        UpdateLog log = new UpdateLog(4);
+        for (int i = 1; i <= 3; i++) log.add(update(i));
+
+        LoginMessage msg = new LoginMessage(getStandardGame()
+            .getPlayerByNationId("model.nation.dutch"), "test", "0",
+            true, false, false, null, null, false, false,
+            log.getLast(), log.getSince(1));
+        LoginMessage reply = new LoginMessage(null, msg.toXMLElement());
+        assertTrue(reply.isResync());
+        assertNull(reply.getGame());
+        assertEquals(3, reply.getLastUpdate());
+        List<Element> updates = reply.getUpdates();
+        assertEquals(2, updates.size());
+        assertEquals("2", updates.get(0).getAttribute("n"));
+        assertEquals("3", updates.get(1).getAttribute("n"));
+    }
+
+    public void testLoginResync() {
+        final Game game = ServerTestHelper.startServerGame(getTestMap());
+        final ServerPlayer dutch
+            = (ServerPlayer)game.getPlayerByNationId("model.nation.dutch");
+        // A human player that has lost its connection
+        dutch.setAI(false);
+        dutch.setName("test");
+        dutch.setConnection(null);
+        dutch.setConnected(false);
+        for (int i = 1; i <= 3; i++) dutch.logUpdate(update(i));
+
+        LoginMessage msg = new LoginMessage(null, login(1));
+        assertTrue(msg.isResync());
+        assertEquals(3, msg.getLastUpdate());
+        List<Element> updates = msg.getUpdates();
+        assertEquals(2, updates.size());
+        assertEquals("2", updates.get(0).getAttribute("n"));
+        assertEquals("3", updates.get(1).getAttribute("n"));
+
+        // Once the missed updates have been dropped, the game is sent
+        dutch.setConnected(false);
+        for (int i = 0; i < UpdateLog.DEFAULT_CAPACITY; i++) {
+            dutch.logUpdate(update(4 + i));
+        }
+        Element reply = login(1);
+        assertFalse(Boolean.parseBoolean(reply
+                .getAttribute(LoginMessage.RESYNC_TAG)));
+        assertEquals(Game.getXMLElementTagName(),
+                     ((Element)reply.getFirstChild()).getTagName());
+        assertEquals(dutch.getUpdateLog().getLast(),
+                     new LoginMessage(null, reply).getLastUpdate());
+    }
+}
@@ -19,6 +19,7 @@
 
 package net.sf.freecol.util.test;
 
+import java.io.File;
 import java.lang.reflect.Field;
 
 import java.util.ArrayList;
@@ -30,6 +31,7 @@ import junit.framework.TestCase;
 import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.io.FreeColTcFile;
+import net.sf.freecol.common.io.SpecificationSnapshot;
 import net.sf.freecol.common.model.AbstractGoods;
 import net.sf.freecol.common.model.Colony;
 import net.sf.freecol.common.model.CombatModel;
@@ -71,6 +73,17 @@ public class FreeColTestCase extends TestCase {
 
     static boolean updateLocale = true;
 
+    /** The directory the tests keep specification snapshots in. */
+    public static final File SNAPSHOT_DIRECTORY
+        = new File(System.getProperty("java.io.tmpdir"),
+                   "freecol-test-specifications");
+
+    static {
+        // Load specifications through snapshots as the game does,
+        // but without touching the user cache directory.
+        SpecificationSnapshot.setDirectory(SNAPSHOT_DIRECTORY);
+    }
+
     @Override
     protected void setUp() throws Exception {
         if (updateLocale) {